@@ -1,12 +1,23 @@
 package org.snhuan.huanDungeonRandom;
 
+import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.snhuan.huanDungeonRandom.api.HuanDungeonAPI;
 import org.snhuan.huanDungeonRandom.blueprint.BlueprintManager;
+import org.snhuan.huanDungeonRandom.commands.HuanDungeonCommand;
 import org.snhuan.huanDungeonRandom.config.ConfigManager;
+import org.snhuan.huanDungeonRandom.core.DungeonManager;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
 import org.snhuan.huanDungeonRandom.function.FunctionManager;
 import org.snhuan.huanDungeonRandom.generation.AsyncGenerator;
 import org.snhuan.huanDungeonRandom.generation.DungeonGenerator;
+import org.snhuan.huanDungeonRandom.generation.PreGenerationService;
 import org.snhuan.huanDungeonRandom.generation.RandomGenerator;
+import org.snhuan.huanDungeonRandom.listeners.BlockListener;
+import org.snhuan.huanDungeonRandom.listeners.DungeonListener;
+import org.snhuan.huanDungeonRandom.listeners.PlayerListener;
+import org.snhuan.huanDungeonRandom.placement.BlockPlacer;
+import org.snhuan.huanDungeonRandom.trigger.TriggerManager;
 import org.snhuan.huanDungeonRandom.utils.MessageUtils;
 
 /**
@@ -27,6 +38,10 @@ public final class HuanDungeonRandom extends JavaPlugin {
     private RandomGenerator randomGenerator;
     private DungeonGenerator dungeonGenerator;
     private AsyncGenerator asyncGenerator;
+    private BlockPlacer blockPlacer;
+    private PreGenerationService preGenerationService;
+    private TriggerManager triggerManager;
+    private DungeonManager dungeonManager;
 
     // 插件实例
     private static HuanDungeonRandom instance;
@@ -106,21 +121,65 @@ public final class HuanDungeonRandom extends JavaPlugin {
             }
             getLogger().info("功能管理器初始化完成");
 
-            // 初始化随机生成器
+            // 初始化随机生成器（作为根生成器，仅为每个生成任务派生独立种子）
             getLogger().info("正在初始化随机生成器...");
             randomGenerator = new RandomGenerator();
             getLogger().info("随机生成器初始化完成");
 
             // 初始化地牢生成器
             getLogger().info("正在初始化地牢生成器...");
-            dungeonGenerator = new DungeonGenerator(blueprintManager, randomGenerator, getLogger());
-            getLogger().info("地牢生成器初始化完成");
+            // 配置中没有 generation_mode 时保持原来的散布模式
+            DungeonGenerator.GenerationMode generationMode = DungeonGenerator.GenerationMode.fromConfig(
+                getConfig().getString("dungeon.generation_mode", "scatter"));
+            dungeonGenerator = new DungeonGenerator(blueprintManager, randomGenerator, getLogger(),
+                DungeonGenerator.GenerationConfig.defaultConfig().withMode(generationMode));
+            getLogger().info("地牢生成器初始化完成 (生成模式: " + generationMode.name().toLowerCase() + ")");
 
             // 初始化异步生成器
             getLogger().info("正在初始化异步生成器...");
             asyncGenerator = new AsyncGenerator(this, dungeonGenerator, blueprintManager);
             getLogger().info("异步生成器初始化完成");
 
+            // 初始化方块放置器
+            getLogger().info("正在初始化方块放置器...");
+            blockPlacer = new BlockPlacer(this);
+            asyncGenerator.setBlockPlacer(blockPlacer);
+            getLogger().info("方块放置器初始化完成");
+
+            // 初始化预生成服务
+            getLogger().info("正在初始化预生成服务...");
+            preGenerationService = new PreGenerationService(this, asyncGenerator, dungeonGenerator, blueprintManager);
+            preGenerationService.start();
+            // 启动时登记全部主题，不必等到第一次请求才开始预生成
+            for (DungeonTheme theme : configManager.loadThemes()) {
+                preGenerationService.addTheme(theme);
+            }
+            getLogger().info("预生成服务初始化完成");
+
+            // 初始化触发器管理器
+            getLogger().info("正在初始化触发器管理器...");
+            triggerManager = new TriggerManager(this, functionManager);
+            if (!triggerManager.initialize()) {
+                getLogger().severe("触发器管理器初始化失败");
+                return false;
+            }
+            getLogger().info("触发器管理器初始化完成");
+
+            // 初始化地牢管理器（接入预生成、流式生成和方块放置）
+            getLogger().info("正在初始化地牢管理器...");
+            dungeonManager = new DungeonManager(this);
+            dungeonManager.setDungeonGenerator(dungeonGenerator);
+            dungeonManager.setPreGenerationService(preGenerationService);
+            dungeonManager.setBlockPlacer(blockPlacer);
+            if (!dungeonManager.initialize()) {
+                getLogger().severe("地牢管理器初始化失败");
+                return false;
+            }
+            getLogger().info("地牢管理器初始化完成");
+
+            // 初始化API
+            HuanDungeonAPI.initialize(this, dungeonManager, functionManager, triggerManager);
+
             return true;
 
         } catch (Exception e) {
@@ -136,11 +195,20 @@ public final class HuanDungeonRandom extends JavaPlugin {
     private void registerCommandsAndListeners() {
         getLogger().info("正在注册命令和事件监听器...");
 
-        // TODO: 注册命令
-        // getCommand("dungeon").setExecutor(new DungeonCommand(this));
+        // 注册命令
+        PluginCommand command = getCommand("hdr");
+        if (command != null) {
+            HuanDungeonCommand executor = new HuanDungeonCommand(this, dungeonManager, triggerManager, functionManager);
+            command.setExecutor(executor);
+            command.setTabCompleter(executor);
+        } else {
+            getLogger().warning("plugin.yml 中未定义 hdr 命令，跳过命令注册");
+        }
 
-        // TODO: 注册事件监听器
-        // getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
+        // 注册事件监听器
+        getServer().getPluginManager().registerEvents(new PlayerListener(dungeonManager, triggerManager), this);
+        getServer().getPluginManager().registerEvents(new BlockListener(dungeonManager, triggerManager), this);
+        getServer().getPluginManager().registerEvents(new DungeonListener(dungeonManager, triggerManager), this);
 
         getLogger().info("命令和事件监听器注册完成");
     }
@@ -150,6 +218,39 @@ public final class HuanDungeonRandom extends JavaPlugin {
      */
     private void shutdownComponents() {
         try {
+            // 关闭API
+            HuanDungeonAPI.shutdown();
+
+            // 关闭地牢管理器（需要在方块放置器之前，销毁地牢时还原方块）
+            if (dungeonManager != null) {
+                getLogger().info("正在关闭地牢管理器...");
+                dungeonManager.shutdown();
+                dungeonManager = null;
+                getLogger().info("地牢管理器已关闭");
+            }
+
+            // 关闭触发器管理器
+            if (triggerManager != null) {
+                getLogger().info("正在关闭触发器管理器...");
+                triggerManager.shutdown();
+                triggerManager = null;
+                getLogger().info("触发器管理器已关闭");
+            }
+
+            // 关闭预生成服务
+            if (preGenerationService != null) {
+                preGenerationService.shutdown();
+                preGenerationService = null;
+            }
+
+            // 关闭方块放置器
+            if (blockPlacer != null) {
+                getLogger().info("正在关闭方块放置器...");
+                blockPlacer.shutdown();
+                blockPlacer = null;
+                getLogger().info("方块放置器已关闭");
+            }
+
             // 关闭异步生成器
             if (asyncGenerator != null) {
                 getLogger().info("正在关闭异步生成器...");
@@ -253,6 +354,42 @@ public final class HuanDungeonRandom extends JavaPlugin {
         return asyncGenerator;
     }
 
+    /**
+     * 获取方块放置器
+     *
+     * @return 方块放置器实例
+     */
+    public BlockPlacer getBlockPlacer() {
+        return blockPlacer;
+    }
+
+    /**
+     * 获取预生成服务
+     *
+     * @return 预生成服务实例
+     */
+    public PreGenerationService getPreGenerationService() {
+        return preGenerationService;
+    }
+
+    /**
+     * 获取触发器管理器
+     *
+     * @return 触发器管理器实例
+     */
+    public TriggerManager getTriggerManager() {
+        return triggerManager;
+    }
+
+    /**
+     * 获取地牢管理器
+     *
+     * @return 地牢管理器实例
+     */
+    public DungeonManager getDungeonManager() {
+        return dungeonManager;
+    }
+
     /**
      * 重新加载插件配置
      *
@@ -311,6 +448,10 @@ public final class HuanDungeonRandom extends JavaPlugin {
             sb.append("\n").append(asyncGenerator.getStatusInfo());
         }
 
+        if (blockPlacer != null) {
+            sb.append("\n").append(blockPlacer.getStatusInfo());
+        }
+
         return sb.toString();
     }
 }
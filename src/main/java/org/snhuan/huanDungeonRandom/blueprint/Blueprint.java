@@ -4,6 +4,7 @@ import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.util.Vector;
 import org.snhuan.huanDungeonRandom.function.Function;
 
 import java.io.File;
@@ -57,6 +58,9 @@ public abstract class Blueprint {
     protected Set<String> tags;
     protected String category;
 
+    // 四个旋转角度的旋转体缓存（第一次使用时计算，方块或门变化后失效）
+    private volatile RotatedBody[] rotatedBodies;
+
     /**
      * 构造函数
      *
@@ -253,6 +257,7 @@ public abstract class Blueprint {
 
             // 加载特定类型的数据
             loadTypeSpecificData(loadConfig);
+            invalidateRotatedBodies();
 
             this.configFile = file;
             this.config = loadConfig;
@@ -288,6 +293,7 @@ public abstract class Blueprint {
     public void addDoor(DoorInfo door) {
         if (door != null && !doors.contains(door)) {
             doors.add(door);
+            invalidateRotatedBodies();
             updateModifiedTime();
         }
     }
@@ -299,6 +305,7 @@ public abstract class Blueprint {
      */
     public void removeDoor(DoorInfo door) {
         if (doors.remove(door)) {
+            invalidateRotatedBodies();
             updateModifiedTime();
         }
     }
@@ -374,6 +381,116 @@ public abstract class Blueprint {
      */
     public abstract Blueprint clone();
 
+    // ==================== 方块遍历 ====================
+
+    /**
+     * 方块访问器
+     */
+    @FunctionalInterface
+    public interface BlockVisitor {
+        /**
+         * @param x 相对放置点的X（已旋转）
+         * @param y 相对放置点的Y
+         * @param z 相对放置点的Z（已旋转）
+         * @param material 方块材料，需要清空的位置为 AIR
+         */
+        void visit(int x, int y, int z, Material material);
+    }
+
+    /**
+     * 遍历蓝图需要写入世界的方块
+     *
+     * 坐标相对于放置点并已按旋转角度变换，与布局中的占地包围盒一致。
+     * 先给出需要清空的空气方块，再给出实体方块。数据来自缓存的旋转体，不做逐方块的旋转计算。
+     *
+     * @param rotation 旋转角度（0, 90, 180, 270）
+     * @param visitor 方块访问器
+     */
+    public void forEachBlock(int rotation, BlockVisitor visitor) {
+        getRotatedBody(rotation).forEachBlock(visitor);
+    }
+
+    /**
+     * 获取指定旋转角度的旋转体
+     *
+     * 四个角度在第一次调用时一起计算；并发的首次调用可能重复计算，结果相同且只读。
+     *
+     * @param rotation 旋转角度（0, 90, 180, 270）
+     * @return 旋转体
+     */
+    public RotatedBody getRotatedBody(int rotation) {
+        RotatedBody[] bodies = rotatedBodies;
+        if (bodies == null) {
+            bodies = RotatedBody.buildAll(this);
+            rotatedBodies = bodies;
+        }
+        return bodies[RotatedBody.index(rotation)];
+    }
+
+    /**
+     * 使旋转体缓存失效，方块、门或功能点变化后调用
+     */
+    protected void invalidateRotatedBodies() {
+        rotatedBodies = null;
+    }
+
+    /**
+     * 遍历未旋转的方块（由子类实现），先空气后实体。基类没有方块数据。
+     *
+     * @param visitor 方块访问器
+     */
+    protected void forEachLocalBlock(BlockVisitor visitor) {
+        // 默认没有方块
+    }
+
+    /**
+     * 获取未旋转的功能点（由子类实现）。基类没有功能点。
+     *
+     * @return 功能点列表，调用方只读
+     */
+    protected List<Vector> getLocalFunctionPoints() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * 遍历方块数据，供子类实现 {@link #forEachLocalBlock(BlockVisitor)}
+     *
+     * @param solidBlocks 实体方块
+     * @param airBlocks 空气方块
+     * @param visitor 方块访问器
+     */
+    protected static void visitBlocks(Map<Vector, Material> solidBlocks, Set<Vector> airBlocks, BlockVisitor visitor) {
+        for (Vector pos : airBlocks) {
+            visitor.visit(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ(), Material.AIR);
+        }
+        for (Map.Entry<Vector, Material> entry : solidBlocks.entrySet()) {
+            Vector pos = entry.getKey();
+            visitor.visit(pos.getBlockX(), pos.getBlockY(), pos.getBlockZ(), entry.getValue());
+        }
+    }
+
+    /**
+     * 立即把蓝图的全部方块写入世界（必须在主线程调用）
+     *
+     * 不触发物理更新。适合单个蓝图的即时放置；整个地牢应交给放置队列分帧写入。
+     *
+     * @param world 目标世界
+     * @param location 放置点
+     * @param rotation 旋转角度
+     * @return 写入的方块数
+     */
+    protected int placeBlocks(World world, Location location, int rotation) {
+        int originX = location.getBlockX();
+        int originY = location.getBlockY();
+        int originZ = location.getBlockZ();
+        int[] count = new int[1];
+        forEachBlock(rotation, (x, y, z, material) -> {
+            world.getBlockAt(originX + x, originY + y, originZ + z).setType(material, false);
+            count[0]++;
+        });
+        return count[0];
+    }
+
     // ==================== Getter 和 Setter 方法 ====================
 
     public String getId() { return name; } // 使用名称作为ID
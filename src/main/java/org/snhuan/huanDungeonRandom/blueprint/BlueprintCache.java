@@ -24,7 +24,6 @@ import java.util.logging.Logger;
  */
 public class BlueprintCache {
     
-    private final Plugin plugin;
     private final Logger logger;
     
     // 缓存配置
@@ -76,8 +75,16 @@ public class BlueprintCache {
      * @param plugin 插件实例
      */
     public BlueprintCache(Plugin plugin) {
-        this.plugin = plugin;
-        this.logger = plugin.getLogger();
+        this(plugin.getLogger());
+    }
+    
+    /**
+     * 构造函数（无服务器环境）
+     * 
+     * @param logger 日志记录器
+     */
+    public BlueprintCache(Logger logger) {
+        this.logger = logger;
         
         // 从配置读取缓存参数，这里使用默认值
         this.maxCacheSize = 100; // 最大缓存100个蓝图
@@ -1,12 +1,21 @@
 package org.snhuan.huanDungeonRandom.blueprint;
 
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.Plugin;
+import org.snhuan.huanDungeonRandom.blueprint.templates.CorridorBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.TileBlueprint;
+import org.snhuan.huanDungeonRandom.utils.ExecutorFactory;
 import org.snhuan.huanDungeonRandom.utils.FileUtils;
 import org.snhuan.huanDungeonRandom.utils.MessageUtils;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -18,6 +27,8 @@ import java.util.logging.Logger;
  * - 蓝图缓存管理
  * - 蓝图验证和预览
  * - 按类型和分类查询蓝图
+ * - 按主题预先划分的蓝图池（随注册表版本失效）
+ * - 文件读写可在独立的 I/O 线程池中异步执行（virtual 模式下使用虚拟线程）
  *
  * @author HuanDungeonRandom
  * @version 1.0
@@ -25,7 +36,6 @@ import java.util.logging.Logger;
  */
 public class BlueprintManager {
 
-    private final Plugin plugin;
     private final Logger logger;
     private final File blueprintsFolder;
 
@@ -41,6 +51,15 @@ public class BlueprintManager {
     // 蓝图缓存系统
     private final BlueprintCache cache;
 
+    // 注册表版本，任何注册、注销或修改都会使其递增
+    private final AtomicLong registryVersion;
+
+    // 当前版本的蓝图池索引
+    private volatile BlueprintPoolIndex poolIndex;
+
+    // 文件读写线程池
+    private final ExecutorService ioExecutor;
+
     // 管理器状态
     private boolean initialized;
     private long lastLoadTime;
@@ -51,14 +70,33 @@ public class BlueprintManager {
      * @param plugin 插件实例
      */
     public BlueprintManager(Plugin plugin) {
-        this.plugin = plugin;
-        this.logger = plugin.getLogger();
-        this.blueprintsFolder = new File(plugin.getDataFolder(), "blueprints");
+        this(new File(plugin.getDataFolder(), "blueprints"), plugin.getLogger(),
+            ExecutorFactory.Mode.fromConfig(plugin.getConfig().getString("performance.executor.mode", "platform")),
+            plugin.getConfig().getInt("performance.executor.io_threads", ExecutorFactory.DEFAULT_IO_THREADS));
+    }
+
+    /**
+     * 构造函数（无服务器环境）
+     *
+     * 不依赖插件实例，供离线批量生成等在服务器之外运行的工具使用。
+     *
+     * @param blueprintsFolder 蓝图文件夹，按类型分子文件夹存放
+     * @param logger 日志记录器
+     */
+    public BlueprintManager(File blueprintsFolder, Logger logger) {
+        this(blueprintsFolder, logger, ExecutorFactory.Mode.PLATFORM, ExecutorFactory.DEFAULT_IO_THREADS);
+    }
+
+    private BlueprintManager(File blueprintsFolder, Logger logger, ExecutorFactory.Mode ioMode, int ioThreads) {
+        this.logger = logger;
+        this.blueprintsFolder = blueprintsFolder;
 
         this.blueprints = new ConcurrentHashMap<>();
         this.blueprintsByType = new ConcurrentHashMap<>();
         this.blueprintsByCategory = new ConcurrentHashMap<>();
-        this.cache = new BlueprintCache(plugin);
+        this.cache = new BlueprintCache(logger);
+        this.registryVersion = new AtomicLong(0);
+        this.ioExecutor = ExecutorFactory.newIoExecutor("BlueprintIO", ioMode, ioThreads, logger);
 
         this.initialized = false;
         this.lastLoadTime = 0;
@@ -116,7 +154,12 @@ public class BlueprintManager {
         }
 
         try {
-            // 保存所有修改的蓝图
+            // 等待未完成的异步读写，再保存所有修改的蓝图
+            ioExecutor.shutdown();
+            if (!ioExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("蓝图读写任务未能在10秒内完成");
+                ioExecutor.shutdownNow();
+            }
             saveAllModifiedBlueprints();
 
             // 关闭缓存系统
@@ -126,6 +169,7 @@ public class BlueprintManager {
             blueprints.clear();
             blueprintsByType.clear();
             blueprintsByCategory.clear();
+            registryVersion.incrementAndGet();
 
             this.initialized = false;
             logger.info("蓝图管理器已关闭");
@@ -204,10 +248,68 @@ public class BlueprintManager {
      * @return 加载的蓝图，失败返回null
      */
     private Blueprint loadBlueprintFromFile(File file, BlueprintType expectedType) {
-        // 这里需要根据具体的蓝图类型创建对应的实例
-        // 暂时返回null，等具体蓝图类实现后再完善
-        logger.info("正在加载蓝图文件: " + file.getName());
-        return null;
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(file);
+
+        String name = config.getString("name");
+        if (name == null || name.trim().isEmpty()) {
+            logger.warning("蓝图文件缺少名称: " + file.getName());
+            return null;
+        }
+
+        BlueprintType type;
+        try {
+            type = BlueprintType.valueOf(config.getString("type", expectedType.name()).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warning("无效的蓝图类型: " + file.getName() + " - " + config.getString("type"));
+            return null;
+        }
+        if (type != expectedType) {
+            logger.warning("蓝图类型与所在文件夹不符: " + file.getName() + " (" + type + " != " + expectedType + ")");
+            return null;
+        }
+
+        // 先按类型创建实例，再由蓝图自身读取门、标签和方块等数据
+        int sizeX = config.getInt("size.x", 16);
+        int sizeY = config.getInt("size.y", 8);
+        int sizeZ = config.getInt("size.z", 16);
+        Blueprint blueprint;
+        try {
+            switch (type) {
+                case ROOM:
+                    blueprint = RoomBlueprint.builder(name,
+                            RoomBlueprint.RoomType.valueOf(config.getString("room.type", "NORMAL").toUpperCase()),
+                            sizeX, sizeY, sizeZ)
+                        .setConnections(config.getInt("room.min-connections", 1), config.getInt("room.max-connections", 4))
+                        .setSpecialRoom(config.getBoolean("room.is-special", false))
+                        .setRequiredKey(config.getString("room.required-key"))
+                        .setRarity(config.getInt("room.rarity", 1))
+                        .build();
+                    break;
+                case CORRIDOR:
+                    blueprint = CorridorBlueprint.builder(name,
+                            CorridorBlueprint.CorridorType.valueOf(config.getString("corridor.type", "STRAIGHT").toUpperCase()),
+                            config.getInt("corridor.length", sizeX), sizeX, sizeY, sizeZ)
+                        .setAllowBranching(config.getBoolean("corridor.allow-branching", true))
+                        .setPriority(config.getInt("corridor.priority", 1))
+                        .build();
+                    break;
+                case TILE:
+                    blueprint = TileBlueprint.builder(name, sizeX, sizeY, sizeZ)
+                        .setCornerTile(config.getBoolean("tile.is-corner", false))
+                        .setDeadEndTile(config.getBoolean("tile.is-dead-end", false))
+                        .setWeight(config.getInt("tile.weight", 1))
+                        .build();
+                    break;
+                default:
+                    logger.warning("暂不支持从文件加载该类型的蓝图: " + file.getName() + " (" + type + ")");
+                    return null;
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warning("蓝图文件数据无效: " + file.getName() + " - " + e.getMessage());
+            return null;
+        }
+
+        return blueprint.load(file) ? blueprint : null;
     }
 
     /**
@@ -241,6 +343,9 @@ public class BlueprintManager {
             return false;
         }
 
+        // 预先计算四个旋转体，生成线程直接使用缓存
+        blueprint.getRotatedBody(0);
+
         // 注册蓝图
         blueprints.put(id, blueprint);
 
@@ -255,6 +360,7 @@ public class BlueprintManager {
 
         // 添加到缓存
         cache.put(blueprint);
+        registryVersion.incrementAndGet();
 
         logger.info("成功注册蓝图: " + id + " (类型: " + blueprint.getType().getDisplayName() + ")");
         return true;
@@ -293,6 +399,7 @@ public class BlueprintManager {
 
         // 从缓存中移除
         cache.remove(blueprintId);
+        registryVersion.incrementAndGet();
 
         logger.info("成功注销蓝图: " + blueprintId);
         return true;
@@ -377,6 +484,32 @@ public class BlueprintManager {
         return result;
     }
 
+    /**
+     * 获取当前注册表版本的蓝图池索引
+     *
+     * 注册表变化后首次调用时重建索引，之后直接返回同一个不可变快照。
+     * 一次生成应只获取一次索引，保证整个生成过程使用一致的蓝图集合。
+     *
+     * @return 蓝图池索引
+     */
+    public BlueprintPoolIndex getPoolIndex() {
+        BlueprintPoolIndex index = poolIndex;
+        long version = registryVersion.get();
+        if (index != null && index.getVersion() == version) {
+            return index;
+        }
+
+        synchronized (this) {
+            index = poolIndex;
+            version = registryVersion.get();
+            if (index == null || index.getVersion() != version) {
+                index = new BlueprintPoolIndex(version, blueprints.values());
+                poolIndex = index;
+            }
+            return index;
+        }
+    }
+
     /**
      * 根据分类获取所有蓝图
      *
@@ -472,8 +605,9 @@ public class BlueprintManager {
             boolean success = blueprint.save(file);
 
             if (success) {
-                // 更新缓存
+                // 更新缓存，蓝图内容可能已改变，蓝图池需要重建
                 cache.put(blueprint);
+                registryVersion.incrementAndGet();
                 logger.info("成功保存蓝图: " + blueprint.getId());
             }
 
@@ -485,6 +619,16 @@ public class BlueprintManager {
         }
     }
 
+    /**
+     * 异步保存蓝图到文件
+     *
+     * @param blueprint 要保存的蓝图
+     * @return CompletableFuture包装的保存结果
+     */
+    public CompletableFuture<Boolean> saveBlueprintAsync(Blueprint blueprint) {
+        return CompletableFuture.supplyAsync(() -> saveBlueprint(blueprint), ioExecutor);
+    }
+
     /**
      * 删除蓝图
      *
@@ -553,6 +697,27 @@ public class BlueprintManager {
         }
     }
 
+    /**
+     * 异步重新加载蓝图
+     *
+     * @param blueprintId 蓝图ID
+     * @return CompletableFuture包装的重新加载结果
+     */
+    public CompletableFuture<Boolean> reloadBlueprintAsync(String blueprintId) {
+        return CompletableFuture.supplyAsync(() -> reloadBlueprint(blueprintId), ioExecutor);
+    }
+
+    /**
+     * 异步重新加载所有蓝图
+     *
+     * 重新加载期间注册表会被清空再填充，正在进行的生成使用的是旧版本的蓝图池，不受影响。
+     *
+     * @return CompletableFuture包装的重新加载数量
+     */
+    public CompletableFuture<Integer> reloadAllBlueprintsAsync() {
+        return CompletableFuture.supplyAsync(this::reloadAllBlueprints, ioExecutor);
+    }
+
     /**
      * 重新加载所有蓝图
      *
@@ -566,6 +731,7 @@ public class BlueprintManager {
         blueprintsByType.clear();
         blueprintsByCategory.clear();
         cache.clear();
+        registryVersion.incrementAndGet();
 
         // 重新初始化类型索引
         for (BlueprintType type : BlueprintType.values()) {
@@ -600,6 +766,15 @@ public class BlueprintManager {
         return lastLoadTime;
     }
 
+    /**
+     * 获取注册表版本
+     *
+     * @return 注册表版本
+     */
+    public long getRegistryVersion() {
+        return registryVersion.get();
+    }
+
     /**
      * 获取蓝图总数
      *
@@ -638,6 +813,7 @@ public class BlueprintManager {
         sb.append("初始化状态: ").append(initialized ? "已初始化" : "未初始化").append("\n");
         sb.append("蓝图总数: ").append(getTotalBlueprintCount()).append("\n");
         sb.append("上次加载时间: ").append(new Date(lastLoadTime)).append("\n");
+        sb.append("注册表版本: ").append(registryVersion.get()).append("\n");
 
         sb.append("\n按类型统计:\n");
         Map<BlueprintType, Integer> counts = getBlueprintCounts();
@@ -0,0 +1,93 @@
+package org.snhuan.huanDungeonRandom.blueprint;
+
+import org.snhuan.huanDungeonRandom.blueprint.templates.CorridorBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.TileBlueprint;
+import org.snhuan.huanDungeonRandom.utils.AliasSampler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 蓝图池 - 一组预先筛选好的蓝图及其加权采样器
+ *
+ * 蓝图池构建后不可变，可在生成线程之间只读共享。
+ * 同时预先计算出带门的子池，供连通布局直接使用。
+ *
+ * @param <T> 蓝图类型
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class BlueprintPool<T extends Blueprint> {
+
+    private final List<T> blueprints;
+    private final AliasSampler<T> sampler;
+    private final BlueprintPool<T> linkable;
+
+    /**
+     * 构造函数
+     *
+     * @param blueprints 蓝图列表（应已按ID排序）
+     */
+    public BlueprintPool(List<T> blueprints) {
+        this(blueprints, false);
+    }
+
+    private BlueprintPool(List<T> blueprints, boolean linkableOnly) {
+        this.blueprints = Collections.unmodifiableList(new ArrayList<>(blueprints));
+        this.sampler = AliasSampler.of(this.blueprints, BlueprintPool::selectionWeight);
+
+        if (linkableOnly) {
+            this.linkable = this;
+            return;
+        }
+
+        List<T> withDoors = new ArrayList<>();
+        for (T blueprint : this.blueprints) {
+            if (!blueprint.getDoors().isEmpty()) {
+                withDoors.add(blueprint);
+            }
+        }
+        this.linkable = withDoors.size() == this.blueprints.size() ? this : new BlueprintPool<>(withDoors, true);
+    }
+
+    /**
+     * 获取蓝图的选择权重
+     *
+     * 房间按稀有度的倒数，瓦片按权重，走廊按优先级，其余蓝图权重为1。
+     *
+     * @param blueprint 蓝图
+     * @return 选择权重
+     */
+    public static double selectionWeight(Blueprint blueprint) {
+        if (blueprint instanceof RoomBlueprint) {
+            return 1.0 / ((RoomBlueprint) blueprint).getRarity();
+        }
+        if (blueprint instanceof TileBlueprint) {
+            return ((TileBlueprint) blueprint).getWeight();
+        }
+        if (blueprint instanceof CorridorBlueprint) {
+            return ((CorridorBlueprint) blueprint).getPriority();
+        }
+        return 1.0;
+    }
+
+    /**
+     * 获取第一个蓝图
+     *
+     * @return 蓝图，池为空返回null
+     */
+    public T first() {
+        return blueprints.isEmpty() ? null : blueprints.get(0);
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public List<T> getBlueprints() { return blueprints; }
+    public AliasSampler<T> getSampler() { return sampler; }
+    public BlueprintPool<T> linkable() { return linkable; }
+    public int size() { return blueprints.size(); }
+    public boolean isEmpty() { return blueprints.isEmpty(); }
+}
@@ -0,0 +1,152 @@
+package org.snhuan.huanDungeonRandom.blueprint;
+
+import org.snhuan.huanDungeonRandom.blueprint.templates.CorridorBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.TileBlueprint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * 蓝图池索引 - 按 (主题, 蓝图类型, 房间类型) 预先划分的蓝图池
+ *
+ * 索引是蓝图注册表某个版本的不可变快照：
+ * - 创建时按类型分组并按唯一的蓝图ID排序，保证相同种子得到相同布局
+ * - 每个主题的蓝图池在首次访问时筛选一次，之后直接复用
+ * - 注册表变化后由 BlueprintManager 创建新的索引，旧索引仍可被正在进行的生成安全使用
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class BlueprintPoolIndex {
+
+    private static final String ALL_ROOMS = "*";
+    private static final String REGULAR_ROOMS = "regular";
+
+    private final long version;
+    private final Map<BlueprintType, List<Blueprint>> byType;
+    private final Map<String, BlueprintPool<?>> pools;
+
+    /**
+     * 构造函数
+     *
+     * @param version 注册表版本
+     * @param blueprints 注册表中的所有蓝图
+     */
+    public BlueprintPoolIndex(long version, Collection<Blueprint> blueprints) {
+        this.version = version;
+        this.byType = new EnumMap<>(BlueprintType.class);
+        this.pools = new ConcurrentHashMap<>();
+
+        for (BlueprintType type : BlueprintType.values()) {
+            byType.put(type, new ArrayList<>());
+        }
+        for (Blueprint blueprint : blueprints) {
+            byType.get(blueprint.getType()).add(blueprint);
+        }
+        for (List<Blueprint> list : byType.values()) {
+            list.sort(Comparator.comparing(Blueprint::getId));
+        }
+    }
+
+    /**
+     * 检查蓝图是否与主题兼容
+     *
+     * 分类名包含主题ID，或分类为 default / universal 的蓝图适用于所有主题。
+     *
+     * @param blueprint 蓝图
+     * @param themeId 主题ID
+     * @return 是否兼容
+     */
+    public static boolean isThemeCompatible(Blueprint blueprint, String themeId) {
+        String category = blueprint.getCategory().toLowerCase();
+        return category.contains(themeId.toLowerCase()) || category.equals("default") || category.equals("universal");
+    }
+
+    /**
+     * 获取主题的所有房间
+     *
+     * @param themeId 主题ID
+     * @return 房间蓝图池
+     */
+    public BlueprintPool<RoomBlueprint> getRoomPool(String themeId) {
+        return pool(themeId, BlueprintType.ROOM, ALL_ROOMS, RoomBlueprint.class, room -> true);
+    }
+
+    /**
+     * 获取主题中指定类型的房间
+     *
+     * @param themeId 主题ID
+     * @param roomType 房间类型
+     * @return 房间蓝图池
+     */
+    public BlueprintPool<RoomBlueprint> getRoomPool(String themeId, RoomBlueprint.RoomType roomType) {
+        return pool(themeId, BlueprintType.ROOM, roomType.name(), RoomBlueprint.class,
+            room -> room.getRoomType() == roomType);
+    }
+
+    /**
+     * 获取主题中的普通房间（出生房间和首领房间以外的房间）
+     *
+     * @param themeId 主题ID
+     * @return 房间蓝图池
+     */
+    public BlueprintPool<RoomBlueprint> getRegularRoomPool(String themeId) {
+        return pool(themeId, BlueprintType.ROOM, REGULAR_ROOMS, RoomBlueprint.class,
+            room -> room.getRoomType() != RoomBlueprint.RoomType.SPAWN
+                && room.getRoomType() != RoomBlueprint.RoomType.BOSS);
+    }
+
+    /**
+     * 获取主题的所有走廊
+     *
+     * @param themeId 主题ID
+     * @return 走廊蓝图池
+     */
+    public BlueprintPool<CorridorBlueprint> getCorridorPool(String themeId) {
+        return pool(themeId, BlueprintType.CORRIDOR, ALL_ROOMS, CorridorBlueprint.class, corridor -> true);
+    }
+
+    /**
+     * 获取主题的所有瓦片
+     *
+     * @param themeId 主题ID
+     * @return 瓦片蓝图池
+     */
+    public BlueprintPool<TileBlueprint> getTilePool(String themeId) {
+        return pool(themeId, BlueprintType.TILE, ALL_ROOMS, TileBlueprint.class, tile -> true);
+    }
+
+    /**
+     * 获取或构建蓝图池
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Blueprint> BlueprintPool<T> pool(String themeId, BlueprintType type, String variant,
+                                                         Class<T> blueprintClass, Predicate<T> filter) {
+        String key = themeId.toLowerCase() + ":" + type.name() + ":" + variant;
+        return (BlueprintPool<T>) pools.computeIfAbsent(key, k -> {
+            List<T> selected = new ArrayList<>();
+            for (Blueprint blueprint : byType.get(type)) {
+                if (blueprintClass.isInstance(blueprint) && isThemeCompatible(blueprint, themeId)) {
+                    T typed = blueprintClass.cast(blueprint);
+                    if (filter.test(typed)) {
+                        selected.add(typed);
+                    }
+                }
+            }
+            return new BlueprintPool<>(selected);
+        });
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public long getVersion() { return version; }
+    public int getPoolCount() { return pools.size(); }
+}
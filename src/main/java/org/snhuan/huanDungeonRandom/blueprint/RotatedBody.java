@@ -0,0 +1,215 @@
+package org.snhuan.huanDungeonRandom.blueprint;
+
+import org.bukkit.Material;
+import org.bukkit.util.Vector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 旋转体 - 蓝图在某个旋转角度下的方块、门和功能点
+ *
+ * 坐标相对于放置点并已按旋转角度变换，以基本类型数组交错保存为 x, y, z。
+ * 旋转规则与 {@link org.snhuan.huanDungeonRandom.generation.OccupancyGrid#footprint} 一致：
+ * 90 度时 (x, z) -> (-z, x)，180 度时 (x, z) -> (-x, -z)，270 度时 (x, z) -> (z, -x)。
+ *
+ * 四个角度在第一次使用时一起计算并缓存在蓝图上，之后只读，可以在任意线程共享。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class RotatedBody {
+
+    /** 支持的旋转角度，下标与 {@link #index(int)} 对应 */
+    public static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    private final int rotation;
+
+    // 方块：先空气后实体，与 Blueprint#forEachBlock 的顺序一致
+    private final int[] blocks;
+    private final Material[] materials;
+
+    // 门：与蓝图的门列表顺序一致
+    private final DoorInfo[] doors;
+    private final int[] doorCoords;
+    private final DoorDirection[] doorDirections;
+
+    // 功能点
+    private final int[] functionPoints;
+
+    private RotatedBody(int rotation, int[] blocks, Material[] materials, DoorInfo[] doors,
+                        int[] doorCoords, DoorDirection[] doorDirections, int[] functionPoints) {
+        this.rotation = rotation;
+        this.blocks = blocks;
+        this.materials = materials;
+        this.doors = doors;
+        this.doorCoords = doorCoords;
+        this.doorDirections = doorDirections;
+        this.functionPoints = functionPoints;
+    }
+
+    /**
+     * 计算蓝图的四个旋转体
+     *
+     * @param blueprint 蓝图
+     * @return 按 {@link #ROTATIONS} 顺序排列的旋转体
+     */
+    static RotatedBody[] buildAll(Blueprint blueprint) {
+        // 收集未旋转的方块
+        int[][] coords = {new int[48]};
+        Material[][] mats = {new Material[16]};
+        int[] count = new int[1];
+        blueprint.forEachLocalBlock((x, y, z, material) -> {
+            int n = count[0];
+            if (n == mats[0].length) {
+                mats[0] = Arrays.copyOf(mats[0], n * 2);
+                coords[0] = Arrays.copyOf(coords[0], n * 6);
+            }
+            coords[0][n * 3] = x;
+            coords[0][n * 3 + 1] = y;
+            coords[0][n * 3 + 2] = z;
+            mats[0][n] = material;
+            count[0] = n + 1;
+        });
+        int blockCount = count[0];
+        int[] localBlocks = Arrays.copyOf(coords[0], blockCount * 3);
+        Material[] materials = Arrays.copyOf(mats[0], blockCount);
+
+        List<DoorInfo> doorList = blueprint.getDoors();
+        DoorInfo[] doors = doorList.toArray(new DoorInfo[0]);
+        int[] localDoors = new int[doors.length * 3];
+        for (int i = 0; i < doors.length; i++) {
+            localDoors[i * 3] = doors[i].getX();
+            localDoors[i * 3 + 1] = doors[i].getY();
+            localDoors[i * 3 + 2] = doors[i].getZ();
+        }
+
+        List<Vector> pointList = blueprint.getLocalFunctionPoints();
+        int[] localPoints = new int[pointList.size() * 3];
+        for (int i = 0; i < pointList.size(); i++) {
+            Vector point = pointList.get(i);
+            localPoints[i * 3] = point.getBlockX();
+            localPoints[i * 3 + 1] = point.getBlockY();
+            localPoints[i * 3 + 2] = point.getBlockZ();
+        }
+
+        RotatedBody[] bodies = new RotatedBody[ROTATIONS.length];
+        for (int r = 0; r < ROTATIONS.length; r++) {
+            int rotation = ROTATIONS[r];
+            DoorDirection[] directions = new DoorDirection[doors.length];
+            for (int i = 0; i < doors.length; i++) {
+                directions[i] = doors[i].getRotatedDirection(rotation);
+            }
+            bodies[r] = new RotatedBody(rotation, rotate(localBlocks, rotation), materials, doors,
+                rotate(localDoors, rotation), directions, rotate(localPoints, rotation));
+        }
+        return bodies;
+    }
+
+    /**
+     * 旋转交错保存的坐标
+     */
+    private static int[] rotate(int[] local, int rotation) {
+        if (rotation == 0) {
+            return local;
+        }
+        int[] result = new int[local.length];
+        for (int i = 0; i < local.length; i += 3) {
+            int x = local[i];
+            int z = local[i + 2];
+            result[i] = rotateX(x, z, rotation);
+            result[i + 1] = local[i + 1];
+            result[i + 2] = rotateZ(x, z, rotation);
+        }
+        return result;
+    }
+
+    /**
+     * 旋转后的X偏移
+     *
+     * @param x 未旋转的X
+     * @param z 未旋转的Z
+     * @param rotation 旋转角度
+     * @return 旋转后的X
+     */
+    public static int rotateX(int x, int z, int rotation) {
+        switch (((rotation % 360) + 360) % 360) {
+            case 90: return -z;
+            case 180: return -x;
+            case 270: return z;
+            default: return x;
+        }
+    }
+
+    /**
+     * 旋转后的Z偏移
+     *
+     * @param x 未旋转的X
+     * @param z 未旋转的Z
+     * @param rotation 旋转角度
+     * @return 旋转后的Z
+     */
+    public static int rotateZ(int x, int z, int rotation) {
+        switch (((rotation % 360) + 360) % 360) {
+            case 90: return x;
+            case 180: return -z;
+            case 270: return -x;
+            default: return z;
+        }
+    }
+
+    /**
+     * 旋转角度对应的下标，非 90 度倍数的角度按 0 度处理
+     *
+     * @param rotation 旋转角度
+     * @return 0 到 3 的下标
+     */
+    public static int index(int rotation) {
+        switch (((rotation % 360) + 360) % 360) {
+            case 90: return 1;
+            case 180: return 2;
+            case 270: return 3;
+            default: return 0;
+        }
+    }
+
+    /**
+     * 按顺序遍历全部方块
+     *
+     * @param visitor 方块访问器
+     */
+    public void forEachBlock(Blueprint.BlockVisitor visitor) {
+        for (int i = 0; i < materials.length; i++) {
+            visitor.visit(blocks[i * 3], blocks[i * 3 + 1], blocks[i * 3 + 2], materials[i]);
+        }
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public int getRotation() { return rotation; }
+
+    public int getBlockCount() { return materials.length; }
+    public int getBlockX(int index) { return blocks[index * 3]; }
+    public int getBlockY(int index) { return blocks[index * 3 + 1]; }
+    public int getBlockZ(int index) { return blocks[index * 3 + 2]; }
+    public Material getMaterial(int index) { return materials[index]; }
+
+    public int getDoorCount() { return doors.length; }
+    public DoorInfo getDoor(int index) { return doors[index]; }
+    public int getDoorX(int index) { return doorCoords[index * 3]; }
+    public int getDoorY(int index) { return doorCoords[index * 3 + 1]; }
+    public int getDoorZ(int index) { return doorCoords[index * 3 + 2]; }
+    public DoorDirection getDoorDirection(int index) { return doorDirections[index]; }
+
+    public int getFunctionPointCount() { return functionPoints.length / 3; }
+    public int getFunctionPointX(int index) { return functionPoints[index * 3]; }
+    public int getFunctionPointY(int index) { return functionPoints[index * 3 + 1]; }
+    public int getFunctionPointZ(int index) { return functionPoints[index * 3 + 2]; }
+
+    @Override
+    public String toString() {
+        return "RotatedBody{rotation=" + rotation + ", blocks=" + materials.length + ", doors=" + doors.length
+            + ", functionPoints=" + getFunctionPointCount() + "}";
+    }
+}
@@ -50,7 +50,9 @@ public class CorridorBlueprint extends Blueprint {
         T_JUNCTION("T型路口", 3),
         CROSS("十字路口", 4),
         CURVED("弯曲走廊", 2),
-        DECORATED("装饰走廊", 2);
+        DECORATED("装饰走廊", 2),
+        STAIRS("楼梯走廊", 3),
+        SHAFT("竖井", 3);
 
         private final String displayName;
         private final int complexity;
@@ -67,6 +69,13 @@ public class CorridorBlueprint extends Blueprint {
         public int getComplexity() {
             return complexity;
         }
+
+        /**
+         * 是否为连接不同楼层的垂直走廊
+         */
+        public boolean isVertical() {
+            return this == STAIRS || this == SHAFT;
+        }
     }
 
     /**
@@ -253,6 +262,15 @@ public class CorridorBlueprint extends Blueprint {
                     builder.addWarning("装饰走廊建议添加装饰方块");
                 }
                 break;
+
+            case STAIRS:
+            case SHAFT:
+                if (doors.size() != 2) {
+                    builder.addError(corridorType.getDisplayName() + "必须有且仅有两个门");
+                } else if (doors.get(0).getY() == doors.get(1).getY()) {
+                    builder.addError(corridorType.getDisplayName() + "的两个门必须位于不同高度");
+                }
+                break;
         }
     }
 
@@ -519,6 +537,11 @@ public class CorridorBlueprint extends Blueprint {
         }
     }
 
+    @Override
+    protected void forEachLocalBlock(BlockVisitor visitor) {
+        visitBlocks(blockData, airBlocks, visitor);
+    }
+
     @Override
     public boolean place(World world, Location location, int rotation) {
         if (world == null || location == null) {
@@ -526,23 +549,7 @@ public class CorridorBlueprint extends Blueprint {
         }
 
         try {
-            // 放置方块数据
-            for (Map.Entry<Vector, Material> entry : blockData.entrySet()) {
-                Vector pos = entry.getKey();
-                Vector rotatedPos = rotateVector(pos, rotation);
-                Location blockLocation = location.clone().add(rotatedPos);
-
-                world.getBlockAt(blockLocation).setType(entry.getValue());
-            }
-
-            // 设置空气方块
-            for (Vector pos : airBlocks) {
-                Vector rotatedPos = rotateVector(pos, rotation);
-                Location blockLocation = location.clone().add(rotatedPos);
-
-                world.getBlockAt(blockLocation).setType(Material.AIR);
-            }
-
+            placeBlocks(world, location, rotation);
             return true;
         } catch (Exception e) {
             logger.severe("放置走廊蓝图失败: " + e.getMessage());
@@ -550,20 +557,6 @@ public class CorridorBlueprint extends Blueprint {
         }
     }
 
-    /**
-     * 旋转向量
-     */
-    private Vector rotateVector(Vector vector, int rotation) {
-        double radians = Math.toRadians(rotation);
-        double cos = Math.cos(radians);
-        double sin = Math.sin(radians);
-
-        double newX = vector.getX() * cos - vector.getZ() * sin;
-        double newZ = vector.getX() * sin + vector.getZ() * cos;
-
-        return new Vector(Math.round(newX), vector.getY(), Math.round(newZ));
-    }
-
     @Override
     public Blueprint clone() {
         return builder(this.getName(), this.corridorType, this.length, this.sizeX, this.sizeY, this.sizeZ)
@@ -869,15 +862,8 @@ public class CorridorBlueprint extends Blueprint {
     @Override
     protected boolean buildSpecific(org.bukkit.Location location) {
         try {
-            // 这里应该实现实际的走廊构建逻辑
-            // 暂时返回true表示构建成功
-            logger.info("构建走廊蓝图: " + getName() + " 在位置: " + formatLocation(location));
-
-            // TODO: 实现实际的方块放置逻辑
-            // 1. 根据蓝图数据构建走廊结构
-            // 2. 放置路径点
-            // 3. 处理走廊连接
-
+            int placed = placeBlocks(location.getWorld(), location, 0);
+            logger.fine("构建走廊蓝图: " + getName() + " 在位置: " + formatLocation(location) + " (" + placed + " 个方块)");
             return true;
 
         } catch (Exception e) {
@@ -2,6 +2,7 @@ package org.snhuan.huanDungeonRandom.blueprint.templates;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.util.Vector;
@@ -603,11 +604,28 @@ public class RoomBlueprint extends Blueprint {
     }
 
     @Override
-    public boolean place(org.bukkit.World world, Location location, int rotation) {
-        // TODO: 实现房间放置逻辑
-        // 这里应该根据blockData在世界中放置方块
-        logger.info("放置房间蓝图: " + name + " 在位置: " + location);
-        return true;
+    protected void forEachLocalBlock(BlockVisitor visitor) {
+        visitBlocks(blockData, airBlocks, visitor);
+    }
+
+    @Override
+    protected List<Vector> getLocalFunctionPoints() {
+        return functionPoints;
+    }
+
+    @Override
+    public boolean place(World world, Location location, int rotation) {
+        if (world == null || location == null) {
+            return false;
+        }
+
+        try {
+            placeBlocks(world, location, rotation);
+            return true;
+        } catch (Exception e) {
+            logger.severe("放置房间蓝图失败: " + e.getMessage());
+            return false;
+        }
     }
 
     @Override
@@ -790,15 +808,8 @@ public class RoomBlueprint extends Blueprint {
     @Override
     protected boolean buildSpecific(org.bukkit.Location location) {
         try {
-            // 这里应该实现实际的房间构建逻辑
-            // 暂时返回true表示构建成功
-            logger.info("构建房间蓝图: " + getName() + " 在位置: " + formatLocation(location));
-
-            // TODO: 实现实际的方块放置逻辑
-            // 1. 根据蓝图数据构建房间结构
-            // 2. 放置门的位置
-            // 3. 添加装饰和功能方块
-
+            int placed = placeBlocks(location.getWorld(), location, 0);
+            logger.fine("构建房间蓝图: " + getName() + " 在位置: " + formatLocation(location) + " (" + placed + " 个方块)");
             return true;
 
         } catch (Exception e) {
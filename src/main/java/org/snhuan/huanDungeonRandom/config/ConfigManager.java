@@ -3,10 +3,14 @@ package org.snhuan.huanDungeonRandom.config;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
 import org.snhuan.huanDungeonRandom.utils.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -209,6 +213,33 @@ public class ConfigManager {
         logger.info("配置文件重载完成");
     }
 
+    /**
+     * 加载主题目录中的全部主题
+     *
+     * 无法解析的主题文件会被跳过并记录警告。
+     *
+     * @return 主题列表，按文件名排序
+     */
+    public List<DungeonTheme> loadThemes() {
+        List<DungeonTheme> themes = new ArrayList<>();
+        File[] files = themesDir.listFiles((dir, name) -> name.endsWith(".yml") || name.endsWith(".yaml"));
+        if (files == null) {
+            return themes;
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            try {
+                themes.add(DungeonTheme.fromConfig(YamlConfiguration.loadConfiguration(file)));
+            } catch (Exception e) {
+                logger.warning("加载主题文件失败: " + file.getName() + " - " + e.getMessage());
+            }
+        }
+
+        logger.info("已加载 " + themes.size() + " 个地牢主题");
+        return themes;
+    }
+
     // ==================== 配置获取方法 ====================
 
     /**
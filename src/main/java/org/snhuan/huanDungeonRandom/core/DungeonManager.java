@@ -6,6 +6,11 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.snhuan.huanDungeonRandom.dungeon.DungeonInstance;
 import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
+import org.snhuan.huanDungeonRandom.generation.DungeonGenerator;
+import org.snhuan.huanDungeonRandom.generation.PreGenerationService;
+import org.snhuan.huanDungeonRandom.generation.StreamingSession;
+import org.snhuan.huanDungeonRandom.placement.BlockPlacer;
+import org.snhuan.huanDungeonRandom.utils.LocationUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -37,6 +42,19 @@ public class DungeonManager {
     private final Map<UUID, String> playerDungeonMap;
     private final Map<String, Set<String>> chunkDungeonMap;
     
+    // 预生成服务（可选）
+    private PreGenerationService preGenerationService;
+    
+    // 流式生成（可选）
+    private DungeonGenerator dungeonGenerator;
+    private final Map<String, StreamingSession> streamingSessions;
+    private final boolean streamingEnabled;
+    private final double revealRadius;
+    private final int maxDoorsPerExpansion;
+    
+    // 方块放置器（可选）
+    private BlockPlacer blockPlacer;
+    
     // 统计信息
     private long totalDungeonsCreated;
     private long totalDungeonsDestroyed;
@@ -51,6 +69,10 @@ public class DungeonManager {
         this.dungeonInstances = new ConcurrentHashMap<>();
         this.playerDungeonMap = new ConcurrentHashMap<>();
         this.chunkDungeonMap = new ConcurrentHashMap<>();
+        this.streamingSessions = new ConcurrentHashMap<>();
+        this.streamingEnabled = plugin.getConfig().getBoolean("performance.streaming_generation.enabled", false);
+        this.revealRadius = plugin.getConfig().getDouble("performance.streaming_generation.reveal_radius", 24.0);
+        this.maxDoorsPerExpansion = Math.max(1, plugin.getConfig().getInt("performance.streaming_generation.max_doors_per_expansion", 2));
         this.totalDungeonsCreated = 0;
         this.totalDungeonsDestroyed = 0;
     }
@@ -83,15 +105,16 @@ public class DungeonManager {
         try {
             logger.info("正在关闭地牢管理器...");
             
-            // 销毁所有活跃的地牢
+            // 销毁所有活跃的地牢（关闭后定时任务不再运行，方块立即还原）
             for (DungeonInstance dungeon : new ArrayList<>(dungeonInstances.values())) {
-                destroyDungeon(dungeon.getInstanceId());
+                destroyDungeon(dungeon.getInstanceId(), true);
             }
             
             // 清理数据
             dungeonInstances.clear();
             playerDungeonMap.clear();
             chunkDungeonMap.clear();
+            streamingSessions.clear();
             
             logger.info("地牢管理器已关闭");
             
@@ -116,20 +139,41 @@ public class DungeonManager {
         }
         
         try {
-            // 生成唯一的实例ID
-            String instanceId = generateInstanceId(dungeonId);
+            // 优先使用预生成的布局
+            DungeonInstance dungeon = preGenerationService != null
+                ? preGenerationService.createFromPool(dungeonId, theme, location, createdBy)
+                : null;
             
-            // 创建地牢实例
-            DungeonInstance dungeon = DungeonInstance.builder(instanceId, dungeonId, theme, location.getWorld(), location)
-                .setCreatedBy(createdBy)
-                .setCreationReason("Manual Creation")
-                .build();
+            // 流式生成：只生成出生房间及其相邻蓝图，其余部分随玩家探索展开
+            if (dungeon == null && streamingEnabled && dungeonGenerator != null) {
+                StreamingSession session = dungeonGenerator.startStreaming(dungeonId, theme, location.getWorld(), location, createdBy);
+                if (session != null) {
+                    dungeon = session.getInstance();
+                    streamingSessions.put(dungeon.getInstanceId(), session);
+                }
+            }
+            
+            if (dungeon == null) {
+                // 生成唯一的实例ID
+                String instanceId = generateInstanceId(dungeonId);
+                
+                // 创建地牢实例
+                dungeon = DungeonInstance.builder(instanceId, dungeonId, theme, location.getWorld(), location)
+                    .setCreatedBy(createdBy)
+                    .setCreationReason("Manual Creation")
+                    .build();
+            }
             
             // 注册地牢实例
             registerDungeon(dungeon);
             
+            // 按 tick 时间预算写入方块
+            if (blockPlacer != null && !dungeon.getPlacedBlueprints().isEmpty()) {
+                blockPlacer.submit(dungeon, null);
+            }
+            
             totalDungeonsCreated++;
-            logger.info("成功创建地牢实例: " + instanceId);
+            logger.info("成功创建地牢实例: " + dungeon.getInstanceId());
             
             return dungeon;
             
@@ -140,6 +184,61 @@ public class DungeonManager {
         }
     }
     
+    /**
+     * 设置预生成服务，设置后创建地牢时会优先使用现成的布局
+     * 
+     * @param preGenerationService 预生成服务，null 表示不使用
+     */
+    public void setPreGenerationService(PreGenerationService preGenerationService) {
+        this.preGenerationService = preGenerationService;
+    }
+    
+    /**
+     * 设置方块放置器，设置后创建和展开的地牢会写入方块
+     * 
+     * @param blockPlacer 方块放置器，null 表示不写入方块
+     */
+    public void setBlockPlacer(BlockPlacer blockPlacer) {
+        this.blockPlacer = blockPlacer;
+    }
+    
+    /**
+     * 设置地牢生成器，启用流式生成时用于创建和扩展地牢
+     * 
+     * @param dungeonGenerator 地牢生成器，null 表示不使用
+     */
+    public void setDungeonGenerator(DungeonGenerator dungeonGenerator) {
+        this.dungeonGenerator = dungeonGenerator;
+    }
+    
+    /**
+     * 玩家移动时展开附近未展开的门（必须在主线程调用）
+     * 
+     * @param dungeon 地牢实例
+     * @param location 玩家位置
+     * @return 新放置的蓝图数量
+     */
+    public int expandDungeonAround(DungeonInstance dungeon, Location location) {
+        StreamingSession session = streamingSessions.get(dungeon.getInstanceId());
+        if (session == null) {
+            return 0;
+        }
+        
+        int placedBefore = session.getPlacedCount();
+        int added = session.expandAround(location, revealRadius, maxDoorsPerExpansion);
+        if (added > 0) {
+            indexDungeonChunks(dungeon, placedBefore);
+            if (blockPlacer != null) {
+                blockPlacer.submit(dungeon, placedBefore, null);
+            }
+        }
+        if (session.isComplete()) {
+            streamingSessions.remove(dungeon.getInstanceId());
+            logger.info("流式地牢已全部展开: " + dungeon.getInstanceId() + " (蓝图: " + session.getPlacedCount() + ")");
+        }
+        return added;
+    }
+    
     /**
      * 注册地牢实例
      * 
@@ -149,7 +248,7 @@ public class DungeonManager {
         dungeonInstances.put(dungeon.getInstanceId(), dungeon);
         
         // 建立区块索引
-        indexDungeonChunks(dungeon);
+        indexDungeonChunks(dungeon, 0);
     }
     
     /**
@@ -159,6 +258,20 @@ public class DungeonManager {
      * @return 是否销毁成功
      */
     public boolean destroyDungeon(String instanceId) {
+        return destroyDungeon(instanceId, false);
+    }
+    
+    /**
+     * 销毁地牢实例
+     * 
+     * 设置了方块放置器时，地牢覆盖的原始方块会按日志还原：
+     * 正常销毁时在每 tick 的时间预算内分批还原，关闭时立即还原。
+     * 
+     * @param instanceId 实例ID
+     * @param immediate 是否立即还原方块
+     * @return 是否销毁成功
+     */
+    private boolean destroyDungeon(String instanceId, boolean immediate) {
         DungeonInstance dungeon = dungeonInstances.get(instanceId);
         if (dungeon == null) {
             return false;
@@ -173,6 +286,16 @@ public class DungeonManager {
             // 销毁地牢
             dungeon.destroy();
             
+            // 停止尚未完成的方块放置，并还原被覆盖的方块
+            if (blockPlacer != null) {
+                if (immediate) {
+                    int restored = blockPlacer.restoreNow(instanceId);
+                    logger.fine("已立即还原地牢方块: " + instanceId + " (" + restored + " 个方块)");
+                } else {
+                    blockPlacer.restore(instanceId, null);
+                }
+            }
+            
             // 注销地牢实例
             unregisterDungeon(dungeon);
             
@@ -195,6 +318,7 @@ public class DungeonManager {
      */
     private void unregisterDungeon(DungeonInstance dungeon) {
         dungeonInstances.remove(dungeon.getInstanceId());
+        streamingSessions.remove(dungeon.getInstanceId());
         
         // 移除区块索引
         removeChunkIndex(dungeon);
@@ -361,17 +485,18 @@ public class DungeonManager {
     /**
      * 建立地牢区块索引
      * 
+     * 按蓝图的实际占地计算涉及的区块，不会加载区块。
+     * 
      * @param dungeon 地牢实例
+     * @param fromIndex 第一个需要索引的蓝图索引
      */
-    private void indexDungeonChunks(DungeonInstance dungeon) {
-        // 这里应该根据地牢的边界计算涉及的区块
-        // 暂时简化处理
-        Location origin = dungeon.getOrigin();
-        Chunk chunk = origin.getChunk();
-        String chunkKey = getChunkKey(chunk);
-        
-        chunkDungeonMap.computeIfAbsent(chunkKey, k -> new HashSet<>())
-            .add(dungeon.getInstanceId());
+    private void indexDungeonChunks(DungeonInstance dungeon, int fromIndex) {
+        String worldName = dungeon.getWorld().getName();
+        for (long key : dungeon.getChunkKeys(fromIndex)) {
+            String chunkKey = getChunkKey(worldName, LocationUtils.chunkKeyX(key), LocationUtils.chunkKeyZ(key));
+            chunkDungeonMap.computeIfAbsent(chunkKey, k -> ConcurrentHashMap.newKeySet())
+                .add(dungeon.getInstanceId());
+        }
     }
     
     /**
@@ -391,7 +516,19 @@ public class DungeonManager {
      * @return 区块键
      */
     private String getChunkKey(Chunk chunk) {
-        return chunk.getWorld().getName() + ":" + chunk.getX() + ":" + chunk.getZ();
+        return getChunkKey(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+    }
+    
+    /**
+     * 获取区块键
+     * 
+     * @param worldName 世界名称
+     * @param chunkX 区块X
+     * @param chunkZ 区块Z
+     * @return 区块键
+     */
+    private String getChunkKey(String worldName, int chunkX, int chunkZ) {
+        return worldName + ":" + chunkX + ":" + chunkZ;
     }
     
     /**
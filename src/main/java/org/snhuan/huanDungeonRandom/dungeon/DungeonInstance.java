@@ -6,6 +6,9 @@ import org.bukkit.entity.Player;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
 import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.RotatedBody;
+import org.snhuan.huanDungeonRandom.generation.OccupancyGrid;
+import org.snhuan.huanDungeonRandom.utils.LocationUtils;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -38,6 +41,7 @@ public class DungeonInstance {
 
     // 蓝图和结构信息
     private final List<PlacedBlueprint> placedBlueprints;
+    private final List<DoorConnection> connections;
     private final Map<String, Location> namedLocations;
     private final Set<Location> doorLocations;
     private final Set<Location> functionPoints;
@@ -50,6 +54,10 @@ public class DungeonInstance {
     private final UUID createdBy;
     private final String creationReason;
 
+    // 生成种子，配合主题和注册表版本可重现相同布局
+    private final long seed;
+    private final long registryVersion;
+
     /**
      * 已放置的蓝图信息
      */
@@ -80,6 +88,33 @@ public class DungeonInstance {
         }
     }
 
+    /**
+     * 门连接信息 - 记录两个已放置蓝图之间通过哪两扇门相连
+     */
+    public static class DoorConnection {
+        private final int fromIndex;
+        private final String fromDoorId;
+        private final int toIndex;
+        private final String toDoorId;
+
+        public DoorConnection(int fromIndex, String fromDoorId, int toIndex, String toDoorId) {
+            this.fromIndex = fromIndex;
+            this.fromDoorId = fromDoorId;
+            this.toIndex = toIndex;
+            this.toDoorId = toDoorId;
+        }
+
+        public int getFromIndex() { return fromIndex; }
+        public String getFromDoorId() { return fromDoorId; }
+        public int getToIndex() { return toIndex; }
+        public String getToDoorId() { return toDoorId; }
+
+        @Override
+        public String toString() {
+            return String.format("DoorConnection{%d:%s -> %d:%s}", fromIndex, fromDoorId, toIndex, toDoorId);
+        }
+    }
+
     /**
      * 地牢配置类
      */
@@ -137,6 +172,7 @@ public class DungeonInstance {
         this.state = new DungeonState(instanceId);
 
         this.placedBlueprints = new ArrayList<>(builder.placedBlueprints);
+        this.connections = new ArrayList<>(builder.connections);
         this.namedLocations = new ConcurrentHashMap<>(builder.namedLocations);
         this.doorLocations = ConcurrentHashMap.newKeySet();
         this.functionPoints = ConcurrentHashMap.newKeySet();
@@ -145,6 +181,8 @@ public class DungeonInstance {
         this.createdTime = System.currentTimeMillis();
         this.createdBy = builder.createdBy;
         this.creationReason = builder.creationReason;
+        this.seed = builder.seed;
+        this.registryVersion = builder.registryVersion;
 
         // 初始化门和功能点位置
         initializeLocations();
@@ -177,47 +215,33 @@ public class DungeonInstance {
             Location baseLocation = placed.getLocation();
             int rotation = placed.getRotation();
 
+            RotatedBody body = blueprint.getRotatedBody(rotation);
+
             // 添加门位置
-            blueprint.getDoors().forEach(door -> {
-                Vector doorVector = door.getLocation().toVector();
-                Location doorLoc = calculateRotatedLocation(baseLocation, doorVector, rotation);
-                doorLocations.add(doorLoc);
-            });
-
-            // 添加功能点位置（如果是房间蓝图）
-            if (blueprint instanceof org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint) {
-                var roomBlueprint = (org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint) blueprint;
-                roomBlueprint.getFunctionPoints().forEach(point -> {
-                    Location funcLoc = calculateRotatedLocation(baseLocation, point, rotation);
-                    functionPoints.add(funcLoc);
-                });
+            for (int i = 0; i < body.getDoorCount(); i++) {
+                doorLocations.add(offset(baseLocation, body.getDoorX(i), body.getDoorY(i), body.getDoorZ(i)));
+            }
+
+            // 添加功能点位置（只有房间蓝图有功能点）
+            for (int i = 0; i < body.getFunctionPointCount(); i++) {
+                functionPoints.add(offset(baseLocation,
+                    body.getFunctionPointX(i), body.getFunctionPointY(i), body.getFunctionPointZ(i)));
             }
         }
     }
 
     /**
-     * 计算旋转后的位置
+     * 计算相对基础位置偏移后的位置
      *
      * @param base 基础位置
-     * @param relative 相对位置
-     * @param rotation 旋转角度（0, 90, 180, 270）
-     * @return 旋转后的位置
+     * @param x 已旋转的X偏移
+     * @param y Y偏移
+     * @param z 已旋转的Z偏移
+     * @return 偏移后的位置
      */
-    private Location calculateRotatedLocation(Location base, Vector relative, int rotation) {
-        double x = relative.getX();
-        double z = relative.getZ();
-
-        // 根据旋转角度计算新坐标
-        switch (rotation) {
-            case 90:
-                return base.clone().add(-z, relative.getY(), x);
-            case 180:
-                return base.clone().add(-x, relative.getY(), -z);
-            case 270:
-                return base.clone().add(z, relative.getY(), -x);
-            default: // 0度
-                return base.clone().add(x, relative.getY(), z);
-        }
+    private static Location offset(Location base, int x, int y, int z) {
+        return new Location(base.getWorld(), base.getX() + x, base.getY() + y, base.getZ() + z,
+            base.getYaw(), base.getPitch());
     }
 
     /**
@@ -368,6 +392,32 @@ public class DungeonInstance {
         }
     }
 
+    /**
+     * 添加门连接
+     *
+     * @param fromIndex 起始蓝图索引
+     * @param fromDoorId 起始门ID
+     * @param toIndex 目标蓝图索引
+     * @param toDoorId 目标门ID
+     */
+    public void addConnection(int fromIndex, String fromDoorId, int toIndex, String toDoorId) {
+        if (fromIndex >= 0 && toIndex >= 0 && fromIndex < placedBlueprints.size() && toIndex < placedBlueprints.size()) {
+            connections.add(new DoorConnection(fromIndex, fromDoorId, toIndex, toDoorId));
+        }
+    }
+
+    /**
+     * 扩大地牢边界以包含指定区域
+     *
+     * @param min 区域最小点
+     * @param max 区域最大点
+     */
+    public void expandBounds(Vector min, Vector max) {
+        if (min != null && max != null) {
+            bounds.union(BoundingBox.of(min, max));
+        }
+    }
+
     /**
      * 完成地牢
      *
@@ -409,6 +459,43 @@ public class DungeonInstance {
         state.transitionTo(DungeonState.State.DESTROYED);
     }
 
+    /**
+     * 计算蓝图占地包围盒涉及的全部区块，不加载区块
+     *
+     * @param fromIndex 第一个计入的蓝图索引（流式生成时只计算新展开的部分）
+     * @return 去重并排序的区块键，见 {@link LocationUtils#chunkKey(int, int)}
+     */
+    public long[] getChunkKeys(int fromIndex) {
+        long[] keys = new long[16];
+        int count = 0;
+        for (int i = Math.max(0, fromIndex); i < placedBlueprints.size(); i++) {
+            PlacedBlueprint placed = placedBlueprints.get(i);
+            Blueprint blueprint = placed.blueprint;
+            int[] footprint = OccupancyGrid.footprint(
+                placed.location.getBlockX(), placed.location.getBlockY(), placed.location.getBlockZ(),
+                blueprint.getSizeX(), blueprint.getSizeY(), blueprint.getSizeZ(), placed.rotation);
+
+            // 包围盒最大值不包含
+            for (int chunkX = footprint[0] >> 4; chunkX <= (footprint[3] - 1) >> 4; chunkX++) {
+                for (int chunkZ = footprint[2] >> 4; chunkZ <= (footprint[5] - 1) >> 4; chunkZ++) {
+                    if (count == keys.length) {
+                        keys = Arrays.copyOf(keys, count * 2);
+                    }
+                    keys[count++] = LocationUtils.chunkKey(chunkX, chunkZ);
+                }
+            }
+        }
+
+        Arrays.sort(keys, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || keys[i] != keys[unique - 1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
     // ==================== Getter 方法 ====================
 
     public String getInstanceId() { return instanceId; }
@@ -422,8 +509,11 @@ public class DungeonInstance {
     public long getCreatedTime() { return createdTime; }
     public UUID getCreatedBy() { return createdBy; }
     public String getCreationReason() { return creationReason; }
+    public long getSeed() { return seed; }
+    public long getRegistryVersion() { return registryVersion; }
 
     public List<PlacedBlueprint> getPlacedBlueprints() { return new ArrayList<>(placedBlueprints); }
+    public List<DoorConnection> getConnections() { return new ArrayList<>(connections); }
     public Map<String, Location> getNamedLocations() { return new HashMap<>(namedLocations); }
     public Set<Location> getDoorLocations() { return new HashSet<>(doorLocations); }
     public Set<Location> getFunctionPoints() { return new HashSet<>(functionPoints); }
@@ -621,12 +711,17 @@ public class DungeonInstance {
         private final World world;
         private final Location origin;
 
+        // 未显式设置时取所有已放置蓝图占地的并集，不限制楼层和范围
         private BoundingBox bounds;
+        private int[] extent;
         private final List<PlacedBlueprint> placedBlueprints = new ArrayList<>();
+        private final List<DoorConnection> connections = new ArrayList<>();
         private final Map<String, Location> namedLocations = new HashMap<>();
         private DungeonConfig config;
         private UUID createdBy;
         private String creationReason = "Unknown";
+        private long seed;
+        private long registryVersion;
 
         public Builder(String instanceId, String dungeonId, DungeonTheme theme, World world, Location origin) {
             this.instanceId = instanceId;
@@ -635,12 +730,6 @@ public class DungeonInstance {
             this.world = world;
             this.origin = origin;
 
-            // 设置默认边界（100x100x100）
-            Vector min = origin.toVector().subtract(new Vector(50, 10, 50));
-            Vector max = origin.toVector().add(new Vector(50, 40, 50));
-            this.bounds = new BoundingBox(min.getX(), min.getY(), min.getZ(),
-                                        max.getX(), max.getY(), max.getZ());
-
             // 设置默认配置
             this.config = new DungeonConfig(4, 30 * 60 * 1000, false, false, false, true, "normal", new HashMap<>());
         }
@@ -663,10 +752,33 @@ public class DungeonInstance {
         public Builder addPlacedBlueprint(Blueprint blueprint, Location location, int rotation) {
             if (blueprint != null && location != null) {
                 this.placedBlueprints.add(new PlacedBlueprint(blueprint, location, rotation));
+                includeExtent(blueprint, location, rotation);
             }
             return this;
         }
 
+        /**
+         * 将蓝图占据的区域并入实例范围
+         *
+         * 放置检查使用布局构建器的占用网格，这里只需要范围。
+         */
+        private void includeExtent(Blueprint blueprint, Location location, int rotation) {
+            int x = location.getBlockX();
+            int y = location.getBlockY();
+            int z = location.getBlockZ();
+            int[] footprint = OccupancyGrid.footprint(x, y, z,
+                blueprint.getSizeX(), blueprint.getSizeY(), blueprint.getSizeZ(), rotation);
+
+            if (extent == null) {
+                extent = footprint;
+            } else {
+                for (int i = 0; i < 3; i++) {
+                    extent[i] = Math.min(extent[i], footprint[i]);
+                    extent[i + 3] = Math.max(extent[i + 3], footprint[i + 3]);
+                }
+            }
+        }
+
         public Builder addNamedLocation(String name, Location location) {
             if (name != null && !name.trim().isEmpty() && location != null) {
                 this.namedLocations.put(name, location.clone());
@@ -674,6 +786,13 @@ public class DungeonInstance {
             return this;
         }
 
+        public Builder addConnection(int fromIndex, String fromDoorId, int toIndex, String toDoorId) {
+            if (fromIndex >= 0 && toIndex >= 0 && fromIndex < placedBlueprints.size() && toIndex < placedBlueprints.size()) {
+                this.connections.add(new DoorConnection(fromIndex, fromDoorId, toIndex, toDoorId));
+            }
+            return this;
+        }
+
         public Builder setConfig(DungeonConfig config) {
             if (config != null) {
                 this.config = config;
@@ -691,6 +810,16 @@ public class DungeonInstance {
             return this;
         }
 
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder setRegistryVersion(long registryVersion) {
+            this.registryVersion = registryVersion;
+            return this;
+        }
+
         // Getter方法供生成器使用
         public Location getOrigin() {
             return origin.clone();
@@ -700,7 +829,20 @@ public class DungeonInstance {
             return new ArrayList<>(placedBlueprints);
         }
 
+        public int getPlacedCount() {
+            return placedBlueprints.size();
+        }
+
+        public int getConnectionCount() {
+            return connections.size();
+        }
+
         public DungeonInstance build() {
+            if (bounds == null) {
+                bounds = extent != null
+                    ? new BoundingBox(extent[0], extent[1], extent[2], extent[3], extent[4], extent[5])
+                    : BoundingBox.of(origin.toVector(), origin.toVector());
+            }
             return new DungeonInstance(this);
         }
     }
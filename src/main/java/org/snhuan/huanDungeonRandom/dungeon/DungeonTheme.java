@@ -40,6 +40,9 @@ public class DungeonTheme {
     // 生成配置
     private final GenerationConfig generationConfig;
 
+    // 布局评分配置
+    private final ScoringConfig scoringConfig;
+
     // 稀有度和权重
     private final int rarity;
     private final double weight;
@@ -72,6 +75,8 @@ public class DungeonTheme {
      * 生成配置类
      */
     public static class GenerationConfig {
+        private static final int DEFAULT_FLOOR_HEIGHT = 8;
+
         private final int minRooms;
         private final int maxRooms;
         private final int minCorridors;
@@ -80,9 +85,24 @@ public class DungeonTheme {
         private final double decorationChance;
         private final boolean allowBranching;
         private final int maxDepth;
+        private final int floors;
+        private final int floorHeight;
 
         public GenerationConfig(int minRooms, int maxRooms, int minCorridors, int maxCorridors,
                               double roomDensity, double decorationChance, boolean allowBranching, int maxDepth) {
+            this(minRooms, maxRooms, minCorridors, maxCorridors, roomDensity, decorationChance,
+                allowBranching, maxDepth, 1, DEFAULT_FLOOR_HEIGHT);
+        }
+
+        /**
+         * 构造函数（多楼层）
+         *
+         * @param floors 楼层数，大于1时通过楼梯和竖井走廊连接上下楼层
+         * @param floorHeight 楼层高度（方块），应不小于最高的房间
+         */
+        public GenerationConfig(int minRooms, int maxRooms, int minCorridors, int maxCorridors,
+                              double roomDensity, double decorationChance, boolean allowBranching, int maxDepth,
+                              int floors, int floorHeight) {
             this.minRooms = minRooms;
             this.maxRooms = maxRooms;
             this.minCorridors = minCorridors;
@@ -91,6 +111,8 @@ public class DungeonTheme {
             this.decorationChance = decorationChance;
             this.allowBranching = allowBranching;
             this.maxDepth = maxDepth;
+            this.floors = Math.max(1, floors);
+            this.floorHeight = Math.max(1, floorHeight);
         }
 
         // Getters
@@ -102,6 +124,50 @@ public class DungeonTheme {
         public double getDecorationChance() { return decorationChance; }
         public boolean isAllowBranching() { return allowBranching; }
         public int getMaxDepth() { return maxDepth; }
+        public int getFloors() { return floors; }
+        public int getFloorHeight() { return floorHeight; }
+    }
+
+    /**
+     * 布局评分配置类 - 多候选生成时用于挑选最佳布局的权重
+     *
+     * 各项得分均在 0 到 1 之间，总分为加权平均；权重为0的项不参与评分。
+     */
+    public static class ScoringConfig {
+        private final double roomMixWeight;
+        private final double bossPathWeight;
+        private final double footprintWeight;
+        private final double deadEndWeight;
+        private final int targetBossDepth;
+
+        /**
+         * 构造函数
+         *
+         * @param roomMixWeight 房间种类均衡的权重
+         * @param bossPathWeight 出生点到BOSS房路径长度的权重
+         * @param footprintWeight 占地紧凑程度的权重
+         * @param deadEndWeight 死路数量的权重（死路越少得分越高）
+         * @param targetBossDepth 期望的BOSS房深度（经过的门数）
+         */
+        public ScoringConfig(double roomMixWeight, double bossPathWeight, double footprintWeight,
+                             double deadEndWeight, int targetBossDepth) {
+            this.roomMixWeight = Math.max(0, roomMixWeight);
+            this.bossPathWeight = Math.max(0, bossPathWeight);
+            this.footprintWeight = Math.max(0, footprintWeight);
+            this.deadEndWeight = Math.max(0, deadEndWeight);
+            this.targetBossDepth = Math.max(1, targetBossDepth);
+        }
+
+        public static ScoringConfig defaultConfig() {
+            return new ScoringConfig(1.0, 1.0, 1.0, 0.5, 8);
+        }
+
+        // Getters
+        public double getRoomMixWeight() { return roomMixWeight; }
+        public double getBossPathWeight() { return bossPathWeight; }
+        public double getFootprintWeight() { return footprintWeight; }
+        public double getDeadEndWeight() { return deadEndWeight; }
+        public int getTargetBossDepth() { return targetBossDepth; }
     }
 
     /**
@@ -124,6 +190,7 @@ public class DungeonTheme {
         this.weatherType = builder.weatherType;
 
         this.generationConfig = builder.generationConfig;
+        this.scoringConfig = builder.scoringConfig;
         this.rarity = builder.rarity;
         this.weight = builder.weight;
     }
@@ -188,11 +255,26 @@ public class DungeonTheme {
                 genSection.getDouble("room-density", 0.6),
                 genSection.getDouble("decoration-chance", 0.3),
                 genSection.getBoolean("allow-branching", true),
-                genSection.getInt("max-depth", 5)
+                genSection.getInt("max-depth", 5),
+                genSection.getInt("floors", 1),
+                genSection.getInt("floor-height", 8)
             );
             builder.setGenerationConfig(genConfig);
         }
 
+        // 加载评分配置
+        ConfigurationSection scoringSection = config.getConfigurationSection("scoring");
+        if (scoringSection != null) {
+            ScoringConfig defaults = ScoringConfig.defaultConfig();
+            builder.setScoringConfig(new ScoringConfig(
+                scoringSection.getDouble("room-mix-weight", defaults.getRoomMixWeight()),
+                scoringSection.getDouble("boss-path-weight", defaults.getBossPathWeight()),
+                scoringSection.getDouble("footprint-weight", defaults.getFootprintWeight()),
+                scoringSection.getDouble("dead-end-weight", defaults.getDeadEndWeight()),
+                scoringSection.getInt("target-boss-depth", defaults.getTargetBossDepth())
+            ));
+        }
+
         return builder.build();
     }
 
@@ -231,6 +313,18 @@ public class DungeonTheme {
             genSection.set("decoration-chance", generationConfig.getDecorationChance());
             genSection.set("allow-branching", generationConfig.isAllowBranching());
             genSection.set("max-depth", generationConfig.getMaxDepth());
+            genSection.set("floors", generationConfig.getFloors());
+            genSection.set("floor-height", generationConfig.getFloorHeight());
+        }
+
+        // 保存评分配置
+        if (scoringConfig != null) {
+            ConfigurationSection scoringSection = config.createSection("scoring");
+            scoringSection.set("room-mix-weight", scoringConfig.getRoomMixWeight());
+            scoringSection.set("boss-path-weight", scoringConfig.getBossPathWeight());
+            scoringSection.set("footprint-weight", scoringConfig.getFootprintWeight());
+            scoringSection.set("dead-end-weight", scoringConfig.getDeadEndWeight());
+            scoringSection.set("target-boss-depth", scoringConfig.getTargetBossDepth());
         }
     }
 
@@ -311,6 +405,7 @@ public class DungeonTheme {
     public Set<String> getAmbientSounds() { return new HashSet<>(ambientSounds); }
     public String getWeatherType() { return weatherType; }
     public GenerationConfig getGenerationConfig() { return generationConfig; }
+    public ScoringConfig getScoringConfig() { return scoringConfig; }
     public int getRarity() { return rarity; }
     public double getWeight() { return weight; }
 
@@ -360,6 +455,7 @@ public class DungeonTheme {
         private String weatherType = "clear";
 
         private GenerationConfig generationConfig;
+        private ScoringConfig scoringConfig = ScoringConfig.defaultConfig();
         private int rarity = 1;
         private double weight = 1.0;
 
@@ -424,6 +520,11 @@ public class DungeonTheme {
             return this;
         }
 
+        public Builder setScoringConfig(ScoringConfig config) {
+            this.scoringConfig = config != null ? config : ScoringConfig.defaultConfig();
+            return this;
+        }
+
         public Builder setRarity(int rarity) {
             this.rarity = Math.max(1, rarity);
             return this;
@@ -4,15 +4,32 @@ import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
 import org.snhuan.huanDungeonRandom.blueprint.BlueprintManager;
 import org.snhuan.huanDungeonRandom.dungeon.DungeonInstance;
 import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+import org.snhuan.huanDungeonRandom.layout.LayoutCache;
+import org.snhuan.huanDungeonRandom.layout.LayoutScorer;
+import org.snhuan.huanDungeonRandom.layout.LayoutValidator;
+import org.snhuan.huanDungeonRandom.placement.BlockPlacer;
+import org.snhuan.huanDungeonRandom.utils.ExecutorFactory;
+import org.snhuan.huanDungeonRandom.utils.FileUtils;
 
+import java.io.File;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
@@ -20,10 +37,16 @@ import java.util.logging.Logger;
  *
  * 功能特点：
  * - 异步生成地牢，不影响服务器TPS
+ * - 布局在后台线程生成，只在主线程提交为地牢实例
  * - 支持生成进度回调
  * - 自动管理线程池
  * - 支持生成超时处理
  * - 提供生成状态监控
+ * - 支持多种子推测式并行生成
+ * - 支持多候选择优：并行生成 K 个布局，按主题评分权重提交得分最高者
+ * - 超出并发数的请求按优先级排队，队列满时返回背压信号
+ * - 按 (主题, 参数, 种子, 注册表版本) 缓存布局，命中时跳过生成
+ * - 设置方块放置器后，提交的地牢按 tick 时间预算写入方块，全部写入后才算生成完成
  *
  * @author HuanDungeonRandom
  * @version 1.0
@@ -36,14 +59,34 @@ public class AsyncGenerator {
     private final BlueprintManager blueprintManager;
     private final Logger logger;
 
-    // 线程池管理
+    // 线程池管理：计算线程池执行布局生成，I/O 线程池执行缓存读写等编排任务
     private final ExecutorService generationExecutor;
+    private final ExecutorService ioExecutor;
+    private final ExecutorFactory.Mode executorMode;
     private final int maxConcurrentGenerations;
-    private volatile int activeGenerations = 0;
+    private final int speculativeSeeds;
+    private final int bestOfCandidates;
+    private final GenerationScheduler scheduler;
+
+    // 布局缓存
+    private final LayoutCache layoutCache;
+    private final int layoutVariants;
+    private final long seedSalt;
+
+    // 方块放置器（可选）
+    private volatile BlockPlacer blockPlacer;
 
     // 配置参数
     private static final int DEFAULT_TIMEOUT_SECONDS = 30;
     private static final int DEFAULT_MAX_CONCURRENT = 5;
+    private static final int DEFAULT_SPECULATIVE_SEEDS = 1;
+    private static final int DEFAULT_BEST_OF_CANDIDATES = 1;
+    private static final int DEFAULT_MAX_QUEUED = 100;
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+    private static final int DEFAULT_LAYOUT_CACHE_SIZE = 64;
+    private static final int DEFAULT_LAYOUT_DISK_SIZE = 256;
+    private static final int DEFAULT_LAYOUT_VARIANTS = 0;
+    private static final String SEED_SALT_FILE = "seed-salt";
 
     /**
      * 构造函数
@@ -61,14 +104,47 @@ public class AsyncGenerator {
         // 从配置获取最大并发数
         this.maxConcurrentGenerations = plugin.getConfig().getInt("performance.max-concurrent-generations", DEFAULT_MAX_CONCURRENT);
 
-        // 创建线程池
-        this.generationExecutor = Executors.newFixedThreadPool(maxConcurrentGenerations, r -> {
-            Thread thread = new Thread(r, "DungeonGenerator-" + System.currentTimeMillis());
-            thread.setDaemon(true);
-            return thread;
-        });
+        // 调度队列：超过并发数的请求排队，而不是直接失败
+        this.scheduler = new GenerationScheduler(logger, maxConcurrentGenerations,
+            plugin.getConfig().getInt("performance.queue.max_size", DEFAULT_MAX_QUEUED));
+
+        // 推测式生成的种子数量，1 表示关闭
+        this.speculativeSeeds = Math.max(1, plugin.getConfig().getInt(
+            "performance.speculative_generation.seeds", DEFAULT_SPECULATIVE_SEEDS));
+
+        // 多候选择优的候选数量，1 表示关闭；开启时优先于推测式生成
+        this.bestOfCandidates = Math.max(1, plugin.getConfig().getInt(
+            "performance.best_of_k.candidates", DEFAULT_BEST_OF_CANDIDATES));
 
-        logger.info("异步生成器初始化完成，最大并发数: " + maxConcurrentGenerations);
+        // 布局缓存：默认每次使用新种子，缓存永远不会命中，因此不创建缓存；
+        // 开启布局变体后每个主题只在有限个种子中选择，使缓存可以命中
+        int variants = Math.max(0, plugin.getConfig().getInt("performance.cache.layout_variants", DEFAULT_LAYOUT_VARIANTS));
+        if (plugin.getConfig().getBoolean("performance.cache.enabled", true) && variants > 0) {
+            int cacheSize = plugin.getConfig().getInt("performance.cache.layout_cache_size", DEFAULT_LAYOUT_CACHE_SIZE);
+            int diskSize = plugin.getConfig().getInt("performance.cache.layout_disk_size", DEFAULT_LAYOUT_DISK_SIZE);
+            File cacheFolder = new File(plugin.getDataFolder(), "layout-cache");
+            this.layoutCache = new LayoutCache(logger, cacheSize, diskSize, cacheFolder);
+            this.layoutVariants = variants;
+            this.seedSalt = loadSeedSalt(new File(cacheFolder, SEED_SALT_FILE));
+        } else {
+            this.layoutCache = null;
+            this.layoutVariants = 0;
+            this.seedSalt = 0L;
+        }
+
+        // 创建线程池：布局计算始终在有界的平台线程池中执行；
+        // virtual 模式下缓存读写在虚拟线程上执行，platform 模式下与计算共用线程池
+        this.executorMode = ExecutorFactory.Mode.fromConfig(
+            plugin.getConfig().getString("performance.executor.mode", "platform"));
+        this.generationExecutor = ExecutorFactory.newComputeExecutor("DungeonGenerator", maxConcurrentGenerations);
+        this.ioExecutor = executorMode == ExecutorFactory.Mode.VIRTUAL
+            ? ExecutorFactory.newIoExecutor("DungeonGeneratorIO", executorMode,
+                plugin.getConfig().getInt("performance.executor.io_threads", ExecutorFactory.DEFAULT_IO_THREADS), logger)
+            : generationExecutor;
+
+        logger.info("异步生成器初始化完成，最大并发数: " + maxConcurrentGenerations
+            + "，推测种子数: " + speculativeSeeds + "，择优候选数: " + bestOfCandidates
+            + "，执行模式: " + executorMode.name().toLowerCase());
     }
 
     /**
@@ -101,82 +177,620 @@ public class AsyncGenerator {
     public CompletableFuture<DungeonInstance> generateAsync(String dungeonId, DungeonTheme theme,
                                                            World world, Location origin, UUID createdBy,
                                                            int timeoutSeconds, ProgressCallback progressCallback) {
+        return generateAsync(dungeonId, theme, world, origin, createdBy, timeoutSeconds, progressCallback,
+            GenerationScheduler.Priority.PLAYER);
+    }
 
-        // 检查并发限制
-        if (activeGenerations >= maxConcurrentGenerations) {
-            CompletableFuture<DungeonInstance> failedFuture = new CompletableFuture<>();
-            failedFuture.completeExceptionally(new RuntimeException("已达到最大并发生成数限制: " + maxConcurrentGenerations));
-            return failedFuture;
+    /**
+     * 异步生成地牢（指定优先级）
+     *
+     * 请求进入调度队列，排队期间通过 {@link ProgressCallback#onQueued(int, long)} 报告位置和预计等待时间。
+     * 队列已满时返回的 Future 以 {@link GenerationScheduler.BackpressureException} 结束。
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param world 目标世界
+     * @param origin 生成位置
+     * @param createdBy 创建者
+     * @param timeoutSeconds 超时时间（秒），从开始执行时计算
+     * @param progressCallback 进度回调
+     * @param priority 优先级
+     * @return CompletableFuture包装的地牢实例
+     */
+    public CompletableFuture<DungeonInstance> generateAsync(String dungeonId, DungeonTheme theme,
+                                                           World world, Location origin, UUID createdBy,
+                                                           int timeoutSeconds, ProgressCallback progressCallback,
+                                                           GenerationScheduler.Priority priority) {
+        if (bestOfCandidates > 1) {
+            return generateBestOfAsync(dungeonId, theme, world, origin, createdBy,
+                bestOfCandidates, timeoutSeconds, progressCallback, priority);
         }
 
-        // 创建异步任务
-        CompletableFuture<DungeonInstance> future = CompletableFuture.supplyAsync(() -> {
-            synchronized (this) {
-                activeGenerations++;
-            }
+        if (speculativeSeeds > 1) {
+            return generateSpeculativeAsync(dungeonId, theme, world, origin, createdBy,
+                speculativeSeeds, timeoutSeconds, progressCallback, priority);
+        }
 
-            try {
+        // 后台生成布局（优先使用缓存），主线程提交实例
+        CompletableFuture<DungeonLayout> layoutFuture = submitLayout(dungeonId, priority, createdBy, 1,
+            timeoutSeconds, progressCallback, token -> {
                 logger.info("开始异步生成地牢: " + dungeonId + " 在位置: " + origin);
 
-                // 更新进度：开始生成
-                if (progressCallback != null) {
-                    Bukkit.getScheduler().runTask(plugin, () ->
-                        progressCallback.onProgress(0, "开始生成地牢..."));
-                }
+                return resolveLayout(theme, chooseSeed(theme), token).thenApply(layout -> {
+                    if (layout == null) {
+                        throw new RuntimeException("地牢生成失败: " + dungeonId);
+                    }
 
-                // 执行地牢生成
-                DungeonInstance instance = dungeonGenerator.generateDungeon(dungeonId, theme, world, origin, createdBy);
+                    logger.info("地牢布局生成成功: " + dungeonId);
+                    return layout;
+                });
+            });
 
-                if (instance != null) {
-                    // 更新进度：生成完成
-                    if (progressCallback != null) {
-                        Bukkit.getScheduler().runTask(plugin, () ->
-                            progressCallback.onProgress(100, "地牢生成完成"));
+        return layoutFuture.thenCompose(layout ->
+            commitOnMainThread(layout, dungeonId, theme, world, origin, createdBy, progressCallback));
+    }
+
+    /**
+     * 推测式并行生成地牢
+     *
+     * 以多个独立种子同时在线程池中生成，采用第一个成功的结果并取消其余任务。
+     * 尚未开始执行的任务会直接跳过；全部种子都失败时才以异常结束。
+     * 整个推测组按种子数占用调度名额（最多占满全部名额），与其他任务一起不会超出计算线程池的大小。
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param world 目标世界
+     * @param origin 生成位置
+     * @param createdBy 创建者
+     * @param seeds 种子数量
+     * @param timeoutSeconds 超时时间（秒）
+     * @param progressCallback 进度回调
+     * @return CompletableFuture包装的地牢实例
+     */
+    public CompletableFuture<DungeonInstance> generateSpeculativeAsync(String dungeonId, DungeonTheme theme,
+                                                                      World world, Location origin, UUID createdBy,
+                                                                      int seeds, int timeoutSeconds,
+                                                                      ProgressCallback progressCallback) {
+        return generateSpeculativeAsync(dungeonId, theme, world, origin, createdBy, seeds, timeoutSeconds,
+            progressCallback, GenerationScheduler.Priority.PLAYER);
+    }
+
+    private CompletableFuture<DungeonInstance> generateSpeculativeAsync(String dungeonId, DungeonTheme theme,
+                                                                       World world, Location origin, UUID createdBy,
+                                                                       int seeds, int timeoutSeconds,
+                                                                       ProgressCallback progressCallback,
+                                                                       GenerationScheduler.Priority priority) {
+        int seedCount = Math.max(1, seeds);
+        long baseSeed = chooseSeed(theme);
+
+        CompletableFuture<DungeonLayout> layoutFuture = submitLayout(dungeonId, priority, createdBy, seedCount,
+            timeoutSeconds, progressCallback, token -> lookupAsync(() -> lookupLayout(theme, baseSeed, seedCount))
+                .thenCompose(cached -> {
+                    // 缓存命中时不需要推测
+                    if (cached != null) {
+                        logger.info("地牢布局命中缓存: " + dungeonId + " (种子: " + cached.getSeed() + ")");
+                        return CompletableFuture.completedFuture(cached);
                     }
+                    return raceSeeds(dungeonId, theme, baseSeed, seedCount, token);
+                }));
 
-                    logger.info("地牢生成成功: " + dungeonId);
-                    return instance;
-                } else {
-                    throw new RuntimeException("地牢生成失败: " + dungeonId);
+        // 只有胜出的布局在主线程提交为实例
+        return layoutFuture.thenCompose(layout ->
+            commitOnMainThread(layout, dungeonId, theme, world, origin, createdBy, progressCallback));
+    }
+
+    /**
+     * 以多个种子并行生成布局，返回第一个成功的结果
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param baseSeed 基础种子
+     * @param seedCount 种子数量
+     * @param token 整个任务的取消令牌
+     * @return 胜出的布局
+     */
+    private CompletableFuture<DungeonLayout> raceSeeds(String dungeonId, DungeonTheme theme, long baseSeed,
+                                                       int seedCount, CancellationToken token) {
+        CompletableFuture<DungeonLayout> winner = new CompletableFuture<>();
+        // 胜出后取消这个子令牌，正在生成的其他种子会在下一个检查点退出
+        CancellationToken attemptToken = token.child();
+        AtomicBoolean settled = new AtomicBoolean(false);
+        AtomicInteger remaining = new AtomicInteger(seedCount);
+        List<CompletableFuture<Void>> attempts = new ArrayList<>(seedCount);
+
+        logger.info("开始推测式生成地牢: " + dungeonId + "，种子数: " + seedCount);
+
+        for (int i = 0; i < seedCount; i++) {
+            long seed = baseSeed + i * SEED_STRIDE;
+            attempts.add(CompletableFuture.runAsync(() -> {
+                // 已有种子成功时，排队中的任务直接跳过
+                if (settled.get()) {
+                    return;
                 }
 
-            } catch (Exception e) {
-                logger.severe("异步生成地牢失败: " + e.getMessage());
+                DungeonLayout layout = null;
+                try {
+                    layout = dungeonGenerator.generateLayout(theme, new RandomGenerator(seed), attemptToken);
+                } catch (CancellationToken.CancelledException e) {
+                    // 超时时让整组以超时结束；被胜出者取消时直接退出
+                    if (e.isTimeout() && settled.compareAndSet(false, true)) {
+                        winner.completeExceptionally(e);
+                    }
+                    return;
+                } catch (Exception e) {
+                    logger.warning("推测种子 " + seed + " 生成异常: " + e.getMessage());
+                }
 
-                // 更新进度：生成失败
-                if (progressCallback != null) {
-                    Bukkit.getScheduler().runTask(plugin, () ->
-                        progressCallback.onError("生成失败: " + e.getMessage()));
+                if (layout != null && settled.compareAndSet(false, true)) {
+                    logger.info("地牢布局生成成功: " + dungeonId + " (种子: " + seed + ")");
+                    cacheLayout(layout);
+                    winner.complete(layout);
+                }
+            }, generationExecutor).whenComplete((ignored, error) -> {
+                if (remaining.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                    winner.completeExceptionally(new RuntimeException(
+                        "地牢生成失败: " + dungeonId + "，" + seedCount + " 个种子均未成功"));
+                }
+            }));
+        }
+
+        // 结束（包括被取消、超时）后取消剩余任务
+        winner.whenComplete((layout, error) -> {
+            settled.set(true);
+            attemptToken.cancel("已有种子生成成功");
+            for (CompletableFuture<Void> attempt : attempts) {
+                attempt.cancel(true);
+            }
+        });
+
+        return winner;
+    }
+
+    /**
+     * 多候选择优生成地牢
+     *
+     * 以 K 个独立种子并行生成布局，等待全部完成后按主题的评分权重打分，只提交得分最高的布局。
+     * 与推测式生成不同，这里不会因为第一个成功而取消其余候选；整个候选组按候选数占用调度名额，
+     * 结果不经过缓存查找（每次都重新择优），但胜出的布局会放入缓存。
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param world 目标世界
+     * @param origin 生成位置
+     * @param createdBy 创建者
+     * @param candidates 候选数量
+     * @param timeoutSeconds 超时时间（秒）
+     * @param progressCallback 进度回调
+     * @return CompletableFuture包装的地牢实例
+     */
+    public CompletableFuture<DungeonInstance> generateBestOfAsync(String dungeonId, DungeonTheme theme,
+                                                                 World world, Location origin, UUID createdBy,
+                                                                 int candidates, int timeoutSeconds,
+                                                                 ProgressCallback progressCallback) {
+        return generateBestOfAsync(dungeonId, theme, world, origin, createdBy, candidates, timeoutSeconds,
+            progressCallback, GenerationScheduler.Priority.PLAYER);
+    }
+
+    private CompletableFuture<DungeonInstance> generateBestOfAsync(String dungeonId, DungeonTheme theme,
+                                                                  World world, Location origin, UUID createdBy,
+                                                                  int candidates, int timeoutSeconds,
+                                                                  ProgressCallback progressCallback,
+                                                                  GenerationScheduler.Priority priority) {
+        int candidateCount = Math.max(1, candidates);
+        long baseSeed = ThreadLocalRandom.current().nextLong();
+
+        CompletableFuture<DungeonLayout> layoutFuture = submitLayout(dungeonId, priority, createdBy, candidateCount,
+            timeoutSeconds, progressCallback, token -> selectBestLayout(dungeonId, theme, baseSeed, candidateCount, token, progressCallback));
+
+        return layoutFuture.thenCompose(layout ->
+            commitOnMainThread(layout, dungeonId, theme, world, origin, createdBy, progressCallback));
+    }
+
+    /**
+     * 并行生成多个候选布局并选出得分最高者
+     *
+     * 每个候选在计算线程池中独立生成、验证和评分；汇总在最后一个候选完成的线程上进行，
+     * 不会阻塞线程池中的任何线程。每个候选的耗时和得分记录在统计信息中，
+     * 统计信息通过本次请求的进度回调交给调用方，并发的择优请求互不影响。
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param baseSeed 基础种子
+     * @param candidateCount 候选数量
+     * @param token 整个任务的取消令牌
+     * @param progressCallback 进度回调，接收择优统计；可以为null
+     * @return 得分最高的布局
+     */
+    private CompletableFuture<DungeonLayout> selectBestLayout(String dungeonId, DungeonTheme theme, long baseSeed,
+                                                              int candidateCount, CancellationToken token,
+                                                              ProgressCallback progressCallback) {
+        long startTime = System.currentTimeMillis();
+        Function<String, Blueprint> resolver = blueprintManager::getBlueprint;
+        List<CompletableFuture<Candidate>> futures = new ArrayList<>(candidateCount);
+
+        logger.info("开始多候选择优生成地牢: " + dungeonId + "，候选数: " + candidateCount);
+
+        for (int i = 0; i < candidateCount; i++) {
+            long seed = baseSeed + i * SEED_STRIDE;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                long candidateStart = System.nanoTime();
+                DungeonLayout layout = null;
+                CancellationToken.CancelledException cancelled = null;
+                try {
+                    layout = dungeonGenerator.generateLayout(theme, new RandomGenerator(seed), token);
+                } catch (CancellationToken.CancelledException e) {
+                    // 中止的候选记为失败，已完成的候选仍然参与择优
+                    cancelled = e;
+                } catch (Exception e) {
+                    logger.warning("候选种子 " + seed + " 生成异常: " + e.getMessage());
                 }
 
-                throw new RuntimeException("地牢生成异常", e);
+                double score = -1;
+                if (layout != null) {
+                    LayoutValidator.Report report = LayoutValidator.validate(layout, resolver);
+                    score = LayoutScorer.score(layout, report, theme.getScoringConfig(), resolver).getTotal();
+                }
+                long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - candidateStart);
+                return new Candidate(seed, layout, score, duration, cancelled);
+            }, generationExecutor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            DungeonGenerator.GenerationStatistics.Builder statsBuilder =
+                new DungeonGenerator.GenerationStatistics.Builder(startTime);
+
+            int best = -1;
+            for (int i = 0; i < futures.size(); i++) {
+                Candidate candidate = futures.get(i).join();
+                boolean success = candidate.layout != null;
+                statsBuilder.recordCandidate(candidate.seed, candidate.durationMillis, Math.max(0, candidate.score), success);
+                if (success && (best < 0 || candidate.score > futures.get(best).join().score)) {
+                    best = i;
+                }
+            }
+            statsBuilder.selectCandidate(best);
+
+            DungeonGenerator.GenerationStatistics statistics = statsBuilder.build(System.currentTimeMillis());
+            if (progressCallback != null) {
+                Bukkit.getScheduler().runTask(plugin, () -> progressCallback.onStatistics(statistics));
+            }
 
-            } finally {
-                synchronized (this) {
-                    activeGenerations--;
+            if (best < 0) {
+                // 没有任何候选成功时，因超时或取消而中止的按中止结束
+                for (CompletableFuture<Candidate> future : futures) {
+                    if (future.join().cancelled != null) {
+                        throw future.join().cancelled;
+                    }
                 }
+                throw new RuntimeException("地牢生成失败: " + dungeonId + "，" + candidateCount + " 个候选均未成功");
             }
 
-        }, generationExecutor);
+            Candidate winner = futures.get(best).join();
+            logger.info(String.format("地牢布局择优完成: %s，选中候选 %d/%d (种子: %d，得分: %.3f，总耗时: %dms)",
+                dungeonId, best + 1, candidateCount, winner.seed, winner.score, statistics.getDuration()));
+            cacheLayout(winner.layout);
+            return winner.layout;
+        });
+    }
+
+    /**
+     * 多候选择优中的单个候选
+     */
+    private static final class Candidate {
+        private final long seed;
+        private final DungeonLayout layout;
+        private final double score;
+        private final long durationMillis;
+        private final CancellationToken.CancelledException cancelled;
+
+        private Candidate(long seed, DungeonLayout layout, double score, long durationMillis,
+                          CancellationToken.CancelledException cancelled) {
+            this.seed = seed;
+            this.layout = layout;
+            this.score = score;
+            this.durationMillis = durationMillis;
+            this.cancelled = cancelled;
+        }
+    }
+
+    /**
+     * 把布局生成任务提交到调度队列
+     *
+     * 开始执行时报告进度并创建带截止时间的取消令牌；排队时报告位置；失败时报告错误。
+     * 超时由工作线程在生成的检查点上发现，抛出异常后立即释放线程和调度名额。
+     * 调用方取消返回的 Future 时同样会取消令牌。
+     *
+     * @param dungeonId 地牢ID
+     * @param priority 优先级
+     * @param createdBy 请求者
+     * @param slots 任务在计算线程池中并行展开的子任务数，即占用的调度名额数
+     * @param timeoutSeconds 超时时间（秒）
+     * @param progressCallback 进度回调
+     * @param work 生成任务
+     * @return 布局
+     */
+    private CompletableFuture<DungeonLayout> submitLayout(String dungeonId, GenerationScheduler.Priority priority,
+                                                          UUID createdBy, int slots, int timeoutSeconds,
+                                                          ProgressCallback progressCallback,
+                                                          Function<CancellationToken, CompletableFuture<DungeonLayout>> work) {
+        GenerationScheduler.QueueListener listener = progressCallback == null ? null : (position, etaMillis) ->
+            Bukkit.getScheduler().runTask(plugin, () -> progressCallback.onQueued(position, etaMillis));
 
-        // 设置超时
-        CompletableFuture<DungeonInstance> timeoutFuture = new CompletableFuture<>();
-        Bukkit.getScheduler().runTaskLater(plugin, () -> {
-            if (!future.isDone()) {
-                future.cancel(true);
-                timeoutFuture.completeExceptionally(new RuntimeException("地牢生成超时: " + timeoutSeconds + "秒"));
+        CompletableFuture<DungeonLayout> layoutFuture = scheduler.submit(priority, createdBy, slots, () -> {
+            // 更新进度：开始生成
+            if (progressCallback != null) {
+                Bukkit.getScheduler().runTask(plugin, () ->
+                    progressCallback.onProgress(0, "开始生成地牢..."));
             }
-        }, timeoutSeconds * 20L); // 转换为tick
-
-        // 返回带超时的Future
-        return CompletableFuture.anyOf(future, timeoutFuture)
-            .thenCompose(result -> {
-                if (result instanceof DungeonInstance) {
-                    return CompletableFuture.completedFuture((DungeonInstance) result);
-                } else {
-                    return CompletableFuture.failedFuture(new RuntimeException("未知错误"));
+
+            // 超时从开始执行时计算，由工作线程检查
+            CancellationToken token = CancellationToken.withTimeout(timeoutSeconds * 1000L);
+            CompletableFuture<DungeonLayout> generation = work.apply(token);
+            generation.whenComplete((layout, error) -> {
+                if (error != null) {
+                    token.cancel("地牢生成已取消");
                 }
             });
+            return generation;
+        }, listener);
+
+        return layoutFuture.whenComplete((layout, error) -> {
+            if (error == null) {
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof GenerationScheduler.BackpressureException) {
+                logger.warning("生成队列已满，拒绝地牢: " + dungeonId);
+            } else if (cause instanceof CancellationToken.CancelledException) {
+                logger.warning("地牢生成已中止: " + dungeonId + " - " + cause.getMessage());
+            } else {
+                logger.severe("异步生成地牢失败: " + cause.getMessage());
+            }
+
+            // 更新进度：生成失败
+            if (progressCallback != null) {
+                Bukkit.getScheduler().runTask(plugin, () ->
+                    progressCallback.onError("生成失败: " + cause.getMessage()));
+            }
+        });
+    }
+
+    /**
+     * 异步生成布局（不提交为实例）
+     *
+     * 每次使用新种子且不经过布局缓存，适合预生成等需要互不相同布局的场景。
+     * 以后台优先级进入调度队列，会让位于玩家触发的生成。
+     *
+     * @param theme 地牢主题
+     * @return CompletableFuture包装的布局，生成失败时以异常结束
+     */
+    public CompletableFuture<DungeonLayout> generateLayoutAsync(DungeonTheme theme) {
+        return scheduler.submit(GenerationScheduler.Priority.BACKGROUND, null, () -> {
+            CancellationToken token = CancellationToken.withTimeout(DEFAULT_TIMEOUT_SECONDS * 1000L);
+            CompletableFuture<DungeonLayout> generation = CompletableFuture.supplyAsync(() -> {
+                DungeonLayout layout = dungeonGenerator.generateLayout(theme,
+                    dungeonGenerator.getRandomGenerator().forJob(), token);
+                if (layout == null) {
+                    throw new RuntimeException("布局生成失败: " + theme.getId());
+                }
+                return layout;
+            }, generationExecutor);
+            generation.whenComplete((layout, error) -> {
+                if (error != null) {
+                    token.cancel("预生成已取消");
+                }
+            });
+            return generation;
+        }, null);
+    }
+
+    /**
+     * 选择生成种子
+     *
+     * 默认每次使用新的随机种子。启用布局变体时，种子由服务器盐值、主题ID和一个随机变体编号决定，
+     * 同一主题最多只有 layoutVariants 个不同种子，从而可以重复命中缓存；
+     * 盐值按服务器随机生成，不同服务器的变体互不相同。
+     *
+     * @param theme 地牢主题
+     * @return 种子
+     */
+    private long chooseSeed(DungeonTheme theme) {
+        if (layoutCache == null || layoutVariants <= 0) {
+            return ThreadLocalRandom.current().nextLong();
+        }
+        int variant = ThreadLocalRandom.current().nextInt(layoutVariants);
+        return (seedSalt ^ theme.getId().hashCode() * SEED_STRIDE) + variant * 0xBF58476D1CE4E5B9L;
+    }
+
+    /**
+     * 读取服务器的种子盐值，不存在时随机生成并保存
+     *
+     * 盐值与磁盘布局缓存保存在同一目录，删除缓存目录时一起重置。
+     *
+     * @param file 盐值文件
+     * @return 盐值
+     */
+    private long loadSeedSalt(File file) {
+        String content = FileUtils.readTextFile(file);
+        if (content != null) {
+            try {
+                return Long.parseLong(content.trim());
+            } catch (NumberFormatException e) {
+                logger.warning("种子盐值文件无效，将重新生成: " + file.getPath());
+            }
+        }
+
+        long salt = new SecureRandom().nextLong();
+        if (!FileUtils.writeTextFile(file, Long.toString(salt))) {
+            logger.warning("无法保存种子盐值，本次运行的布局变体不会在重启后复用");
+        }
+        return salt;
+    }
+
+    /**
+     * 在缓存中查找推测组中任意一个种子的布局
+     *
+     * 推测组中任意一个种子都可能胜出，缓存按胜出种子保存，因此需要逐个查找。
+     *
+     * @param theme 地牢主题
+     * @param baseSeed 基础种子
+     * @param seedCount 种子数量
+     * @return 缓存的布局，未命中返回null
+     */
+    private DungeonLayout lookupLayout(DungeonTheme theme, long baseSeed, int seedCount) {
+        for (int i = 0; i < seedCount; i++) {
+            DungeonLayout cached = lookupLayout(theme, baseSeed + i * SEED_STRIDE);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在缓存中查找布局
+     *
+     * 生成参数是种子的第一组随机抽取结果，因此可以在生成之前算出完整的缓存键。
+     *
+     * @param theme 地牢主题
+     * @param seed 种子
+     * @return 缓存的布局，未命中返回null
+     */
+    private DungeonLayout lookupLayout(DungeonTheme theme, long seed) {
+        if (layoutCache == null) {
+            return null;
+        }
+        RandomGenerator.GenerationParameters params = new RandomGenerator(seed).generateDungeonParameters(theme);
+        long registryVersion = blueprintManager.getPoolIndex().getVersion();
+        return layoutCache.get(new LayoutCache.LayoutKey(theme.getId(), params, seed, registryVersion));
+    }
+
+    /**
+     * 在 I/O 线程池中执行缓存查找；未创建缓存时直接以null完成，不经过线程池
+     *
+     * @param lookup 查找操作
+     * @return 缓存的布局，未命中结果为null
+     */
+    private CompletableFuture<DungeonLayout> lookupAsync(Supplier<DungeonLayout> lookup) {
+        if (layoutCache == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(lookup, ioExecutor);
+    }
+
+    /**
+     * 获取布局：先查缓存，未命中时生成并放入缓存
+     *
+     * 缓存查找在 I/O 线程池中执行（可能读取磁盘），布局生成在计算线程池中执行。
+     *
+     * @param theme 地牢主题
+     * @param seed 种子
+     * @param token 取消令牌
+     * @return 布局，生成失败时结果为null
+     */
+    private CompletableFuture<DungeonLayout> resolveLayout(DungeonTheme theme, long seed, CancellationToken token) {
+        return lookupAsync(() -> lookupLayout(theme, seed)).thenCompose(cached -> {
+            if (cached != null) {
+                logger.fine("地牢布局命中缓存: " + theme.getId() + " (种子: " + seed + ")");
+                return CompletableFuture.completedFuture(cached);
+            }
+
+            return CompletableFuture.supplyAsync(() -> {
+                DungeonLayout layout = dungeonGenerator.generateLayout(theme, new RandomGenerator(seed), token);
+                cacheLayout(layout);
+                return layout;
+            }, generationExecutor);
+        });
+    }
+
+    /**
+     * 把布局放入缓存，逐出时的磁盘写入在 I/O 线程池中执行
+     *
+     * @param layout 地牢布局，可以为null
+     */
+    private void cacheLayout(DungeonLayout layout) {
+        if (layout == null || layoutCache == null) {
+            return;
+        }
+        if (ioExecutor == generationExecutor) {
+            layoutCache.put(layout);
+        } else {
+            ioExecutor.execute(() -> layoutCache.put(layout));
+        }
+    }
+
+    /**
+     * 在主线程将布局提交为地牢实例
+     *
+     * @param layout 地牢布局
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param world 目标世界
+     * @param origin 生成位置
+     * @param createdBy 创建者
+     * @param progressCallback 进度回调
+     * @return CompletableFuture包装的地牢实例
+     */
+    private CompletableFuture<DungeonInstance> commitOnMainThread(DungeonLayout layout, String dungeonId,
+                                                                 DungeonTheme theme, World world, Location origin,
+                                                                 UUID createdBy, ProgressCallback progressCallback) {
+        CompletableFuture<DungeonInstance> committed = new CompletableFuture<>();
+
+        Runnable commit = () -> {
+            try {
+                DungeonInstance instance = dungeonGenerator.commitLayout(layout, dungeonId, theme, world, origin, createdBy);
+                if (instance == null) {
+                    throw new RuntimeException("地牢提交失败: " + dungeonId);
+                }
+
+                BlockPlacer placer = blockPlacer;
+                if (placer == null) {
+                    // 更新进度：生成完成（已在主线程）
+                    if (progressCallback != null) {
+                        progressCallback.onProgress(100, "地牢生成完成");
+                    }
+
+                    logger.info("地牢生成成功: " + dungeonId);
+                    committed.complete(instance);
+                    return;
+                }
+
+                // 方块按 tick 时间预算分批写入，进度回调在主线程报告
+                placer.submit(instance, progressCallback == null ? null : (job, placed, total) ->
+                    progressCallback.onProgress(Math.min(99, (int) (placed * 100L / Math.max(1, total))),
+                        "正在放置方块 " + placed + "/" + total)
+                ).getFuture().whenComplete((job, error) -> {
+                    if (error != null) {
+                        logger.warning("地牢方块放置未完成: " + dungeonId);
+                        if (progressCallback != null) {
+                            progressCallback.onError("方块放置已取消");
+                        }
+                        committed.completeExceptionally(error);
+                        return;
+                    }
+
+                    if (progressCallback != null) {
+                        progressCallback.onProgress(100, "地牢生成完成");
+                    }
+                    logger.info("地牢生成成功: " + dungeonId);
+                    committed.complete(instance);
+                });
+            } catch (Exception e) {
+                logger.severe("提交地牢失败: " + e.getMessage());
+                if (progressCallback != null) {
+                    progressCallback.onError("生成失败: " + e.getMessage());
+                }
+                committed.completeExceptionally(e);
+            }
+        };
+
+        if (Bukkit.isPrimaryThread()) {
+            commit.run();
+        } else {
+            Bukkit.getScheduler().runTask(plugin, commit);
+        }
+
+        return committed;
     }
 
     /**
@@ -201,7 +815,8 @@ public class AsyncGenerator {
                 request.getOrigin(),
                 request.getCreatedBy(),
                 request.getTimeoutSeconds(),
-                request.getProgressCallback()
+                request.getProgressCallback(),
+                request.getPriority()
             );
             futures.add(future);
         }
@@ -226,12 +841,30 @@ public class AsyncGenerator {
     }
 
     /**
-     * 获取当前活跃的生成任务数
+     * 获取当前占用的调度名额数（多种子任务组按种子数计）
      *
-     * @return 活跃任务数
+     * @return 占用名额数
      */
     public int getActiveGenerations() {
-        return activeGenerations;
+        return scheduler.getRunningCount();
+    }
+
+    /**
+     * 获取排队中的生成任务数
+     *
+     * @return 排队任务数
+     */
+    public int getQueuedGenerations() {
+        return scheduler.getQueuedCount();
+    }
+
+    /**
+     * 获取生成调度器
+     *
+     * @return 生成调度器
+     */
+    public GenerationScheduler getScheduler() {
+        return scheduler;
     }
 
     /**
@@ -244,12 +877,39 @@ public class AsyncGenerator {
     }
 
     /**
-     * 检查是否可以开始新的生成任务
+     * 获取推测式生成的种子数量
+     *
+     * @return 种子数量
+     */
+    public int getSpeculativeSeeds() {
+        return speculativeSeeds;
+    }
+
+    /**
+     * 获取布局缓存
+     *
+     * @return 布局缓存，未启用或未开启布局变体时返回null
+     */
+    public LayoutCache getLayoutCache() {
+        return layoutCache;
+    }
+
+    /**
+     * 检查是否可以立即开始新的生成任务（有空闲名额且没有排队）
      *
      * @return 是否可以生成
      */
     public boolean canGenerate() {
-        return activeGenerations < maxConcurrentGenerations;
+        return scheduler.hasFreeSlot();
+    }
+
+    /**
+     * 检查是否还能接受新的生成请求（立即执行或排队）
+     *
+     * @return 是否可以接受
+     */
+    public boolean canAccept() {
+        return scheduler.canAccept();
     }
 
     /**
@@ -258,6 +918,10 @@ public class AsyncGenerator {
     public void shutdown() {
         logger.info("正在关闭异步生成器...");
 
+        scheduler.cancelQueued();
+        if (ioExecutor != generationExecutor) {
+            ioExecutor.shutdown();
+        }
         generationExecutor.shutdown();
         try {
             if (!generationExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
@@ -269,6 +933,10 @@ public class AsyncGenerator {
             generationExecutor.shutdownNow();
         }
 
+        if (layoutCache != null) {
+            layoutCache.clear();
+        }
+
         logger.info("异步生成器已关闭");
     }
 
@@ -290,6 +958,24 @@ public class AsyncGenerator {
          * @param error 错误消息
          */
         void onError(String error);
+
+        /**
+         * 请求在调度队列中排队
+         *
+         * @param position 队列位置（从1开始）
+         * @param etaMillis 预计开始生成前的等待时间（毫秒）
+         */
+        default void onQueued(int position, long etaMillis) {
+            onProgress(0, "排队中，第 " + position + " 位，预计等待 " + Math.max(1, etaMillis / 1000) + " 秒");
+        }
+
+        /**
+         * 多候选择优完成，无论是否选出布局都会调用
+         *
+         * @param statistics 包含每个候选耗时、得分和选中候选的统计
+         */
+        default void onStatistics(DungeonGenerator.GenerationStatistics statistics) {
+        }
     }
 
     /**
@@ -300,12 +986,28 @@ public class AsyncGenerator {
     public String getStatusInfo() {
         StringBuilder status = new StringBuilder();
         status.append("异步生成器状态:\n");
-        status.append("- 活跃任务数: ").append(activeGenerations).append("/").append(maxConcurrentGenerations).append("\n");
-        status.append("- 线程池状态: ").append(generationExecutor.isShutdown() ? "已关闭" : "运行中").append("\n");
+        status.append("- 占用名额: ").append(scheduler.getRunningCount()).append("/").append(maxConcurrentGenerations).append("\n");
+        status.append("- 排队任务数: ").append(scheduler.getQueuedCount()).append("/").append(scheduler.getMaxQueued())
+            .append(" (拒绝: ").append(scheduler.getRejectedCount()).append(")\n");
+        status.append("- 线程池状态: ").append(generationExecutor.isShutdown() ? "已关闭" : "运行中")
+            .append(" (执行模式: ").append(executorMode.name().toLowerCase()).append(")\n");
         status.append("- 可用性: ").append(canGenerate() ? "可用" : "已满").append("\n");
+        if (layoutCache != null) {
+            status.append("- 布局缓存: ").append(layoutCache.getMemorySize())
+                .append(" (命中率: ").append(String.format("%.2f%%", layoutCache.getHitRate() * 100)).append(")\n");
+        }
         return status.toString();
     }
 
+    /**
+     * 设置方块放置器，设置后提交的地牢会写入方块，返回的 Future 在方块全部写入后才完成
+     *
+     * @param blockPlacer 方块放置器，null 表示只提交实例不写入方块
+     */
+    public void setBlockPlacer(BlockPlacer blockPlacer) {
+        this.blockPlacer = blockPlacer;
+    }
+
     /**
      * 生成请求类
      */
@@ -317,9 +1019,17 @@ public class AsyncGenerator {
         private final UUID createdBy;
         private final int timeoutSeconds;
         private final ProgressCallback progressCallback;
+        private final GenerationScheduler.Priority priority;
 
         public GenerationRequest(String dungeonId, DungeonTheme theme, World world, Location origin,
                                UUID createdBy, int timeoutSeconds, ProgressCallback progressCallback) {
+            this(dungeonId, theme, world, origin, createdBy, timeoutSeconds, progressCallback,
+                GenerationScheduler.Priority.NORMAL);
+        }
+
+        public GenerationRequest(String dungeonId, DungeonTheme theme, World world, Location origin,
+                               UUID createdBy, int timeoutSeconds, ProgressCallback progressCallback,
+                               GenerationScheduler.Priority priority) {
             this.dungeonId = dungeonId;
             this.theme = theme;
             this.world = world;
@@ -327,6 +1037,7 @@ public class AsyncGenerator {
             this.createdBy = createdBy;
             this.timeoutSeconds = timeoutSeconds;
             this.progressCallback = progressCallback;
+            this.priority = priority != null ? priority : GenerationScheduler.Priority.NORMAL;
         }
 
         /**
@@ -355,5 +1066,6 @@ public class AsyncGenerator {
         public UUID getCreatedBy() { return createdBy; }
         public int getTimeoutSeconds() { return timeoutSeconds; }
         public ProgressCallback getProgressCallback() { return progressCallback; }
+        public GenerationScheduler.Priority getPriority() { return priority; }
     }
 }
@@ -0,0 +1,131 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 取消令牌 - 生成任务的协作式取消与超时
+ *
+ * 生成过程在各个循环中调用 {@link #throwIfCancelled()}，
+ * 令牌被取消或超过截止时间后抛出 {@link CancelledException}，
+ * 生成立即结束并释放工作线程，未完成的布局构建器随之丢弃。
+ *
+ * 截止时间在工作线程中检查，不依赖服务器主线程的调度。
+ * 令牌可以被任意线程取消。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class CancellationToken {
+
+    private static final CancellationToken NONE = new CancellationToken(null, Long.MAX_VALUE, 0);
+
+    private final CancellationToken parent;
+    private final long deadlineNanos;
+    private final long timeoutMillis;
+    private volatile String reason;
+
+    /**
+     * 生成被取消
+     */
+    public static class CancelledException extends RuntimeException {
+        private final boolean timeout;
+
+        public CancelledException(String message, boolean timeout) {
+            super(message);
+            this.timeout = timeout;
+        }
+
+        /**
+         * 是否因超时而取消
+         */
+        public boolean isTimeout() { return timeout; }
+    }
+
+    private CancellationToken(CancellationToken parent, long deadlineNanos, long timeoutMillis) {
+        this.parent = parent;
+        this.deadlineNanos = deadlineNanos;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 获取永不取消的令牌
+     *
+     * @return 空令牌
+     */
+    public static CancellationToken none() {
+        return NONE;
+    }
+
+    /**
+     * 创建带超时的令牌，超时从现在开始计算
+     *
+     * @param timeoutMillis 超时时间（毫秒），小于等于0表示不超时
+     * @return 令牌
+     */
+    public static CancellationToken withTimeout(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return new CancellationToken(null, Long.MAX_VALUE, 0);
+        }
+        return new CancellationToken(null, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis), timeoutMillis);
+    }
+
+    /**
+     * 创建子令牌
+     *
+     * 父令牌取消或超时时子令牌也视为取消；子令牌单独取消不影响父令牌。
+     *
+     * @return 子令牌
+     */
+    public CancellationToken child() {
+        return new CancellationToken(this, Long.MAX_VALUE, 0);
+    }
+
+    /**
+     * 取消令牌
+     *
+     * @param reason 取消原因
+     */
+    public void cancel(String reason) {
+        if (this == NONE) {
+            return;
+        }
+        if (this.reason == null) {
+            this.reason = reason != null ? reason : "生成已取消";
+        }
+    }
+
+    /**
+     * 检查是否已取消（包括超时）
+     *
+     * @return 是否已取消
+     */
+    public boolean isCancelled() {
+        if (reason != null) {
+            return true;
+        }
+        if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos >= 0) {
+            return true;
+        }
+        return parent != null && parent.isCancelled();
+    }
+
+    /**
+     * 检查点：已取消时抛出异常
+     *
+     * @throws CancelledException 令牌已取消或超时
+     */
+    public void throwIfCancelled() {
+        if (!isCancelled()) {
+            return;
+        }
+        for (CancellationToken token = this; token != null; token = token.parent) {
+            if (token.reason != null) {
+                throw new CancelledException(token.reason, false);
+            }
+            if (token.deadlineNanos != Long.MAX_VALUE && System.nanoTime() - token.deadlineNanos >= 0) {
+                throw new CancelledException("地牢生成超时: " + token.timeoutMillis / 1000 + "秒", true);
+            }
+        }
+    }
+}
@@ -0,0 +1,613 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPool;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPoolIndex;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
+import org.snhuan.huanDungeonRandom.blueprint.DoorDirection;
+import org.snhuan.huanDungeonRandom.blueprint.DoorInfo;
+import org.snhuan.huanDungeonRandom.blueprint.RotatedBody;
+import org.snhuan.huanDungeonRandom.blueprint.templates.CorridorBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
+import org.snhuan.huanDungeonRandom.blueprint.templates.TileBlueprint;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+import org.snhuan.huanDungeonRandom.utils.AliasSampler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 连通布局引擎 - 从出生房间出发，沿着开放的门向外生长地牢
+ *
+ * 生成流程：
+ * - 出生房间放置在原点，其所有门加入开放门前沿
+ * - 每次从前沿取出一扇门，寻找朝向相反的蓝图门，使两扇门紧贴对接
+ * - 对接成功后记录门连接，新蓝图的其余门加入前沿
+ * - 房间和走廊按数量要求交替生长，最后用瓦片封堵剩余的开放门
+ * - 多层地牢通过楼梯和竖井走廊（两扇门高度不同）进入其他楼层，总高度受楼层数限制
+ *
+ * 由于每个蓝图都是通过门接入的，生成结果天然连通，无需整体重试。
+ * 前沿状态可以保留下来分批扩展，流式生成据此只在玩家接近时展开对应的门。
+ * 引擎只操作相对原点的整数坐标，不依赖 Bukkit 对象，可在任意线程中运行。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ConnectedLayoutEngine {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    private final RandomGenerator randomGenerator;
+    private final DungeonGenerator.GenerationConfig config;
+    private final Logger logger;
+    private final CancellationToken cancellation;
+
+    /**
+     * 开放的门 - 已放置但尚未连接的门
+     */
+    private static class OpenDoor {
+        private final int ownerIndex;
+        private final String doorId;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final DoorDirection direction;
+        private final int depth;
+        private final boolean ownerIsRoom;
+
+        OpenDoor(int ownerIndex, String doorId, int x, int y, int z,
+                DoorDirection direction, int depth, boolean ownerIsRoom) {
+            this.ownerIndex = ownerIndex;
+            this.doorId = doorId;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.direction = direction;
+            this.depth = depth;
+            this.ownerIsRoom = ownerIsRoom;
+        }
+    }
+
+    /**
+     * 对接方案 - 候选蓝图以某个旋转角度、某扇门接入前沿门
+     */
+    private static class Attachment {
+        private final Blueprint blueprint;
+        private final DoorInfo door;
+        private final int rotation;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        Attachment(Blueprint blueprint, DoorInfo door, int rotation, int x, int y, int z) {
+            this.blueprint = blueprint;
+            this.door = door;
+            this.rotation = rotation;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    /**
+     * 前沿状态 - 尚未连接的开放门以及剩余的生成预算
+     *
+     * 状态随生长过程原地修改，不是线程安全的，同一时间只能由一个线程扩展。
+     */
+    public static final class Frontier {
+        private final List<OpenDoor> open = new ArrayList<>();
+        private final BlueprintPool<RoomBlueprint> bossPool;
+        private final AliasSampler<RoomBlueprint> roomSampler;
+        private final AliasSampler<RoomBlueprint> bossSampler;
+        private final AliasSampler<CorridorBlueprint> corridorSampler;
+        private final AliasSampler<TileBlueprint> tileSampler;
+        private final int roomsToPlace;
+        private final int corridorsToPlace;
+        private final int maxDepth;
+        private final boolean allowBranching;
+        private final int floors;
+        private final int maxHeight;
+        private int minY = 0;
+        private int maxY = 0;
+        private int placedRooms = 1;
+        private int placedCorridors = 0;
+        private int placedTiles = 0;
+        private int tilesToPlace = -1;
+
+        private Frontier(BlueprintPoolIndex pools, String themeId, RandomGenerator.GenerationParameters params) {
+            // 只有带门的蓝图才能接入布局，蓝图池已预先划分好带门的子池
+            this.bossPool = pools.getRoomPool(themeId, RoomBlueprint.RoomType.BOSS).linkable();
+            BlueprintPool<RoomBlueprint> roomPool = pools.getRegularRoomPool(themeId).linkable();
+            if (roomPool.isEmpty()) {
+                roomPool = bossPool;
+            }
+            this.roomSampler = roomPool.getSampler();
+            this.bossSampler = bossPool.getSampler();
+            this.corridorSampler = pools.getCorridorPool(themeId).linkable().getSampler();
+            this.tileSampler = pools.getTilePool(themeId).linkable().getSampler();
+
+            this.roomsToPlace = params.getRoomCount();
+            this.corridorsToPlace = corridorSampler.isEmpty() ? 0 : params.getCorridorCount();
+            this.maxDepth = Math.max(1, params.getMaxDepth());
+            this.allowBranching = params.isAllowBranching();
+            this.floors = params.getFloors();
+            this.maxHeight = params.getFloors() * params.getFloorHeight();
+        }
+
+        /**
+         * 放置后的高度范围是否仍在楼层限制内，单层地牢不做限制
+         */
+        private boolean fitsFloors(int bottom, int top) {
+            return floors <= 1 || Math.max(maxY, top) - Math.min(minY, bottom) <= maxHeight;
+        }
+
+        private void include(int bottom, int top) {
+            minY = Math.min(minY, bottom);
+            maxY = Math.max(maxY, top);
+        }
+
+        private boolean hasBudget() {
+            return placedRooms < roomsToPlace || placedCorridors < corridorsToPlace;
+        }
+
+        private boolean isLastRoom() {
+            return placedRooms == roomsToPlace - 1 && !bossPool.isEmpty();
+        }
+
+        /**
+         * 剩余的开放门数量
+         */
+        public int getOpenDoorCount() { return open.size(); }
+
+        /**
+         * 是否已没有可扩展的门
+         */
+        public boolean isExhausted() { return open.isEmpty(); }
+
+        public int getPlacedRooms() { return placedRooms; }
+        public int getPlacedCorridors() { return placedCorridors; }
+        public int getPlacedTiles() { return placedTiles; }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param randomGenerator 随机生成器
+     * @param config 生成配置
+     * @param logger 日志记录器
+     */
+    public ConnectedLayoutEngine(RandomGenerator randomGenerator, DungeonGenerator.GenerationConfig config, Logger logger) {
+        this(randomGenerator, config, logger, CancellationToken.none());
+    }
+
+    /**
+     * 构造函数（带取消令牌）
+     *
+     * @param randomGenerator 随机生成器
+     * @param config 生成配置
+     * @param logger 日志记录器
+     * @param cancellation 取消令牌，每次扩展前检查
+     */
+    public ConnectedLayoutEngine(RandomGenerator randomGenerator, DungeonGenerator.GenerationConfig config,
+                                 Logger logger, CancellationToken cancellation) {
+        this.randomGenerator = randomGenerator;
+        this.config = config;
+        this.logger = logger;
+        this.cancellation = cancellation != null ? cancellation : CancellationToken.none();
+    }
+
+    /**
+     * 生长地牢布局
+     *
+     * @param layoutBuilder 布局构建器
+     * @param spawnRoom 出生房间
+     * @param pools 蓝图池索引
+     * @param themeId 主题ID
+     * @param params 生成参数
+     * @param statsBuilder 统计构建器
+     * @return 是否成功
+     */
+    public boolean grow(DungeonLayout.Builder layoutBuilder, RoomBlueprint spawnRoom,
+                        BlueprintPoolIndex pools, String themeId,
+                        RandomGenerator.GenerationParameters params,
+                        DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+
+        Frontier frontier = begin(layoutBuilder, spawnRoom, pools, themeId, params, statsBuilder);
+        List<OpenDoor> leftover = new ArrayList<>();
+
+        while (!frontier.open.isEmpty() && frontier.hasBudget()) {
+            cancellation.throwIfCancelled();
+            OpenDoor open = takeDoor(frontier.open, frontier.allowBranching, frontier.isLastRoom());
+            if (extend(layoutBuilder, frontier, open, statsBuilder) < 0) {
+                leftover.add(open);
+            }
+        }
+
+        // 用瓦片封堵剩余的开放门
+        leftover.addAll(frontier.open);
+        frontier.open.clear();
+        for (int i = 0; i < leftover.size() && frontier.placedTiles < tileBudget(frontier); i++) {
+            cancellation.throwIfCancelled();
+            seal(layoutBuilder, frontier, leftover.get(i), statsBuilder);
+        }
+
+        logger.info(String.format("连通布局: 房间 %d/%d, 走廊 %d/%d, 瓦片 %d, 连接 %d",
+            frontier.placedRooms, frontier.roomsToPlace, frontier.placedCorridors, frontier.corridorsToPlace,
+            frontier.placedTiles, layoutBuilder.getConnectionCount()));
+
+        return frontier.placedRooms >= Math.max(1, frontier.roomsToPlace * config.getPlacementTolerance());
+    }
+
+    /**
+     * 放置出生房间并建立开放门前沿，不做任何扩展
+     *
+     * 连续生长和流式生成共用同一套前沿状态；流式生成随后按玩家位置调用
+     * {@link #expandInitial} 和 {@link #expandNear} 逐步扩展。
+     *
+     * @param layoutBuilder 布局构建器
+     * @param spawnRoom 出生房间
+     * @param pools 蓝图池索引
+     * @param themeId 主题ID
+     * @param params 生成参数
+     * @param statsBuilder 统计构建器
+     * @return 前沿状态
+     */
+    public Frontier begin(DungeonLayout.Builder layoutBuilder, RoomBlueprint spawnRoom,
+                          BlueprintPoolIndex pools, String themeId,
+                          RandomGenerator.GenerationParameters params,
+                          DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        Frontier frontier = new Frontier(pools, themeId, params);
+
+        // 出生房间固定放置在原点
+        int spawnIndex = layoutBuilder.addPlacement(spawnRoom, 0, 0, 0, 0);
+        layoutBuilder.addNamedPoint("spawn", 0, 1, 0);
+        statsBuilder.incrementPlacement(BlueprintType.ROOM, true);
+        frontier.include(0, spawnRoom.getSizeY());
+        pushDoors(frontier.open, spawnRoom, spawnIndex, 0, 0, 0, 0, -1, null, true);
+
+        return frontier;
+    }
+
+    /**
+     * 展开出生房间的所有门，使出生房间的相邻蓝图全部就位
+     *
+     * @param layoutBuilder 布局构建器
+     * @param frontier 前沿状态
+     * @param statsBuilder 统计构建器
+     * @return 新放置的蓝图数量
+     */
+    public int expandInitial(DungeonLayout.Builder layoutBuilder, Frontier frontier,
+                             DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        List<OpenDoor> spawnDoors = new ArrayList<>();
+        for (OpenDoor open : frontier.open) {
+            if (open.depth == 0) {
+                spawnDoors.add(open);
+            }
+        }
+
+        int before = layoutBuilder.getPlacementCount();
+        for (OpenDoor open : spawnDoors) {
+            cancellation.throwIfCancelled();
+            frontier.open.remove(open);
+            resolve(layoutBuilder, frontier, open, statsBuilder);
+        }
+        return layoutBuilder.getPlacementCount() - before;
+    }
+
+    /**
+     * 展开指定位置附近的开放门
+     *
+     * 按距离从近到远处理半径内的门：生成预算未用完且深度允许时接入房间或走廊，
+     * 否则用瓦片封堵。处理过的门无论成功与否都会移出前沿，不会被重复尝试。
+     *
+     * @param layoutBuilder 布局构建器
+     * @param frontier 前沿状态
+     * @param x 相对原点的X
+     * @param y 相对原点的Y
+     * @param z 相对原点的Z
+     * @param radius 半径（方块）
+     * @param maxDoors 本次最多处理的门数量
+     * @param statsBuilder 统计构建器
+     * @return 新放置的蓝图数量
+     */
+    public int expandNear(DungeonLayout.Builder layoutBuilder, Frontier frontier, int x, int y, int z,
+                          double radius, int maxDoors, DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        double radiusSquared = radius * radius;
+        List<OpenDoor> nearby = new ArrayList<>();
+        for (OpenDoor open : frontier.open) {
+            if (distanceSquared(open, x, y, z) <= radiusSquared) {
+                nearby.add(open);
+            }
+        }
+        if (nearby.isEmpty()) {
+            return 0;
+        }
+        nearby.sort((a, b) -> Double.compare(distanceSquared(a, x, y, z), distanceSquared(b, x, y, z)));
+
+        int before = layoutBuilder.getPlacementCount();
+        for (int i = 0; i < nearby.size() && i < maxDoors; i++) {
+            cancellation.throwIfCancelled();
+            OpenDoor open = nearby.get(i);
+            frontier.open.remove(open);
+            resolve(layoutBuilder, frontier, open, statsBuilder);
+        }
+        return layoutBuilder.getPlacementCount() - before;
+    }
+
+    /**
+     * 处理一扇从前沿取出的门：优先扩展，无法扩展时封堵
+     */
+    private void resolve(DungeonLayout.Builder layoutBuilder, Frontier frontier, OpenDoor open,
+                         DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        if (frontier.hasBudget() && extend(layoutBuilder, frontier, open, statsBuilder) >= 0) {
+            return;
+        }
+        if (frontier.placedTiles < tileBudget(frontier)) {
+            seal(layoutBuilder, frontier, open, statsBuilder);
+        }
+    }
+
+    /**
+     * 在一扇开放门上接入房间或走廊
+     *
+     * @return 新蓝图的索引，超过最大深度或没有可行方案时返回-1
+     */
+    private int extend(DungeonLayout.Builder layoutBuilder, Frontier frontier, OpenDoor open,
+                       DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        if (open.depth >= frontier.maxDepth) {
+            return -1;
+        }
+
+        boolean lastRoom = frontier.isLastRoom();
+
+        // 房间之间优先用走廊连接，走廊的另一端优先接房间
+        boolean wantCorridor = frontier.placedCorridors < frontier.corridorsToPlace
+            && (open.ownerIsRoom || frontier.placedRooms >= frontier.roomsToPlace);
+
+        Attachment attachment = findCandidate(layoutBuilder, frontier, open, wantCorridor, lastRoom);
+        if (attachment == null && wantCorridor) {
+            statsBuilder.incrementPlacement(BlueprintType.CORRIDOR, false);
+            // 没有走廊放得下时直接接房间，房间还有剩余时不要急着封堵这扇门
+            if (frontier.placedRooms >= frontier.roomsToPlace) {
+                return -1;
+            }
+            wantCorridor = false;
+            attachment = findCandidate(layoutBuilder, frontier, open, false, lastRoom);
+        }
+
+        BlueprintType type = wantCorridor ? BlueprintType.CORRIDOR : BlueprintType.ROOM;
+        if (attachment == null) {
+            statsBuilder.incrementPlacement(type, false);
+            return -1;
+        }
+
+        int index = attach(layoutBuilder, frontier, attachment, open, true);
+        statsBuilder.incrementPlacement(type, true);
+        if (wantCorridor) {
+            frontier.placedCorridors++;
+        } else {
+            frontier.placedRooms++;
+            if (lastRoom) {
+                DungeonLayout.Placement boss = layoutBuilder.getPlacement(index);
+                layoutBuilder.addNamedPoint("boss", boss.getX(), boss.getY() + 1, boss.getZ());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 从走廊池或房间池中抽取候选，寻找能接入指定门的方案
+     *
+     * @return 接入方案，所有尝试都失败时返回null
+     */
+    private Attachment findCandidate(DungeonLayout.Builder layoutBuilder, Frontier frontier, OpenDoor open,
+                                     boolean corridor, boolean lastRoom) {
+        for (int attempt = 0; attempt < candidateAttempts(); attempt++) {
+            cancellation.throwIfCancelled();
+            Blueprint candidate;
+            if (corridor) {
+                candidate = randomGenerator.weightedChoice(frontier.corridorSampler);
+            } else if (lastRoom) {
+                candidate = randomGenerator.weightedChoice(frontier.bossSampler);
+            } else {
+                candidate = randomGenerator.weightedChoice(frontier.roomSampler);
+            }
+            if (candidate == null) {
+                return null;
+            }
+            Attachment attachment = findAttachment(layoutBuilder.getOccupancy(), frontier, candidate, open);
+            if (attachment != null) {
+                return attachment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 用瓦片封堵一扇开放门
+     *
+     * @return 是否封堵成功
+     */
+    private boolean seal(DungeonLayout.Builder layoutBuilder, Frontier frontier, OpenDoor open,
+                         DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        TileBlueprint tile = randomGenerator.weightedChoice(frontier.tileSampler);
+        Attachment attachment = tile != null ? findAttachment(layoutBuilder.getOccupancy(), frontier, tile, open) : null;
+        if (attachment == null) {
+            statsBuilder.incrementPlacement(BlueprintType.TILE, false);
+            return false;
+        }
+        attach(layoutBuilder, frontier, attachment, open, false);
+        frontier.placedTiles++;
+        statsBuilder.incrementPlacement(BlueprintType.TILE, true);
+        return true;
+    }
+
+    /**
+     * 瓦片数量上限，第一次需要封堵时才抽取
+     */
+    private int tileBudget(Frontier frontier) {
+        if (frontier.tilesToPlace < 0) {
+            frontier.tilesToPlace = frontier.tileSampler.isEmpty() ? 0 : randomGenerator.randomInt(5, 15);
+        }
+        return frontier.tilesToPlace;
+    }
+
+    private static double distanceSquared(OpenDoor open, int x, int y, int z) {
+        double dx = open.x - x;
+        double dy = open.y - y;
+        double dz = open.z - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * 从前沿取出一扇门
+     *
+     * 允许分支时随机选择，否则总是延伸最新放置的蓝图；
+     * 放置最后一个房间时选择最深的门，让首领房间远离出生点。
+     */
+    private OpenDoor takeDoor(List<OpenDoor> frontier, boolean allowBranching, boolean deepest) {
+        int index = frontier.size() - 1;
+        if (deepest) {
+            for (int i = 0; i < frontier.size(); i++) {
+                if (frontier.get(i).depth > frontier.get(index).depth) {
+                    index = i;
+                }
+            }
+        } else if (allowBranching) {
+            index = randomGenerator.randomInt(0, frontier.size() - 1);
+        }
+        return frontier.remove(index);
+    }
+
+    /**
+     * 为候选蓝图寻找能接入指定门的旋转角度和门
+     *
+     * 单层地牢不使用楼梯和竖井走廊；多层地牢中放置后的总高度不能超过楼层数乘以楼层高度。
+     *
+     * @param occupancy 占用网格
+     * @param frontier 前沿状态
+     * @param blueprint 候选蓝图
+     * @param open 开放的门
+     * @return 对接方案，没有可行方案返回null
+     */
+    private Attachment findAttachment(OccupancyGrid occupancy, Frontier frontier, Blueprint blueprint, OpenDoor open) {
+        boolean vertical = blueprint instanceof CorridorBlueprint
+            && ((CorridorBlueprint) blueprint).getCorridorType().isVertical();
+        if (vertical && frontier.floors <= 1) {
+            return null;
+        }
+
+        DoorDirection required = open.direction.getOpposite();
+
+        // 新门紧贴在开放门的外侧
+        int targetX = open.x + stepX(open.direction);
+        int targetY = open.y;
+        int targetZ = open.z + stepZ(open.direction);
+
+        int doorCount = blueprint.getRotatedBody(0).getDoorCount();
+        int rotationOffset = randomGenerator.randomInt(0, ROTATIONS.length - 1);
+        int doorOffset = randomGenerator.randomInt(0, doorCount - 1);
+
+        for (int r = 0; r < ROTATIONS.length; r++) {
+            int rotation = ROTATIONS[(r + rotationOffset) % ROTATIONS.length];
+            RotatedBody body = blueprint.getRotatedBody(rotation);
+            for (int d = 0; d < doorCount; d++) {
+                int doorIndex = (d + doorOffset) % doorCount;
+                if (body.getDoorDirection(doorIndex) != required) {
+                    continue;
+                }
+                DoorInfo door = body.getDoor(doorIndex);
+
+                int x = targetX - body.getDoorX(doorIndex);
+                int y = targetY - body.getDoorY(doorIndex);
+                int z = targetZ - body.getDoorZ(doorIndex);
+
+                if (!frontier.fitsFloors(y, y + blueprint.getSizeY())) {
+                    continue;
+                }
+
+                if (!config.isAllowOverlap()) {
+                    int[] footprint = OccupancyGrid.footprint(x, y, z,
+                        blueprint.getSizeX(), blueprint.getSizeY(), blueprint.getSizeZ(), rotation);
+                    if (occupancy.overlaps(footprint)) {
+                        continue;
+                    }
+                }
+
+                return new Attachment(blueprint, door, rotation, x, y, z);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * 放置对接方案并记录门连接
+     *
+     * @return 新蓝图的索引
+     */
+    private int attach(DungeonLayout.Builder layoutBuilder, Frontier frontier, Attachment attachment,
+                       OpenDoor open, boolean pushDoors) {
+        int index = layoutBuilder.addPlacement(attachment.blueprint,
+            attachment.x, attachment.y, attachment.z, attachment.rotation);
+        layoutBuilder.addConnection(open.ownerIndex, open.doorId, index, attachment.door.getId());
+        frontier.include(attachment.y, attachment.y + attachment.blueprint.getSizeY());
+
+        if (pushDoors) {
+            pushDoors(frontier.open, attachment.blueprint, index, attachment.x, attachment.y, attachment.z,
+                attachment.rotation, open.depth, attachment.door.getId(),
+                attachment.blueprint.getType() == BlueprintType.ROOM);
+        }
+        return index;
+    }
+
+    /**
+     * 把蓝图的门加入前沿
+     */
+    private void pushDoors(List<OpenDoor> frontier, Blueprint blueprint, int ownerIndex,
+                           int x, int y, int z, int rotation, int parentDepth, String usedDoorId, boolean isRoom) {
+        RotatedBody body = blueprint.getRotatedBody(rotation);
+        for (int i = 0; i < body.getDoorCount(); i++) {
+            String doorId = body.getDoor(i).getId();
+            if (doorId.equals(usedDoorId)) {
+                continue;
+            }
+            frontier.add(new OpenDoor(ownerIndex, doorId,
+                x + body.getDoorX(i),
+                y + body.getDoorY(i),
+                z + body.getDoorZ(i),
+                body.getDoorDirection(i), parentDepth + 1, isRoom));
+        }
+    }
+
+    /**
+     * 每扇门尝试的候选蓝图数量
+     */
+    private int candidateAttempts() {
+        return Math.max(1, Math.min(config.getMaxAttempts(), 8));
+    }
+
+    /**
+     * 门朝向的X步长
+     */
+    private static int stepX(DoorDirection direction) {
+        switch (direction) {
+            case EAST: return 1;
+            case WEST: return -1;
+            default: return 0;
+        }
+    }
+
+    /**
+     * 门朝向的Z步长
+     */
+    private static int stepZ(DoorDirection direction) {
+        switch (direction) {
+            case SOUTH: return 1;
+            case NORTH: return -1;
+            default: return 0;
+        }
+    }
+}
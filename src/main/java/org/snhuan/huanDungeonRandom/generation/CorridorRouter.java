@@ -0,0 +1,922 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPool;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
+import org.snhuan.huanDungeonRandom.blueprint.DoorDirection;
+import org.snhuan.huanDungeonRandom.blueprint.DoorInfo;
+import org.snhuan.huanDungeonRandom.blueprint.RotatedBody;
+import org.snhuan.huanDungeonRandom.blueprint.templates.CorridorBlueprint;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+import org.snhuan.huanDungeonRandom.utils.AliasSampler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * 走廊路由器 - 在房间放置完成后，用 A* 寻路把房间的门连成走廊
+ *
+ * 路由在每个楼层的单元网格上进行，单元边长等于走廊段的正方形占地：
+ * - 参与路由的走廊段为直线、L型、T型和十字走廊，每个旋转角度按开放的边形成一个变体
+ * - 从出生房间（或楼层中的第一个房间）开始，逐个把最近的未连接房间接入，形成生成树
+ * - 每次寻路从未使用的门外侧单元走到已连接房间的门外侧单元，被蓝图占用的单元不可通行
+ * - 房间边缘与单元边界不对齐时，门外侧单元取门朝向上第一个空闲的单元
+ * - 经过已有走廊的单元代价更低，路径会自然汇合，汇合处的单元成为T型或十字路口
+ * - 转弯有额外代价，走廊尽量保持直线
+ *
+ * 寻路完成后每个单元根据开放的边选择对应形状的走廊段，
+ * 相邻走廊段之间、走廊段与房间门之间直接记录门连接，连通性来自路由而不是整体重试。
+ *
+ * 多层地牢在每两个相邻楼层之间放置一个楼梯或竖井走廊，两扇门的高度差必须等于楼层间距。
+ * 它的下层门和上层门分别作为一个房间参与两个楼层的路由，各楼层的生成树由此连成一体。
+ *
+ * 寻路状态为"单元 × 进入方向"，开放集是基本类型数组实现的二叉堆。
+ * 分数、父节点和搜索标记数组由所有楼层的所有寻路共用，按最大的楼层按需增长；
+ * 每次寻路递增搜索标记，标记不等于本次搜索的状态视为未访问，因此不需要清空数组。
+ * 路由器不是线程安全的，每个生成任务单独创建。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class CorridorRouter {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final int SIDES = 4;
+    private static final int[] STEP_X = {0, 1, 0, -1};
+    private static final int[] STEP_Z = {-1, 0, 1, 0};
+
+    // 单个楼层网格每个方向的最大单元数
+    private static final int MAX_GRID = 384;
+    // 网格在房间外多留的单元数
+    private static final int MARGIN = 2;
+
+    // 寻路代价
+    private static final int STEP_COST = 4;
+    private static final int REUSE_COST = 2;
+    private static final int TURN_COST = 3;
+
+    // 门外侧查找空闲单元的最大单元数
+    private static final int DOOR_REACH = 2;
+
+    // 每个房间最多尝试的门对数量
+    private static final int MAX_PAIRS_PER_ROOM = 6;
+
+    // 楼梯或竖井走廊从楼层中心向外搜索位置的最大单元圈数
+    private static final int CONNECTOR_SEARCH_RINGS = 16;
+
+    private final RandomGenerator random;
+    private final CancellationToken cancellation;
+    private final Logger logger;
+    private final int cellSize;
+    private final int height;
+
+    // 按开放边的位掩码索引的走廊段采样器，没有对应形状时为null
+    private final AliasSampler<Segment>[] segmentsByMask;
+    // 该位掩码是否被某种走廊段的开放边包含，即单元还能继续增加开放边
+    private final boolean[] extendable;
+    // 连接上下楼层的楼梯和竖井走廊
+    private final List<Connector> connectors;
+
+    // A* 状态，按 单元 * 4 + 进入方向 索引，所有楼层共用
+    private int[] gScore = new int[0];
+    private int[] parent = new int[0];
+    // 状态最后一次被访问时的搜索标记：等于 search 为已打开，等于 search + 1 为已关闭
+    private int[] visited = new int[0];
+    private int search;
+    private int[] heapNodes = new int[256];
+    private int[] heapKeys = new int[256];
+    private int heapSize;
+
+    /**
+     * 走廊段变体 - 一个走廊蓝图在一个旋转角度下的形态
+     */
+    public static final class Segment {
+        private final CorridorBlueprint corridor;
+        private final int rotation;
+        private final int openSides;
+        private final String[] doorIds;
+        private final double weight;
+
+        private Segment(CorridorBlueprint corridor, int rotation, int openSides, String[] doorIds, double weight) {
+            this.corridor = corridor;
+            this.rotation = rotation;
+            this.openSides = openSides;
+            this.doorIds = doorIds;
+            this.weight = weight;
+        }
+
+        /**
+         * 获取旋转后朝向指定方向的门ID
+         *
+         * @return 门ID，该方向封闭时返回null
+         */
+        public String getDoorId(DoorDirection side) {
+            return doorIds[side.ordinal()];
+        }
+
+        public CorridorBlueprint getCorridor() { return corridor; }
+        public int getRotation() { return rotation; }
+        public int getOpenSides() { return openSides; }
+    }
+
+    /**
+     * 垂直走廊 - 两扇门位于不同高度的楼梯或竖井走廊
+     */
+    private static final class Connector {
+        private final CorridorBlueprint corridor;
+        private final int lowerDoor;
+        private final int upperDoor;
+        private final int rise;
+
+        private Connector(CorridorBlueprint corridor, int lowerDoor, int upperDoor, int rise) {
+            this.corridor = corridor;
+            this.lowerDoor = lowerDoor;
+            this.upperDoor = upperDoor;
+            this.rise = rise;
+        }
+    }
+
+    /**
+     * 房间门 - 已放置房间上的一扇水平门
+     */
+    private static final class RoomDoor {
+        private final int roomIndex;
+        private final String doorId;
+        private final int side;
+        private final int outX;
+        private final int outZ;
+        private boolean used = false;
+
+        RoomDoor(int roomIndex, String doorId, int side, int outX, int outZ) {
+            this.roomIndex = roomIndex;
+            this.doorId = doorId;
+            this.side = side;
+            this.outX = outX;
+            this.outZ = outZ;
+        }
+    }
+
+    /**
+     * 楼层网格 - 单个楼层的路由状态，所有寻路共用
+     */
+    private final class FloorGrid {
+        private final int y;
+        private final int originX;
+        private final int originZ;
+        private final int width;
+        private final int depth;
+        private final OccupancyGrid occupancy;
+
+        // 每个单元已开放的边
+        private final byte[] masks;
+        // 单元是否被蓝图占用：checked 记录是否已查询
+        private final long[] checked;
+        private final long[] blocked;
+        // 走廊段与房间门的连接：单元 -> 接入该单元的房间门
+        private final Map<Integer, List<RoomDoor>> doorLinks = new HashMap<>();
+
+        FloorGrid(int y, int originX, int originZ, int width, int depth, OccupancyGrid occupancy) {
+            this.y = y;
+            this.originX = originX;
+            this.originZ = originZ;
+            this.width = width;
+            this.depth = depth;
+            this.occupancy = occupancy;
+
+            int cells = width * depth;
+            this.masks = new byte[cells];
+            this.checked = new long[(cells + 63) >>> 6];
+            this.blocked = new long[(cells + 63) >>> 6];
+            ensureSearchCapacity(cells * SIDES);
+        }
+
+        /**
+         * 方块坐标所在的单元，超出网格返回-1
+         */
+        int cellAt(int blockX, int blockZ) {
+            int cx = Math.floorDiv(blockX - originX, cellSize);
+            int cz = Math.floorDiv(blockZ - originZ, cellSize);
+            if (cx < 0 || cz < 0 || cx >= width || cz >= depth) {
+                return -1;
+            }
+            return cz * width + cx;
+        }
+
+        /**
+         * 门外侧的第一个空闲单元
+         *
+         * 房间的边缘不一定与单元边界对齐，门外侧方块所在的单元可能与房间重叠，
+         * 此时沿门的朝向再向外查找，最多 {@link #DOOR_REACH} 个单元。
+         *
+         * @return 单元，找不到返回-1
+         */
+        int doorCell(RoomDoor door) {
+            int cell = cellAt(door.outX, door.outZ);
+            for (int step = 0; cell >= 0 && step < DOOR_REACH; step++) {
+                if (!isBlocked(cell)) {
+                    return cell;
+                }
+                cell = neighbor(cell, door.side);
+            }
+            return -1;
+        }
+
+        /**
+         * 相邻单元，超出网格返回-1
+         */
+        int neighbor(int cell, int side) {
+            int cx = cell % width + STEP_X[side];
+            int cz = cell / width + STEP_Z[side];
+            if (cx < 0 || cz < 0 || cx >= width || cz >= depth) {
+                return -1;
+            }
+            return cz * width + cx;
+        }
+
+        /**
+         * 单元是否与已放置的蓝图重叠，结果按需查询并缓存
+         */
+        boolean isBlocked(int cell) {
+            long bit = 1L << cell;
+            if ((checked[cell >>> 6] & bit) == 0) {
+                checked[cell >>> 6] |= bit;
+                int x = originX + (cell % width) * cellSize;
+                int z = originZ + (cell / width) * cellSize;
+                if (occupancy.overlaps(x, y, z, x + cellSize, y + height, z + cellSize)) {
+                    blocked[cell >>> 6] |= bit;
+                }
+            }
+            return (blocked[cell >>> 6] & bit) != 0;
+        }
+
+        /**
+         * 单元增加开放边后是否仍有对应形状的走廊段
+         */
+        boolean accepts(int cell, int addedSides) {
+            return segmentsByMask[masks[cell] | addedSides] != null;
+        }
+
+        /**
+         * 单元增加开放边后是否还能补全为某种走廊段
+         */
+        boolean canExtend(int cell, int addedSides) {
+            return extendable[masks[cell] | addedSides];
+        }
+
+        int manhattan(int a, int b) {
+            return Math.abs(a % width - b % width) + Math.abs(a / width - b / width);
+        }
+
+        /**
+         * 从起始门寻路到目标门，成功时写入路径经过单元的开放边
+         *
+         * @return 是否找到路径
+         */
+        boolean route(RoomDoor from, RoomDoor to) {
+            int start = doorCell(from);
+            int goal = doorCell(to);
+            if (start < 0 || goal < 0) {
+                return false;
+            }
+
+            // 门外侧单元朝向房间的一边
+            int startSide = opposite(from.side);
+            int goalSide = opposite(to.side);
+
+            if (start == goal) {
+                if (startSide == goalSide || !accepts(start, (1 << startSide) | (1 << goalSide))) {
+                    return false;
+                }
+                masks[start] |= (byte) ((1 << startSide) | (1 << goalSide));
+                link(start, from);
+                link(start, to);
+                return true;
+            }
+
+            beginSearch();
+
+            // 从门走出的方向即为进入起始单元的方向
+            int startState = start * SIDES + from.side;
+            visited[startState] = search;
+            gScore[startState] = 0;
+            parent[startState] = -1;
+            push(startState, manhattan(start, goal) * REUSE_COST);
+
+            int found = -1;
+            int expanded = 0;
+            while (heapSize > 0) {
+                int state = pop();
+                if (visited[state] == search + 1) {
+                    continue;
+                }
+                visited[state] = search + 1;
+
+                if ((++expanded & 1023) == 0) {
+                    cancellation.throwIfCancelled();
+                }
+
+                int cell = state / SIDES;
+                int heading = state % SIDES;
+                // 当前单元进入的一边：起始单元为朝向房间的一边
+                int entrySide = cell == start && parent[state] < 0 ? startSide : opposite(heading);
+
+                if (cell == goal) {
+                    if (accepts(cell, (1 << entrySide) | (1 << goalSide)) && entrySide != goalSide) {
+                        found = state;
+                        break;
+                    }
+                    continue;
+                }
+
+                for (int side = 0; side < SIDES; side++) {
+                    if (side == entrySide || !accepts(cell, (1 << entrySide) | (1 << side))) {
+                        continue;
+                    }
+                    int next = neighbor(cell, side);
+                    if (next < 0 || isBlocked(next) || !canExtend(next, 1 << opposite(side))) {
+                        continue;
+                    }
+
+                    int nextState = next * SIDES + side;
+                    int cost = gScore[state] + (masks[next] != 0 ? REUSE_COST : STEP_COST)
+                        + (side != heading ? TURN_COST : 0);
+                    if (visited[nextState] == search + 1) {
+                        continue;
+                    }
+                    if (visited[nextState] != search || cost < gScore[nextState]) {
+                        visited[nextState] = search;
+                        gScore[nextState] = cost;
+                        parent[nextState] = state;
+                        push(nextState, cost + manhattan(next, goal) * REUSE_COST);
+                    }
+                }
+            }
+
+            if (found < 0) {
+                return false;
+            }
+
+            // 回溯路径，为每一步两侧的单元打开对应的边
+            masks[goal] |= (byte) (1 << goalSide);
+            for (int state = found; parent[state] >= 0; state = parent[state]) {
+                int cell = state / SIDES;
+                int heading = state % SIDES;
+                masks[cell] |= (byte) (1 << opposite(heading));
+                masks[parent[state] / SIDES] |= (byte) (1 << heading);
+            }
+            masks[start] |= (byte) (1 << startSide);
+            link(start, from);
+            link(goal, to);
+            return true;
+        }
+
+        private void link(int cell, RoomDoor door) {
+            doorLinks.computeIfAbsent(cell, key -> new ArrayList<>()).add(door);
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param segments 走廊段变体，应具有相同的正方形占地
+     * @param connectors 连接上下楼层的楼梯和竖井走廊
+     * @param cellSize 单元边长
+     * @param height 走廊段高度
+     * @param random 随机生成器
+     * @param logger 日志记录器
+     * @param cancellation 取消令牌
+     */
+    @SuppressWarnings("unchecked")
+    private CorridorRouter(List<Segment> segments, List<Connector> connectors, int cellSize, int height,
+                           RandomGenerator random, Logger logger, CancellationToken cancellation) {
+        this.connectors = connectors;
+        this.cellSize = cellSize;
+        this.height = height;
+        this.random = random;
+        this.logger = logger;
+        this.cancellation = cancellation != null ? cancellation : CancellationToken.none();
+
+        List<List<Segment>> byMask = new ArrayList<>();
+        for (int mask = 0; mask < 1 << SIDES; mask++) {
+            byMask.add(new ArrayList<>());
+        }
+        for (Segment segment : segments) {
+            byMask.get(segment.openSides).add(segment);
+        }
+        this.segmentsByMask = new AliasSampler[1 << SIDES];
+        for (int mask = 0; mask < 1 << SIDES; mask++) {
+            if (!byMask.get(mask).isEmpty()) {
+                segmentsByMask[mask] = AliasSampler.of(byMask.get(mask), segment -> segment.weight);
+            }
+        }
+        this.extendable = new boolean[1 << SIDES];
+        for (int mask = 0; mask < 1 << SIDES; mask++) {
+            for (int full = mask; full < 1 << SIDES; full = (full + 1) | mask) {
+                extendable[mask] |= segmentsByMask[full] != null;
+            }
+        }
+    }
+
+    /**
+     * 根据走廊池创建路由器
+     *
+     * 只使用占地为正方形的直线、L型、T型和十字走廊，按边长分组取总权重最大的一组；
+     * 该组至少要能组成直线和转角，否则无法路由。
+     * 两扇门位于不同高度的楼梯和竖井走廊另外收集，用于连接上下楼层。
+     *
+     * @param corridorPool 走廊池
+     * @param random 随机生成器
+     * @param logger 日志记录器
+     * @param cancellation 取消令牌
+     * @return 路由器，没有可用的走廊段时返回null
+     */
+    public static CorridorRouter create(BlueprintPool<CorridorBlueprint> corridorPool, RandomGenerator random,
+                                        Logger logger, CancellationToken cancellation) {
+        Map<Integer, List<CorridorBlueprint>> bySize = new TreeMap<>();
+        Map<Integer, Double> weightBySize = new HashMap<>();
+        List<Connector> connectors = new ArrayList<>();
+        for (CorridorBlueprint corridor : corridorPool.getBlueprints()) {
+            Connector connector = toConnector(corridor);
+            if (connector != null) {
+                connectors.add(connector);
+                continue;
+            }
+            if (!isSegmentType(corridor.getCorridorType())
+                || corridor.getSizeX() != corridor.getSizeZ() || corridor.getSizeX() <= 0) {
+                continue;
+            }
+            bySize.computeIfAbsent(corridor.getSizeX(), size -> new ArrayList<>()).add(corridor);
+            weightBySize.merge(corridor.getSizeX(), BlueprintPool.selectionWeight(corridor), Double::sum);
+        }
+
+        if (bySize.isEmpty()) {
+            return null;
+        }
+
+        int bestSize = Collections.max(weightBySize.entrySet(), Map.Entry.comparingByValue()).getKey();
+        List<Segment> segments = new ArrayList<>();
+        int height = 0;
+        for (CorridorBlueprint corridor : bySize.get(bestSize)) {
+            addSegments(segments, corridor);
+            height = Math.max(height, corridor.getSizeY());
+        }
+
+        boolean straight = false;
+        boolean turn = false;
+        for (Segment segment : segments) {
+            straight |= segment.openSides == 0b0101;
+            turn |= segment.openSides == 0b0011;
+        }
+        if (!straight || !turn) {
+            return null;
+        }
+
+        return new CorridorRouter(segments, connectors, bestSize, height, random, logger, cancellation);
+    }
+
+    /**
+     * 楼梯或竖井走廊对应的垂直连接，不是垂直走廊或两扇门等高时返回null
+     */
+    private static Connector toConnector(CorridorBlueprint corridor) {
+        if (!corridor.getCorridorType().isVertical() || corridor.getDoors().size() != 2) {
+            return null;
+        }
+        int firstY = corridor.getDoors().get(0).getY();
+        int secondY = corridor.getDoors().get(1).getY();
+        if (firstY == secondY) {
+            return null;
+        }
+        return firstY < secondY
+            ? new Connector(corridor, 0, 1, secondY - firstY)
+            : new Connector(corridor, 1, 0, firstY - secondY);
+    }
+
+    /**
+     * 是否为可拼接的走廊段类型
+     */
+    private static boolean isSegmentType(CorridorBlueprint.CorridorType type) {
+        switch (type) {
+            case STRAIGHT:
+            case L_SHAPED:
+            case T_JUNCTION:
+            case CROSS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 为走廊的每个旋转角度生成变体
+     */
+    private static void addSegments(List<Segment> segments, CorridorBlueprint corridor) {
+        String[] localDoors = new String[SIDES];
+        for (DoorInfo door : corridor.getDoors()) {
+            if (localDoors[door.getDirection().ordinal()] == null) {
+                localDoors[door.getDirection().ordinal()] = door.getId();
+            }
+        }
+
+        double weight = BlueprintPool.selectionWeight(corridor) / ROTATIONS.length;
+        for (int rotation : ROTATIONS) {
+            int open = 0;
+            String[] doorIds = new String[SIDES];
+            for (DoorDirection direction : DoorDirection.values()) {
+                String doorId = localDoors[direction.ordinal()];
+                if (doorId != null) {
+                    int side = direction.rotate(rotation).ordinal();
+                    open |= 1 << side;
+                    doorIds[side] = doorId;
+                }
+            }
+            if (Integer.bitCount(open) >= 2) {
+                segments.add(new Segment(corridor, rotation, open, doorIds, weight));
+            }
+        }
+    }
+
+    /**
+     * 把已放置的房间用走廊连接起来
+     *
+     * 房间按所在高度分组，每个楼层单独路由；相邻楼层之间先放置一个楼梯或竖井走廊，
+     * 它的两扇门分别加入上下两个楼层的路由。找不到路径的房间保持未连接。
+     *
+     * @param layoutBuilder 布局构建器
+     * @param rooms 已放置的房间，列表下标与布局中的放置索引一致
+     * @param statsBuilder 统计构建器
+     * @return 放置的走廊段数量
+     * @throws CancellationToken.CancelledException 生成被取消或超时
+     */
+    public int route(DungeonLayout.Builder layoutBuilder, List<? extends Blueprint> rooms,
+                     DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        // 楼层从上到下排列，每个楼层记录参与路由的放置及其门
+        Map<Integer, Map<Integer, List<RoomDoor>>> floors = new TreeMap<>(Collections.reverseOrder());
+        for (int i = 0; i < rooms.size(); i++) {
+            DungeonLayout.Placement placement = layoutBuilder.getPlacement(i);
+            floors.computeIfAbsent(placement.getY(), key -> new LinkedHashMap<>())
+                .put(i, collectDoors(rooms.get(i), i, placement));
+        }
+
+        int placed = 0;
+        Integer upperY = null;
+        for (Map.Entry<Integer, Map<Integer, List<RoomDoor>>> floor : floors.entrySet()) {
+            if (upperY != null) {
+                placed += connectFloors(layoutBuilder, floors.get(upperY), upperY, floor.getValue(), floor.getKey(),
+                    statsBuilder);
+            }
+            upperY = floor.getKey();
+        }
+
+        for (Map.Entry<Integer, Map<Integer, List<RoomDoor>>> floor : floors.entrySet()) {
+            if (floor.getValue().size() > 1) {
+                placed += routeFloor(layoutBuilder, floor.getKey(), floor.getValue(), statsBuilder);
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * 在两个相邻楼层之间放置楼梯或竖井走廊
+     *
+     * 只使用两扇门高度差等于楼层间距的垂直走廊，从下层房间的中心向外按单元逐圈查找空闲位置，
+     * 放置后下层门加入下层的路由，上层门加入上层的路由。
+     *
+     * @return 放置的走廊数量，0 或 1
+     */
+    private int connectFloors(DungeonLayout.Builder layoutBuilder, Map<Integer, List<RoomDoor>> upperDoors, int upperY,
+                              Map<Integer, List<RoomDoor>> lowerDoors, int lowerY,
+                              DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        int rise = upperY - lowerY;
+        List<Connector> candidates = new ArrayList<>();
+        for (Connector connector : connectors) {
+            if (connector.rise == rise) {
+                candidates.add(connector);
+            }
+        }
+        if (candidates.isEmpty()) {
+            logger.warning("没有两扇门高度差为 " + rise + " 的楼梯或竖井走廊，高度 " + upperY + " 与 " + lowerY
+                + " 的楼层无法连接");
+            return 0;
+        }
+        Connector connector = random.weightedChoice(
+            AliasSampler.of(candidates, candidate -> BlueprintPool.selectionWeight(candidate.corridor)));
+        CorridorBlueprint corridor = connector.corridor;
+
+        // 下层房间的中心所在的单元
+        long sumX = 0;
+        long sumZ = 0;
+        for (int index : lowerDoors.keySet()) {
+            sumX += layoutBuilder.getPlacement(index).getX();
+            sumZ += layoutBuilder.getPlacement(index).getZ();
+        }
+        int centerX = Math.floorDiv((int) (sumX / lowerDoors.size()), cellSize);
+        int centerZ = Math.floorDiv((int) (sumZ / lowerDoors.size()), cellSize);
+        int rotationOffset = random.randomInt(0, ROTATIONS.length - 1);
+        OccupancyGrid occupancy = layoutBuilder.getOccupancy();
+
+        for (int ring = 0; ring <= CONNECTOR_SEARCH_RINGS; ring++) {
+            cancellation.throwIfCancelled();
+            for (int dz = -ring; dz <= ring; dz++) {
+                for (int dx = -ring; dx <= ring; dx++) {
+                    if (Math.max(Math.abs(dx), Math.abs(dz)) != ring) {
+                        continue;
+                    }
+                    for (int r = 0; r < ROTATIONS.length; r++) {
+                        int rotation = ROTATIONS[(r + rotationOffset) % ROTATIONS.length];
+                        // 旋转后的占地对齐到单元的最小角
+                        int[] offset = OccupancyGrid.footprint(0, 0, 0,
+                            corridor.getSizeX(), corridor.getSizeY(), corridor.getSizeZ(), rotation);
+                        int x = (centerX + dx) * cellSize - offset[0];
+                        int z = (centerZ + dz) * cellSize - offset[2];
+                        if (occupancy.overlaps(OccupancyGrid.footprint(x, lowerY, z,
+                                corridor.getSizeX(), corridor.getSizeY(), corridor.getSizeZ(), rotation))) {
+                            continue;
+                        }
+
+                        int index = layoutBuilder.addPlacement(corridor, x, lowerY, z, rotation);
+                        DungeonLayout.Placement placement = layoutBuilder.getPlacement(index);
+                        RotatedBody body = corridor.getRotatedBody(rotation);
+                        lowerDoors.put(index, Collections.singletonList(
+                            roomDoor(body, connector.lowerDoor, index, placement)));
+                        upperDoors.put(index, Collections.singletonList(
+                            roomDoor(body, connector.upperDoor, index, placement)));
+                        statsBuilder.incrementPlacement(BlueprintType.CORRIDOR, true);
+                        return 1;
+                    }
+                }
+            }
+        }
+
+        statsBuilder.incrementPlacement(BlueprintType.CORRIDOR, false);
+        logger.warning("找不到放置楼梯或竖井走廊的空闲位置，高度 " + upperY + " 与 " + lowerY + " 的楼层无法连接");
+        return 0;
+    }
+
+    /**
+     * 在一个楼层上连接房间
+     *
+     * @param doorsByRoom 参与路由的放置及其门，第一个放置作为生成树的根
+     */
+    private int routeFloor(DungeonLayout.Builder layoutBuilder, int y, Map<Integer, List<RoomDoor>> doorsByRoom,
+                           DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        // 网格覆盖楼层内的所有房间并向外多留几圈
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (int index : doorsByRoom.keySet()) {
+            int[] footprint = layoutBuilder.getPlacement(index).getFootprint();
+            minX = Math.min(minX, footprint[0]);
+            minZ = Math.min(minZ, footprint[2]);
+            maxX = Math.max(maxX, footprint[3]);
+            maxZ = Math.max(maxZ, footprint[5]);
+        }
+
+        int originX = Math.floorDiv(minX, cellSize) * cellSize - MARGIN * cellSize;
+        int originZ = Math.floorDiv(minZ, cellSize) * cellSize - MARGIN * cellSize;
+        int width = Math.min(MAX_GRID, (maxX - originX) / cellSize + MARGIN + 1);
+        int depth = Math.min(MAX_GRID, (maxZ - originZ) / cellSize + MARGIN + 1);
+
+        FloorGrid grid = new FloorGrid(y, originX, originZ, width, depth, layoutBuilder.getOccupancy());
+
+        // 生成树：从楼层中的第一个房间开始，每次接入距离最近的房间
+        List<Integer> connected = new ArrayList<>();
+        List<Integer> pending = new ArrayList<>(doorsByRoom.keySet());
+        connected.add(pending.remove(0));
+        int unreachable = 0;
+
+        while (!pending.isEmpty()) {
+            cancellation.throwIfCancelled();
+
+            int bestRoom = -1;
+            List<RoomDoor[]> bestPairs = null;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int room : pending) {
+                List<RoomDoor[]> pairs = candidatePairs(doorsByRoom.get(room), connected, doorsByRoom);
+                if (!pairs.isEmpty() && distance(pairs.get(0)) < bestDistance) {
+                    bestDistance = distance(pairs.get(0));
+                    bestRoom = room;
+                    bestPairs = pairs;
+                }
+            }
+
+            if (bestRoom < 0) {
+                // 剩余房间都没有可用的门
+                unreachable += pending.size();
+                break;
+            }
+
+            pending.remove(Integer.valueOf(bestRoom));
+            boolean routed = false;
+            for (int i = 0; i < Math.min(MAX_PAIRS_PER_ROOM, bestPairs.size()); i++) {
+                RoomDoor[] pair = bestPairs.get(i);
+                if (grid.route(pair[0], pair[1])) {
+                    pair[0].used = true;
+                    pair[1].used = true;
+                    routed = true;
+                    break;
+                }
+            }
+
+            if (routed) {
+                connected.add(bestRoom);
+            } else {
+                unreachable++;
+            }
+        }
+
+        if (unreachable > 0) {
+            logger.warning("有 " + unreachable + " 个房间无法通过走廊连接 (高度: " + y + ")");
+        }
+
+        return commit(layoutBuilder, grid, statsBuilder);
+    }
+
+    /**
+     * 计算房间上每扇门的外侧方块
+     */
+    private List<RoomDoor> collectDoors(Blueprint room, int roomIndex, DungeonLayout.Placement placement) {
+        List<RoomDoor> doors = new ArrayList<>();
+        RotatedBody body = room.getRotatedBody(placement.getRotation());
+        for (int i = 0; i < body.getDoorCount(); i++) {
+            doors.add(roomDoor(body, i, roomIndex, placement));
+        }
+        return doors;
+    }
+
+    private static RoomDoor roomDoor(RotatedBody body, int doorIndex, int roomIndex, DungeonLayout.Placement placement) {
+        int side = body.getDoorDirection(doorIndex).ordinal();
+        int x = placement.getX() + body.getDoorX(doorIndex) + STEP_X[side];
+        int z = placement.getZ() + body.getDoorZ(doorIndex) + STEP_Z[side];
+        return new RoomDoor(roomIndex, body.getDoor(doorIndex).getId(), side, x, z);
+    }
+
+    /**
+     * 待连接房间与已连接房间之间所有未使用的门对，按距离从近到远排序
+     */
+    private List<RoomDoor[]> candidatePairs(List<RoomDoor> roomDoors, List<Integer> connected,
+                                            Map<Integer, List<RoomDoor>> doorsByRoom) {
+        List<RoomDoor[]> pairs = new ArrayList<>();
+        for (RoomDoor from : roomDoors) {
+            if (from.used) {
+                continue;
+            }
+            for (int other : connected) {
+                for (RoomDoor to : doorsByRoom.get(other)) {
+                    if (!to.used) {
+                        pairs.add(new RoomDoor[]{from, to});
+                    }
+                }
+            }
+        }
+        pairs.sort((a, b) -> Integer.compare(distance(a), distance(b)));
+        return pairs;
+    }
+
+    private static int distance(RoomDoor[] pair) {
+        return Math.abs(pair[0].outX - pair[1].outX) + Math.abs(pair[0].outZ - pair[1].outZ);
+    }
+
+    /**
+     * 为每个走廊单元选择走廊段并记录门连接
+     *
+     * @return 放置的走廊段数量
+     */
+    private int commit(DungeonLayout.Builder layoutBuilder, FloorGrid grid,
+                       DungeonGenerator.GenerationStatistics.Builder statsBuilder) {
+        int cells = grid.width * grid.depth;
+        int[] indices = new int[cells];
+        Segment[] chosen = new Segment[cells];
+        Arrays.fill(indices, -1);
+        int placed = 0;
+
+        for (int cell = 0; cell < cells; cell++) {
+            if (grid.masks[cell] == 0) {
+                continue;
+            }
+            Segment segment = random.weightedChoice(segmentsByMask[grid.masks[cell]]);
+            CorridorBlueprint corridor = segment.corridor;
+
+            // 旋转后的占地对齐到单元的最小角
+            int[] offset = OccupancyGrid.footprint(0, 0, 0,
+                corridor.getSizeX(), corridor.getSizeY(), corridor.getSizeZ(), segment.rotation);
+            indices[cell] = layoutBuilder.addPlacement(corridor,
+                grid.originX + (cell % grid.width) * cellSize - offset[0], grid.y,
+                grid.originZ + (cell / grid.width) * cellSize - offset[2], segment.rotation);
+            chosen[cell] = segment;
+            statsBuilder.incrementPlacement(BlueprintType.CORRIDOR, true);
+            placed++;
+        }
+
+        // 相邻走廊段：路径经过时两侧的边同时打开，只需检查东边和南边
+        for (int cell = 0; cell < cells; cell++) {
+            if (indices[cell] < 0) {
+                continue;
+            }
+            for (int side = 1; side <= 2; side++) {
+                int next = grid.neighbor(cell, side);
+                if (next >= 0 && indices[next] >= 0 && (chosen[cell].openSides & (1 << side)) != 0) {
+                    layoutBuilder.addConnection(indices[cell], chosen[cell].doorIds[side],
+                        indices[next], chosen[next].doorIds[opposite(side)]);
+                }
+            }
+        }
+
+        // 走廊段与房间门
+        for (Map.Entry<Integer, List<RoomDoor>> entry : grid.doorLinks.entrySet()) {
+            int cell = entry.getKey();
+            for (RoomDoor door : entry.getValue()) {
+                layoutBuilder.addConnection(door.roomIndex, door.doorId,
+                    indices[cell], chosen[cell].doorIds[opposite(door.side)]);
+            }
+        }
+
+        return placed;
+    }
+
+    /**
+     * 保证寻路数组至少能容纳指定数量的状态，只在需要时按最大楼层增长
+     */
+    private void ensureSearchCapacity(int states) {
+        if (gScore.length < states) {
+            gScore = new int[states];
+            parent = new int[states];
+            visited = new int[states];
+            search = 0;
+        }
+    }
+
+    /**
+     * 开始一次新的寻路：递增搜索标记并清空开放集，旧的状态自然失效
+     */
+    private void beginSearch() {
+        search += 2;
+        if (search < 0) {
+            // 标记溢出时才真正清空一次
+            Arrays.fill(visited, 0);
+            search = 2;
+        }
+        heapSize = 0;
+    }
+
+    private void push(int node, int key) {
+        if (heapSize == heapNodes.length) {
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (heapKeys[up] <= key) {
+                break;
+            }
+            heapNodes[i] = heapNodes[up];
+            heapKeys[i] = heapKeys[up];
+            i = up;
+        }
+        heapNodes[i] = node;
+        heapKeys[i] = key;
+    }
+
+    private int pop() {
+        int result = heapNodes[0];
+        int node = heapNodes[--heapSize];
+        int key = heapKeys[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) {
+                child++;
+            }
+            if (heapKeys[child] >= key) {
+                break;
+            }
+            heapNodes[i] = heapNodes[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heapNodes[i] = node;
+        heapKeys[i] = key;
+        return result;
+    }
+
+    private static int opposite(int side) {
+        return (side + 2) % SIDES;
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public int getCellSize() { return cellSize; }
+    public int getHeight() { return height; }
+}
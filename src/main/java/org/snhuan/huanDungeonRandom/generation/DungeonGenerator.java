@@ -2,18 +2,23 @@ package org.snhuan.huanDungeonRandom.generation;
 
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
 import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
 import org.snhuan.huanDungeonRandom.blueprint.BlueprintManager;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPool;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPoolIndex;
 import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
+import org.snhuan.huanDungeonRandom.blueprint.DoorDirection;
 import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
 import org.snhuan.huanDungeonRandom.blueprint.templates.TileBlueprint;
 import org.snhuan.huanDungeonRandom.blueprint.templates.CorridorBlueprint;
 import org.snhuan.huanDungeonRandom.dungeon.DungeonInstance;
 import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+import org.snhuan.huanDungeonRandom.layout.LayoutValidator;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
@@ -32,6 +37,9 @@ import java.util.logging.Logger;
  */
 public class DungeonGenerator {
 
+    // 瓦片网格每边的最大单元数
+    private static final int MAX_TILE_GRID = 24;
+
     private final BlueprintManager blueprintManager;
     private final RandomGenerator randomGenerator;
     private final Logger logger;
@@ -39,10 +47,39 @@ public class DungeonGenerator {
     // 生成配置
     private final GenerationConfig config;
 
+    // 当前任务的取消令牌，共享的生成器使用永不取消的令牌
+    private final CancellationToken cancellation;
+
+    /**
+     * 生成模式
+     */
+    public enum GenerationMode {
+        /**
+         * 从出生房间沿门向外生长，保证连通
+         */
+        CONNECTED,
+
+        /**
+         * 在原点周围随机散布蓝图
+         */
+        SCATTER;
+
+        /**
+         * 从配置值解析生成模式，只有 connected 启用连通生长，其余值保持原来的散布模式
+         *
+         * @param value 配置值
+         * @return 生成模式
+         */
+        public static GenerationMode fromConfig(String value) {
+            return "connected".equalsIgnoreCase(value) ? CONNECTED : SCATTER;
+        }
+    }
+
     /**
      * 生成配置类
      */
     public static class GenerationConfig {
+        private final GenerationMode mode;
         private final int maxAttempts;
         private final int gridSize;
         private final int minSpacing;
@@ -50,8 +87,23 @@ public class DungeonGenerator {
         private final boolean validateConnections;
         private final double placementTolerance;
 
+        /**
+         * 构造函数（散布模式，与加入生成模式之前的行为一致）
+         */
         public GenerationConfig(int maxAttempts, int gridSize, int minSpacing,
                               boolean allowOverlap, boolean validateConnections, double placementTolerance) {
+            this(GenerationMode.SCATTER, maxAttempts, gridSize, minSpacing,
+                allowOverlap, validateConnections, placementTolerance);
+        }
+
+        /**
+         * 构造函数（指定生成模式）
+         *
+         * @param mode 生成模式，null 表示散布模式
+         */
+        public GenerationConfig(GenerationMode mode, int maxAttempts, int gridSize, int minSpacing,
+                              boolean allowOverlap, boolean validateConnections, double placementTolerance) {
+            this.mode = mode != null ? mode : GenerationMode.SCATTER;
             this.maxAttempts = maxAttempts;
             this.gridSize = gridSize;
             this.minSpacing = minSpacing;
@@ -60,11 +112,28 @@ public class DungeonGenerator {
             this.placementTolerance = placementTolerance;
         }
 
+        /**
+         * 默认配置，使用散布模式；连通模式需要通过 {@link #withMode(GenerationMode)} 或配置文件显式启用
+         *
+         * @return 默认配置
+         */
         public static GenerationConfig defaultConfig() {
             return new GenerationConfig(100, 16, 5, false, true, 0.8);
         }
 
+        /**
+         * 创建只改变生成模式的配置副本
+         *
+         * @param mode 生成模式
+         * @return 新的生成配置
+         */
+        public GenerationConfig withMode(GenerationMode mode) {
+            return new GenerationConfig(mode, maxAttempts, gridSize, minSpacing,
+                allowOverlap, validateConnections, placementTolerance);
+        }
+
         // Getters
+        public GenerationMode getMode() { return mode; }
         public int getMaxAttempts() { return maxAttempts; }
         public int getGridSize() { return gridSize; }
         public int getMinSpacing() { return minSpacing; }
@@ -105,16 +174,56 @@ public class DungeonGenerator {
         private final int successfulPlacements;
         private final int failedPlacements;
         private final Map<BlueprintType, Integer> placementCounts;
+        private final List<CandidateTiming> candidates;
+        private final int selectedCandidate;
 
         public GenerationStatistics(long startTime, long endTime, int totalAttempts,
                                    int successfulPlacements, int failedPlacements,
                                    Map<BlueprintType, Integer> placementCounts) {
+            this(startTime, endTime, totalAttempts, successfulPlacements, failedPlacements, placementCounts,
+                Collections.emptyList(), -1);
+        }
+
+        public GenerationStatistics(long startTime, long endTime, int totalAttempts,
+                                   int successfulPlacements, int failedPlacements,
+                                   Map<BlueprintType, Integer> placementCounts,
+                                   List<CandidateTiming> candidates, int selectedCandidate) {
             this.startTime = startTime;
             this.endTime = endTime;
             this.totalAttempts = totalAttempts;
             this.successfulPlacements = successfulPlacements;
             this.failedPlacements = failedPlacements;
             this.placementCounts = new HashMap<>(placementCounts);
+            this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+            this.selectedCandidate = selectedCandidate;
+        }
+
+        /**
+         * 多候选生成中单个候选的耗时和得分
+         */
+        public static class CandidateTiming {
+            private final long seed;
+            private final long durationMillis;
+            private final double score;
+            private final boolean success;
+
+            public CandidateTiming(long seed, long durationMillis, double score, boolean success) {
+                this.seed = seed;
+                this.durationMillis = durationMillis;
+                this.score = score;
+                this.success = success;
+            }
+
+            public long getSeed() { return seed; }
+            public long getDurationMillis() { return durationMillis; }
+            public double getScore() { return score; }
+            public boolean isSuccess() { return success; }
+
+            @Override
+            public String toString() {
+                return String.format("CandidateTiming{seed=%d, duration=%dms, score=%.3f, success=%s}",
+                    seed, durationMillis, score, success);
+            }
         }
 
         public long getDuration() { return endTime - startTime; }
@@ -122,6 +231,8 @@ public class DungeonGenerator {
         public int getSuccessfulPlacements() { return successfulPlacements; }
         public int getFailedPlacements() { return failedPlacements; }
         public Map<BlueprintType, Integer> getPlacementCounts() { return new HashMap<>(placementCounts); }
+        public List<CandidateTiming> getCandidates() { return candidates; }
+        public int getSelectedCandidate() { return selectedCandidate; }
 
         public double getSuccessRate() {
             return totalAttempts > 0 ? (double) successfulPlacements / totalAttempts : 0.0;
@@ -133,6 +244,8 @@ public class DungeonGenerator {
             private int successfulPlacements = 0;
             private int failedPlacements = 0;
             private final Map<BlueprintType, Integer> placementCounts = new HashMap<>();
+            private final List<CandidateTiming> candidates = new ArrayList<>();
+            private int selectedCandidate = -1;
 
             public Builder(long startTime) {
                 this.startTime = startTime;
@@ -153,10 +266,19 @@ public class DungeonGenerator {
                 }
             }
 
+            public void recordCandidate(long seed, long durationMillis, double score, boolean success) {
+                candidates.add(new CandidateTiming(seed, durationMillis, score, success));
+            }
+
+            public void selectCandidate(int index) {
+                this.selectedCandidate = index;
+            }
+
             public GenerationStatistics build(long endTime) {
                 return new GenerationStatistics(
                     startTime, endTime, totalAttempts,
-                    successfulPlacements, failedPlacements, placementCounts
+                    successfulPlacements, failedPlacements, placementCounts,
+                    candidates, selectedCandidate
                 );
             }
         }
@@ -174,6 +296,7 @@ public class DungeonGenerator {
         this.randomGenerator = randomGenerator;
         this.logger = logger;
         this.config = GenerationConfig.defaultConfig();
+        this.cancellation = CancellationToken.none();
     }
 
     /**
@@ -186,15 +309,49 @@ public class DungeonGenerator {
      */
     public DungeonGenerator(BlueprintManager blueprintManager, RandomGenerator randomGenerator,
                           Logger logger, GenerationConfig config) {
+        this(blueprintManager, randomGenerator, logger, config, CancellationToken.none());
+    }
+
+    private DungeonGenerator(BlueprintManager blueprintManager, RandomGenerator randomGenerator,
+                           Logger logger, GenerationConfig config, CancellationToken cancellation) {
         this.blueprintManager = blueprintManager;
         this.randomGenerator = randomGenerator;
         this.logger = logger;
         this.config = config != null ? config : GenerationConfig.defaultConfig();
+        this.cancellation = cancellation != null ? cancellation : CancellationToken.none();
+    }
+
+    /**
+     * 创建使用指定随机生成器的生成器副本
+     *
+     * 副本与当前生成器共享蓝图管理器和配置，但随机状态相互独立，
+     * 可在不同线程中并行生成。
+     *
+     * @param randomGenerator 随机生成器
+     * @return 新的地牢生成器
+     */
+    public DungeonGenerator withRandomGenerator(RandomGenerator randomGenerator) {
+        return new DungeonGenerator(blueprintManager, randomGenerator, logger, config);
+    }
+
+    /**
+     * 创建用于单个生成任务的生成器副本
+     *
+     * @param randomGenerator 随机生成器
+     * @param cancellation 取消令牌
+     * @return 新的地牢生成器
+     */
+    public DungeonGenerator forJob(RandomGenerator randomGenerator, CancellationToken cancellation) {
+        return new DungeonGenerator(blueprintManager, randomGenerator, logger, config, cancellation);
     }
 
     /**
      * 生成地牢实例
      *
+     * 先生成布局再立即提交为实例。提交涉及 Bukkit 对象，应在主线程调用；
+     * 需要在后台线程生成时请使用 {@link #generateLayout(DungeonTheme)} 和
+     * {@link #commitLayout(DungeonLayout, String, DungeonTheme, World, Location, UUID)}。
+     *
      * @param dungeonId 地牢ID
      * @param theme 地牢主题
      * @param world 世界
@@ -204,81 +361,352 @@ public class DungeonGenerator {
      */
     public DungeonInstance generateDungeon(String dungeonId, DungeonTheme theme,
                                          World world, Location origin, UUID createdBy) {
-        String instanceId = "dungeon_" + System.currentTimeMillis();
+        // 每个任务使用独立的随机生成器，共享的生成器只负责派生种子
+        return generateDungeon(dungeonId, theme, world, origin, createdBy, randomGenerator.forJob());
+    }
+
+    /**
+     * 使用指定随机生成器生成地牢实例
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param world 世界
+     * @param origin 原点位置
+     * @param createdBy 创建者
+     * @param random 随机生成器
+     * @return 生成的地牢实例，失败返回null
+     */
+    public DungeonInstance generateDungeon(String dungeonId, DungeonTheme theme, World world,
+                                         Location origin, UUID createdBy, RandomGenerator random) {
+        DungeonLayout layout = generateLayout(theme, random);
+        if (layout == null) {
+            return null;
+        }
+        return commitLayout(layout, dungeonId, theme, world, origin, createdBy);
+    }
+
+    /**
+     * 生成地牢布局
+     *
+     * @param theme 地牢主题
+     * @return 生成的布局，失败返回null
+     */
+    public DungeonLayout generateLayout(DungeonTheme theme) {
+        return generateLayout(theme, randomGenerator.forJob());
+    }
+
+    /**
+     * 使用指定随机生成器生成地牢布局
+     *
+     * 布局只包含相对坐标和蓝图ID，不创建任何 Bukkit 对象，可在任意线程中调用。
+     * 随机生成器的种子和蓝图注册表版本会记录到布局上，三者相同即可重现相同布局。
+     * 传入的随机生成器不能同时被其他线程使用。
+     *
+     * @param theme 地牢主题
+     * @param random 随机生成器
+     * @return 生成的布局，失败返回null
+     */
+    public DungeonLayout generateLayout(DungeonTheme theme, RandomGenerator random) {
+        return generateLayout(theme, random, cancellation);
+    }
+
+    /**
+     * 使用指定随机生成器和取消令牌生成地牢布局
+     *
+     * 生成的每个阶段都会检查令牌，令牌取消或超时后立即抛出异常并丢弃未完成的布局。
+     *
+     * @param theme 地牢主题
+     * @param random 随机生成器
+     * @param token 取消令牌
+     * @return 生成的布局，失败返回null
+     * @throws CancellationToken.CancelledException 生成被取消或超时
+     */
+    public DungeonLayout generateLayout(DungeonTheme theme, RandomGenerator random, CancellationToken token) {
+        return generateLayout(theme, random, token, null);
+    }
+
+    /**
+     * 生成地牢布局并输出统计信息
+     *
+     * 无论成功与否，放置阶段结束后都会把统计信息交给 statisticsSink；被取消或异常时不输出。
+     *
+     * @param theme 地牢主题
+     * @param random 随机生成器
+     * @param token 取消令牌
+     * @param statisticsSink 统计信息接收者，可以为null
+     * @return 生成的布局，失败返回null
+     * @throws CancellationToken.CancelledException 生成被取消或超时
+     */
+    public DungeonLayout generateLayout(DungeonTheme theme, RandomGenerator random, CancellationToken token,
+                                        Consumer<GenerationStatistics> statisticsSink) {
+        // null 与 none() 等价，先统一再比较，否则委托出去的实例会一直认为令牌不同
+        CancellationToken effectiveToken = token != null ? token : CancellationToken.none();
+        if (random != randomGenerator || effectiveToken != cancellation) {
+            return forJob(random, effectiveToken).generateLayout(theme, random, effectiveToken, statisticsSink);
+        }
+
         long startTime = System.currentTimeMillis();
 
-        logger.info("开始生成地牢: " + instanceId);
+        logger.info("开始生成地牢布局: " + theme.getId() + " (种子: " + randomGenerator.getSeed() + ")");
 
         try {
+            cancellation.throwIfCancelled();
+
             // 生成地牢参数
             RandomGenerator.GenerationParameters params = randomGenerator.generateDungeonParameters(theme);
 
-            // 创建地牢实例构建器
-            DungeonInstance.Builder instanceBuilder = DungeonInstance.builder(instanceId, dungeonId, theme, world, origin)
-                .setCreatedBy(createdBy)
-                .setCreationReason("Random Generation");
+            // 整个生成过程使用同一版本的蓝图池，生成中不再做任何筛选
+            BlueprintPoolIndex pools = blueprintManager.getPoolIndex();
+
+            // 创建布局构建器
+            DungeonLayout.Builder layoutBuilder = DungeonLayout.builder(theme.getId(), randomGenerator.getSeed(), pools.getVersion())
+                .setParameters(params)
+                .setOccupancyCellSize(config.getGridSize());
 
             // 生成统计信息
             GenerationStatistics.Builder statsBuilder = new GenerationStatistics.Builder(startTime);
 
-            // 第一阶段：放置主要房间
-            if (!placeMainRooms(instanceBuilder, theme, params, statsBuilder)) {
-                logger.severe("主要房间放置失败");
+            boolean placed;
+            if (config.getMode() == GenerationMode.CONNECTED) {
+                // 连通模式：从出生房间沿门生长
+                placed = placeConnected(layoutBuilder, theme, pools, params, statsBuilder);
+                if (!placed) {
+                    logger.severe("连通布局生成失败");
+                }
+            } else {
+                placed = placeScattered(layoutBuilder, theme, pools, params, statsBuilder);
+            }
+
+            long endTime = System.currentTimeMillis();
+            GenerationStatistics statistics = statsBuilder.build(endTime);
+            if (statisticsSink != null) {
+                statisticsSink.accept(statistics);
+            }
+            if (!placed) {
                 return null;
             }
 
-            // 第二阶段：放置走廊连接
-            if (!placeCorridors(instanceBuilder, theme, params, statsBuilder)) {
-                logger.severe("走廊连接失败");
+            // 验证和优化
+            DungeonLayout layout = layoutBuilder.build();
+            if (config.getMode() == GenerationMode.SCATTER) {
+                // 散布模式不保证每个房间都能路由成功，验证前移除孤立的房间
+                layout = pruneUnreachableRooms(layout);
+            }
+            if (config.isValidateConnections() && !validateConnections(layout)) {
+                logger.severe("连接验证失败");
                 return null;
             }
 
-            // 第三阶段：填充瓦片
-            if (!placeTiles(instanceBuilder, theme, params, statsBuilder)) {
-                logger.severe("瓦片填充失败");
+            logger.info("地牢布局生成完成: " + layout.getPlacementCount() + " 个蓝图 (耗时: " + statistics.getDuration() + "ms)");
+
+            return layout;
+
+        } catch (CancellationToken.CancelledException e) {
+            logger.warning("地牢布局生成已中止: " + e.getMessage());
+            throw e;
+        } catch (Exception e) {
+            logger.severe("地牢生成异常: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 将布局提交为地牢实例
+     *
+     * 根据蓝图ID解析蓝图，并以原点为基准转换为世界坐标。
+     * 该方法创建 Bukkit 对象，应在主线程调用。
+     *
+     * @param layout 地牢布局
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param world 世界
+     * @param origin 原点位置
+     * @param createdBy 创建者
+     * @return 地牢实例，布局中的蓝图已不存在时返回null
+     */
+    public DungeonInstance commitLayout(DungeonLayout layout, String dungeonId, DungeonTheme theme,
+                                      World world, Location origin, UUID createdBy) {
+        if (layout == null || layout.isEmpty()) {
+            logger.warning("无法提交空布局");
+            return null;
+        }
+
+        if (layout.getRegistryVersion() != blueprintManager.getRegistryVersion()) {
+            logger.warning("布局生成后蓝图注册表已变化 (布局版本: " + layout.getRegistryVersion()
+                + ", 当前版本: " + blueprintManager.getRegistryVersion() + ")");
+        }
+
+        // 放置日志按实例ID区分，同一毫秒内提交的两个实例不能使用相同的ID
+        String instanceId = "dungeon_" + UUID.randomUUID();
+
+        DungeonInstance.Builder instanceBuilder = DungeonInstance.builder(instanceId, dungeonId, theme, world, origin)
+            .setCreatedBy(createdBy)
+            .setCreationReason("Random Generation")
+            .setSeed(layout.getSeed())
+            .setRegistryVersion(layout.getRegistryVersion());
+
+        // 边界取布局的实际范围
+        int[] bounds = layout.getBounds();
+        instanceBuilder.setBounds(
+            origin.toVector().add(new Vector(bounds[0], bounds[1], bounds[2])),
+            origin.toVector().add(new Vector(bounds[3], bounds[4], bounds[5])));
+
+        for (DungeonLayout.Placement placement : layout.getPlacements()) {
+            Blueprint blueprint = blueprintManager.getBlueprint(placement.getBlueprintId());
+            if (blueprint == null) {
+                logger.severe("布局中的蓝图不存在: " + placement.getBlueprintId());
                 return null;
             }
+            instanceBuilder.addPlacedBlueprint(blueprint,
+                origin.clone().add(placement.getX(), placement.getY(), placement.getZ()), placement.getRotation());
+        }
 
-            // 第四阶段：验证和优化
-            DungeonInstance instance = instanceBuilder.build();
-            if (config.isValidateConnections() && !validateConnections(instance)) {
-                logger.severe("连接验证失败");
+        for (DungeonLayout.Connection connection : layout.getConnections()) {
+            instanceBuilder.addConnection(connection.getFromIndex(), connection.getFromDoorId(),
+                connection.getToIndex(), connection.getToDoorId());
+        }
+
+        for (Map.Entry<String, DungeonLayout.Point> entry : layout.getNamedPoints().entrySet()) {
+            DungeonLayout.Point point = entry.getValue();
+            instanceBuilder.addNamedLocation(entry.getKey(), origin.clone().add(point.getX(), point.getY(), point.getZ()));
+        }
+
+        DungeonInstance instance = instanceBuilder.build();
+        logger.info("地牢实例已提交: " + instanceId + " (种子: " + layout.getSeed() + ")");
+        return instance;
+    }
+
+    /**
+     * 以流式模式创建地牢实例
+     *
+     * 只放置出生房间及其相邻蓝图就立即提交实例，其余部分保留在返回的会话中，
+     * 由 {@link StreamingSession#expandAround} 在玩家接近时逐步展开。
+     * 创建耗时与地牢总规模无关。该方法创建 Bukkit 对象，应在主线程调用。
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param world 世界
+     * @param origin 原点位置
+     * @param createdBy 创建者
+     * @return 流式生成会话，失败返回null
+     */
+    public StreamingSession startStreaming(String dungeonId, DungeonTheme theme, World world,
+                                           Location origin, UUID createdBy) {
+        RandomGenerator random = randomGenerator.forJob();
+        long startTime = System.currentTimeMillis();
+
+        try {
+            RandomGenerator.GenerationParameters params = random.generateDungeonParameters(theme);
+            BlueprintPoolIndex pools = blueprintManager.getPoolIndex();
+
+            RoomBlueprint spawnRoom = pools.getRoomPool(theme.getId(), RoomBlueprint.RoomType.SPAWN).first();
+            if (spawnRoom == null) {
+                logger.warning("没有找到兼容的出生房间蓝图");
                 return null;
             }
 
-            long endTime = System.currentTimeMillis();
-            GenerationStatistics statistics = statsBuilder.build(endTime);
+            DungeonLayout.Builder layoutBuilder = DungeonLayout.builder(theme.getId(), random.getSeed(), pools.getVersion())
+                .setParameters(params)
+                .setOccupancyCellSize(config.getGridSize());
+            GenerationStatistics.Builder statsBuilder = new GenerationStatistics.Builder(startTime);
 
-            logger.info("地牢生成完成: " + instanceId + " (耗时: " + statistics.getDuration() + "ms)");
+            // 会话在主线程中逐步扩展，不设超时
+            ConnectedLayoutEngine engine = new ConnectedLayoutEngine(random, config, logger, CancellationToken.none());
+            ConnectedLayoutEngine.Frontier frontier = engine.begin(layoutBuilder, spawnRoom, pools, theme.getId(), params, statsBuilder);
+            engine.expandInitial(layoutBuilder, frontier, statsBuilder);
 
-            return instance;
+            DungeonInstance instance = commitLayout(layoutBuilder.build(), dungeonId, theme, world, origin, createdBy);
+            if (instance == null) {
+                return null;
+            }
+
+            logger.info("流式地牢已创建: " + instance.getInstanceId() + " (初始蓝图: " + layoutBuilder.getPlacementCount()
+                + ", 开放门: " + frontier.getOpenDoorCount() + ", 耗时: " + (System.currentTimeMillis() - startTime) + "ms)");
+
+            return new StreamingSession(instance, blueprintManager, engine, frontier, layoutBuilder, statsBuilder, logger);
 
         } catch (Exception e) {
-            logger.severe("地牢生成异常: " + e.getMessage());
+            logger.severe("流式地牢创建异常: " + e.getMessage());
             e.printStackTrace();
             return null;
         }
     }
 
     /**
-     * 放置主要房间
+     * 连通模式放置
+     *
+     * @param layoutBuilder 布局构建器
+     * @param theme 主题
+     * @param pools 蓝图池索引
+     * @param params 生成参数
+     * @param statsBuilder 统计构建器
+     * @return 是否成功
+     */
+    private boolean placeConnected(DungeonLayout.Builder layoutBuilder, DungeonTheme theme, BlueprintPoolIndex pools,
+                                 RandomGenerator.GenerationParameters params, GenerationStatistics.Builder statsBuilder) {
+        RoomBlueprint spawnRoom = pools.getRoomPool(theme.getId(), RoomBlueprint.RoomType.SPAWN).first();
+        if (spawnRoom == null) {
+            logger.warning("没有找到兼容的出生房间蓝图");
+            return false;
+        }
+
+        ConnectedLayoutEngine engine = new ConnectedLayoutEngine(randomGenerator, config, logger, cancellation);
+        return engine.grow(layoutBuilder, spawnRoom, pools, theme.getId(), params, statsBuilder);
+    }
+
+    /**
+     * 散布模式放置
      *
-     * @param instanceBuilder 实例构建器
+     * @param layoutBuilder 布局构建器
      * @param theme 主题
+     * @param pools 蓝图池索引
      * @param params 生成参数
      * @param statsBuilder 统计构建器
      * @return 是否成功
      */
-    private boolean placeMainRooms(DungeonInstance.Builder instanceBuilder, DungeonTheme theme,
+    private boolean placeScattered(DungeonLayout.Builder layoutBuilder, DungeonTheme theme, BlueprintPoolIndex pools,
                                  RandomGenerator.GenerationParameters params, GenerationStatistics.Builder statsBuilder) {
+        // 第一阶段：放置主要房间
+        List<RoomBlueprint> rooms = new ArrayList<>();
+        if (!placeMainRooms(layoutBuilder, theme, pools, params, rooms, statsBuilder)) {
+            logger.severe("主要房间放置失败");
+            return false;
+        }
+
+        // 第二阶段：放置走廊连接
+        if (!placeCorridors(layoutBuilder, theme, pools, params, rooms, statsBuilder)) {
+            logger.severe("走廊连接失败");
+            return false;
+        }
+
+        // 第三阶段：填充瓦片
+        if (!placeTiles(layoutBuilder, theme, pools, params, statsBuilder)) {
+            logger.severe("瓦片填充失败");
+            return false;
+        }
 
-        List<RoomBlueprint> roomBlueprints = blueprintManager.getBlueprintsByType(BlueprintType.ROOM)
-            .stream()
-            .map(blueprint -> (RoomBlueprint) blueprint)
-            .filter(room -> isThemeCompatible(room, theme))
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        return true;
+    }
 
-        if (roomBlueprints.isEmpty()) {
+    /**
+     * 放置主要房间
+     *
+     * @param layoutBuilder 布局构建器
+     * @param theme 主题
+     * @param pools 蓝图池索引
+     * @param params 生成参数
+     * @param rooms 输出：已放置的房间，下标与放置索引一致
+     * @param statsBuilder 统计构建器
+     * @return 是否成功
+     */
+    private boolean placeMainRooms(DungeonLayout.Builder layoutBuilder, DungeonTheme theme, BlueprintPoolIndex pools,
+                                 RandomGenerator.GenerationParameters params, List<RoomBlueprint> rooms,
+                                 GenerationStatistics.Builder statsBuilder) {
+
+        BlueprintPool<RoomBlueprint> roomPool = pools.getRoomPool(theme.getId());
+
+        if (roomPool.isEmpty()) {
             logger.warning("没有找到兼容的房间蓝图");
             return false;
         }
@@ -287,31 +715,40 @@ public class DungeonGenerator {
         int placedRooms = 0;
 
         // 首先放置出生房间
-        RoomBlueprint spawnRoom = findRoomByType(roomBlueprints, RoomBlueprint.RoomType.SPAWN);
+        RoomBlueprint spawnRoom = pools.getRoomPool(theme.getId(), RoomBlueprint.RoomType.SPAWN).first();
         if (spawnRoom != null) {
-            Location spawnLocation = instanceBuilder.getOrigin().clone();
-            instanceBuilder.addPlacedBlueprint(spawnRoom, spawnLocation, 0);
-            instanceBuilder.addNamedLocation("spawn", spawnLocation.clone().add(0, 1, 0));
+            layoutBuilder.addPlacement(spawnRoom, 0, 0, 0, 0);
+            layoutBuilder.addNamedPoint("spawn", 0, 1, 0);
+            rooms.add(spawnRoom);
             placedRooms++;
             statsBuilder.incrementPlacement(BlueprintType.ROOM, true);
         }
 
-        // 放置其他房间
+        // 放置其他房间：先选定蓝图、旋转和楼层，再整体搜索位置，卡住时回溯最近的放置
+        List<PlacementSearch.Request> requests = new ArrayList<>();
+        List<RoomBlueprint> requested = new ArrayList<>();
         for (int i = placedRooms; i < roomsToPlace; i++) {
-            RoomBlueprint room = randomGenerator.randomRoomBlueprint(roomBlueprints);
+            cancellation.throwIfCancelled();
+            RoomBlueprint room = randomGenerator.weightedChoice(roomPool.getSampler());
             if (room != null) {
-                Location roomLocation = findSuitableLocation(instanceBuilder, room);
-                if (roomLocation != null) {
-                    int rotation = randomGenerator.randomChoice(0, 90, 180, 270);
-                    instanceBuilder.addPlacedBlueprint(room, roomLocation, rotation);
-                    placedRooms++;
-                    statsBuilder.incrementPlacement(BlueprintType.ROOM, true);
-                } else {
-                    statsBuilder.incrementPlacement(BlueprintType.ROOM, false);
-                }
+                int rotation = randomGenerator.randomChoice(0, 90, 180, 270);
+                requests.add(new PlacementSearch.Request(room, rotation, randomFloorY(params)));
+                requested.add(room);
             }
         }
 
+        PlacementSearch search = new PlacementSearch(randomGenerator, config,
+            config.getMaxAttempts() * Math.max(1, requests.size()), cancellation);
+        boolean[] placed = search.placeAll(layoutBuilder, requests, params.isCompactLayout());
+        for (int i = 0; i < placed.length; i++) {
+            if (placed[i]) {
+                rooms.add(requested.get(i));
+                placedRooms++;
+            }
+            statsBuilder.incrementPlacement(BlueprintType.ROOM, placed[i]);
+        }
+
+        logger.info("放置搜索: 扩展 " + search.getExpandedNodes() + " 个节点, 回溯 " + search.getBacktracks() + " 次");
         logger.info("放置了 " + placedRooms + "/" + roomsToPlace + " 个房间");
         return placedRooms >= Math.max(1, roomsToPlace * config.getPlacementTolerance());
     }
@@ -319,36 +756,48 @@ public class DungeonGenerator {
     /**
      * 放置走廊
      *
-     * @param instanceBuilder 实例构建器
+     * 优先用 {@link CorridorRouter} 在房间的门之间寻路，沿路径铺设走廊段；
+     * 走廊池中没有可拼接的正方形走廊段时，退回随机放置。
+     *
+     * @param layoutBuilder 布局构建器
      * @param theme 主题
+     * @param pools 蓝图池索引
      * @param params 生成参数
+     * @param rooms 已放置的房间，下标与放置索引一致
      * @param statsBuilder 统计构建器
      * @return 是否成功
      */
-    private boolean placeCorridors(DungeonInstance.Builder instanceBuilder, DungeonTheme theme,
-                                 RandomGenerator.GenerationParameters params, GenerationStatistics.Builder statsBuilder) {
+    private boolean placeCorridors(DungeonLayout.Builder layoutBuilder, DungeonTheme theme, BlueprintPoolIndex pools,
+                                 RandomGenerator.GenerationParameters params, List<RoomBlueprint> rooms,
+                                 GenerationStatistics.Builder statsBuilder) {
 
-        List<CorridorBlueprint> corridorBlueprints = blueprintManager.getBlueprintsByType(BlueprintType.CORRIDOR)
-            .stream()
-            .map(blueprint -> (CorridorBlueprint) blueprint)
-            .filter(corridor -> isThemeCompatible(corridor, theme))
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        BlueprintPool<CorridorBlueprint> corridorPool = pools.getCorridorPool(theme.getId());
 
-        if (corridorBlueprints.isEmpty()) {
+        if (corridorPool.isEmpty()) {
             logger.warning("没有找到兼容的走廊蓝图");
             return true; // 走廊不是必需的
         }
 
+        CorridorRouter router = CorridorRouter.create(corridorPool, randomGenerator, logger, cancellation);
+        if (router != null) {
+            int segments = router.route(layoutBuilder, rooms, statsBuilder);
+            logger.info("沿寻路结果放置了 " + segments + " 个走廊段 (单元: " + router.getCellSize() + ")");
+            return true;
+        }
+
+        logger.warning("没有可拼接的正方形直线和L型走廊，走廊改为随机放置");
+
         int corridorsToPlace = params.getCorridorCount();
         int placedCorridors = 0;
 
         for (int i = 0; i < corridorsToPlace; i++) {
-            CorridorBlueprint corridor = randomGenerator.randomCorridorBlueprint(corridorBlueprints);
+            cancellation.throwIfCancelled();
+            CorridorBlueprint corridor = randomGenerator.weightedChoice(corridorPool.getSampler());
             if (corridor != null) {
-                Location corridorLocation = findSuitableLocation(instanceBuilder, corridor);
-                if (corridorLocation != null) {
-                    int rotation = randomGenerator.randomChoice(0, 90, 180, 270);
-                    instanceBuilder.addPlacedBlueprint(corridor, corridorLocation, rotation);
+                int rotation = randomGenerator.randomChoice(0, 90, 180, 270);
+                int[] corridorPosition = findSuitablePosition(layoutBuilder, corridor, rotation, params);
+                if (corridorPosition != null) {
+                    layoutBuilder.addPlacement(corridor, corridorPosition[0], corridorPosition[1], corridorPosition[2], rotation);
                     placedCorridors++;
                     statsBuilder.incrementPlacement(BlueprintType.CORRIDOR, true);
                 } else {
@@ -364,172 +813,243 @@ public class DungeonGenerator {
     /**
      * 放置瓦片
      *
-     * @param instanceBuilder 实例构建器
+     * 以原点为中心划出瓦片网格，被房间和走廊占用的单元保持为空，
+     * 其余单元由 {@link TileSolver} 按瓦片的门和兼容规则一次性求解，
+     * 只保留最大的连通区域，相邻瓦片之间的门直接记录为连接。
+     *
+     * @param layoutBuilder 布局构建器
      * @param theme 主题
+     * @param pools 蓝图池索引
      * @param params 生成参数
      * @param statsBuilder 统计构建器
      * @return 是否成功
      */
-    private boolean placeTiles(DungeonInstance.Builder instanceBuilder, DungeonTheme theme,
+    private boolean placeTiles(DungeonLayout.Builder layoutBuilder, DungeonTheme theme, BlueprintPoolIndex pools,
                              RandomGenerator.GenerationParameters params, GenerationStatistics.Builder statsBuilder) {
 
-        List<TileBlueprint> tileBlueprints = blueprintManager.getBlueprintsByType(BlueprintType.TILE)
-            .stream()
-            .map(blueprint -> (TileBlueprint) blueprint)
-            .filter(tile -> isThemeCompatible(tile, theme))
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        BlueprintPool<TileBlueprint> tilePool = pools.getTilePool(theme.getId());
 
-        if (tileBlueprints.isEmpty()) {
+        if (tilePool.isEmpty()) {
             logger.warning("没有找到兼容的瓦片蓝图");
             return true; // 瓦片不是必需的
         }
 
-        // 根据参数决定瓦片数量
-        int tilesToPlace = randomGenerator.randomInt(5, 15);
-        int placedTiles = 0;
+        List<TileBlueprint> tiles = selectTilePalette(tilePool);
+        if (tiles.isEmpty()) {
+            logger.warning("没有占地为正方形的瓦片蓝图，无法拼接瓦片");
+            return true;
+        }
+        int cellSize = tiles.get(0).getSizeX();
+        int height = 0;
+        double totalWeight = 0;
+        for (TileBlueprint tile : tiles) {
+            height = Math.max(height, tile.getSizeY());
+            totalWeight += BlueprintPool.selectionWeight(tile);
+        }
 
-        for (int i = 0; i < tilesToPlace; i++) {
-            TileBlueprint tile = randomGenerator.randomTileBlueprint(tileBlueprints);
-            if (tile != null) {
-                Location tileLocation = findSuitableLocation(instanceBuilder, tile);
-                if (tileLocation != null) {
-                    int rotation = randomGenerator.randomChoice(0, 90, 180, 270);
-                    instanceBuilder.addPlacedBlueprint(tile, tileLocation, rotation);
-                    placedTiles++;
-                    statsBuilder.incrementPlacement(BlueprintType.TILE, true);
-                } else {
-                    statsBuilder.incrementPlacement(BlueprintType.TILE, false);
-                }
-            }
+        // 网格覆盖已放置的蓝图并向外多留一圈，以原点为中心
+        int[] bounds = layoutBuilder.getBounds();
+        int halfX = Math.max(Math.abs(bounds[0]), Math.abs(bounds[3]));
+        int halfZ = Math.max(Math.abs(bounds[2]), Math.abs(bounds[5]));
+        int width = Math.min(MAX_TILE_GRID, 2 * (halfX / cellSize + 2));
+        int depth = Math.min(MAX_TILE_GRID, 2 * (halfZ / cellSize + 2));
+
+        // 空单元的权重与单个旋转变体的平均权重相当
+        TileSolver solver = new TileSolver(tiles, totalWeight / tiles.size() / 4, randomGenerator, cancellation);
+
+        // 每个楼层单独求解一张网格
+        int placedTiles = 0;
+        for (int floor = 0; floor < params.getFloors(); floor++) {
+            placedTiles += placeTileFloor(layoutBuilder, solver, -floor * params.getFloorHeight(),
+                width, depth, cellSize, height, statsBuilder);
         }
 
-        logger.info("放置了 " + placedTiles + "/" + tilesToPlace + " 个瓦片");
-        return true; // 瓦片放置失败不影响整体生成
+        logger.info("放置了 " + placedTiles + " 个瓦片 (网格: " + width + "x" + depth + " x " + params.getFloors() + " 层)");
+        return true;
     }
 
     /**
-     * 查找合适的放置位置
+     * 在一个楼层上求解并放置瓦片
      *
-     * @param instanceBuilder 实例构建器
-     * @param blueprint 蓝图
-     * @return 合适的位置，找不到返回null
+     * @param layoutBuilder 布局构建器
+     * @param solver 瓦片求解器
+     * @param y 楼层高度
+     * @param width 网格X方向的单元数
+     * @param depth 网格Z方向的单元数
+     * @param cellSize 单元边长
+     * @param height 瓦片高度
+     * @param statsBuilder 统计构建器
+     * @return 放置的瓦片数量
      */
-    private Location findSuitableLocation(DungeonInstance.Builder instanceBuilder, Blueprint blueprint) {
-        Location origin = instanceBuilder.getOrigin();
-        int attempts = 0;
-
-        while (attempts < config.getMaxAttempts()) {
-            // 在原点周围随机选择位置
-            int x = randomGenerator.randomInt(-50, 50) * config.getGridSize();
-            int z = randomGenerator.randomInt(-50, 50) * config.getGridSize();
-            Location candidate = origin.clone().add(x, 0, z);
-
-            // 检查位置是否合适
-            if (isLocationSuitable(instanceBuilder, blueprint, candidate)) {
-                return candidate;
+    private int placeTileFloor(DungeonLayout.Builder layoutBuilder, TileSolver solver, int y,
+                               int width, int depth, int cellSize, int height,
+                               GenerationStatistics.Builder statsBuilder) {
+        int originX = -(width / 2) * cellSize;
+        int originZ = -(depth / 2) * cellSize;
+
+        OccupancyGrid occupancy = layoutBuilder.getOccupancy();
+        boolean[] blocked = new boolean[width * depth];
+        for (int cz = 0; cz < depth; cz++) {
+            for (int cx = 0; cx < width; cx++) {
+                int x = originX + cx * cellSize;
+                int z = originZ + cz * cellSize;
+                blocked[cz * width + cx] = occupancy.overlaps(x, y, z, x + cellSize, y + height, z + cellSize);
             }
+        }
 
-            attempts++;
+        TileSolver.Solution solution = solver.solve(width, depth, blocked);
+        if (solution == null) {
+            logger.warning("瓦片求解失败 (网格: " + width + "x" + depth + ", 高度: " + y + ", 调色板: " + solver.getPaletteSize() + ")");
+            statsBuilder.incrementPlacement(BlueprintType.TILE, false);
+            return 0; // 瓦片放置失败不影响整体生成
+        }
+        solution.retainLargestComponent();
+
+        int[] indices = new int[width * depth];
+        Arrays.fill(indices, -1);
+        for (int cz = 0; cz < depth; cz++) {
+            for (int cx = 0; cx < width; cx++) {
+                TileSolver.Variant variant = solution.getVariant(cx, cz);
+                if (variant.isEmpty()) {
+                    continue;
+                }
+                // 旋转后的占地对齐到单元的最小角
+                TileBlueprint tile = variant.getTile();
+                int[] offset = OccupancyGrid.footprint(0, 0, 0,
+                    tile.getSizeX(), tile.getSizeY(), tile.getSizeZ(), variant.getRotation());
+                indices[cz * width + cx] = layoutBuilder.addPlacement(tile,
+                    originX + cx * cellSize - offset[0], y, originZ + cz * cellSize - offset[2], variant.getRotation());
+                statsBuilder.incrementPlacement(BlueprintType.TILE, true);
+            }
         }
 
-        return null;
+        // 相邻瓦片的相对两边必然同时开放，直接连接对应的门
+        for (int cz = 0; cz < depth; cz++) {
+            for (int cx = 0; cx < width; cx++) {
+                int index = indices[cz * width + cx];
+                if (index < 0) {
+                    continue;
+                }
+                TileSolver.Variant variant = solution.getVariant(cx, cz);
+                if (cx + 1 < width && indices[cz * width + cx + 1] >= 0 && variant.isOpen(DoorDirection.EAST)) {
+                    layoutBuilder.addConnection(index, variant.getDoorId(DoorDirection.EAST),
+                        indices[cz * width + cx + 1], solution.getVariant(cx + 1, cz).getDoorId(DoorDirection.WEST));
+                }
+                if (cz + 1 < depth && indices[(cz + 1) * width + cx] >= 0 && variant.isOpen(DoorDirection.SOUTH)) {
+                    layoutBuilder.addConnection(index, variant.getDoorId(DoorDirection.SOUTH),
+                        indices[(cz + 1) * width + cx], solution.getVariant(cx, cz + 1).getDoorId(DoorDirection.NORTH));
+                }
+            }
+        }
+
+        return solution.getTileCount();
     }
 
     /**
-     * 检查位置是否合适放置蓝图
+     * 选择参与求解的瓦片
      *
-     * @param instanceBuilder 实例构建器
-     * @param blueprint 蓝图
-     * @param location 位置
-     * @return 是否合适
+     * 网格单元尺寸固定，只有占地为正方形、边长相同的瓦片才能拼接；
+     * 按边长分组，取总权重最大的一组。
+     *
+     * @param tilePool 瓦片池
+     * @return 同一尺寸的瓦片，没有正方形瓦片时为空
      */
-    private boolean isLocationSuitable(DungeonInstance.Builder instanceBuilder, Blueprint blueprint, Location location) {
-        // 检查是否与已放置的蓝图冲突
-        if (!config.isAllowOverlap()) {
-            BoundingBox blueprintBounds = createBoundingBox(blueprint, location);
-
-            for (DungeonInstance.PlacedBlueprint placed : instanceBuilder.getPlacedBlueprints()) {
-                BoundingBox placedBounds = createBoundingBox(placed.getBlueprint(), placed.getLocation());
-
-                if (blueprintBounds.overlaps(placedBounds)) {
-                    return false;
-                }
+    private List<TileBlueprint> selectTilePalette(BlueprintPool<TileBlueprint> tilePool) {
+        Map<Integer, List<TileBlueprint>> bySize = new HashMap<>();
+        Map<Integer, Double> weightBySize = new HashMap<>();
+        for (TileBlueprint tile : tilePool.getBlueprints()) {
+            if (tile.getSizeX() != tile.getSizeZ() || tile.getSizeX() <= 0) {
+                continue;
             }
+            bySize.computeIfAbsent(tile.getSizeX(), size -> new ArrayList<>()).add(tile);
+            weightBySize.merge(tile.getSizeX(), BlueprintPool.selectionWeight(tile), Double::sum);
         }
 
-        // 检查最小间距
-        for (DungeonInstance.PlacedBlueprint placed : instanceBuilder.getPlacedBlueprints()) {
-            double distance = location.distance(placed.getLocation());
-            if (distance < config.getMinSpacing()) {
-                return false;
-            }
+        if (bySize.isEmpty()) {
+            return Collections.emptyList();
         }
 
-        return true;
+        int bestSize = Collections.max(weightBySize.entrySet(), Map.Entry.comparingByValue()).getKey();
+        return bySize.get(bestSize);
     }
 
     /**
-     * 创建蓝图的边界框
+     * 查找合适的放置位置
      *
+     * 从已占用区域的空闲前沿枚举候选位置，检查次数不超过最大尝试次数。
+     *
+     * @param layoutBuilder 布局构建器
      * @param blueprint 蓝图
-     * @param location 位置
-     * @return 边界框
+     * @param rotation 旋转角度
+     * @param params 生成参数
+     * @return 相对原点的位置 {x, y, z}，找不到返回null
      */
-    private BoundingBox createBoundingBox(Blueprint blueprint, Location location) {
-        Vector min = location.toVector();
-        Vector max = min.clone().add(new Vector(blueprint.getSizeX(), blueprint.getSizeY(), blueprint.getSizeZ()));
-        return new BoundingBox(min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ());
+    private int[] findSuitablePosition(DungeonLayout.Builder layoutBuilder, Blueprint blueprint, int rotation,
+                                       RandomGenerator.GenerationParameters params) {
+        PlacementSearch search = new PlacementSearch(randomGenerator, config, config.getMaxAttempts(), cancellation);
+        return search.findPosition(layoutBuilder, blueprint, rotation, randomFloorY(params), params.isCompactLayout());
     }
 
     /**
-     * 验证连接
+     * 随机选择楼层
      *
-     * @param instance 地牢实例
-     * @return 是否验证通过
+     * 多层地牢中出生层为第0层，其余楼层依次向下。
+     *
+     * @param params 生成参数
+     * @return 楼层高度
      */
-    private boolean validateConnections(DungeonInstance instance) {
-        // 检查是否有出生点
-        if (instance.getSpawnLocation() == null) {
-            logger.warning("地牢缺少出生点");
-            return false;
-        }
-
-        // 检查是否有足够的门
-        if (instance.getDoorLocations().size() < 2) {
-            logger.warning("地牢门数量不足");
-            return false;
-        }
-
-        // 这里可以添加更复杂的连通性检查
-        return true;
+    private int randomFloorY(RandomGenerator.GenerationParameters params) {
+        return params.getFloors() > 1
+            ? -randomGenerator.randomInt(0, params.getFloors() - 1) * params.getFloorHeight()
+            : 0;
     }
 
     /**
-     * 检查蓝图是否与主题兼容
+     * 移除无法从出生点到达的房间
      *
-     * @param blueprint 蓝图
-     * @param theme 主题
-     * @return 是否兼容
+     * 走廊路由失败或未能路由的楼层会留下孤立的房间，这些房间被移除而不是让整个布局验证失败。
+     *
+     * @param layout 地牢布局
+     * @return 移除孤立房间后的布局
      */
-    private boolean isThemeCompatible(Blueprint blueprint, DungeonTheme theme) {
-        String category = blueprint.getCategory().toLowerCase();
-        String themeId = theme.getId().toLowerCase();
-
-        return category.contains(themeId) || category.equals("default") || category.equals("universal");
+    private DungeonLayout pruneUnreachableRooms(DungeonLayout layout) {
+        List<DungeonLayout.Placement> removed = new ArrayList<>();
+        DungeonLayout pruned = LayoutValidator.pruneUnreachableRooms(layout, blueprintManager::getBlueprint, removed);
+        if (!removed.isEmpty()) {
+            StringBuilder rooms = new StringBuilder();
+            for (DungeonLayout.Placement placement : removed) {
+                if (rooms.length() > 0) {
+                    rooms.append(", ");
+                }
+                rooms.append(placement.getBlueprintId()).append('@')
+                    .append(placement.getX()).append(',').append(placement.getY()).append(',').append(placement.getZ());
+            }
+            logger.warning("移除了 " + removed.size() + " 个无法从出生点到达的房间: " + rooms);
+        }
+        return pruned;
     }
 
     /**
-     * 根据类型查找房间
+     * 验证连接
+     *
+     * 用 {@link LayoutValidator} 检查每个房间都能从出生点经由门连接到达，
+     * 无效的布局在放置方块之前就被拒绝。
      *
-     * @param roomBlueprints 房间蓝图列表
-     * @param roomType 房间类型
-     * @return 找到的房间蓝图，没找到返回null
+     * @param layout 地牢布局
+     * @return 是否验证通过
      */
-    private RoomBlueprint findRoomByType(List<RoomBlueprint> roomBlueprints, RoomBlueprint.RoomType roomType) {
-        return roomBlueprints.stream()
-            .filter(room -> room.getRoomType() == roomType)
-            .findFirst()
-            .orElse(null);
+    private boolean validateConnections(DungeonLayout layout) {
+        LayoutValidator.Report report = LayoutValidator.validate(layout, blueprintManager::getBlueprint);
+        if (!report.isValid()) {
+            logger.warning("布局验证失败: " + report.getMessage());
+            return false;
+        }
+
+        logger.info("布局验证通过: 可达蓝图 " + report.getReachableCount() + "/" + layout.getPlacementCount()
+            + ", 连通分量 " + report.getComponentCount() + ", 死路 " + report.getDeadEnds()
+            + ", 最大深度 " + report.getMaxDepth() + ", BOSS深度 " + report.getBossDepth()
+            + ", 出口深度 " + report.getExitDepth());
+        return true;
     }
 
     /**
@@ -0,0 +1,466 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * 生成调度器 - 有界优先级队列，控制同时进行的生成任务数量
+ *
+ * 调度规则：
+ * - 优先级高的任务先执行（玩家触发 > 普通 > 后台预生成）
+ * - 同一优先级内按请求者轮转：每个请求者排队中的第 n 个任务排在第 n 轮，
+ *   单个请求者一次提交大量任务不会饿死其他请求者
+ * - 同一轮内按提交顺序执行
+ *
+ * 一个任务可以占用多个执行名额（例如在计算线程池中并行展开多个种子的任务组），
+ * 名额不足时队首任务等待，后面的任务不会越过它执行，避免大任务组被饿死。
+ *
+ * 队列已满时，新任务会挤掉队列中优先级更低的任务；
+ * 没有可挤掉的任务时以 {@link BackpressureException} 结束，携带建议的重试时间，
+ * 调用方可以据此延后重试，而不是当作生成失败。
+ *
+ * 所有方法都是线程安全的。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class GenerationScheduler {
+
+    private static final UUID SYSTEM_REQUESTER = new UUID(0L, 0L);
+    private static final long DEFAULT_ESTIMATE_MILLIS = 2000L;
+
+    private final Logger logger;
+    private final int maxRunning;
+    private final int maxQueued;
+
+    // 调度状态（受 this 保护）
+    private final PriorityQueue<Job<?>> queue;
+    private final Map<UUID, Integer> outstandingByRequester = new HashMap<>();
+    private int running = 0;
+    private long nextSequence = 0;
+
+    // 统计信息
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong displacedCount = new AtomicLong();
+    private volatile double averageMillis = DEFAULT_ESTIMATE_MILLIS;
+
+    /**
+     * 任务优先级
+     */
+    public enum Priority {
+        /** 玩家直接触发，正在等待结果 */
+        PLAYER,
+        /** 普通请求（API、批量） */
+        NORMAL,
+        /** 后台任务（预生成） */
+        BACKGROUND
+    }
+
+    /**
+     * 排队状态监听器
+     */
+    public interface QueueListener {
+        /**
+         * 排队位置变化
+         *
+         * @param position 当前位置（从1开始）
+         * @param etaMillis 预计开始执行前的等待时间（毫秒）
+         */
+        void onQueued(int position, long etaMillis);
+    }
+
+    /**
+     * 背压信号 - 队列已满，调用方应在建议时间后重试
+     */
+    public static class BackpressureException extends RuntimeException {
+        private final int queueSize;
+        private final long retryAfterMillis;
+
+        public BackpressureException(String message, int queueSize, long retryAfterMillis) {
+            super(message);
+            this.queueSize = queueSize;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+
+        public int getQueueSize() { return queueSize; }
+        public long getRetryAfterMillis() { return retryAfterMillis; }
+    }
+
+    /**
+     * 排队中的任务
+     */
+    private static final class Job<T> {
+        private final Priority priority;
+        private final UUID requester;
+        private final int round;
+        private final long sequence;
+        private final int slots;
+        private final Supplier<CompletableFuture<T>> work;
+        private final QueueListener listener;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile boolean started = false;
+
+        private Job(Priority priority, UUID requester, int round, long sequence, int slots,
+                    Supplier<CompletableFuture<T>> work, QueueListener listener) {
+            this.priority = priority;
+            this.requester = requester;
+            this.round = round;
+            this.sequence = sequence;
+            this.slots = slots;
+            this.work = work;
+            this.listener = listener;
+        }
+
+        private int compareTo(Job<?> other) {
+            int cmp = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            if (cmp != 0) return cmp;
+            cmp = Integer.compare(round, other.round);
+            if (cmp != 0) return cmp;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param logger 日志记录器
+     * @param maxRunning 同时执行的最大任务数
+     * @param maxQueued 排队的最大任务数
+     */
+    public GenerationScheduler(Logger logger, int maxRunning, int maxQueued) {
+        this.logger = logger;
+        this.maxRunning = Math.max(1, maxRunning);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.queue = new PriorityQueue<>(Job::compareTo);
+    }
+
+    /**
+     * 提交任务
+     *
+     * 任务获得执行名额后才调用 work；work 返回的 Future 结束时归还名额。
+     * 取消返回的 Future 会把尚未开始的任务移出队列。
+     *
+     * @param priority 优先级
+     * @param requester 请求者，null 表示系统
+     * @param work 任务内容
+     * @param listener 排队状态监听器，可以为null
+     * @return 任务结果；队列已满时以 BackpressureException 结束
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, UUID requester,
+                                           Supplier<CompletableFuture<T>> work, QueueListener listener) {
+        return submit(priority, requester, 1, work, listener);
+    }
+
+    /**
+     * 提交占用多个执行名额的任务
+     *
+     * 任务会在计算线程池中同时展开多个子任务时使用，名额数应与并行的子任务数一致，
+     * 这样执行中的子任务总数不会超过线程池大小，排队位置和预计等待时间也保持准确。
+     * 名额数超过上限时按上限计算。
+     *
+     * @param priority 优先级
+     * @param requester 请求者，null 表示系统
+     * @param slots 占用的执行名额数
+     * @param work 任务内容
+     * @param listener 排队状态监听器，可以为null
+     * @return 任务结果；队列已满时以 BackpressureException 结束
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, UUID requester, int slots,
+                                           Supplier<CompletableFuture<T>> work, QueueListener listener) {
+        int reserved = Math.max(1, Math.min(slots, maxRunning));
+        UUID owner = requester != null ? requester : SYSTEM_REQUESTER;
+        Job<T> job;
+        Job<?> displaced = null;
+        boolean startNow = false;
+        int position = 0;
+        int slotsAhead = 0;
+
+        synchronized (this) {
+            if (running + reserved <= maxRunning && queue.isEmpty()) {
+                job = new Job<>(priority, owner, 0, nextSequence++, reserved, work, listener);
+                running += reserved;
+                job.started = true;
+                startNow = true;
+            } else {
+                if (queue.size() >= maxQueued) {
+                    displaced = findDisplaceable(priority);
+                    if (displaced == null) {
+                        rejectedCount.incrementAndGet();
+                        return CompletableFuture.failedFuture(new BackpressureException(
+                            "生成队列已满: " + queue.size() + "/" + maxQueued, queue.size(), estimateWaitMillis(queuedSlots() + reserved)));
+                    }
+                    queue.remove(displaced);
+                    releaseOutstanding(displaced.requester);
+                    displacedCount.incrementAndGet();
+                }
+
+                int round = outstandingByRequester.merge(owner, 1, Integer::sum) - 1;
+                job = new Job<>(priority, owner, round, nextSequence++, reserved, work, listener);
+                queue.add(job);
+                position = positionOf(job);
+                slotsAhead = slotsAhead(job);
+            }
+        }
+
+        if (displaced != null) {
+            displaced.result.completeExceptionally(new BackpressureException(
+                "生成任务被更高优先级的任务挤出队列", maxQueued, estimateWaitMillis(maxQueued)));
+        }
+
+        if (startNow) {
+            start(job);
+        } else {
+            if (listener != null) {
+                listener.onQueued(position, estimateWaitMillis(slotsAhead));
+            }
+            Job<T> queued = job;
+            job.result.whenComplete((value, error) -> {
+                if (!queued.started) {
+                    synchronized (this) {
+                        if (queue.remove(queued)) {
+                            releaseOutstanding(queued.requester);
+                        }
+                    }
+                }
+            });
+        }
+
+        return job.result;
+    }
+
+    /**
+     * 开始执行任务
+     */
+    private <T> void start(Job<T> job) {
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<T> execution;
+        try {
+            execution = job.work.get();
+        } catch (Exception e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+
+        // 调用方取消结果时同时取消正在执行的任务
+        CompletableFuture<T> task = execution;
+        job.result.whenComplete((value, error) -> task.cancel(true));
+        execution.whenComplete((value, error) -> {
+            recordDuration(System.currentTimeMillis() - startTime);
+            if (error != null) {
+                job.result.completeExceptionally(error);
+            } else {
+                job.result.complete(value);
+            }
+            completedCount.incrementAndGet();
+            onFinished(job.slots);
+        });
+    }
+
+    /**
+     * 任务结束后归还名额并启动名额足够的后续任务
+     *
+     * @param slots 归还的名额数
+     */
+    private void onFinished(int slots) {
+        List<Job<?>> started = new ArrayList<>();
+        List<Job<?>> waiting = null;
+        synchronized (this) {
+            running -= slots;
+            Job<?> next;
+            while ((next = pollNext()) != null) {
+                running += next.slots;
+                started.add(next);
+            }
+            if (!started.isEmpty()) {
+                waiting = listenersInOrder();
+            }
+        }
+
+        for (Job<?> next : started) {
+            start(next);
+        }
+
+        // 通知排队中的任务新的位置
+        if (waiting != null) {
+            int slotsAhead = 0;
+            for (int i = 0; i < waiting.size(); i++) {
+                Job<?> job = waiting.get(i);
+                slotsAhead += job.slots;
+                if (job.listener != null) {
+                    job.listener.onQueued(i + 1, estimateWaitMillis(slotsAhead));
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出下一个可执行的任务（调用方持有锁）
+     *
+     * 队首任务所需的名额不足时返回null，后面的任务也不会越过它执行。
+     */
+    private Job<?> pollNext() {
+        Job<?> job;
+        while ((job = queue.peek()) != null) {
+            if (job.result.isDone()) {
+                queue.poll();
+                releaseOutstanding(job.requester);
+                continue;
+            }
+            if (running + job.slots > maxRunning) {
+                return null;
+            }
+            queue.poll();
+            releaseOutstanding(job.requester);
+            job.started = true;
+            return job;
+        }
+        return null;
+    }
+
+    /**
+     * 找到队列中优先级低于给定优先级、最晚执行的任务（调用方持有锁）
+     */
+    private Job<?> findDisplaceable(Priority priority) {
+        Job<?> candidate = null;
+        for (Job<?> job : queue) {
+            if (job.priority.ordinal() > priority.ordinal()
+                && (candidate == null || job.compareTo(candidate) > 0)) {
+                candidate = job;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * 计算任务在队列中的位置（调用方持有锁）
+     */
+    private int positionOf(Job<?> target) {
+        int position = 1;
+        for (Job<?> job : queue) {
+            if (job != target && job.compareTo(target) < 0) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * 计算排在任务之前（含任务本身）需要的执行名额总数（调用方持有锁）
+     */
+    private int slotsAhead(Job<?> target) {
+        int slots = target.slots;
+        for (Job<?> job : queue) {
+            if (job != target && job.compareTo(target) < 0) {
+                slots += job.slots;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * 计算排队任务需要的执行名额总数（调用方持有锁）
+     */
+    private int queuedSlots() {
+        int slots = 0;
+        for (Job<?> job : queue) {
+            slots += job.slots;
+        }
+        return slots;
+    }
+
+    /**
+     * 按执行顺序列出排队任务，没有任何监听器时返回null（调用方持有锁）
+     */
+    private List<Job<?>> listenersInOrder() {
+        boolean anyListener = false;
+        for (Job<?> job : queue) {
+            if (job.listener != null) {
+                anyListener = true;
+                break;
+            }
+        }
+        if (!anyListener) {
+            return null;
+        }
+        List<Job<?>> ordered = new ArrayList<>(queue);
+        ordered.sort(Job::compareTo);
+        return ordered;
+    }
+
+    private void releaseOutstanding(UUID requester) {
+        outstandingByRequester.computeIfPresent(requester, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void recordDuration(long millis) {
+        averageMillis = averageMillis * 0.8 + millis * 0.2;
+    }
+
+    /**
+     * 估算任务开始执行前需要等待的时间
+     *
+     * 每个任务只占用一个名额时，名额数就是队列位置。
+     *
+     * @param slotsAhead 排在任务之前（含任务本身）需要的执行名额总数
+     * @return 预计等待时间（毫秒）
+     */
+    public long estimateWaitMillis(int slotsAhead) {
+        int rounds = (slotsAhead + maxRunning - 1) / maxRunning;
+        return Math.round(rounds * averageMillis);
+    }
+
+    /**
+     * 检查是否还能接受新任务而不产生背压
+     *
+     * @return 是否可以接受
+     */
+    public synchronized boolean canAccept() {
+        return running < maxRunning || queue.size() < maxQueued;
+    }
+
+    /**
+     * 检查当前是否有空闲的执行名额
+     *
+     * @return 是否有空闲名额
+     */
+    public synchronized boolean hasFreeSlot() {
+        return running < maxRunning && queue.isEmpty();
+    }
+
+    /**
+     * 取消所有排队中的任务
+     */
+    public void cancelQueued() {
+        List<Job<?>> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(queue);
+            queue.clear();
+            outstandingByRequester.clear();
+        }
+        for (Job<?> job : cancelled) {
+            job.result.cancel(false);
+        }
+        if (!cancelled.isEmpty()) {
+            logger.info("已取消 " + cancelled.size() + " 个排队中的生成任务");
+        }
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public synchronized int getRunningCount() { return running; }
+    public synchronized int getQueuedCount() { return queue.size(); }
+    public int getMaxRunning() { return maxRunning; }
+    public int getMaxQueued() { return maxQueued; }
+    public long getCompletedCount() { return completedCount.get(); }
+    public long getRejectedCount() { return rejectedCount.get(); }
+    public long getDisplacedCount() { return displacedCount.get(); }
+    public long getAverageMillis() { return Math.round(averageMillis); }
+}
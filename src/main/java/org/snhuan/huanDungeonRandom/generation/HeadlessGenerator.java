@@ -0,0 +1,498 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintManager;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+import org.snhuan.huanDungeonRandom.utils.ExecutorFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 无服务器批量生成器 - 在服务器之外批量生成布局并输出统计，用于调整主题和测量生成吞吐量
+ *
+ * 数据目录与插件数据文件夹结构相同：
+ * - blueprints/&lt;类型&gt;/*.yml 蓝图文件
+ * - themes/*.yml 主题文件
+ *
+ * 每个主题以 N 个种子在所有核心上并行生成，只调用 {@link DungeonGenerator#generateLayout}，
+ * 不需要世界或插件实例。输出目录中写入：
+ * - statistics.csv 每次生成一行（耗时、尝试次数、成功率等）
+ * - summary.json 按主题汇总的成功率、耗时分位数和吞吐量
+ * - layouts/&lt;主题&gt;-&lt;序号&gt;.json 生成的布局（--no-layouts 时跳过）
+ *
+ * 用法：
+ * <pre>
+ * java -cp &lt;插件jar&gt;:&lt;paper-api jar&gt; org.snhuan.huanDungeonRandom.generation.HeadlessGenerator \
+ *     --data &lt;数据目录&gt; --out &lt;输出目录&gt; [--seeds 100] [--threads 核心数] [--theme 主题ID]
+ *     [--base-seed 0] [--mode connected|scatter] [--timeout 30] [--no-layouts] [--verbose]
+ * </pre>
+ * 或者 {@code mvn -Pheadless compile exec:java -Dexec.args="--data ... --out ..."}。
+ *
+ * 退出码：0 全部执行完成（单个布局失败只记录在统计中），1 有生成任务异常，2 参数或数据错误。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class HeadlessGenerator {
+
+    private static final Logger logger = Logger.getLogger("HuanDungeonRandom");
+
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+    private static final int DEFAULT_SEEDS = 100;
+    private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private static final String CSV_HEADER = "theme,index,seed,success,duration_ms,attempts,successful_placements,"
+        + "failed_placements,success_rate,placements,connections,doors,error";
+
+    /**
+     * 私有构造函数，防止实例化工具类
+     */
+    private HeadlessGenerator() {
+        throw new UnsupportedOperationException("工具类不能被实例化");
+    }
+
+    /**
+     * 命令行参数
+     */
+    static final class Options {
+        File dataFolder;
+        File outputFolder;
+        int seeds = DEFAULT_SEEDS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String themeId;
+        long baseSeed;
+        DungeonGenerator.GenerationMode mode = DungeonGenerator.GenerationMode.CONNECTED;
+        int timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+        boolean writeLayouts = true;
+        boolean verbose;
+
+        /**
+         * 解析命令行参数
+         *
+         * @throws IllegalArgumentException 参数无效
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--no-layouts":
+                        options.writeLayouts = false;
+                        continue;
+                    case "--verbose":
+                        options.verbose = true;
+                        continue;
+                    default:
+                        break;
+                }
+
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("参数缺少值: " + arg);
+                }
+                String value = args[++i];
+                try {
+                    switch (arg) {
+                        case "--data": options.dataFolder = new File(value); break;
+                        case "--out": options.outputFolder = new File(value); break;
+                        case "--seeds": options.seeds = Integer.parseInt(value); break;
+                        case "--threads": options.threads = Integer.parseInt(value); break;
+                        case "--theme": options.themeId = value; break;
+                        case "--base-seed": options.baseSeed = Long.parseLong(value); break;
+                        case "--timeout": options.timeoutSeconds = Integer.parseInt(value); break;
+                        case "--mode": options.mode = DungeonGenerator.GenerationMode.valueOf(value.toUpperCase()); break;
+                        default:
+                            throw new IllegalArgumentException("未知参数: " + arg);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("参数值无效: " + arg + " " + value);
+                } catch (IllegalArgumentException e) {
+                    if (arg.equals("--mode")) {
+                        throw new IllegalArgumentException("未知的生成模式: " + value);
+                    }
+                    throw e;
+                }
+            }
+
+            if (options.dataFolder == null || options.outputFolder == null) {
+                throw new IllegalArgumentException("必须指定 --data 和 --out");
+            }
+            if (options.seeds <= 0 || options.threads <= 0 || options.timeoutSeconds <= 0) {
+                throw new IllegalArgumentException("--seeds、--threads 和 --timeout 必须大于0");
+            }
+            return options;
+        }
+    }
+
+    /**
+     * 单次生成的结果
+     */
+    private static final class Run {
+        final String themeId;
+        final int index;
+        final long seed;
+        final DungeonLayout layout;
+        final DungeonGenerator.GenerationStatistics statistics;
+        final long durationMillis;
+        final String error;
+
+        Run(String themeId, int index, long seed, DungeonLayout layout,
+            DungeonGenerator.GenerationStatistics statistics, long durationMillis, String error) {
+            this.themeId = themeId;
+            this.index = index;
+            this.seed = seed;
+            this.layout = layout;
+            this.statistics = statistics;
+            this.durationMillis = durationMillis;
+            this.error = error;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * 执行批量生成
+     *
+     * @param args 命令行参数
+     * @return 退出码
+     */
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("用法: --data <数据目录> --out <输出目录> [--seeds N] [--threads N] [--theme ID]"
+                + " [--base-seed S] [--mode connected|scatter] [--timeout 秒] [--no-layouts] [--verbose]");
+            return 2;
+        }
+
+        configureLogging(options.verbose);
+
+        BlueprintManager blueprintManager = new BlueprintManager(new File(options.dataFolder, "blueprints"), logger);
+        if (!blueprintManager.initialize()) {
+            System.err.println("蓝图加载失败: " + options.dataFolder);
+            return 2;
+        }
+
+        ExecutorService executor = null;
+        try {
+            List<DungeonTheme> themes = loadThemes(new File(options.dataFolder, "themes"), options.themeId);
+            if (themes.isEmpty()) {
+                System.err.println("没有可用的主题: " + options.dataFolder);
+                return 2;
+            }
+
+            File layoutFolder = new File(options.outputFolder, "layouts");
+            if (!options.outputFolder.isDirectory() && !options.outputFolder.mkdirs()
+                || options.writeLayouts && !layoutFolder.isDirectory() && !layoutFolder.mkdirs()) {
+                System.err.println("无法创建输出目录: " + options.outputFolder);
+                return 2;
+            }
+
+            DungeonGenerator.GenerationConfig defaults = DungeonGenerator.GenerationConfig.defaultConfig();
+            DungeonGenerator generator = new DungeonGenerator(blueprintManager, new RandomGenerator(options.baseSeed),
+                logger, new DungeonGenerator.GenerationConfig(options.mode, defaults.getMaxAttempts(),
+                    defaults.getGridSize(), defaults.getMinSpacing(), defaults.isAllowOverlap(),
+                    defaults.isValidateConnections(), defaults.getPlacementTolerance()));
+
+            System.out.println("蓝图: " + blueprintManager.getTotalBlueprintCount() + "，主题: " + themes.size()
+                + "，每个主题种子数: " + options.seeds + "，线程数: " + options.threads);
+
+            // 所有主题的所有种子一次性提交，线程池按核心数并行执行
+            executor = ExecutorFactory.newComputeExecutor("HeadlessGenerator", options.threads);
+            long wallStart = System.nanoTime();
+            List<Future<Run>> futures = new ArrayList<>(themes.size() * options.seeds);
+            for (DungeonTheme theme : themes) {
+                for (int i = 0; i < options.seeds; i++) {
+                    int index = i;
+                    long seed = options.baseSeed + i * SEED_STRIDE;
+                    futures.add(executor.submit(() -> generate(generator, theme, index, seed, options.timeoutSeconds)));
+                }
+            }
+
+            List<Run> runs = new ArrayList<>(futures.size());
+            for (Future<Run> future : futures) {
+                runs.add(future.get());
+            }
+            long wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+
+            writeStatistics(new File(options.outputFolder, "statistics.csv"), runs);
+            writeSummary(new File(options.outputFolder, "summary.json"), themes, runs, options, wallMillis);
+            if (options.writeLayouts) {
+                for (Run run : runs) {
+                    if (run.layout != null) {
+                        writeText(new File(layoutFolder, run.themeId + "-" + run.index + ".json"), layoutToJson(run.layout));
+                    }
+                }
+            }
+
+            long succeeded = runs.stream().filter(run -> run.layout != null).count();
+            long errors = runs.stream().filter(run -> run.error != null).count();
+            System.out.println("完成: " + succeeded + "/" + runs.size() + " 个布局，耗时 " + wallMillis + "ms ("
+                + String.format("%.1f", runs.size() * 1000.0 / Math.max(1, wallMillis)) + " 个/秒)，输出: "
+                + options.outputFolder.getPath());
+            return errors > 0 ? 1 : 0;
+
+        } catch (Exception e) {
+            System.err.println("批量生成失败: " + e.getMessage());
+            e.printStackTrace();
+            return 1;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            blueprintManager.shutdown();
+        }
+    }
+
+    /**
+     * 生成单个布局并计时
+     */
+    private static Run generate(DungeonGenerator generator, DungeonTheme theme, int index, long seed, int timeoutSeconds) {
+        DungeonGenerator.GenerationStatistics[] statistics = new DungeonGenerator.GenerationStatistics[1];
+        long start = System.nanoTime();
+        DungeonLayout layout = null;
+        String error = null;
+        try {
+            layout = generator.generateLayout(theme, new RandomGenerator(seed),
+                CancellationToken.withTimeout(timeoutSeconds * 1000L), stats -> statistics[0] = stats);
+        } catch (CancellationToken.CancelledException e) {
+            error = "中止: " + e.getMessage();
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+        long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new Run(theme.getId(), index, seed, layout, statistics[0], duration, error);
+    }
+
+    /**
+     * 加载主题文件夹中的主题
+     *
+     * @param themesFolder 主题文件夹
+     * @param themeId 只加载该主题，为null时加载全部
+     * @return 主题列表，按ID排序
+     */
+    private static List<DungeonTheme> loadThemes(File themesFolder, String themeId) {
+        List<DungeonTheme> themes = new ArrayList<>();
+        File[] files = themesFolder.listFiles((dir, name) -> name.endsWith(".yml") || name.endsWith(".yaml"));
+        if (files == null) {
+            logger.warning("主题文件夹不存在: " + themesFolder.getPath());
+            return themes;
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            try {
+                DungeonTheme theme = DungeonTheme.fromConfig(YamlConfiguration.loadConfiguration(file));
+                if (themeId == null || themeId.equals(theme.getId())) {
+                    themes.add(theme);
+                }
+            } catch (Exception e) {
+                logger.warning("加载主题文件失败: " + file.getName() + " - " + e.getMessage());
+            }
+        }
+        return themes;
+    }
+
+    /**
+     * 关闭生成过程中的信息日志，只保留警告和错误
+     */
+    private static void configureLogging(boolean verbose) {
+        Level level = verbose ? Level.INFO : Level.WARNING;
+        Logger root = Logger.getLogger("");
+        root.setLevel(level);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(level);
+        }
+    }
+
+    // ==================== 输出 ====================
+
+    private static void writeStatistics(File file, List<Run> runs) throws IOException {
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (Run run : runs) {
+            DungeonGenerator.GenerationStatistics stats = run.statistics;
+            csv.append(csvField(run.themeId)).append(',')
+                .append(run.index).append(',')
+                .append(run.seed).append(',')
+                .append(run.layout != null).append(',')
+                .append(run.durationMillis).append(',')
+                .append(stats != null ? stats.getTotalAttempts() : 0).append(',')
+                .append(stats != null ? stats.getSuccessfulPlacements() : 0).append(',')
+                .append(stats != null ? stats.getFailedPlacements() : 0).append(',')
+                .append(String.format("%.4f", stats != null ? stats.getSuccessRate() : 0.0)).append(',')
+                .append(run.layout != null ? run.layout.getPlacementCount() : 0).append(',')
+                .append(run.layout != null ? run.layout.getConnections().size() : 0).append(',')
+                .append(run.layout != null ? run.layout.getDoorCount() : 0).append(',')
+                .append(run.error != null ? csvField(run.error) : "")
+                .append('\n');
+        }
+        writeText(file, csv.toString());
+    }
+
+    private static void writeSummary(File file, List<DungeonTheme> themes, List<Run> runs,
+                                     Options options, long wallMillis) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"seedsPerTheme\": ").append(options.seeds).append(",\n");
+        json.append("  \"threads\": ").append(options.threads).append(",\n");
+        json.append("  \"mode\": ").append(jsonString(options.mode.name())).append(",\n");
+        json.append("  \"wallMillis\": ").append(wallMillis).append(",\n");
+        json.append("  \"layoutsPerSecond\": ")
+            .append(String.format("%.3f", runs.size() * 1000.0 / Math.max(1, wallMillis))).append(",\n");
+        json.append("  \"themes\": [");
+
+        for (int t = 0; t < themes.size(); t++) {
+            String themeId = themes.get(t).getId();
+            List<Run> themeRuns = new ArrayList<>();
+            for (Run run : runs) {
+                if (run.themeId.equals(themeId)) {
+                    themeRuns.add(run);
+                }
+            }
+
+            long[] durations = new long[themeRuns.size()];
+            int succeeded = 0;
+            long attempts = 0;
+            long placements = 0;
+            for (int i = 0; i < themeRuns.size(); i++) {
+                Run run = themeRuns.get(i);
+                durations[i] = run.durationMillis;
+                if (run.layout != null) {
+                    succeeded++;
+                }
+                if (run.statistics != null) {
+                    attempts += run.statistics.getTotalAttempts();
+                    placements += run.statistics.getSuccessfulPlacements();
+                }
+            }
+            Arrays.sort(durations);
+
+            json.append(t == 0 ? "\n" : ",\n");
+            json.append("    {\"theme\": ").append(jsonString(themeId))
+                .append(", \"runs\": ").append(themeRuns.size())
+                .append(", \"succeeded\": ").append(succeeded)
+                .append(", \"successRate\": ").append(String.format("%.4f", (double) succeeded / Math.max(1, themeRuns.size())))
+                .append(", \"placementSuccessRate\": ").append(String.format("%.4f", attempts > 0 ? (double) placements / attempts : 0.0))
+                .append(", \"meanMillis\": ").append(String.format("%.2f", Arrays.stream(durations).average().orElse(0)))
+                .append(", \"p50Millis\": ").append(percentile(durations, 0.50))
+                .append(", \"p95Millis\": ").append(percentile(durations, 0.95))
+                .append(", \"maxMillis\": ").append(durations.length > 0 ? durations[durations.length - 1] : 0)
+                .append('}');
+        }
+        json.append("\n  ]\n}\n");
+        writeText(file, json.toString());
+    }
+
+    /**
+     * 把布局转换为 JSON
+     */
+    static String layoutToJson(DungeonLayout layout) {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"theme\": ").append(jsonString(layout.getThemeId())).append(",\n");
+        json.append("  \"seed\": ").append(layout.getSeed()).append(",\n");
+        json.append("  \"registryVersion\": ").append(layout.getRegistryVersion()).append(",\n");
+        json.append("  \"bounds\": ").append(Arrays.toString(layout.getBounds())).append(",\n");
+
+        json.append("  \"placements\": [");
+        List<DungeonLayout.Placement> placements = layout.getPlacements();
+        for (int i = 0; i < placements.size(); i++) {
+            DungeonLayout.Placement placement = placements.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                .append("    {\"blueprint\": ").append(jsonString(placement.getBlueprintId()))
+                .append(", \"type\": ").append(jsonString(placement.getType().name()))
+                .append(", \"x\": ").append(placement.getX())
+                .append(", \"y\": ").append(placement.getY())
+                .append(", \"z\": ").append(placement.getZ())
+                .append(", \"rotation\": ").append(placement.getRotation())
+                .append('}');
+        }
+        json.append("\n  ],\n");
+
+        json.append("  \"connections\": [");
+        List<DungeonLayout.Connection> connections = layout.getConnections();
+        for (int i = 0; i < connections.size(); i++) {
+            DungeonLayout.Connection connection = connections.get(i);
+            json.append(i == 0 ? "\n" : ",\n")
+                .append("    {\"from\": ").append(connection.getFromIndex())
+                .append(", \"fromDoor\": ").append(jsonString(connection.getFromDoorId()))
+                .append(", \"to\": ").append(connection.getToIndex())
+                .append(", \"toDoor\": ").append(jsonString(connection.getToDoorId()))
+                .append('}');
+        }
+        json.append("\n  ],\n");
+
+        json.append("  \"namedPoints\": {");
+        boolean first = true;
+        for (Map.Entry<String, DungeonLayout.Point> entry : layout.getNamedPoints().entrySet()) {
+            DungeonLayout.Point point = entry.getValue();
+            json.append(first ? "\n" : ",\n")
+                .append("    ").append(jsonString(entry.getKey())).append(": [")
+                .append(point.getX()).append(", ").append(point.getY()).append(", ").append(point.getZ()).append(']');
+            first = false;
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String jsonString(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        escaped.append(c);
+                    }
+            }
+        }
+        return escaped.append('"').toString();
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"").replace('\n', ' ') + '"';
+    }
+
+    private static void writeText(File file, String text) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8)) {
+            writer.print(text);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 空间占用网格 - 为蓝图放置提供近似常数时间的重叠和间距查询
+ *
+ * 实现方式：
+ * - 以 cellSize 为边长把空间划分为网格单元，单元键打包为 long
+ * - 每个单元记录与其相交的包围盒索引，查询时只检查被覆盖单元中的包围盒
+ * - 包围盒坐标以 int 数组连续存储，避免每次查询创建 BoundingBox
+ * - 蓝图锚点单独建立索引，用于最小间距检查
+ * - Y 轴与 X/Z 轴一样划分单元，多层地牢的各个楼层落在不同的单元中，
+ *   查询只访问被覆盖的单元，代价与楼层数和已放置蓝图的总数无关
+ *
+ * 所有坐标均为方块坐标，包围盒的最大值为不包含边界（半开区间）。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class OccupancyGrid {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int cellSize;
+
+    // 单元 -> [数量, 包围盒索引...]
+    private final Map<Long, int[]> cells;
+
+    // 单元 -> [数量, x, y, z, x, y, z...]
+    private final Map<Long, int[]> anchorCells;
+
+    // 包围盒数据，每个包围盒占 6 个 int：minX, minY, minZ, maxX, maxY, maxZ
+    private int[] boxes;
+    private int boxCount;
+    private int anchorCount;
+
+    /**
+     * 构造函数
+     *
+     * @param cellSize 网格单元边长（方块）
+     */
+    public OccupancyGrid(int cellSize) {
+        this.cellSize = Math.max(1, cellSize);
+        this.cells = new HashMap<>();
+        this.anchorCells = new HashMap<>();
+        this.boxes = new int[INITIAL_CAPACITY * 6];
+        this.boxCount = 0;
+        this.anchorCount = 0;
+    }
+
+    /**
+     * 计算蓝图旋转后占据的包围盒
+     *
+     * 旋转规则与 DungeonInstance 中门和功能点的旋转保持一致：
+     * 90 度时 (x, z) -> (-z, x)，180 度时 (x, z) -> (-x, -z)，270 度时 (x, z) -> (z, -x)。
+     *
+     * @param x 放置位置X
+     * @param y 放置位置Y
+     * @param z 放置位置Z
+     * @param sizeX 蓝图X轴尺寸
+     * @param sizeY 蓝图Y轴尺寸
+     * @param sizeZ 蓝图Z轴尺寸
+     * @param rotation 旋转角度（0, 90, 180, 270）
+     * @return 包围盒 {minX, minY, minZ, maxX, maxY, maxZ}，最大值不包含
+     */
+    public static int[] footprint(int x, int y, int z, int sizeX, int sizeY, int sizeZ, int rotation) {
+        switch (((rotation % 360) + 360) % 360) {
+            case 90:
+                return new int[]{x - sizeZ + 1, y, z, x + 1, y + sizeY, z + sizeX};
+            case 180:
+                return new int[]{x - sizeX + 1, y, z - sizeZ + 1, x + 1, y + sizeY, z + 1};
+            case 270:
+                return new int[]{x, y, z - sizeX + 1, x + sizeZ, y + sizeY, z + 1};
+            default:
+                return new int[]{x, y, z, x + sizeX, y + sizeY, z + sizeZ};
+        }
+    }
+
+    /**
+     * 检查包围盒是否与已占用区域重叠
+     *
+     * @param minX 最小X
+     * @param minY 最小Y
+     * @param minZ 最小Z
+     * @param maxX 最大X（不包含）
+     * @param maxY 最大Y（不包含）
+     * @param maxZ 最大Z（不包含）
+     * @return 是否重叠
+     */
+    public boolean overlaps(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (boxCount == 0 || minX >= maxX || minY >= maxY || minZ >= maxZ) {
+            return false;
+        }
+
+        int cellMinX = cell(minX), cellMaxX = cell(maxX - 1);
+        int cellMinY = cell(minY), cellMaxY = cell(maxY - 1);
+        int cellMinZ = cell(minZ), cellMaxZ = cell(maxZ - 1);
+
+        for (int cx = cellMinX; cx <= cellMaxX; cx++) {
+            for (int cy = cellMinY; cy <= cellMaxY; cy++) {
+                for (int cz = cellMinZ; cz <= cellMaxZ; cz++) {
+                    int[] entries = cells.get(key(cx, cy, cz));
+                    if (entries == null) {
+                        continue;
+                    }
+
+                    for (int i = 1; i <= entries[0]; i++) {
+                        int offset = entries[i] * 6;
+                        if (minX < boxes[offset + 3] && maxX > boxes[offset]
+                            && minY < boxes[offset + 4] && maxY > boxes[offset + 1]
+                            && minZ < boxes[offset + 5] && maxZ > boxes[offset + 2]) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 检查包围盒是否与已占用区域重叠
+     *
+     * @param box 包围盒 {minX, minY, minZ, maxX, maxY, maxZ}
+     * @return 是否重叠
+     */
+    public boolean overlaps(int[] box) {
+        return overlaps(box[0], box[1], box[2], box[3], box[4], box[5]);
+    }
+
+    /**
+     * 占用一个包围盒
+     *
+     * @param minX 最小X
+     * @param minY 最小Y
+     * @param minZ 最小Z
+     * @param maxX 最大X（不包含）
+     * @param maxY 最大Y（不包含）
+     * @param maxZ 最大Z（不包含）
+     * @return 包围盒索引
+     */
+    public int occupy(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int index = boxCount++;
+        int offset = index * 6;
+        if (offset + 6 > boxes.length) {
+            int[] grown = new int[boxes.length * 2];
+            System.arraycopy(boxes, 0, grown, 0, boxes.length);
+            boxes = grown;
+        }
+
+        boxes[offset] = minX;
+        boxes[offset + 1] = minY;
+        boxes[offset + 2] = minZ;
+        boxes[offset + 3] = maxX;
+        boxes[offset + 4] = maxY;
+        boxes[offset + 5] = maxZ;
+
+        if (minX >= maxX || minY >= maxY || minZ >= maxZ) {
+            return index;
+        }
+
+        for (int cx = cell(minX); cx <= cell(maxX - 1); cx++) {
+            for (int cy = cell(minY); cy <= cell(maxY - 1); cy++) {
+                for (int cz = cell(minZ); cz <= cell(maxZ - 1); cz++) {
+                    append(cells, key(cx, cy, cz), index);
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * 占用一个包围盒
+     *
+     * @param box 包围盒 {minX, minY, minZ, maxX, maxY, maxZ}
+     * @return 包围盒索引
+     */
+    public int occupy(int[] box) {
+        return occupy(box[0], box[1], box[2], box[3], box[4], box[5]);
+    }
+
+    /**
+     * 记录蓝图锚点（放置位置），用于最小间距检查
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     */
+    public void addAnchor(int x, int y, int z) {
+        long key = key(cell(x), cell(y), cell(z));
+        int[] entries = anchorCells.get(key);
+        if (entries == null) {
+            entries = new int[1 + 3 * 4];
+        } else if (1 + (entries[0] + 1) * 3 > entries.length) {
+            int[] grown = new int[entries.length * 2];
+            System.arraycopy(entries, 0, grown, 0, entries.length);
+            entries = grown;
+        }
+
+        int offset = 1 + entries[0] * 3;
+        entries[offset] = x;
+        entries[offset + 1] = y;
+        entries[offset + 2] = z;
+        entries[0]++;
+        anchorCells.put(key, entries);
+        anchorCount++;
+    }
+
+    /**
+     * 检查指定距离内是否存在锚点
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @param distance 距离（不包含）
+     * @return 是否存在
+     */
+    public boolean hasAnchorWithin(int x, int y, int z, double distance) {
+        if (anchorCount == 0 || distance <= 0) {
+            return false;
+        }
+
+        int reach = (int) Math.ceil(distance);
+        double distanceSquared = distance * distance;
+
+        for (int cx = cell(x - reach); cx <= cell(x + reach); cx++) {
+            for (int cy = cell(y - reach); cy <= cell(y + reach); cy++) {
+                for (int cz = cell(z - reach); cz <= cell(z + reach); cz++) {
+                    int[] entries = anchorCells.get(key(cx, cy, cz));
+                    if (entries == null) {
+                        continue;
+                    }
+
+                    for (int i = 0; i < entries[0]; i++) {
+                        int offset = 1 + i * 3;
+                        double dx = entries[offset] - x;
+                        double dy = entries[offset + 1] - y;
+                        double dz = entries[offset + 2] - z;
+                        if (dx * dx + dy * dy + dz * dz < distanceSquared) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 撤销最近一次占用的包围盒
+     *
+     * 包围盒按后进先出的顺序撤销，用于放置搜索的回溯。
+     *
+     * @return 是否撤销成功
+     */
+    public boolean removeLast() {
+        if (boxCount == 0) {
+            return false;
+        }
+
+        int index = --boxCount;
+        int offset = index * 6;
+        int minX = boxes[offset], minY = boxes[offset + 1], minZ = boxes[offset + 2];
+        int maxX = boxes[offset + 3], maxY = boxes[offset + 4], maxZ = boxes[offset + 5];
+        if (minX >= maxX || minY >= maxY || minZ >= maxZ) {
+            return true;
+        }
+
+        for (int cx = cell(minX); cx <= cell(maxX - 1); cx++) {
+            for (int cy = cell(minY); cy <= cell(maxY - 1); cy++) {
+                for (int cz = cell(minZ); cz <= cell(maxZ - 1); cz++) {
+                    long key = key(cx, cy, cz);
+                    int[] entries = cells.get(key);
+                    if (entries == null) {
+                        continue;
+                    }
+                    // 最近追加的索引位于末尾
+                    for (int i = entries[0]; i >= 1; i--) {
+                        if (entries[i] == index) {
+                            entries[i] = entries[entries[0]];
+                            entries[0]--;
+                            break;
+                        }
+                    }
+                    if (entries[0] == 0) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 移除一个锚点
+     *
+     * @param x X坐标
+     * @param y Y坐标
+     * @param z Z坐标
+     * @return 是否找到并移除
+     */
+    public boolean removeAnchor(int x, int y, int z) {
+        long key = key(cell(x), cell(y), cell(z));
+        int[] entries = anchorCells.get(key);
+        if (entries == null) {
+            return false;
+        }
+
+        for (int i = entries[0] - 1; i >= 0; i--) {
+            int offset = 1 + i * 3;
+            if (entries[offset] == x && entries[offset + 1] == y && entries[offset + 2] == z) {
+                int last = 1 + (entries[0] - 1) * 3;
+                System.arraycopy(entries, last, entries, offset, 3);
+                entries[0]--;
+                if (entries[0] == 0) {
+                    anchorCells.remove(key);
+                }
+                anchorCount--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取包围盒
+     *
+     * @param index 包围盒索引
+     * @param out 输出数组，长度至少为6
+     * @return 输出数组 {minX, minY, minZ, maxX, maxY, maxZ}
+     */
+    public int[] getBox(int index, int[] out) {
+        System.arraycopy(boxes, index * 6, out, 0, 6);
+        return out;
+    }
+
+    /**
+     * 清空所有占用信息
+     */
+    public void clear() {
+        cells.clear();
+        anchorCells.clear();
+        boxCount = 0;
+        anchorCount = 0;
+    }
+
+    /**
+     * 向单元追加包围盒索引
+     */
+    private static void append(Map<Long, int[]> target, long key, int value) {
+        int[] entries = target.get(key);
+        if (entries == null) {
+            entries = new int[5];
+        } else if (entries[0] + 1 >= entries.length) {
+            int[] grown = new int[entries.length * 2];
+            System.arraycopy(entries, 0, grown, 0, entries.length);
+            entries = grown;
+        }
+
+        entries[++entries[0]] = value;
+        target.put(key, entries);
+    }
+
+    /**
+     * 方块坐标转换为单元坐标
+     */
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    /**
+     * 打包单元坐标（每个轴 21 位）
+     */
+    private static long key(int cx, int cy, int cz) {
+        return ((long) (cx & 0x1FFFFF) << 42) | ((long) (cy & 0x1FFFFF) << 21) | (cz & 0x1FFFFF);
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public int getCellSize() { return cellSize; }
+    public int getBoxCount() { return boxCount; }
+    public int getAnchorCount() { return anchorCount; }
+    public int getOccupiedCellCount() { return cells.size(); }
+}
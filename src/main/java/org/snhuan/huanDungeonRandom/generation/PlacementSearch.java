@@ -0,0 +1,332 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 放置搜索 - 为散布模式的蓝图寻找放置位置，卡住时回溯最近的放置
+ *
+ * 候选位置不再在原点周围均匀随机采样，而是从占用网格的空闲前沿枚举：
+ * - 同一楼层中每个已占用的包围盒，四个方向外侧留出最小间距处都是候选
+ * - 每个方向取对齐较小边、居中、对齐较大边三个位置
+ * - 楼层中还没有蓝图时，以原点和少量随机位置作为候选
+ *
+ * 候选按启发值排序：紧凑布局优先靠近原点的位置，否则在距离上叠加随机扰动让布局更分散。
+ *
+ * 连续放置一组蓝图时，某个蓝图找不到位置就撤销最近的若干次放置，
+ * 在这个窗口内做深度优先搜索，为窗口中的蓝图重新挑选位置；窗口内仍然无解时恢复原来的放置并跳过该蓝图。
+ *
+ * 每把一个候选位置放入搜索树计为一次节点扩展，搜索共享一个显式的扩展预算，预算用完后不再尝试。
+ * 搜索不是线程安全的，每个生成任务单独创建。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class PlacementSearch {
+
+    // 回溯时最多撤销的放置数量
+    private static final int MAX_BACKTRACK = 3;
+    // 每个蓝图最多保留的候选位置数量
+    private static final int MAX_CANDIDATES = 32;
+    // 楼层为空或候选不足时补充的随机位置数量
+    private static final int RANDOM_CANDIDATES = 4;
+    // 随机位置的范围（网格单元数）
+    private static final int RANDOM_RANGE = 50;
+
+    private final RandomGenerator random;
+    private final DungeonGenerator.GenerationConfig config;
+    private final CancellationToken cancellation;
+
+    private int budget;
+    private int expanded = 0;
+    private int backtracks = 0;
+
+    /**
+     * 放置请求 - 待放置的蓝图、旋转角度和楼层
+     */
+    public static final class Request {
+        private final Blueprint blueprint;
+        private final int rotation;
+        private final int y;
+
+        public Request(Blueprint blueprint, int rotation, int y) {
+            this.blueprint = blueprint;
+            this.rotation = rotation;
+            this.y = y;
+        }
+
+        public Blueprint getBlueprint() { return blueprint; }
+        public int getRotation() { return rotation; }
+        public int getY() { return y; }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param random 随机生成器
+     * @param config 生成配置
+     * @param budget 节点扩展预算
+     * @param cancellation 取消令牌
+     */
+    public PlacementSearch(RandomGenerator random, DungeonGenerator.GenerationConfig config, int budget,
+                           CancellationToken cancellation) {
+        this.random = random;
+        this.config = config;
+        this.budget = Math.max(1, budget);
+        this.cancellation = cancellation != null ? cancellation : CancellationToken.none();
+    }
+
+    /**
+     * 为单个蓝图寻找放置位置
+     *
+     * @param layoutBuilder 布局构建器
+     * @param blueprint 蓝图
+     * @param rotation 旋转角度
+     * @param y 楼层高度
+     * @param compact 是否优先靠近原点
+     * @return 相对原点的位置 {x, y, z}，预算用完或没有合适位置返回null
+     * @throws CancellationToken.CancelledException 生成被取消或超时
+     */
+    public int[] findPosition(DungeonLayout.Builder layoutBuilder, Blueprint blueprint, int rotation,
+                              int y, boolean compact) {
+        List<int[]> candidates = candidates(layoutBuilder.getOccupancy(), blueprint, rotation, y, compact);
+        if (candidates.isEmpty() || !consume()) {
+            return null;
+        }
+        return candidates.get(0);
+    }
+
+    /**
+     * 依次放置一组蓝图，卡住时回溯最近的放置
+     *
+     * 放置顺序与请求顺序一致，因此已放置的请求在布局中的索引按请求顺序递增。
+     *
+     * @param layoutBuilder 布局构建器
+     * @param requests 放置请求
+     * @param compact 是否优先靠近原点
+     * @return 每个请求是否已放置
+     * @throws CancellationToken.CancelledException 生成被取消或超时
+     */
+    public boolean[] placeAll(DungeonLayout.Builder layoutBuilder, List<Request> requests, boolean compact) {
+        boolean[] placed = new boolean[requests.size()];
+        // 本次放置的请求和位置，按放置顺序
+        List<Integer> order = new ArrayList<>();
+        List<int[]> positions = new ArrayList<>();
+
+        for (int i = 0; i < requests.size() && budget > 0; i++) {
+            Request request = requests.get(i);
+            int[] position = findPosition(layoutBuilder, request.blueprint, request.rotation, request.y, compact);
+            if (position != null) {
+                place(layoutBuilder, request, position);
+                order.add(i);
+                positions.add(position);
+                placed[i] = true;
+                continue;
+            }
+
+            // 撤销最近的放置，在窗口内重新搜索
+            int window = Math.min(MAX_BACKTRACK, order.size());
+            if (window == 0 || budget <= 0) {
+                continue;
+            }
+            backtracks++;
+
+            List<Request> windowRequests = new ArrayList<>();
+            List<int[]> original = new ArrayList<>();
+            for (int k = order.size() - window; k < order.size(); k++) {
+                windowRequests.add(requests.get(order.get(k)));
+                original.add(positions.get(k));
+            }
+            for (int k = 0; k < window; k++) {
+                layoutBuilder.removeLastPlacement();
+            }
+            windowRequests.add(request);
+
+            List<int[]> found = new ArrayList<>();
+            if (search(layoutBuilder, windowRequests, 0, compact, found)) {
+                for (int k = 0; k < window; k++) {
+                    positions.set(order.size() - window + k, found.get(k));
+                }
+                order.add(i);
+                positions.add(found.get(window));
+                placed[i] = true;
+            } else {
+                // 恢复原来的放置，跳过当前请求
+                for (int k = 0; k < window; k++) {
+                    place(layoutBuilder, windowRequests.get(k), original.get(k));
+                }
+            }
+        }
+
+        return placed;
+    }
+
+    /**
+     * 在回溯窗口内深度优先搜索
+     *
+     * @return 是否为窗口中的所有请求找到位置，成功时位置保留在布局中并写入 found
+     */
+    private boolean search(DungeonLayout.Builder layoutBuilder, List<Request> requests, int depth,
+                           boolean compact, List<int[]> found) {
+        if (depth == requests.size()) {
+            return true;
+        }
+
+        Request request = requests.get(depth);
+        for (int[] candidate : candidates(layoutBuilder.getOccupancy(), request.blueprint, request.rotation,
+                                          request.y, compact)) {
+            if (!consume()) {
+                return false;
+            }
+
+            place(layoutBuilder, request, candidate);
+            found.add(candidate);
+            if (search(layoutBuilder, requests, depth + 1, compact, found)) {
+                return true;
+            }
+            found.remove(found.size() - 1);
+            layoutBuilder.removeLastPlacement();
+        }
+        return false;
+    }
+
+    /**
+     * 枚举可用的候选位置并按启发值排序
+     *
+     * 枚举时直接用占用网格过滤掉重叠或过近的位置，返回的每个候选都可以放置。
+     *
+     * @return 候选位置 {x, y, z}，最多 {@link #MAX_CANDIDATES} 个
+     */
+    private List<int[]> candidates(OccupancyGrid occupancy, Blueprint blueprint, int rotation, int y, boolean compact) {
+        // 旋转后占地相对放置位置的偏移和尺寸
+        int[] offset = OccupancyGrid.footprint(0, 0, 0,
+            blueprint.getSizeX(), blueprint.getSizeY(), blueprint.getSizeZ(), rotation);
+        int width = offset[3] - offset[0];
+        int depth = offset[5] - offset[2];
+        int gap = Math.max(1, config.getMinSpacing());
+        int top = y + blueprint.getSizeY();
+
+        List<int[]> result = new ArrayList<>();
+        List<Integer> scores = new ArrayList<>();
+        int jitter = compact ? 0 : 4 * (gap + Math.max(width, depth));
+
+        int[] box = new int[6];
+        for (int b = 0; b < occupancy.getBoxCount(); b++) {
+            occupancy.getBox(b, box);
+            if (box[1] >= top || box[4] <= y) {
+                continue; // 不在同一楼层
+            }
+
+            int[] alignX = {box[0], (box[0] + box[3] - width) / 2, box[3] - width};
+            int[] alignZ = {box[2], (box[2] + box[5] - depth) / 2, box[5] - depth};
+            for (int k = 0; k < 3; k++) {
+                addCandidate(result, scores, occupancy, blueprint, rotation, box[3] + gap, alignZ[k], offset, y, width, depth, jitter);
+                addCandidate(result, scores, occupancy, blueprint, rotation, box[0] - gap - width, alignZ[k], offset, y, width, depth, jitter);
+                addCandidate(result, scores, occupancy, blueprint, rotation, alignX[k], box[5] + gap, offset, y, width, depth, jitter);
+                addCandidate(result, scores, occupancy, blueprint, rotation, alignX[k], box[2] - gap - depth, offset, y, width, depth, jitter);
+            }
+        }
+
+        if (result.isEmpty()) {
+            addCandidate(result, scores, occupancy, blueprint, rotation, -width / 2, -depth / 2, offset, y, width, depth, jitter);
+        }
+        if (result.size() < MAX_CANDIDATES) {
+            for (int k = 0; k < RANDOM_CANDIDATES; k++) {
+                int x = random.randomInt(-RANDOM_RANGE, RANDOM_RANGE) * config.getGridSize();
+                int z = random.randomInt(-RANDOM_RANGE, RANDOM_RANGE) * config.getGridSize();
+                addCandidate(result, scores, occupancy, blueprint, rotation, x, z, offset, y, width, depth, jitter);
+            }
+        }
+
+        // 按启发值排序，只保留前若干个
+        Integer[] order = new Integer[result.size()];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(scores.get(a), scores.get(b)));
+
+        List<int[]> sorted = new ArrayList<>(Math.min(order.length, MAX_CANDIDATES));
+        for (int k = 0; k < Math.min(order.length, MAX_CANDIDATES); k++) {
+            sorted.add(result.get(order[k]));
+        }
+        return sorted;
+    }
+
+    /**
+     * 以占地的最小角加入候选位置
+     */
+    private void addCandidate(List<int[]> result, List<Integer> scores, OccupancyGrid occupancy, Blueprint blueprint,
+                              int rotation, int minX, int minZ, int[] offset, int y, int width, int depth, int jitter) {
+        int centerX = minX + width / 2;
+        int centerZ = minZ + depth / 2;
+        int score = Math.abs(centerX) + Math.abs(centerZ);
+        if (jitter > 0) {
+            score += random.randomInt(0, jitter);
+        }
+        int x = minX - offset[0];
+        int z = minZ - offset[2];
+        if (isSuitable(occupancy, blueprint, x, y, z, rotation)) {
+            result.add(new int[]{x, y, z});
+            scores.add(score);
+        }
+    }
+
+    /**
+     * 检查位置是否合适放置蓝图
+     *
+     * 通过占用网格查询，只检查候选区域覆盖的网格单元，
+     * 不再遍历所有已放置的蓝图。
+     *
+     * @param occupancy 占用网格
+     * @param blueprint 蓝图
+     * @param x 放置位置X
+     * @param y 放置位置Y
+     * @param z 放置位置Z
+     * @param rotation 旋转角度
+     * @return 是否合适
+     */
+    public boolean isSuitable(OccupancyGrid occupancy, Blueprint blueprint, int x, int y, int z, int rotation) {
+        // 检查是否与已放置的蓝图冲突
+        if (!config.isAllowOverlap()) {
+            int[] footprint = OccupancyGrid.footprint(x, y, z,
+                blueprint.getSizeX(), blueprint.getSizeY(), blueprint.getSizeZ(), rotation);
+            if (occupancy.overlaps(footprint)) {
+                return false;
+            }
+        }
+
+        // 检查最小间距
+        return !occupancy.hasAnchorWithin(x, y, z, config.getMinSpacing());
+    }
+
+    private void place(DungeonLayout.Builder layoutBuilder, Request request, int[] position) {
+        layoutBuilder.addPlacement(request.blueprint, position[0], position[1], position[2], request.rotation);
+    }
+
+    /**
+     * 消耗一次节点扩展
+     *
+     * @return 预算是否仍然充足
+     */
+    private boolean consume() {
+        if (budget <= 0) {
+            return false;
+        }
+        budget--;
+        if ((++expanded & 255) == 0) {
+            cancellation.throwIfCancelled();
+        }
+        return true;
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public int getRemainingBudget() { return budget; }
+    public int getExpandedNodes() { return expanded; }
+    public int getBacktracks() { return backtracks; }
+}
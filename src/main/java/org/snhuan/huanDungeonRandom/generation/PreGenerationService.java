@@ -0,0 +1,305 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintManager;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonInstance;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 预生成服务 - 在空闲时为每个主题预先生成一批布局
+ *
+ * 功能特点：
+ * - 每个主题维护一个可消费的布局池，目标数量由 performance.pre_generation.count 决定
+ * - 按 performance.pre_generation.interval 定期补充，补充前检查服务器负载
+ *   （TPS 低于阈值或异步生成器没有空闲名额时跳过本轮）
+ * - 创建地牢时直接取出现成的布局在主线程提交，不需要等待生成
+ * - 蓝图注册表变化后，旧版本的布局会被丢弃
+ *
+ * 插件启动时会登记主题目录中的全部主题；其他主题在第一次被请求或通过 {@link #addTheme(DungeonTheme)} 注册后才会预生成。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class PreGenerationService {
+
+    private final JavaPlugin plugin;
+    private final AsyncGenerator asyncGenerator;
+    private final DungeonGenerator dungeonGenerator;
+    private final BlueprintManager blueprintManager;
+    private final Logger logger;
+
+    // 配置参数
+    private final boolean enabled;
+    private final int targetCount;
+    private final int intervalSeconds;
+    private final double minTps;
+
+    // 主题布局池
+    private final Map<String, ThemePool> pools = new ConcurrentHashMap<>();
+    private BukkitTask refillTask;
+
+    // 统计信息
+    private final AtomicLong servedCount = new AtomicLong();
+    private final AtomicLong emptyCount = new AtomicLong();
+    private final AtomicLong skippedCycles = new AtomicLong();
+
+    private static final int DEFAULT_COUNT = 10;
+    private static final int DEFAULT_INTERVAL_SECONDS = 60;
+    private static final double DEFAULT_MIN_TPS = 18.0;
+
+    /**
+     * 单个主题的布局池
+     */
+    private static final class ThemePool {
+        private final DungeonTheme theme;
+        private final ConcurrentLinkedQueue<DungeonLayout> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger readyCount = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private ThemePool(DungeonTheme theme) {
+            this.theme = theme;
+        }
+
+        private DungeonLayout poll() {
+            DungeonLayout layout = ready.poll();
+            if (layout != null) {
+                readyCount.decrementAndGet();
+            }
+            return layout;
+        }
+
+        private void offer(DungeonLayout layout) {
+            ready.offer(layout);
+            readyCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param plugin 插件实例
+     * @param asyncGenerator 异步生成器
+     * @param dungeonGenerator 地牢生成器（用于在主线程提交布局）
+     * @param blueprintManager 蓝图管理器
+     */
+    public PreGenerationService(JavaPlugin plugin, AsyncGenerator asyncGenerator,
+                                DungeonGenerator dungeonGenerator, BlueprintManager blueprintManager) {
+        this.plugin = plugin;
+        this.asyncGenerator = asyncGenerator;
+        this.dungeonGenerator = dungeonGenerator;
+        this.blueprintManager = blueprintManager;
+        this.logger = plugin.getLogger();
+
+        this.enabled = plugin.getConfig().getBoolean("performance.pre_generation.enabled", true);
+        this.targetCount = Math.max(0, plugin.getConfig().getInt("performance.pre_generation.count", DEFAULT_COUNT));
+        this.intervalSeconds = Math.max(1, plugin.getConfig().getInt("performance.pre_generation.interval", DEFAULT_INTERVAL_SECONDS));
+        this.minTps = plugin.getConfig().getDouble("performance.pre_generation.min_tps", DEFAULT_MIN_TPS);
+    }
+
+    /**
+     * 启动定期补充任务
+     */
+    public void start() {
+        if (!enabled || targetCount <= 0) {
+            logger.info("预生成服务未启用");
+            return;
+        }
+
+        long periodTicks = intervalSeconds * 20L;
+        refillTask = Bukkit.getScheduler().runTaskTimer(plugin, this::refill, periodTicks, periodTicks);
+        logger.info("预生成服务已启动，每个主题目标数量: " + targetCount + "，间隔: " + intervalSeconds + "秒");
+    }
+
+    /**
+     * 停止预生成并清空布局池
+     */
+    public void shutdown() {
+        if (refillTask != null) {
+            refillTask.cancel();
+            refillTask = null;
+        }
+        pools.clear();
+    }
+
+    /**
+     * 注册需要预生成的主题
+     *
+     * @param theme 地牢主题
+     */
+    public void addTheme(DungeonTheme theme) {
+        if (theme != null && enabled) {
+            pools.computeIfAbsent(theme.getId(), id -> new ThemePool(theme));
+        }
+    }
+
+    /**
+     * 取出一个现成的布局
+     *
+     * 同时把主题登记为需要预生成。已过期（注册表版本不同）的布局会被丢弃。
+     *
+     * @param theme 地牢主题
+     * @return 布局，没有可用布局时返回null
+     */
+    public DungeonLayout takeLayout(DungeonTheme theme) {
+        if (theme == null || !enabled) {
+            return null;
+        }
+
+        ThemePool pool = pools.computeIfAbsent(theme.getId(), id -> new ThemePool(theme));
+        long currentVersion = blueprintManager.getPoolIndex().getVersion();
+
+        DungeonLayout layout;
+        while ((layout = pool.poll()) != null) {
+            if (layout.getRegistryVersion() == currentVersion) {
+                servedCount.incrementAndGet();
+                return layout;
+            }
+        }
+
+        emptyCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 使用现成的布局创建地牢实例（必须在主线程调用）
+     *
+     * @param dungeonId 地牢ID
+     * @param theme 地牢主题
+     * @param origin 生成位置
+     * @param createdBy 创建者
+     * @return 地牢实例，没有可用布局或提交失败时返回null
+     */
+    public DungeonInstance createFromPool(String dungeonId, DungeonTheme theme, Location origin, UUID createdBy) {
+        DungeonLayout layout = takeLayout(theme);
+        if (layout == null) {
+            return null;
+        }
+        return dungeonGenerator.commitLayout(layout, dungeonId, theme, origin.getWorld(), origin, createdBy);
+    }
+
+    /**
+     * 补充所有主题的布局池（主线程定时调用）
+     */
+    private void refill() {
+        if (!isServerIdle()) {
+            skippedCycles.incrementAndGet();
+            return;
+        }
+
+        long currentVersion = blueprintManager.getPoolIndex().getVersion();
+
+        // 至少留一个名额给玩家触发的生成；已提交但未开始的任务也计入
+        int pendingTotal = 0;
+        for (ThemePool pool : pools.values()) {
+            pendingTotal += pool.pending.get();
+        }
+        int budget = asyncGenerator.getMaxConcurrentGenerations() - 1
+            - Math.max(asyncGenerator.getActiveGenerations(), pendingTotal);
+
+        for (ThemePool pool : pools.values()) {
+            pool.ready.removeIf(layout -> {
+                if (layout.getRegistryVersion() != currentVersion) {
+                    pool.readyCount.decrementAndGet();
+                    return true;
+                }
+                return false;
+            });
+
+            int deficit = targetCount - pool.readyCount.get() - pool.pending.get();
+            for (int i = 0; i < deficit; i++) {
+                if (budget-- <= 0) {
+                    return;
+                }
+                submit(pool);
+            }
+        }
+    }
+
+    /**
+     * 提交一次后台生成
+     */
+    private void submit(ThemePool pool) {
+        pool.pending.incrementAndGet();
+        asyncGenerator.generateLayoutAsync(pool.theme).whenComplete((layout, error) -> {
+            pool.pending.decrementAndGet();
+            if (error != null) {
+                logger.fine("预生成布局失败: " + pool.theme.getId() + " - " + error.getMessage());
+                return;
+            }
+            if (pools.get(pool.theme.getId()) == pool) {
+                pool.offer(layout);
+            }
+        });
+    }
+
+    /**
+     * 检查服务器是否空闲
+     *
+     * @return 是否适合进行预生成
+     */
+    private boolean isServerIdle() {
+        if (!asyncGenerator.canGenerate()) {
+            return false;
+        }
+        try {
+            double[] tps = Bukkit.getTPS();
+            return tps == null || tps.length == 0 || tps[0] >= minTps;
+        } catch (NoSuchMethodError e) {
+            // 非 Paper 服务端没有 TPS 接口，只按生成器负载判断
+            return true;
+        }
+    }
+
+    /**
+     * 获取主题当前可用的布局数量
+     *
+     * @param themeId 主题ID
+     * @return 可用数量
+     */
+    public int getReadyCount(String themeId) {
+        ThemePool pool = pools.get(themeId);
+        return pool != null ? pool.readyCount.get() : 0;
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public boolean isEnabled() { return enabled; }
+    public int getTargetCount() { return targetCount; }
+    public int getIntervalSeconds() { return intervalSeconds; }
+    public long getServedCount() { return servedCount.get(); }
+    public long getEmptyCount() { return emptyCount.get(); }
+    public long getSkippedCycles() { return skippedCycles.get(); }
+
+    /**
+     * 获取预生成状态信息
+     *
+     * @return 状态信息字符串
+     */
+    public String getStatusInfo() {
+        StringBuilder status = new StringBuilder();
+        status.append("预生成服务状态:\n");
+        status.append("- 启用: ").append(enabled ? "是" : "否").append("\n");
+        for (ThemePool pool : pools.values()) {
+            status.append("- ").append(pool.theme.getId()).append(": ")
+                .append(pool.readyCount.get()).append("/").append(targetCount)
+                .append(" (生成中: ").append(pool.pending.get()).append(")\n");
+        }
+        status.append("- 直接提供: ").append(servedCount.get())
+            .append("，池为空: ").append(emptyCount.get())
+            .append("，因负载跳过: ").append(skippedCycles.get()).append("\n");
+        return status.toString();
+    }
+}
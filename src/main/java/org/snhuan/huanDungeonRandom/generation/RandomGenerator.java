@@ -1,11 +1,14 @@
 package org.snhuan.huanDungeonRandom.generation;
 
 import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPool;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPoolIndex;
 import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
 import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
 import org.snhuan.huanDungeonRandom.blueprint.templates.TileBlueprint;
 import org.snhuan.huanDungeonRandom.blueprint.templates.CorridorBlueprint;
 import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
+import org.snhuan.huanDungeonRandom.utils.AliasSampler;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -20,14 +23,22 @@ import java.util.stream.Collectors;
  * - 连接路径计算
  * - 随机种子管理
  * 
+ * 线程模型：
+ * 实例内部使用 SplittableRandom，不做同步，只能由单个线程使用。
+ * 共享的根生成器只负责通过 {@link #nextJobSeed()} 为每个生成任务派生种子，
+ * 每个任务再以该种子创建自己的 RandomGenerator，任务之间互不竞争，
+ * 并且可以用同一个种子重现相同的布局。
+ * 
  * @author HuanDungeonRandom
  * @version 1.0
  * @since 2024-01-01
  */
 public class RandomGenerator {
     
-    private final Random random;
+    private final SplittableRandom random;
     private final long seed;
+    // getRandom() 返回的视图，第一次调用时创建
+    private Random randomView;
     
     /**
      * 构造函数
@@ -36,7 +47,7 @@ public class RandomGenerator {
      */
     public RandomGenerator(long seed) {
         this.seed = seed;
-        this.random = new Random(seed);
+        this.random = new SplittableRandom(seed);
     }
     
     /**
@@ -58,12 +69,53 @@ public class RandomGenerator {
     /**
      * 获取随机数生成器
      * 
+     * 返回的 Random 从本实例的 SplittableRandom 取值，与其他方法共用同一个随机序列，
+     * 同样只能由单个线程使用；对它调用 setSeed 不会改变序列。
+     * 
      * @return 随机数生成器
      */
     public Random getRandom() {
+        if (randomView == null) {
+            randomView = new Random() {
+                @Override
+                protected int next(int bits) {
+                    return (int) (random.nextLong() >>> (64 - bits));
+                }
+            };
+        }
+        return randomView;
+    }
+    
+    /**
+     * 获取底层的可拆分随机数生成器
+     * 
+     * @return 可拆分随机数生成器
+     */
+    public SplittableRandom getSplittableRandom() {
         return random;
     }
     
+    /**
+     * 为生成任务派生一个新种子
+     * 
+     * 根生成器可能被多个线程共享，因此只有这里需要同步，
+     * 每个任务只调用一次。
+     * 
+     * @return 任务种子
+     */
+    public synchronized long nextJobSeed() {
+        return random.nextLong();
+    }
+    
+    /**
+     * 创建一个任务专用的随机生成器
+     * 
+     * @return 以新派生种子初始化的随机生成器
+     */
+    public RandomGenerator forJob() {
+        return new RandomGenerator(nextJobSeed());
+    }
+    
     // ==================== 基础随机方法 ====================
     
     /**
@@ -211,11 +263,59 @@ public class RandomGenerator {
         return weightedChoice(items, weights);
     }
     
+    /**
+     * 使用预先构建的别名表随机选择元素
+     * 
+     * 每次选择 O(1) 且不分配对象，适合在生成循环中反复调用。
+     * 
+     * @param sampler 别名表采样器
+     * @param <T> 元素类型
+     * @return 随机选择的元素，采样器为空返回null
+     */
+    public <T> T weightedChoice(AliasSampler<T> sampler) {
+        if (sampler == null) {
+            return null;
+        }
+        return sampler.sample(random);
+    }
+    
     // ==================== 蓝图随机选择 ====================
     
+    /**
+     * 构建瓦片蓝图采样器（按权重）
+     * 
+     * @param tileBlueprints 瓦片蓝图列表
+     * @return 别名表采样器
+     */
+    public static AliasSampler<TileBlueprint> tileSampler(List<TileBlueprint> tileBlueprints) {
+        return AliasSampler.of(tileBlueprints, BlueprintPool::selectionWeight);
+    }
+    
+    /**
+     * 构建房间蓝图采样器（稀有度越高，权重越低）
+     * 
+     * @param roomBlueprints 房间蓝图列表
+     * @return 别名表采样器
+     */
+    public static AliasSampler<RoomBlueprint> roomSampler(List<RoomBlueprint> roomBlueprints) {
+        return AliasSampler.of(roomBlueprints, BlueprintPool::selectionWeight);
+    }
+    
+    /**
+     * 构建走廊蓝图采样器（按优先级）
+     * 
+     * @param corridorBlueprints 走廊蓝图列表
+     * @return 别名表采样器
+     */
+    public static AliasSampler<CorridorBlueprint> corridorSampler(List<CorridorBlueprint> corridorBlueprints) {
+        return AliasSampler.of(corridorBlueprints, BlueprintPool::selectionWeight);
+    }
+    
     /**
      * 根据权重随机选择瓦片蓝图
      * 
+     * 每次调用都会构建采样器，循环中应预先构建采样器并使用 {@link #weightedChoice(AliasSampler)}。
+     * 
      * @param tileBlueprints 瓦片蓝图列表
      * @return 随机选择的瓦片蓝图
      */
@@ -224,17 +324,14 @@ public class RandomGenerator {
             return null;
         }
         
-        Map<TileBlueprint, Double> weightMap = new HashMap<>();
-        for (TileBlueprint tile : tileBlueprints) {
-            weightMap.put(tile, (double) tile.getWeight());
-        }
-        
-        return weightedChoice(weightMap);
+        return weightedChoice(tileSampler(tileBlueprints));
     }
     
     /**
      * 根据稀有度随机选择房间蓝图
      * 
+     * 每次调用都会构建采样器，循环中应预先构建采样器并使用 {@link #weightedChoice(AliasSampler)}。
+     * 
      * @param roomBlueprints 房间蓝图列表
      * @return 随机选择的房间蓝图
      */
@@ -243,19 +340,14 @@ public class RandomGenerator {
             return null;
         }
         
-        Map<RoomBlueprint, Double> weightMap = new HashMap<>();
-        for (RoomBlueprint room : roomBlueprints) {
-            // 稀有度越高，权重越低
-            double weight = 1.0 / room.getRarity();
-            weightMap.put(room, weight);
-        }
-        
-        return weightedChoice(weightMap);
+        return weightedChoice(roomSampler(roomBlueprints));
     }
     
     /**
      * 根据优先级随机选择走廊蓝图
      * 
+     * 每次调用都会构建采样器，循环中应预先构建采样器并使用 {@link #weightedChoice(AliasSampler)}。
+     * 
      * @param corridorBlueprints 走廊蓝图列表
      * @return 随机选择的走廊蓝图
      */
@@ -264,12 +356,7 @@ public class RandomGenerator {
             return null;
         }
         
-        Map<CorridorBlueprint, Double> weightMap = new HashMap<>();
-        for (CorridorBlueprint corridor : corridorBlueprints) {
-            weightMap.put(corridor, (double) corridor.getPriority());
-        }
-        
-        return weightedChoice(weightMap);
+        return weightedChoice(corridorSampler(corridorBlueprints));
     }
     
     /**
@@ -316,12 +403,7 @@ public class RandomGenerator {
      * @return 是否兼容
      */
     private boolean isThemeCompatible(Blueprint blueprint, DungeonTheme theme) {
-        // 这里可以根据蓝图的分类和主题进行匹配
-        // 目前简单地检查分类名称是否包含主题相关关键词
-        String category = blueprint.getCategory().toLowerCase();
-        String themeId = theme.getId().toLowerCase();
-        
-        return category.contains(themeId) || category.equals("default") || category.equals("universal");
+        return BlueprintPoolIndex.isThemeCompatible(blueprint, theme.getId());
     }
     
     // ==================== 地牢生成参数 ====================
@@ -350,7 +432,9 @@ public class RandomGenerator {
             compactLayout,
             addDecorations,
             config.isAllowBranching(),
-            config.getMaxDepth()
+            config.getMaxDepth(),
+            config.getFloors(),
+            config.getFloorHeight()
         );
     }
     
@@ -364,15 +448,25 @@ public class RandomGenerator {
         private final boolean addDecorations;
         private final boolean allowBranching;
         private final int maxDepth;
+        private final int floors;
+        private final int floorHeight;
         
         public GenerationParameters(int roomCount, int corridorCount, boolean compactLayout,
                                   boolean addDecorations, boolean allowBranching, int maxDepth) {
+            this(roomCount, corridorCount, compactLayout, addDecorations, allowBranching, maxDepth, 1, 8);
+        }
+        
+        public GenerationParameters(int roomCount, int corridorCount, boolean compactLayout,
+                                  boolean addDecorations, boolean allowBranching, int maxDepth,
+                                  int floors, int floorHeight) {
             this.roomCount = roomCount;
             this.corridorCount = corridorCount;
             this.compactLayout = compactLayout;
             this.addDecorations = addDecorations;
             this.allowBranching = allowBranching;
             this.maxDepth = maxDepth;
+            this.floors = Math.max(1, floors);
+            this.floorHeight = Math.max(1, floorHeight);
         }
         
         // Getters
@@ -382,6 +476,35 @@ public class RandomGenerator {
         public boolean isAddDecorations() { return addDecorations; }
         public boolean isAllowBranching() { return allowBranching; }
         public int getMaxDepth() { return maxDepth; }
+        public int getFloors() { return floors; }
+        public int getFloorHeight() { return floorHeight; }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            GenerationParameters that = (GenerationParameters) obj;
+            return roomCount == that.roomCount &&
+                   corridorCount == that.corridorCount &&
+                   compactLayout == that.compactLayout &&
+                   addDecorations == that.addDecorations &&
+                   allowBranching == that.allowBranching &&
+                   maxDepth == that.maxDepth &&
+                   floors == that.floors &&
+                   floorHeight == that.floorHeight;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(roomCount, corridorCount, compactLayout, addDecorations, allowBranching, maxDepth,
+                floors, floorHeight);
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("GenerationParameters{rooms=%d, corridors=%d, compact=%s, decorations=%s, branching=%s, depth=%d, floors=%d}",
+                roomCount, corridorCount, compactLayout, addDecorations, allowBranching, maxDepth, floors);
+        }
     }
     
     // ==================== 工具方法 ====================
@@ -393,7 +516,10 @@ public class RandomGenerator {
      * @param <T> 元素类型
      */
     public <T> void shuffle(List<T> list) {
-        Collections.shuffle(list, random);
+        // Fisher-Yates 洗牌，SplittableRandom 不能直接用于 Collections.shuffle
+        for (int i = list.size() - 1; i > 0; i--) {
+            Collections.swap(list, i, random.nextInt(i + 1));
+        }
     }
     
     /**
@@ -0,0 +1,143 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import org.bukkit.Location;
+import org.bukkit.util.Vector;
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintManager;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonInstance;
+import org.snhuan.huanDungeonRandom.layout.DungeonLayout;
+
+import java.util.logging.Logger;
+
+/**
+ * 流式生成会话 - 随玩家探索逐步扩展的地牢
+ *
+ * 地牢创建时只包含出生房间及其相邻蓝图，其余的开放门保存在前沿中。
+ * 玩家移动到未展开的门附近时，在主线程展开这些门，
+ * 并把新放置的蓝图和连接追加到地牢实例上，同时扩大实例边界。
+ *
+ * 每次只展开少量的门，单次扩展的耗时与地牢总规模无关。
+ * 会话不是线程安全的，所有方法都应在主线程调用。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class StreamingSession {
+
+    private final DungeonInstance instance;
+    private final BlueprintManager blueprintManager;
+    private final ConnectedLayoutEngine engine;
+    private final ConnectedLayoutEngine.Frontier frontier;
+    private final DungeonLayout.Builder layoutBuilder;
+    private final DungeonGenerator.GenerationStatistics.Builder statsBuilder;
+    private final Logger logger;
+
+    // 已提交到实例的放置和连接数量
+    private int committedPlacements;
+    private int committedConnections;
+    private boolean closed = false;
+
+    /**
+     * 构造函数
+     *
+     * @param instance 地牢实例，已包含布局构建器中的所有蓝图
+     * @param blueprintManager 蓝图管理器
+     * @param engine 连通布局引擎
+     * @param frontier 前沿状态
+     * @param layoutBuilder 布局构建器
+     * @param statsBuilder 统计构建器
+     * @param logger 日志记录器
+     */
+    StreamingSession(DungeonInstance instance, BlueprintManager blueprintManager, ConnectedLayoutEngine engine,
+                     ConnectedLayoutEngine.Frontier frontier, DungeonLayout.Builder layoutBuilder,
+                     DungeonGenerator.GenerationStatistics.Builder statsBuilder, Logger logger) {
+        this.instance = instance;
+        this.blueprintManager = blueprintManager;
+        this.engine = engine;
+        this.frontier = frontier;
+        this.layoutBuilder = layoutBuilder;
+        this.statsBuilder = statsBuilder;
+        this.logger = logger;
+        this.committedPlacements = layoutBuilder.getPlacementCount();
+        this.committedConnections = layoutBuilder.getConnectionCount();
+    }
+
+    /**
+     * 展开指定位置附近的开放门
+     *
+     * @param location 玩家位置
+     * @param radius 触发展开的距离（方块）
+     * @param maxDoors 本次最多展开的门数量
+     * @return 新放置的蓝图数量
+     */
+    public int expandAround(Location location, double radius, int maxDoors) {
+        if (closed || frontier.isExhausted() || location == null) {
+            return 0;
+        }
+
+        Location origin = instance.getOrigin();
+        int added = engine.expandNear(layoutBuilder, frontier,
+            location.getBlockX() - origin.getBlockX(),
+            location.getBlockY() - origin.getBlockY(),
+            location.getBlockZ() - origin.getBlockZ(),
+            radius, maxDoors, statsBuilder);
+
+        if (added > 0 || layoutBuilder.getConnectionCount() > committedConnections) {
+            commitPending(origin);
+        }
+        return added;
+    }
+
+    /**
+     * 把尚未提交的放置和连接追加到地牢实例
+     */
+    private void commitPending(Location origin) {
+        for (int i = committedPlacements; i < layoutBuilder.getPlacementCount(); i++) {
+            DungeonLayout.Placement placement = layoutBuilder.getPlacement(i);
+            Blueprint blueprint = blueprintManager.getBlueprint(placement.getBlueprintId());
+            if (blueprint == null) {
+                // 蓝图已被卸载，实例中的索引无法再与布局对应，停止扩展
+                logger.severe("流式生成中的蓝图不存在: " + placement.getBlueprintId() + "，停止扩展地牢 " + instance.getInstanceId());
+                closed = true;
+                return;
+            }
+
+            instance.addPlacedBlueprint(blueprint,
+                origin.clone().add(placement.getX(), placement.getY(), placement.getZ()), placement.getRotation());
+
+            int[] footprint = placement.getFootprint();
+            instance.expandBounds(
+                origin.toVector().add(new Vector(footprint[0], footprint[1], footprint[2])),
+                origin.toVector().add(new Vector(footprint[3], footprint[4], footprint[5])));
+        }
+        committedPlacements = layoutBuilder.getPlacementCount();
+
+        for (int i = committedConnections; i < layoutBuilder.getConnectionCount(); i++) {
+            DungeonLayout.Connection connection = layoutBuilder.getConnection(i);
+            instance.addConnection(connection.getFromIndex(), connection.getFromDoorId(),
+                connection.getToIndex(), connection.getToDoorId());
+        }
+        committedConnections = layoutBuilder.getConnectionCount();
+
+        DungeonLayout.Point boss = layoutBuilder.getNamedPoint("boss");
+        if (boss != null && instance.getNamedLocation("boss") == null) {
+            instance.addNamedLocation("boss", origin.clone().add(boss.getX(), boss.getY(), boss.getZ()));
+        }
+    }
+
+    /**
+     * 是否已全部展开（没有剩余的开放门）
+     *
+     * @return 是否已完成
+     */
+    public boolean isComplete() {
+        return closed || frontier.isExhausted();
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public DungeonInstance getInstance() { return instance; }
+    public int getOpenDoorCount() { return frontier.getOpenDoorCount(); }
+    public int getPlacedCount() { return committedPlacements; }
+}
@@ -0,0 +1,536 @@
+package org.snhuan.huanDungeonRandom.generation;
+
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintPool;
+import org.snhuan.huanDungeonRandom.blueprint.DoorDirection;
+import org.snhuan.huanDungeonRandom.blueprint.DoorInfo;
+import org.snhuan.huanDungeonRandom.blueprint.templates.TileBlueprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 瓦片求解器 - 基于波函数坍缩（WFC）在单元网格上一次性铺设瓦片
+ *
+ * 调色板由瓦片的每个旋转角度构成一个变体，另加一个"空"变体（不放置瓦片、四边封闭）。
+ * 变体的每一边要么开放（该方向有门）要么封闭，相邻两个单元的相对两边必须同时开放或同时封闭，
+ * 开放的两边还要求两个瓦片互相兼容（{@link TileBlueprint#isCompatibleWith(String)}）。
+ *
+ * 瓦片自身的约束在构建调色板时处理：
+ * - 门数量上限为0的方向视为封闭
+ * - 死路瓦片只能有一个开放边，转角瓦片只能有两个相邻的开放边，不满足的变体不进入调色板
+ *
+ * 每个单元的候选集合是调色板上的位集，每次坍缩后用弧相容（AC-3）传播到相邻单元；
+ * 网格边界和被占用的单元只接受封闭的边，因此结果中不会有通向网格外或其他蓝图内部的门。
+ * 出现矛盾时用新的随机状态重新求解，重试次数有上限。
+ *
+ * 求解器不是线程安全的，每个生成任务单独创建。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class TileSolver {
+
+    /** 空变体在调色板中的索引 */
+    public static final int EMPTY = 0;
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+    private static final int SIDES = 4;
+    private static final int[] STEP_X = {0, 1, 0, -1};
+    private static final int[] STEP_Z = {-1, 0, 1, 0};
+    private static final int MAX_RESTARTS = 4;
+
+    private final RandomGenerator random;
+    private final CancellationToken cancellation;
+
+    // 调色板
+    private final List<Variant> palette;
+    private final int words;
+    private final double[] weights;
+    private final long[][][] support;   // [边][变体] -> 该边相邻单元允许的变体
+    private final long[][] closedOn;    // [边] -> 该边封闭的变体
+
+    /**
+     * 调色板变体 - 一个瓦片在一个旋转角度下的形态
+     */
+    public static final class Variant {
+        private final TileBlueprint tile;
+        private final int rotation;
+        private final int openSides;
+        private final String[] doorIds;
+        private final double weight;
+
+        private Variant(TileBlueprint tile, int rotation, int openSides, String[] doorIds, double weight) {
+            this.tile = tile;
+            this.rotation = rotation;
+            this.openSides = openSides;
+            this.doorIds = doorIds;
+            this.weight = weight;
+        }
+
+        /**
+         * 指定方向是否开放
+         */
+        public boolean isOpen(DoorDirection side) {
+            return (openSides & (1 << side.ordinal())) != 0;
+        }
+
+        /**
+         * 获取旋转后朝向指定方向的门ID
+         *
+         * @return 门ID，该方向封闭时返回null
+         */
+        public String getDoorId(DoorDirection side) {
+            return doorIds[side.ordinal()];
+        }
+
+        public TileBlueprint getTile() { return tile; }
+        public int getRotation() { return rotation; }
+        public boolean isEmpty() { return tile == null; }
+        public double getWeight() { return weight; }
+    }
+
+    /**
+     * 求解结果
+     */
+    public static final class Solution {
+        private final List<Variant> palette;
+        private final int width;
+        private final int depth;
+        private final int[] cells;
+
+        private Solution(List<Variant> palette, int width, int depth, int[] cells) {
+            this.palette = palette;
+            this.width = width;
+            this.depth = depth;
+            this.cells = cells;
+        }
+
+        /**
+         * 获取单元上的变体
+         *
+         * @param cx 单元X
+         * @param cz 单元Z
+         * @return 变体，空单元返回空变体
+         */
+        public Variant getVariant(int cx, int cz) {
+            return palette.get(cells[cz * width + cx]);
+        }
+
+        /**
+         * 仅保留最大的连通瓦片区域，其余瓦片清空
+         *
+         * 连通区域之间没有开放的边，清空整个区域不会留下悬空的门。
+         *
+         * @return 保留的瓦片数量
+         */
+        public int retainLargestComponent() {
+            int[] component = new int[cells.length];
+            int[] stack = new int[cells.length];
+            int best = -1;
+            int bestSize = 0;
+            int next = 0;
+
+            for (int start = 0; start < cells.length; start++) {
+                if (cells[start] == EMPTY || component[start] != 0) {
+                    continue;
+                }
+                int id = ++next;
+                int size = 0;
+                int top = 0;
+                stack[top++] = start;
+                component[start] = id;
+                while (top > 0) {
+                    int cell = stack[--top];
+                    size++;
+                    Variant variant = palette.get(cells[cell]);
+                    int cx = cell % width;
+                    int cz = cell / width;
+                    for (int side = 0; side < SIDES; side++) {
+                        if ((variant.openSides & (1 << side)) == 0) {
+                            continue;
+                        }
+                        int nx = cx + STEP_X[side];
+                        int nz = cz + STEP_Z[side];
+                        if (nx < 0 || nz < 0 || nx >= width || nz >= depth) {
+                            continue;
+                        }
+                        int neighbour = nz * width + nx;
+                        if (cells[neighbour] != EMPTY && component[neighbour] == 0) {
+                            component[neighbour] = id;
+                            stack[top++] = neighbour;
+                        }
+                    }
+                }
+                if (size > bestSize) {
+                    bestSize = size;
+                    best = id;
+                }
+            }
+
+            for (int i = 0; i < cells.length; i++) {
+                if (component[i] != best) {
+                    cells[i] = EMPTY;
+                }
+            }
+            return bestSize;
+        }
+
+        public int getWidth() { return width; }
+        public int getDepth() { return depth; }
+
+        public int getTileCount() {
+            int count = 0;
+            for (int cell : cells) {
+                if (cell != EMPTY) count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param tiles 参与求解的瓦片，应具有相同的正方形占地
+     * @param emptyWeight 空变体的权重，越大瓦片越稀疏
+     * @param random 随机生成器
+     * @param cancellation 取消令牌
+     */
+    public TileSolver(List<TileBlueprint> tiles, double emptyWeight, RandomGenerator random,
+                      CancellationToken cancellation) {
+        this.random = random;
+        this.cancellation = cancellation != null ? cancellation : CancellationToken.none();
+
+        List<Variant> variants = new ArrayList<>();
+        variants.add(new Variant(null, 0, 0, new String[SIDES], Math.max(emptyWeight, 0.0001)));
+        for (TileBlueprint tile : tiles) {
+            addVariants(variants, tile);
+        }
+        this.palette = Collections.unmodifiableList(variants);
+        this.words = (palette.size() + 63) >>> 6;
+
+        this.weights = new double[palette.size()];
+        for (int v = 0; v < palette.size(); v++) {
+            weights[v] = palette.get(v).weight;
+        }
+
+        this.support = new long[SIDES][palette.size()][words];
+        this.closedOn = new long[SIDES][words];
+        for (int side = 0; side < SIDES; side++) {
+            int opposite = (side + 2) % SIDES;
+            for (int v = 0; v < palette.size(); v++) {
+                Variant a = palette.get(v);
+                if ((a.openSides & (1 << side)) == 0) {
+                    closedOn[side][v >>> 6] |= 1L << v;
+                }
+                for (int u = 0; u < palette.size(); u++) {
+                    if (canBeAdjacent(a, side, palette.get(u), opposite)) {
+                        support[side][v][u >>> 6] |= 1L << u;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 为瓦片的每个旋转角度生成变体
+     */
+    private void addVariants(List<Variant> variants, TileBlueprint tile) {
+        // 按瓦片自身坐标系统计每个方向的门，门数量上限为0的方向视为封闭
+        String[] localDoors = new String[SIDES];
+        for (DoorInfo door : tile.getDoors()) {
+            DoorDirection direction = door.getDirection();
+            if (tile.getDoorLimit(direction) == 0 || localDoors[direction.ordinal()] != null) {
+                continue;
+            }
+            localDoors[direction.ordinal()] = door.getId();
+        }
+
+        double weight = BlueprintPool.selectionWeight(tile) / ROTATIONS.length;
+        for (int rotation : ROTATIONS) {
+            int open = 0;
+            String[] doorIds = new String[SIDES];
+            for (DoorDirection direction : DoorDirection.values()) {
+                String doorId = localDoors[direction.ordinal()];
+                if (doorId != null) {
+                    int side = direction.rotate(rotation).ordinal();
+                    open |= 1 << side;
+                    doorIds[side] = doorId;
+                }
+            }
+
+            if (open == 0 || !matchesShape(tile, open)) {
+                continue;
+            }
+            variants.add(new Variant(tile, rotation, open, doorIds, weight));
+        }
+    }
+
+    /**
+     * 检查开放边是否符合瓦片声明的形状
+     */
+    private static boolean matchesShape(TileBlueprint tile, int open) {
+        int count = Integer.bitCount(open);
+        if (tile.isDeadEndTile() && count != 1) {
+            return false;
+        }
+        // 两个相邻的边：北东、东南、南西、西北
+        return !tile.isCornerTile() || (count == 2 && open != 0b0101 && open != 0b1010);
+    }
+
+    /**
+     * 两个变体能否以指定的边相邻
+     */
+    private static boolean canBeAdjacent(Variant a, int sideA, Variant b, int sideB) {
+        boolean openA = (a.openSides & (1 << sideA)) != 0;
+        boolean openB = (b.openSides & (1 << sideB)) != 0;
+        if (openA != openB) {
+            return false;
+        }
+        return !openA || (a.tile.isCompatibleWith(b.tile.getId()) && b.tile.isCompatibleWith(a.tile.getId()));
+    }
+
+    /**
+     * 求解网格
+     *
+     * @param width 网格X方向的单元数
+     * @param depth 网格Z方向的单元数
+     * @param blocked 被占用的单元（按 z * width + x 索引），只能为空，可以为null
+     * @return 求解结果，多次重试仍然矛盾时返回null
+     * @throws CancellationToken.CancelledException 生成被取消或超时
+     */
+    public Solution solve(int width, int depth, boolean[] blocked) {
+        if (palette.size() <= 1 || width <= 0 || depth <= 0) {
+            return null;
+        }
+
+        for (int attempt = 0; attempt <= MAX_RESTARTS; attempt++) {
+            int[] cells = attempt(width, depth, blocked);
+            if (cells != null) {
+                return new Solution(palette, width, depth, cells);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 单次求解：观察熵最小的单元、坍缩、传播，直到全部确定或出现矛盾
+     *
+     * @return 每个单元的变体索引，出现矛盾返回null
+     */
+    private int[] attempt(int width, int depth, boolean[] blocked) {
+        int cellCount = width * depth;
+        long[] domains = new long[cellCount * words];
+        int[] queue = new int[cellCount];
+        boolean[] queued = new boolean[cellCount];
+        int queueSize = 0;
+
+        // 初始候选：边界单元向外的一边必须封闭，被占用的单元只能为空
+        for (int cz = 0; cz < depth; cz++) {
+            for (int cx = 0; cx < width; cx++) {
+                int cell = cz * width + cx;
+                int base = cell * words;
+                if (blocked != null && blocked[cell]) {
+                    domains[base] = 1L << EMPTY;
+                } else {
+                    for (int w = 0; w < words; w++) {
+                        domains[base + w] = fullWord(w);
+                    }
+                    for (int side = 0; side < SIDES; side++) {
+                        int nx = cx + STEP_X[side];
+                        int nz = cz + STEP_Z[side];
+                        if (nx < 0 || nz < 0 || nx >= width || nz >= depth) {
+                            for (int w = 0; w < words; w++) {
+                                domains[base + w] &= closedOn[side][w];
+                            }
+                        }
+                    }
+                }
+                queue[queueSize++] = cell;
+                queued[cell] = true;
+            }
+        }
+
+        if (!propagate(domains, width, depth, queue, queued, queueSize)) {
+            return null;
+        }
+
+        while (true) {
+            cancellation.throwIfCancelled();
+
+            int cell = lowestEntropyCell(domains, cellCount);
+            if (cell < 0) {
+                break;
+            }
+
+            int variant = chooseVariant(domains, cell * words);
+            int base = cell * words;
+            for (int w = 0; w < words; w++) {
+                domains[base + w] = 0L;
+            }
+            domains[base + (variant >>> 6)] = 1L << variant;
+
+            queue[0] = cell;
+            queued[cell] = true;
+            if (!propagate(domains, width, depth, queue, queued, 1)) {
+                return null;
+            }
+        }
+
+        int[] cells = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int base = cell * words;
+            for (int w = 0; w < words; w++) {
+                if (domains[base + w] != 0L) {
+                    cells[cell] = (w << 6) + Long.numberOfTrailingZeros(domains[base + w]);
+                    break;
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * 弧相容传播：单元的候选变化后，收紧相邻单元的候选，直到不再变化
+     *
+     * @return 是否没有出现矛盾
+     */
+    private boolean propagate(long[] domains, int width, int depth, int[] queue, boolean[] queued, int size) {
+        long[] allowed = new long[words];
+        int head = 0;
+        int count = size;
+
+        while (count > 0) {
+            int cell = queue[head];
+            head = (head + 1) % queue.length;
+            count--;
+            queued[cell] = false;
+
+            int cx = cell % width;
+            int cz = cell / width;
+            int base = cell * words;
+
+            for (int side = 0; side < SIDES; side++) {
+                int nx = cx + STEP_X[side];
+                int nz = cz + STEP_Z[side];
+                if (nx < 0 || nz < 0 || nx >= width || nz >= depth) {
+                    continue;
+                }
+
+                // 当前单元所有候选在这一边允许的相邻变体的并集
+                Arrays.fill(allowed, 0L);
+                for (int w = 0; w < words; w++) {
+                    long bits = domains[base + w];
+                    while (bits != 0L) {
+                        int v = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        long[] row = support[side][v];
+                        for (int k = 0; k < words; k++) {
+                            allowed[k] |= row[k];
+                        }
+                    }
+                }
+
+                int neighbour = nz * width + nx;
+                int neighbourBase = neighbour * words;
+                boolean changed = false;
+                boolean empty = true;
+                for (int w = 0; w < words; w++) {
+                    long before = domains[neighbourBase + w];
+                    long after = before & allowed[w];
+                    if (after != before) {
+                        domains[neighbourBase + w] = after;
+                        changed = true;
+                    }
+                    if (after != 0L) {
+                        empty = false;
+                    }
+                }
+
+                if (empty) {
+                    return false;
+                }
+                if (changed && !queued[neighbour]) {
+                    queue[(head + count) % queue.length] = neighbour;
+                    queued[neighbour] = true;
+                    count++;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 找到候选数量最少（大于1）的单元，并列时随机选择一个
+     *
+     * @return 单元索引，全部确定时返回-1
+     */
+    private int lowestEntropyCell(long[] domains, int cellCount) {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int ties = 0;
+
+        for (int cell = 0; cell < cellCount; cell++) {
+            int count = 0;
+            int base = cell * words;
+            for (int w = 0; w < words; w++) {
+                count += Long.bitCount(domains[base + w]);
+            }
+            if (count <= 1 || count > bestCount) {
+                continue;
+            }
+            if (count < bestCount) {
+                bestCount = count;
+                best = cell;
+                ties = 1;
+            } else if (random.getSplittableRandom().nextInt(++ties) == 0) {
+                best = cell;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 按权重从单元的候选中选择一个变体
+     */
+    private int chooseVariant(long[] domains, int base) {
+        double total = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = domains[base + w];
+            while (bits != 0L) {
+                total += weights[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+
+        double target = random.getSplittableRandom().nextDouble() * total;
+        int last = -1;
+        for (int w = 0; w < words; w++) {
+            long bits = domains[base + w];
+            while (bits != 0L) {
+                last = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                target -= weights[last];
+                if (target < 0) {
+                    return last;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 调色板全集在指定字上的位
+     */
+    private long fullWord(int word) {
+        int remaining = palette.size() - (word << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public List<Variant> getPalette() { return palette; }
+    public int getPaletteSize() { return palette.size(); }
+}
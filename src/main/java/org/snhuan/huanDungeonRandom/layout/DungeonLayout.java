@@ -0,0 +1,363 @@
+package org.snhuan.huanDungeonRandom.layout;
+
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
+import org.snhuan.huanDungeonRandom.generation.OccupancyGrid;
+import org.snhuan.huanDungeonRandom.generation.RandomGenerator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 地牢布局 - 与 Bukkit 对象模型无关的纯数据布局
+ *
+ * 布局只包含相对于原点的整数坐标、蓝图ID、旋转角度和门连接图，
+ * 可以在任意线程中生成、缓存、序列化和比较。
+ * 只有在主线程提交时才会结合世界和原点转换为 DungeonInstance。
+ *
+ * 布局构建完成后不可变，可在线程之间安全共享。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class DungeonLayout {
+
+    private final String themeId;
+    private final long seed;
+    private final long registryVersion;
+    private final RandomGenerator.GenerationParameters parameters;
+    private final List<Placement> placements;
+    private final List<Connection> connections;
+    private final Map<String, Point> namedPoints;
+    private final int doorCount;
+    private final int[] bounds;
+
+    /**
+     * 蓝图放置信息
+     */
+    public static final class Placement {
+        private final String blueprintId;
+        private final BlueprintType type;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final int rotation;
+        private final int[] footprint;
+
+        public Placement(String blueprintId, BlueprintType type, int x, int y, int z, int rotation, int[] footprint) {
+            this.blueprintId = blueprintId;
+            this.type = type;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.rotation = rotation;
+            this.footprint = footprint.clone();
+        }
+
+        public String getBlueprintId() { return blueprintId; }
+        public BlueprintType getType() { return type; }
+        public int getX() { return x; }
+        public int getY() { return y; }
+        public int getZ() { return z; }
+        public int getRotation() { return rotation; }
+
+        /**
+         * 获取占据的包围盒 {minX, minY, minZ, maxX, maxY, maxZ}，最大值不包含
+         */
+        public int[] getFootprint() { return footprint.clone(); }
+
+        @Override
+        public String toString() {
+            return String.format("Placement{%s, pos=(%d,%d,%d), rot=%d}", blueprintId, x, y, z, rotation);
+        }
+    }
+
+    /**
+     * 门连接信息
+     */
+    public static final class Connection {
+        private final int fromIndex;
+        private final String fromDoorId;
+        private final int toIndex;
+        private final String toDoorId;
+
+        public Connection(int fromIndex, String fromDoorId, int toIndex, String toDoorId) {
+            this.fromIndex = fromIndex;
+            this.fromDoorId = fromDoorId;
+            this.toIndex = toIndex;
+            this.toDoorId = toDoorId;
+        }
+
+        public int getFromIndex() { return fromIndex; }
+        public String getFromDoorId() { return fromDoorId; }
+        public int getToIndex() { return toIndex; }
+        public String getToDoorId() { return toDoorId; }
+    }
+
+    /**
+     * 相对坐标点
+     */
+    public static final class Point {
+        private final int x;
+        private final int y;
+        private final int z;
+
+        public Point(int x, int y, int z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        public int getX() { return x; }
+        public int getY() { return y; }
+        public int getZ() { return z; }
+    }
+
+    private DungeonLayout(Builder builder) {
+        this.themeId = builder.themeId;
+        this.seed = builder.seed;
+        this.registryVersion = builder.registryVersion;
+        this.parameters = builder.parameters;
+        this.placements = Collections.unmodifiableList(new ArrayList<>(builder.placements));
+        this.connections = Collections.unmodifiableList(new ArrayList<>(builder.connections));
+        this.namedPoints = Collections.unmodifiableMap(new LinkedHashMap<>(builder.namedPoints));
+        this.doorCount = builder.doorCount;
+        this.bounds = builder.bounds.clone();
+    }
+
+    /**
+     * 创建布局构建器
+     *
+     * @param themeId 主题ID
+     * @param seed 生成种子
+     * @param registryVersion 蓝图注册表版本
+     * @return 构建器
+     */
+    public static Builder builder(String themeId, long seed, long registryVersion) {
+        return new Builder(themeId, seed, registryVersion);
+    }
+
+    /**
+     * 获取命名点
+     *
+     * @param name 名称
+     * @return 坐标点，不存在返回null
+     */
+    public Point getNamedPoint(String name) {
+        return namedPoints.get(name);
+    }
+
+    /**
+     * 获取布局的整体包围盒 {minX, minY, minZ, maxX, maxY, maxZ}，最大值不包含
+     *
+     * @return 包围盒，布局为空时全部为0
+     */
+    public int[] getBounds() {
+        return bounds.clone();
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public String getThemeId() { return themeId; }
+    public long getSeed() { return seed; }
+    public long getRegistryVersion() { return registryVersion; }
+    public RandomGenerator.GenerationParameters getParameters() { return parameters; }
+    public List<Placement> getPlacements() { return placements; }
+    public List<Connection> getConnections() { return connections; }
+    public Map<String, Point> getNamedPoints() { return namedPoints; }
+    public int getPlacementCount() { return placements.size(); }
+    public int getDoorCount() { return doorCount; }
+    public boolean isEmpty() { return placements.isEmpty(); }
+
+    @Override
+    public String toString() {
+        return String.format("DungeonLayout{theme='%s', seed=%d, placements=%d, connections=%d}",
+            themeId, seed, placements.size(), connections.size());
+    }
+
+    /**
+     * 布局构建器 - 在生成线程中使用，不是线程安全的
+     */
+    public static final class Builder {
+        private static final int DEFAULT_OCCUPANCY_CELL_SIZE = 16;
+
+        private final String themeId;
+        private final long seed;
+        private final long registryVersion;
+        private RandomGenerator.GenerationParameters parameters;
+        private final List<Placement> placements = new ArrayList<>();
+        private final List<Connection> connections = new ArrayList<>();
+        private final Map<String, Point> namedPoints = new LinkedHashMap<>();
+        private final List<Integer> placementDoors = new ArrayList<>();
+        private int doorCount;
+        private final int[] bounds = new int[6];
+        private OccupancyGrid occupancy = new OccupancyGrid(DEFAULT_OCCUPANCY_CELL_SIZE);
+
+        private Builder(String themeId, long seed, long registryVersion) {
+            this.themeId = themeId;
+            this.seed = seed;
+            this.registryVersion = registryVersion;
+        }
+
+        public Builder setParameters(RandomGenerator.GenerationParameters parameters) {
+            this.parameters = parameters;
+            return this;
+        }
+
+        /**
+         * 设置占用网格的单元尺寸，应在放置蓝图之前调用
+         *
+         * @param cellSize 单元尺寸（方块）
+         * @return 构建器
+         */
+        public Builder setOccupancyCellSize(int cellSize) {
+            OccupancyGrid grid = new OccupancyGrid(cellSize);
+            for (Placement placement : placements) {
+                grid.occupy(placement.footprint);
+                grid.addAnchor(placement.x, placement.y, placement.z);
+            }
+            this.occupancy = grid;
+            return this;
+        }
+
+        /**
+         * 放置蓝图
+         *
+         * @param blueprint 蓝图
+         * @param x 相对原点的X
+         * @param y 相对原点的Y
+         * @param z 相对原点的Z
+         * @param rotation 旋转角度
+         * @return 放置索引
+         */
+        public int addPlacement(Blueprint blueprint, int x, int y, int z, int rotation) {
+            int[] footprint = OccupancyGrid.footprint(x, y, z,
+                blueprint.getSizeX(), blueprint.getSizeY(), blueprint.getSizeZ(), rotation);
+            int index = addPlacement(new Placement(blueprint.getId(), blueprint.getType(), x, y, z, rotation, footprint));
+            int doors = blueprint.getDoors().size();
+            placementDoors.set(index, doors);
+            doorCount += doors;
+            return index;
+        }
+
+        /**
+         * 放置已有的放置信息（用于反序列化）
+         *
+         * @param placement 放置信息
+         * @return 放置索引
+         */
+        int addPlacement(Placement placement) {
+            int[] footprint = placement.footprint;
+            placements.add(placement);
+            placementDoors.add(0);
+            occupancy.occupy(footprint);
+            occupancy.addAnchor(placement.x, placement.y, placement.z);
+
+            if (placements.size() == 1) {
+                System.arraycopy(footprint, 0, bounds, 0, 6);
+            } else {
+                for (int i = 0; i < 3; i++) {
+                    bounds[i] = Math.min(bounds[i], footprint[i]);
+                    bounds[i + 3] = Math.max(bounds[i + 3], footprint[i + 3]);
+                }
+            }
+            return placements.size() - 1;
+        }
+
+        /**
+         * 撤销最近一次放置，同时移除与之相关的连接
+         *
+         * 用于放置搜索的回溯，只能按放置的相反顺序撤销。
+         *
+         * @return 是否撤销成功
+         */
+        public boolean removeLastPlacement() {
+            if (placements.isEmpty()) {
+                return false;
+            }
+
+            int index = placements.size() - 1;
+            Placement placement = placements.remove(index);
+            doorCount -= placementDoors.remove(index);
+            occupancy.removeLast();
+            occupancy.removeAnchor(placement.x, placement.y, placement.z);
+            connections.removeIf(connection -> connection.fromIndex == index || connection.toIndex == index);
+
+            // 重新计算包围盒
+            Arrays.fill(bounds, 0);
+            for (int i = 0; i < placements.size(); i++) {
+                int[] footprint = placements.get(i).footprint;
+                for (int axis = 0; axis < 3; axis++) {
+                    bounds[axis] = i == 0 ? footprint[axis] : Math.min(bounds[axis], footprint[axis]);
+                    bounds[axis + 3] = i == 0 ? footprint[axis + 3] : Math.max(bounds[axis + 3], footprint[axis + 3]);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 设置门总数（用于反序列化）
+         */
+        Builder setDoorCount(int doorCount) {
+            this.doorCount = doorCount;
+            return this;
+        }
+
+        public Builder addConnection(int fromIndex, String fromDoorId, int toIndex, String toDoorId) {
+            if (fromIndex >= 0 && toIndex >= 0 && fromIndex < placements.size() && toIndex < placements.size()) {
+                connections.add(new Connection(fromIndex, fromDoorId, toIndex, toDoorId));
+            }
+            return this;
+        }
+
+        public Builder addNamedPoint(String name, int x, int y, int z) {
+            if (name != null && !name.trim().isEmpty()) {
+                namedPoints.put(name, new Point(x, y, z));
+            }
+            return this;
+        }
+
+        // Getter方法供生成器使用
+        public Placement getPlacement(int index) {
+            return placements.get(index);
+        }
+
+        public int getPlacementCount() {
+            return placements.size();
+        }
+
+        public Point getNamedPoint(String name) {
+            return namedPoints.get(name);
+        }
+
+        public Connection getConnection(int index) {
+            return connections.get(index);
+        }
+
+        public int getConnectionCount() {
+            return connections.size();
+        }
+
+        public OccupancyGrid getOccupancy() {
+            return occupancy;
+        }
+
+        /**
+         * 获取已放置蓝图的包围盒
+         *
+         * @return {minX, minY, minZ, maxX, maxY, maxZ}，没有放置时全为0
+         */
+        public int[] getBounds() {
+            return bounds.clone();
+        }
+
+        public DungeonLayout build() {
+            return new DungeonLayout(this);
+        }
+    }
+}
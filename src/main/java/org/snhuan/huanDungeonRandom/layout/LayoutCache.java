@@ -0,0 +1,349 @@
+package org.snhuan.huanDungeonRandom.layout;
+
+import org.snhuan.huanDungeonRandom.generation.RandomGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * 布局缓存 - 按 (主题, 生成参数, 种子, 注册表版本) 缓存已生成的布局
+ *
+ * 核心功能：
+ * - 内存中按 LRU 保留固定数量的布局
+ * - 可选的磁盘溢出：被逐出的布局写入数据文件夹，未命中时再从磁盘读回
+ * - 命中率、逐出和溢出统计
+ *
+ * 注册表版本只在一次运行内有意义，因此磁盘目录在创建缓存时会被清空。
+ * 所有方法都是线程安全的。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class LayoutCache {
+
+    private static final String FILE_SUFFIX = ".layout";
+
+    private final Logger logger;
+    private final int maxMemoryEntries;
+    private final int maxDiskEntries;
+    private final File spillFolder;
+
+    // 内存缓存（访问顺序，队首为最久未使用）
+    private final LinkedHashMap<LayoutKey, DungeonLayout> memory;
+
+    // 磁盘索引（插入顺序，队首为最早溢出）
+    private final LinkedHashMap<LayoutKey, File> disk;
+
+    // 统计信息
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong diskHitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong spillCount = new AtomicLong();
+
+    /**
+     * 缓存键
+     */
+    public static final class LayoutKey {
+        private final String themeId;
+        private final RandomGenerator.GenerationParameters parameters;
+        private final long seed;
+        private final long registryVersion;
+
+        public LayoutKey(String themeId, RandomGenerator.GenerationParameters parameters, long seed, long registryVersion) {
+            this.themeId = themeId;
+            this.parameters = parameters;
+            this.seed = seed;
+            this.registryVersion = registryVersion;
+        }
+
+        /**
+         * 根据布局创建缓存键
+         *
+         * @param layout 地牢布局
+         * @return 缓存键
+         */
+        public static LayoutKey of(DungeonLayout layout) {
+            return new LayoutKey(layout.getThemeId(), layout.getParameters(), layout.getSeed(), layout.getRegistryVersion());
+        }
+
+        public String getThemeId() { return themeId; }
+        public RandomGenerator.GenerationParameters getParameters() { return parameters; }
+        public long getSeed() { return seed; }
+        public long getRegistryVersion() { return registryVersion; }
+
+        /**
+         * 生成磁盘文件名
+         */
+        String toFileName() {
+            String safeTheme = themeId.replaceAll("[^A-Za-z0-9_-]", "_");
+            return String.format("%s_%016x_%d_%08x%s", safeTheme, seed, registryVersion,
+                Objects.hashCode(parameters), FILE_SUFFIX);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (obj == null || getClass() != obj.getClass()) return false;
+            LayoutKey that = (LayoutKey) obj;
+            return seed == that.seed &&
+                   registryVersion == that.registryVersion &&
+                   themeId.equals(that.themeId) &&
+                   Objects.equals(parameters, that.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(themeId, parameters, seed, registryVersion);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("LayoutKey{theme='%s', seed=%d, version=%d}", themeId, seed, registryVersion);
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param logger 日志记录器
+     * @param maxMemoryEntries 内存中最多保留的布局数量
+     * @param maxDiskEntries 磁盘中最多保留的布局数量，0 表示不使用磁盘
+     * @param spillFolder 磁盘溢出目录，null 表示不使用磁盘
+     */
+    public LayoutCache(Logger logger, int maxMemoryEntries, int maxDiskEntries, File spillFolder) {
+        this.logger = logger;
+        this.maxMemoryEntries = Math.max(1, maxMemoryEntries);
+        this.maxDiskEntries = spillFolder != null ? Math.max(0, maxDiskEntries) : 0;
+        this.spillFolder = this.maxDiskEntries > 0 ? spillFolder : null;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        this.disk = new LinkedHashMap<>();
+
+        if (this.spillFolder != null) {
+            prepareSpillFolder();
+        }
+    }
+
+    /**
+     * 查找布局
+     *
+     * @param key 缓存键
+     * @return 布局，未命中返回null
+     */
+    public DungeonLayout get(LayoutKey key) {
+        File file;
+        synchronized (this) {
+            DungeonLayout layout = memory.get(key);
+            if (layout != null) {
+                hitCount.incrementAndGet();
+                return layout;
+            }
+
+            file = disk.remove(key);
+            if (file == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+        }
+
+        // 磁盘读取不持有锁
+        DungeonLayout layout = readFromDisk(file);
+        if (!file.delete() && file.exists()) {
+            logger.fine("无法删除布局缓存文件: " + file.getName());
+        }
+
+        if (layout == null || !LayoutKey.of(layout).equals(key)) {
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        diskHitCount.incrementAndGet();
+        put(layout);
+        return layout;
+    }
+
+    /**
+     * 放入布局
+     *
+     * @param layout 地牢布局
+     */
+    public void put(DungeonLayout layout) {
+        if (layout == null || layout.isEmpty()) {
+            return;
+        }
+
+        LayoutKey key = LayoutKey.of(layout);
+        Map.Entry<LayoutKey, DungeonLayout> evicted = null;
+
+        synchronized (this) {
+            memory.put(key, layout);
+            if (memory.size() > maxMemoryEntries) {
+                Iterator<Map.Entry<LayoutKey, DungeonLayout>> iterator = memory.entrySet().iterator();
+                evicted = iterator.next();
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+
+        if (evicted != null && spillFolder != null) {
+            spill(evicted.getKey(), evicted.getValue());
+        }
+    }
+
+    /**
+     * 移除所有注册表版本与指定版本不同的布局
+     *
+     * @param registryVersion 当前注册表版本
+     * @return 移除的数量
+     */
+    public int evictStale(long registryVersion) {
+        int removed = 0;
+        synchronized (this) {
+            Iterator<LayoutKey> memoryKeys = memory.keySet().iterator();
+            while (memoryKeys.hasNext()) {
+                if (memoryKeys.next().registryVersion != registryVersion) {
+                    memoryKeys.remove();
+                    removed++;
+                }
+            }
+
+            Iterator<Map.Entry<LayoutKey, File>> diskEntries = disk.entrySet().iterator();
+            while (diskEntries.hasNext()) {
+                Map.Entry<LayoutKey, File> entry = diskEntries.next();
+                if (entry.getKey().registryVersion != registryVersion) {
+                    entry.getValue().delete();
+                    diskEntries.remove();
+                    removed++;
+                }
+            }
+        }
+
+        evictionCount.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * 清空缓存（包括磁盘文件）
+     */
+    public void clear() {
+        synchronized (this) {
+            memory.clear();
+            for (File file : disk.values()) {
+                file.delete();
+            }
+            disk.clear();
+        }
+    }
+
+    /**
+     * 把布局写入磁盘
+     */
+    private void spill(LayoutKey key, DungeonLayout layout) {
+        File file = new File(spillFolder, key.toFileName());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            LayoutSerializer.write(layout, out);
+        } catch (IOException e) {
+            logger.warning("布局溢出到磁盘失败: " + e.getMessage());
+            file.delete();
+            return;
+        }
+
+        File dropped = null;
+        synchronized (this) {
+            disk.put(key, file);
+            spillCount.incrementAndGet();
+            if (disk.size() > maxDiskEntries) {
+                Iterator<Map.Entry<LayoutKey, File>> iterator = disk.entrySet().iterator();
+                dropped = iterator.next().getValue();
+                iterator.remove();
+                evictionCount.incrementAndGet();
+            }
+        }
+
+        if (dropped != null) {
+            dropped.delete();
+        }
+    }
+
+    /**
+     * 从磁盘读取布局
+     */
+    private DungeonLayout readFromDisk(File file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            return LayoutSerializer.read(in);
+        } catch (IOException e) {
+            logger.warning("读取布局缓存文件失败: " + file.getName() + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 准备磁盘目录，清除上次运行留下的文件
+     */
+    private void prepareSpillFolder() {
+        if (!spillFolder.exists() && !spillFolder.mkdirs()) {
+            logger.warning("无法创建布局缓存目录: " + spillFolder.getPath());
+            return;
+        }
+
+        File[] stale = spillFolder.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+    }
+
+    // ==================== 统计方法 ====================
+
+    /**
+     * 获取缓存命中率（包括磁盘命中）
+     *
+     * @return 命中率（0.0-1.0）
+     */
+    public double getHitRate() {
+        long hits = hitCount.get() + diskHitCount.get();
+        long total = hits + missCount.get();
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    public synchronized int getMemorySize() { return memory.size(); }
+    public synchronized int getDiskSize() { return disk.size(); }
+    public long getHitCount() { return hitCount.get(); }
+    public long getDiskHitCount() { return diskHitCount.get(); }
+    public long getMissCount() { return missCount.get(); }
+    public long getEvictionCount() { return evictionCount.get(); }
+    public long getSpillCount() { return spillCount.get(); }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return 格式化的统计信息
+     */
+    public String getStatusInfo() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("布局缓存: ").append(getMemorySize()).append("/").append(maxMemoryEntries);
+        if (spillFolder != null) {
+            sb.append(" (磁盘: ").append(getDiskSize()).append("/").append(maxDiskEntries).append(")");
+        }
+        sb.append("\n");
+        sb.append("命中次数: ").append(hitCount.get()).append(" (磁盘: ").append(diskHitCount.get()).append(")\n");
+        sb.append("未命中次数: ").append(missCount.get()).append("\n");
+        sb.append("逐出次数: ").append(evictionCount.get()).append("\n");
+        sb.append("命中率: ").append(String.format("%.2f%%", getHitRate() * 100)).append("\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package org.snhuan.huanDungeonRandom.layout;
+
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
+import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonTheme;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 布局评分器 - 为多候选生成计算布局质量分数
+ *
+ * 评分项（均在 0 到 1 之间）：
+ * - 房间种类均衡：房间类型分布的归一化熵，种类越多越均匀得分越高
+ * - BOSS路径：出生点到BOSS房的深度越接近目标深度得分越高
+ * - 占地紧凑：所有蓝图的水平占地面积之和与包围盒面积之比
+ * - 死路：死路占可达蓝图的比例越低得分越高
+ *
+ * 总分为按主题权重计算的加权平均，只依赖布局和验证报告，不访问世界。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class LayoutScorer {
+
+    /**
+     * 私有构造函数，防止实例化工具类
+     */
+    private LayoutScorer() {
+        throw new UnsupportedOperationException("工具类不能被实例化");
+    }
+
+    /**
+     * 评分结果
+     */
+    public static final class Score {
+        private final double total;
+        private final double roomMix;
+        private final double bossPath;
+        private final double footprint;
+        private final double deadEnd;
+
+        private Score(double total, double roomMix, double bossPath, double footprint, double deadEnd) {
+            this.total = total;
+            this.roomMix = roomMix;
+            this.bossPath = bossPath;
+            this.footprint = footprint;
+            this.deadEnd = deadEnd;
+        }
+
+        public double getTotal() { return total; }
+        public double getRoomMix() { return roomMix; }
+        public double getBossPath() { return bossPath; }
+        public double getFootprint() { return footprint; }
+        public double getDeadEnd() { return deadEnd; }
+
+        @Override
+        public String toString() {
+            return String.format("Score{total=%.3f, roomMix=%.3f, bossPath=%.3f, footprint=%.3f, deadEnd=%.3f}",
+                total, roomMix, bossPath, footprint, deadEnd);
+        }
+    }
+
+    /**
+     * 计算布局分数
+     *
+     * @param layout 地牢布局
+     * @param report 布局的验证报告
+     * @param config 评分权重，为null时使用默认权重
+     * @param resolver 根据蓝图ID解析蓝图，用于识别房间类型；可以为null
+     * @return 评分结果，布局为空或验证未通过时总分为0
+     */
+    public static Score score(DungeonLayout layout, LayoutValidator.Report report,
+                              DungeonTheme.ScoringConfig config, Function<String, Blueprint> resolver) {
+        if (layout == null || layout.isEmpty() || report == null || !report.isValid()) {
+            return new Score(0, 0, 0, 0, 0);
+        }
+        if (config == null) {
+            config = DungeonTheme.ScoringConfig.defaultConfig();
+        }
+
+        List<DungeonLayout.Placement> placements = layout.getPlacements();
+
+        double roomMix = roomMix(placements, resolver);
+        double bossPath = bossPath(report.getBossDepth(), config.getTargetBossDepth());
+        double footprint = footprint(placements, layout.getBounds());
+        double deadEnd = report.getReachableCount() > 0
+            ? 1.0 - Math.min(1.0, (double) report.getDeadEnds() / report.getReachableCount())
+            : 0.0;
+
+        double weightSum = config.getRoomMixWeight() + config.getBossPathWeight()
+            + config.getFootprintWeight() + config.getDeadEndWeight();
+        double total = weightSum <= 0 ? 0 : (roomMix * config.getRoomMixWeight()
+            + bossPath * config.getBossPathWeight()
+            + footprint * config.getFootprintWeight()
+            + deadEnd * config.getDeadEndWeight()) / weightSum;
+
+        return new Score(total, roomMix, bossPath, footprint, deadEnd);
+    }
+
+    /**
+     * 房间种类的归一化熵
+     *
+     * 能解析出房间类型时按类型统计，否则按蓝图ID统计。
+     */
+    private static double roomMix(List<DungeonLayout.Placement> placements, Function<String, Blueprint> resolver) {
+        Map<String, Integer> counts = new HashMap<>();
+        int rooms = 0;
+        for (DungeonLayout.Placement placement : placements) {
+            if (placement.getType() != BlueprintType.ROOM) {
+                continue;
+            }
+            String key = placement.getBlueprintId();
+            if (resolver != null) {
+                Blueprint blueprint = resolver.apply(key);
+                if (blueprint instanceof RoomBlueprint) {
+                    key = ((RoomBlueprint) blueprint).getRoomType().name();
+                }
+            }
+            counts.merge(key, 1, Integer::sum);
+            rooms++;
+        }
+
+        if (counts.size() < 2) {
+            return 0.0;
+        }
+
+        double entropy = 0;
+        for (int count : counts.values()) {
+            double p = (double) count / rooms;
+            entropy -= p * Math.log(p);
+        }
+        return entropy / Math.log(counts.size());
+    }
+
+    /**
+     * BOSS房深度与目标深度的接近程度
+     */
+    private static double bossPath(int bossDepth, int targetDepth) {
+        if (bossDepth == LayoutValidator.UNREACHABLE) {
+            return 0.0;
+        }
+        return 1.0 - Math.min(1.0, (double) Math.abs(bossDepth - targetDepth) / targetDepth);
+    }
+
+    /**
+     * 水平占地面积之和与包围盒面积之比
+     */
+    private static double footprint(List<DungeonLayout.Placement> placements, int[] bounds) {
+        long boundsArea = (long) (bounds[3] - bounds[0]) * (bounds[5] - bounds[2]);
+        if (boundsArea <= 0) {
+            return 0.0;
+        }
+
+        long area = 0;
+        for (DungeonLayout.Placement placement : placements) {
+            int[] box = placement.getFootprint();
+            area += (long) (box[3] - box[0]) * (box[5] - box[2]);
+        }
+        return Math.min(1.0, (double) area / boundsArea);
+    }
+}
@@ -0,0 +1,152 @@
+package org.snhuan.huanDungeonRandom.layout;
+
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
+import org.snhuan.huanDungeonRandom.generation.RandomGenerator;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 布局序列化器 - 以紧凑的二进制格式读写 DungeonLayout
+ *
+ * 格式不依赖 Bukkit，带有版本号，读取到未知版本时抛出 IOException。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class LayoutSerializer {
+
+    private static final int MAGIC = 0x48444C59; // "HDLY"
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * 私有构造函数，防止实例化工具类
+     */
+    private LayoutSerializer() {
+        throw new UnsupportedOperationException("工具类不能被实例化");
+    }
+
+    /**
+     * 写入布局
+     *
+     * @param layout 地牢布局
+     * @param out 输出流
+     * @throws IOException 写入失败
+     */
+    public static void write(DungeonLayout layout, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(layout.getThemeId());
+        out.writeLong(layout.getSeed());
+        out.writeLong(layout.getRegistryVersion());
+
+        RandomGenerator.GenerationParameters params = layout.getParameters();
+        out.writeBoolean(params != null);
+        if (params != null) {
+            out.writeInt(params.getRoomCount());
+            out.writeInt(params.getCorridorCount());
+            out.writeBoolean(params.isCompactLayout());
+            out.writeBoolean(params.isAddDecorations());
+            out.writeBoolean(params.isAllowBranching());
+            out.writeInt(params.getMaxDepth());
+            out.writeInt(params.getFloors());
+            out.writeInt(params.getFloorHeight());
+        }
+
+        out.writeInt(layout.getDoorCount());
+
+        out.writeInt(layout.getPlacementCount());
+        for (DungeonLayout.Placement placement : layout.getPlacements()) {
+            out.writeUTF(placement.getBlueprintId());
+            out.writeUTF(placement.getType().name());
+            out.writeInt(placement.getX());
+            out.writeInt(placement.getY());
+            out.writeInt(placement.getZ());
+            out.writeShort(placement.getRotation());
+            for (int value : placement.getFootprint()) {
+                out.writeInt(value);
+            }
+        }
+
+        out.writeInt(layout.getConnections().size());
+        for (DungeonLayout.Connection connection : layout.getConnections()) {
+            out.writeInt(connection.getFromIndex());
+            out.writeUTF(connection.getFromDoorId());
+            out.writeInt(connection.getToIndex());
+            out.writeUTF(connection.getToDoorId());
+        }
+
+        out.writeInt(layout.getNamedPoints().size());
+        for (Map.Entry<String, DungeonLayout.Point> entry : layout.getNamedPoints().entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().getX());
+            out.writeInt(entry.getValue().getY());
+            out.writeInt(entry.getValue().getZ());
+        }
+    }
+
+    /**
+     * 读取布局
+     *
+     * @param in 输入流
+     * @return 地牢布局
+     * @throws IOException 读取失败或格式不兼容
+     */
+    public static DungeonLayout read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是有效的布局文件");
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("不支持的布局格式版本: " + version);
+        }
+
+        String themeId = in.readUTF();
+        long seed = in.readLong();
+        long registryVersion = in.readLong();
+
+        DungeonLayout.Builder builder = DungeonLayout.builder(themeId, seed, registryVersion);
+        if (in.readBoolean()) {
+            builder.setParameters(new RandomGenerator.GenerationParameters(
+                in.readInt(), in.readInt(), in.readBoolean(), in.readBoolean(), in.readBoolean(), in.readInt(),
+                in.readInt(), in.readInt()));
+        }
+
+        builder.setDoorCount(in.readInt());
+
+        int placementCount = in.readInt();
+        for (int i = 0; i < placementCount; i++) {
+            String blueprintId = in.readUTF();
+            BlueprintType type;
+            try {
+                type = BlueprintType.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("未知的蓝图类型", e);
+            }
+            int x = in.readInt();
+            int y = in.readInt();
+            int z = in.readInt();
+            int rotation = in.readShort();
+            int[] footprint = new int[6];
+            for (int j = 0; j < footprint.length; j++) {
+                footprint[j] = in.readInt();
+            }
+            builder.addPlacement(new DungeonLayout.Placement(blueprintId, type, x, y, z, rotation, footprint));
+        }
+
+        int connectionCount = in.readInt();
+        for (int i = 0; i < connectionCount; i++) {
+            builder.addConnection(in.readInt(), in.readUTF(), in.readInt(), in.readUTF());
+        }
+
+        int pointCount = in.readInt();
+        for (int i = 0; i < pointCount; i++) {
+            builder.addNamedPoint(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,339 @@
+package org.snhuan.huanDungeonRandom.layout;
+
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.blueprint.BlueprintType;
+import org.snhuan.huanDungeonRandom.blueprint.templates.RoomBlueprint;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 布局验证器 - 在放置任何方块之前检查布局的连通性和可达性
+ *
+ * 验证内容：
+ * - 布局必须有出生点，出生点所在的蓝图作为起点
+ * - 以门连接为边构建无向图，用并查集统计连通分量
+ * - 从起点广度优先遍历，计算每个蓝图的深度（经过的门数）
+ * - 每个房间都必须能从出生点到达，否则布局无效
+ * - 统计死路（只有一个连接的非起点蓝图）以及BOSS房和出口的深度
+ *
+ * 邻接表以数组形式按连接数一次性构建，所有步骤都与蓝图数和连接数成线性关系。
+ * 瓦片和走廊不要求可达：散布模式中瓦片区域与房间相互独立。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class LayoutValidator {
+
+    /** 深度未知或不可达 */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * 私有构造函数，防止实例化工具类
+     */
+    private LayoutValidator() {
+        throw new UnsupportedOperationException("工具类不能被实例化");
+    }
+
+    /**
+     * 验证报告
+     */
+    public static final class Report {
+        private final boolean valid;
+        private final String message;
+        private final int componentCount;
+        private final int reachableCount;
+        private final int unreachableRooms;
+        private final int deadEnds;
+        private final int maxDepth;
+        private final int bossDepth;
+        private final int exitDepth;
+
+        private Report(boolean valid, String message, int componentCount, int reachableCount, int unreachableRooms,
+                       int deadEnds, int maxDepth, int bossDepth, int exitDepth) {
+            this.valid = valid;
+            this.message = message;
+            this.componentCount = componentCount;
+            this.reachableCount = reachableCount;
+            this.unreachableRooms = unreachableRooms;
+            this.deadEnds = deadEnds;
+            this.maxDepth = maxDepth;
+            this.bossDepth = bossDepth;
+            this.exitDepth = exitDepth;
+        }
+
+        private static Report invalid(String message) {
+            return new Report(false, message, 0, 0, 0, 0, 0, UNREACHABLE, UNREACHABLE);
+        }
+
+        public boolean isValid() { return valid; }
+        public String getMessage() { return message; }
+        public int getComponentCount() { return componentCount; }
+        public int getReachableCount() { return reachableCount; }
+        public int getUnreachableRooms() { return unreachableRooms; }
+        public int getDeadEnds() { return deadEnds; }
+        public int getMaxDepth() { return maxDepth; }
+        public int getBossDepth() { return bossDepth; }
+        public int getExitDepth() { return exitDepth; }
+
+        @Override
+        public String toString() {
+            return "Report{valid=" + valid + ", message='" + message + "', components=" + componentCount
+                + ", reachable=" + reachableCount + ", unreachableRooms=" + unreachableRooms
+                + ", deadEnds=" + deadEnds + ", maxDepth=" + maxDepth
+                + ", bossDepth=" + bossDepth + ", exitDepth=" + exitDepth + "}";
+        }
+    }
+
+    /**
+     * 验证布局
+     *
+     * @param layout 地牢布局
+     * @param resolver 根据蓝图ID解析蓝图，用于识别BOSS房和出口；可以为null
+     * @return 验证报告
+     */
+    public static Report validate(DungeonLayout layout, Function<String, Blueprint> resolver) {
+        if (layout == null || layout.isEmpty()) {
+            return Report.invalid("布局为空");
+        }
+
+        List<DungeonLayout.Placement> placements = layout.getPlacements();
+        int count = placements.size();
+
+        int spawn = findPlacement(placements, layout.getNamedPoint("spawn"));
+        if (layout.getNamedPoint("spawn") == null || spawn < 0) {
+            return Report.invalid("地牢缺少出生点");
+        }
+
+        if (layout.getDoorCount() < 2) {
+            return Report.invalid("地牢门数量不足");
+        }
+
+        // 按连接构建邻接表（CSR），同时合并并查集
+        List<DungeonLayout.Connection> connections = layout.getConnections();
+        int[] degree = new int[count];
+        int[] parent = new int[count];
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+        int components = count;
+        for (DungeonLayout.Connection connection : connections) {
+            int from = connection.getFromIndex();
+            int to = connection.getToIndex();
+            degree[from]++;
+            degree[to]++;
+            int rootFrom = find(parent, from);
+            int rootTo = find(parent, to);
+            if (rootFrom != rootTo) {
+                parent[rootFrom] = rootTo;
+                components--;
+            }
+        }
+
+        int[] offsets = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] = offsets[i] + degree[i];
+        }
+        int[] edges = new int[offsets[count]];
+        int[] fill = Arrays.copyOf(offsets, count);
+        for (DungeonLayout.Connection connection : connections) {
+            edges[fill[connection.getFromIndex()]++] = connection.getToIndex();
+            edges[fill[connection.getToIndex()]++] = connection.getFromIndex();
+        }
+
+        // 广度优先计算深度
+        int[] depth = new int[count];
+        Arrays.fill(depth, UNREACHABLE);
+        int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        depth[spawn] = 0;
+        queue[tail++] = spawn;
+        int maxDepth = 0;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                int next = edges[e];
+                if (depth[next] == UNREACHABLE) {
+                    depth[next] = depth[node] + 1;
+                    maxDepth = Math.max(maxDepth, depth[next]);
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        // 统计房间可达性、死路以及BOSS房和出口
+        int spawnRoot = find(parent, spawn);
+        int unreachableRooms = 0;
+        int deadEnds = 0;
+        int boss = -1;
+        int exit = -1;
+        for (int i = 0; i < count; i++) {
+            DungeonLayout.Placement placement = placements.get(i);
+            if (placement.getType() == BlueprintType.ROOM && find(parent, i) != spawnRoot) {
+                unreachableRooms++;
+            }
+            if (i != spawn && degree[i] == 1 && depth[i] != UNREACHABLE) {
+                deadEnds++;
+            }
+
+            if (resolver != null && placement.getType() == BlueprintType.ROOM) {
+                Blueprint blueprint = resolver.apply(placement.getBlueprintId());
+                if (blueprint instanceof RoomBlueprint) {
+                    RoomBlueprint.RoomType roomType = ((RoomBlueprint) blueprint).getRoomType();
+                    if (roomType == RoomBlueprint.RoomType.BOSS && boss < 0) {
+                        boss = i;
+                    } else if (roomType == RoomBlueprint.RoomType.EXIT && exit < 0) {
+                        exit = i;
+                    }
+                }
+            }
+        }
+
+        // 没有专门的房间类型时，按命名点定位
+        if (boss < 0) {
+            boss = findPlacement(placements, layout.getNamedPoint("boss"));
+        }
+        if (exit < 0) {
+            exit = findPlacement(placements, layout.getNamedPoint("exit"));
+        }
+
+        int bossDepth = boss >= 0 ? depth[boss] : UNREACHABLE;
+        int exitDepth = exit >= 0 ? depth[exit] : UNREACHABLE;
+
+        String message;
+        boolean valid = unreachableRooms == 0;
+        if (!valid) {
+            message = "有 " + unreachableRooms + " 个房间无法从出生点到达";
+        } else {
+            message = "布局连通";
+        }
+
+        return new Report(valid, message, components, tail, unreachableRooms, deadEnds, maxDepth, bossDepth, exitDepth);
+    }
+
+    /**
+     * 移除无法从出生点到达的房间
+     *
+     * 散布模式中房间先独立放置，再由走廊路由连接，路由失败的房间会成为孤岛。
+     * 此方法只移除与出生点不在同一连通分量的房间，走廊和瓦片保持不变；
+     * 位于被移除房间内的命名点一并移除，连接索引按新的放置顺序重新映射。
+     *
+     * @param layout 地牢布局
+     * @param resolver 根据蓝图ID解析蓝图，用于扣除被移除房间的门数；可以为null
+     * @param removed 输出：被移除的房间，可以为null
+     * @return 新的布局；没有出生点或没有房间需要移除时返回原布局
+     */
+    public static DungeonLayout pruneUnreachableRooms(DungeonLayout layout, Function<String, Blueprint> resolver,
+                                                      List<DungeonLayout.Placement> removed) {
+        if (layout == null || layout.isEmpty()) {
+            return layout;
+        }
+
+        List<DungeonLayout.Placement> placements = layout.getPlacements();
+        int count = placements.size();
+        int spawn = findPlacement(placements, layout.getNamedPoint("spawn"));
+        if (spawn < 0) {
+            return layout;
+        }
+
+        int[] parent = new int[count];
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+        }
+        for (DungeonLayout.Connection connection : layout.getConnections()) {
+            int rootFrom = find(parent, connection.getFromIndex());
+            int rootTo = find(parent, connection.getToIndex());
+            if (rootFrom != rootTo) {
+                parent[rootFrom] = rootTo;
+            }
+        }
+
+        int spawnRoot = find(parent, spawn);
+        int[] remap = new int[count];
+        int dropped = 0;
+        for (int i = 0; i < count; i++) {
+            DungeonLayout.Placement placement = placements.get(i);
+            if (placement.getType() == BlueprintType.ROOM && find(parent, i) != spawnRoot) {
+                remap[i] = -1;
+                dropped++;
+            } else {
+                remap[i] = i - dropped;
+            }
+        }
+        if (dropped == 0) {
+            return layout;
+        }
+
+        DungeonLayout.Builder builder = DungeonLayout.builder(layout.getThemeId(), layout.getSeed(), layout.getRegistryVersion())
+            .setParameters(layout.getParameters());
+        int doorCount = layout.getDoorCount();
+        for (int i = 0; i < count; i++) {
+            DungeonLayout.Placement placement = placements.get(i);
+            if (remap[i] >= 0) {
+                builder.addPlacement(placement);
+                continue;
+            }
+            Blueprint blueprint = resolver != null ? resolver.apply(placement.getBlueprintId()) : null;
+            if (blueprint != null) {
+                doorCount -= blueprint.getDoors().size();
+            }
+            if (removed != null) {
+                removed.add(placement);
+            }
+        }
+        builder.setDoorCount(doorCount);
+
+        for (DungeonLayout.Connection connection : layout.getConnections()) {
+            int from = remap[connection.getFromIndex()];
+            int to = remap[connection.getToIndex()];
+            if (from >= 0 && to >= 0) {
+                builder.addConnection(from, connection.getFromDoorId(), to, connection.getToDoorId());
+            }
+        }
+
+        for (Map.Entry<String, DungeonLayout.Point> entry : layout.getNamedPoints().entrySet()) {
+            DungeonLayout.Point point = entry.getValue();
+            int index = findPlacement(placements, point);
+            if (index < 0 || remap[index] >= 0) {
+                builder.addNamedPoint(entry.getKey(), point.getX(), point.getY(), point.getZ());
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * 查找包含指定点的放置
+     *
+     * @return 放置索引，点为null或不在任何蓝图内返回-1
+     */
+    private static int findPlacement(List<DungeonLayout.Placement> placements, DungeonLayout.Point point) {
+        if (point == null) {
+            return -1;
+        }
+        for (int i = 0; i < placements.size(); i++) {
+            int[] box = placements.get(i).getFootprint();
+            if (point.getX() >= box[0] && point.getX() < box[3]
+                && point.getY() >= box[1] && point.getY() < box[4]
+                && point.getZ() >= box[2] && point.getZ() < box[5]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 并查集查找（路径减半）
+     */
+    private static int find(int[] parent, int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+}
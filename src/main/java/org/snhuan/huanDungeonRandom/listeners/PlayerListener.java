@@ -1,5 +1,6 @@
 package org.snhuan.huanDungeonRandom.listeners;
 
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -76,6 +77,34 @@ public class PlayerListener implements Listener {
         }
     }
 
+    /**
+     * 玩家移动时展开附近尚未生成的门（仅流式生成的地牢）
+     *
+     * 展开会修改布局并提交方块放置，不能放在只应观察结果的 MONITOR 优先级中。
+     *
+     * @param event 玩家移动事件
+     */
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPlayerMoveExpand(PlayerMoveEvent event) {
+        // 只在跨越方块时检查，视角转动不触发
+        Location to = event.getTo();
+        if (to == null || !hasChangedBlock(event.getFrom(), to)) {
+            return;
+        }
+
+        DungeonInstance dungeonInstance = dungeonManager.getPlayerDungeon(event.getPlayer());
+        if (dungeonInstance == null) {
+            return;
+        }
+
+        try {
+            dungeonManager.expandDungeonAround(dungeonInstance, to);
+        } catch (Exception e) {
+            logger.severe("展开地牢时发生异常: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
     /**
      * 处理玩家交互事件
      *
@@ -282,6 +311,19 @@ public class PlayerListener implements Listener {
         }
     }
 
+    /**
+     * 检查移动是否跨越了方块
+     *
+     * @param from 起点
+     * @param to 终点
+     * @return 是否进入了不同的方块
+     */
+    private boolean hasChangedBlock(Location from, Location to) {
+        return from.getBlockX() != to.getBlockX()
+            || from.getBlockY() != to.getBlockY()
+            || from.getBlockZ() != to.getBlockZ();
+    }
+
     /**
      * 处理触发器结果
      *
@@ -0,0 +1,197 @@
+package org.snhuan.huanDungeonRandom.placement;
+
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.snhuan.huanDungeonRandom.utils.LocationUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 方块日志 - 记录地牢放置时覆盖的原始方块状态，用于拆除和重置
+ *
+ * 日志按区块分组，每个区块只保存两个基本类型数组：
+ * 区块内坐标（打包为一个 int）和原始状态在调色板中的下标。
+ * 相同的方块状态在整个日志中只保存一份。
+ * 箱子、告示牌、刷怪笼等方块实体另外保存完整的快照，还原时连同物品和数据一起写回。
+ *
+ * 只有实际被改变的位置会被记录，拆除的成本与改变的方块数成正比，而不是与地牢的包围盒成正比。
+ * 记录和遍历都在主线程进行。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class BlockJournal {
+
+    private final World world;
+    private final int minY;
+
+    // 按首次记录顺序排列的区块
+    private final Map<Long, ChunkDiff> chunks = new LinkedHashMap<>();
+
+    // 方块状态调色板
+    private final List<BlockData> palette = new ArrayList<>();
+    private final Map<BlockData, Integer> paletteIndex = new HashMap<>();
+
+    private int size;
+    private int tileCount;
+
+    /**
+     * 日志条目访问器
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        /**
+         * @param x 世界X
+         * @param y 世界Y
+         * @param z 世界Z
+         * @param original 原始方块状态
+         * @param tile 原始方块实体的快照，不是方块实体时为null
+         */
+        void visit(int x, int y, int z, BlockData original, BlockState tile);
+    }
+
+    /**
+     * 单个区块的差异
+     */
+    private static final class ChunkDiff {
+        private final int chunkX;
+        private final int chunkZ;
+        // (y - minY) << 8 | (z & 15) << 4 | (x & 15)
+        private int[] positions = new int[64];
+        private int[] states = new int[64];
+        // 方块实体快照，第一次记录方块实体时才分配
+        private BlockState[] tiles;
+        private int count;
+
+        private ChunkDiff(int chunkX, int chunkZ) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        private void add(int position, int state, BlockState tile) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+                states = Arrays.copyOf(states, count * 2);
+                if (tiles != null) {
+                    tiles = Arrays.copyOf(tiles, count * 2);
+                }
+            }
+            if (tile != null && tiles == null) {
+                tiles = new BlockState[positions.length];
+            }
+            positions[count] = position;
+            states[count] = state;
+            if (tiles != null) {
+                tiles[count] = tile;
+            }
+            count++;
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param world 地牢所在的世界
+     */
+    public BlockJournal(World world) {
+        this.world = world;
+        this.minY = world != null ? world.getMinHeight() : 0;
+    }
+
+    /**
+     * 记录一个位置被覆盖前的状态
+     *
+     * 同一位置可以被记录多次（例如流式展开的部分与已放置部分重叠），
+     * 逆序回放时最早的记录最后写入，因此结果总是最初的方块。
+     *
+     * @param x 世界X
+     * @param y 世界Y
+     * @param z 世界Z
+     * @param original 原始方块状态
+     * @param tile 原始方块实体的快照，不是方块实体时为null
+     */
+    void record(int x, int y, int z, BlockData original, BlockState tile) {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        ChunkDiff diff = chunks.computeIfAbsent(LocationUtils.chunkKey(chunkX, chunkZ),
+            key -> new ChunkDiff(chunkX, chunkZ));
+
+        Integer state = paletteIndex.get(original);
+        if (state == null) {
+            state = palette.size();
+            palette.add(original);
+            paletteIndex.put(original, state);
+        }
+
+        diff.add(((y - minY) << 8) | ((z & 15) << 4) | (x & 15), state, tile);
+        size++;
+        if (tile != null) {
+            tileCount++;
+        }
+    }
+
+    /**
+     * 按记录的逆序遍历全部条目
+     *
+     * @param visitor 条目访问器
+     */
+    public void forEachReversed(EntryVisitor visitor) {
+        List<ChunkDiff> ordered = new ArrayList<>(chunks.values());
+        for (int c = ordered.size() - 1; c >= 0; c--) {
+            ChunkDiff diff = ordered.get(c);
+            int baseX = diff.chunkX << 4;
+            int baseZ = diff.chunkZ << 4;
+            for (int i = diff.count - 1; i >= 0; i--) {
+                int position = diff.positions[i];
+                visitor.visit(baseX + (position & 15), (position >>> 8) + minY, baseZ + ((position >>> 4) & 15),
+                    palette.get(diff.states[i]), diff.tiles != null ? diff.tiles[i] : null);
+            }
+        }
+    }
+
+    /**
+     * 清空日志
+     */
+    public void clear() {
+        chunks.clear();
+        palette.clear();
+        paletteIndex.clear();
+        size = 0;
+        tileCount = 0;
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public World getWorld() { return world; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public int getChunkCount() { return chunks.size(); }
+    public int getPaletteSize() { return palette.size(); }
+    public int getTileCount() { return tileCount; }
+
+    /**
+     * 估算日志占用的内存（字节），只计算基本类型数组
+     *
+     * @return 估算的字节数
+     */
+    public long getEstimatedBytes() {
+        long bytes = 0;
+        for (ChunkDiff diff : chunks.values()) {
+            bytes += (long) diff.positions.length * Integer.BYTES * 2;
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockJournal{entries=" + size + ", chunks=" + chunks.size() + ", palette=" + palette.size()
+            + ", tiles=" + tileCount + "}";
+    }
+}
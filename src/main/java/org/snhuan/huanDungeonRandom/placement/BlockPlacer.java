@@ -0,0 +1,461 @@
+package org.snhuan.huanDungeonRandom.placement;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonInstance;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * 方块放置器 - 在主线程按每 tick 的时间预算分批写入地牢方块
+ *
+ * 功能特点：
+ * - 提交的放置任务按先后顺序排队，所有任务共享同一个时间预算
+ * - 每 tick 写入方块直到用完 performance.batch_operations.tick_budget_ms，而不是固定数量
+ * - 每个 tick 结束后报告进度，支持暂停、恢复和取消
+ * - 没有任务时停止定时任务，不占用 tick
+ * - 任务排队时异步预加载涉及的区块，写入时只访问已加载的区块，完成后释放区块票据
+ * - 放置时记录被覆盖的原始方块，拆除和重置时在同样的时间预算内只回放这些差异
+ *
+ * 任务可以在任意线程创建（方块展开不访问世界），排队和写入都在主线程进行。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class BlockPlacer {
+
+    private final JavaPlugin plugin;
+    private final Logger logger;
+
+    // 配置参数
+    private final long budgetNanos;
+    private final int maxBlocksPerTick;
+    private final int intervalTicks;
+
+    // 区块预加载器，关闭预加载时为null
+    private final ChunkPreloader preloader;
+
+    // 每个地牢实例的原始方块日志，关闭记录时为空
+    private final boolean recordJournal;
+    private final Map<String, BlockJournal> journals = new ConcurrentHashMap<>();
+
+    // 任务队列（仅主线程访问）
+    private final Deque<PlacementJob> jobs = new ArrayDeque<>();
+    private BukkitTask task;
+
+    // 统计信息（仅主线程写入）
+    private long totalPlaced;
+    private long completedJobs;
+    private long restoredJobs;
+    private long lastTickNanos;
+    private long maxTickNanos;
+
+    private static final double DEFAULT_TICK_BUDGET_MS = 10.0;
+    private static final int DEFAULT_INTERVAL_TICKS = 1;
+
+    /**
+     * 放置进度监听器（在主线程调用）
+     */
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * @param job 放置任务
+         * @param placedBlocks 已写入的方块数
+         * @param totalBlocks 总方块数
+         */
+        void onProgress(PlacementJob job, int placedBlocks, int totalBlocks);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param plugin 插件实例
+     */
+    public BlockPlacer(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+
+        double budgetMillis = plugin.getConfig().getDouble("performance.batch_operations.tick_budget_ms", DEFAULT_TICK_BUDGET_MS);
+        this.budgetNanos = (long) (Math.max(0.1, budgetMillis) * 1_000_000L);
+        int batchSize = plugin.getConfig().getInt("performance.batch_operations.block_batch_size", 0);
+        this.maxBlocksPerTick = batchSize > 0 ? batchSize : Integer.MAX_VALUE;
+        this.intervalTicks = Math.max(1, plugin.getConfig().getInt("performance.batch_operations.batch_interval", DEFAULT_INTERVAL_TICKS));
+        this.preloader = plugin.getConfig().getBoolean("performance.batch_operations.preload_chunks", true)
+            ? new ChunkPreloader(plugin) : null;
+        this.recordJournal = plugin.getConfig().getBoolean("performance.batch_operations.record_journal", true);
+
+        logger.info("方块放置器初始化完成，每 tick 时间预算: " + budgetMillis + "ms，间隔: " + intervalTicks + " tick");
+    }
+
+    /**
+     * 提交地牢实例的全部方块
+     *
+     * @param instance 地牢实例
+     * @param listener 进度监听器，可以为null
+     * @return 放置任务
+     */
+    public PlacementJob submit(DungeonInstance instance, ProgressListener listener) {
+        return submit(instance, 0, listener);
+    }
+
+    /**
+     * 提交地牢实例中从指定索引开始的蓝图（流式生成时只放置新展开的部分）
+     *
+     * 方块在调用线程展开；从其他线程调用时任务会在下一个主线程 tick 入队。
+     *
+     * @param instance 地牢实例
+     * @param fromIndex 第一个需要放置的蓝图索引
+     * @param listener 进度监听器，可以为null
+     * @return 放置任务
+     */
+    public PlacementJob submit(DungeonInstance instance, int fromIndex, ProgressListener listener) {
+        BlockJournal journal = recordJournal
+            ? journals.computeIfAbsent(instance.getInstanceId(), id -> new BlockJournal(instance.getWorld()))
+            : null;
+        PlacementJob job = PlacementJob.forInstance(instance, fromIndex, journal, listener);
+        if (Bukkit.isPrimaryThread()) {
+            enqueue(job);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, () -> enqueue(job));
+        }
+        return job;
+    }
+
+    /**
+     * 加入队列并在需要时启动定时任务
+     */
+    private void enqueue(PlacementJob job) {
+        if (job.isDone()) {
+            return;
+        }
+        jobs.addLast(job);
+        if (preloader != null) {
+            preloader.preload(job);
+            job.getFuture().whenComplete((result, error) -> preloader.release(job));
+        }
+        logger.fine((job.isRestore() ? "还原任务已排队: " : "放置任务已排队: ")
+            + job.getInstanceId() + " (" + job.getTotalBlocks() + " 个方块)");
+
+        if (task == null) {
+            task = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, intervalTicks);
+        }
+    }
+
+    /**
+     * 每个 tick 在时间预算内写入方块
+     */
+    private void tick() {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        int remaining = maxBlocksPerTick;
+        List<PlacementJob> advanced = new ArrayList<>();
+
+        Iterator<PlacementJob> iterator = jobs.iterator();
+        while (iterator.hasNext() && remaining > 0 && System.nanoTime() < deadline) {
+            PlacementJob job = iterator.next();
+            if (job.isDone()) {
+                iterator.remove();
+                continue;
+            }
+            if (job.getState() == PlacementJob.State.PAUSED) {
+                continue;
+            }
+
+            int placed;
+            try {
+                // 未启用预加载时没有异步加载，只能同步加载区块，否则任务会一直等待
+                placed = job.drain(deadline, remaining, preloader == null);
+            } catch (Exception e) {
+                logger.severe("放置方块失败，取消任务: " + job.getInstanceId() + " - " + e.getMessage());
+                job.cancel();
+                iterator.remove();
+                continue;
+            }
+
+            remaining -= placed;
+            totalPlaced += placed;
+            if (placed > 0) {
+                advanced.add(job);
+            } else if (preloader != null && job.isWaitingForChunk()) {
+                // 等待的区块可能已被卸载或请求已结束，必要时重新请求
+                preloader.ensureCurrentChunk(job);
+            }
+
+            if (job.isDone()) {
+                iterator.remove();
+                if (job.isRestore()) {
+                    restoredJobs++;
+                } else {
+                    completedJobs++;
+                }
+                logger.info((job.isRestore() ? "地牢方块还原完成: " : "地牢方块放置完成: ") + job.getInstanceId()
+                    + " (" + job.getTotalBlocks() + " 个方块, "
+                    + job.getTicks() + " tick, " + (job.getEndTime() - job.getStartTime()) + "ms)");
+            }
+        }
+
+        lastTickNanos = System.nanoTime() - start;
+        maxTickNanos = Math.max(maxTickNanos, lastTickNanos);
+
+        for (PlacementJob job : advanced) {
+            job.notifyProgress();
+        }
+
+        // 队列清空（或只剩已结束的任务）时停止定时任务
+        jobs.removeIf(PlacementJob::isDone);
+        if (jobs.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * 查找地牢实例的未完成任务（主线程调用）
+     *
+     * @param instanceId 地牢实例ID
+     * @return 放置任务列表（流式生成可能有多个）
+     */
+    public List<PlacementJob> getJobs(String instanceId) {
+        List<PlacementJob> result = new ArrayList<>();
+        for (PlacementJob job : jobs) {
+            if (job.getInstanceId().equals(instanceId)) {
+                result.add(job);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 暂停地牢实例的全部放置任务
+     *
+     * @param instanceId 地牢实例ID
+     * @return 暂停的任务数
+     */
+    public int pause(String instanceId) {
+        int count = 0;
+        for (PlacementJob job : getJobs(instanceId)) {
+            if (job.pause()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 恢复地牢实例的全部放置任务
+     *
+     * @param instanceId 地牢实例ID
+     * @return 恢复的任务数
+     */
+    public int resume(String instanceId) {
+        int count = 0;
+        for (PlacementJob job : getJobs(instanceId)) {
+            if (job.resume()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 取消地牢实例的全部放置任务，已写入的方块保留（仍记录在日志中）
+     *
+     * 还原任务不会被取消，否则日志中的差异会丢失。
+     *
+     * @param instanceId 地牢实例ID
+     * @return 取消的任务数
+     */
+    public int cancel(String instanceId) {
+        int count = 0;
+        for (PlacementJob job : getJobs(instanceId)) {
+            if (!job.isRestore() && job.cancel()) {
+                count++;
+            }
+        }
+        jobs.removeIf(PlacementJob::isDone);
+        return count;
+    }
+
+    /**
+     * 还原地牢实例覆盖的全部方块（主线程调用）
+     *
+     * 先取消未完成的放置任务，再按日志在时间预算内分批写回原始方块。
+     * 日志在还原任务创建后移除，同一实例重复还原不会重复写入。
+     *
+     * @param instanceId 地牢实例ID
+     * @param listener 进度监听器，可以为null
+     * @return 还原任务，没有需要还原的方块时返回null
+     */
+    public PlacementJob restore(String instanceId, ProgressListener listener) {
+        cancel(instanceId);
+        BlockJournal journal = journals.remove(instanceId);
+        if (journal == null || journal.isEmpty()) {
+            return null;
+        }
+
+        PlacementJob job = PlacementJob.forRestore(instanceId, journal, listener);
+        logger.info("开始还原地牢方块: " + instanceId + " (" + journal.size() + " 条记录, "
+            + journal.getChunkCount() + " 个区块)");
+        enqueue(job);
+        return job;
+    }
+
+    /**
+     * 重置地牢实例：还原原始方块后重新放置全部蓝图（主线程调用）
+     *
+     * @param instance 地牢实例
+     * @param listener 进度监听器，还原和放置阶段都会报告，可以为null
+     * @return 重新放置完成时结束的通知，被取消时以取消结束
+     */
+    public CompletableFuture<PlacementJob> reset(DungeonInstance instance, ProgressListener listener) {
+        PlacementJob restoreJob = restore(instance.getInstanceId(), listener);
+        if (restoreJob == null) {
+            return submit(instance, listener).getFuture();
+        }
+        return restoreJob.getFuture().thenCompose(done -> submit(instance, listener).getFuture());
+    }
+
+    /**
+     * 立即还原地牢实例覆盖的全部方块，不受时间预算限制（仅用于插件关闭时）
+     *
+     * 包括尚未完成的还原任务和日志中剩余的差异；未加载的区块会被同步加载。
+     *
+     * @param instanceId 地牢实例ID
+     * @return 写回的方块数
+     */
+    public int restoreNow(String instanceId) {
+        cancel(instanceId);
+        int restored = 0;
+        for (PlacementJob job : getJobs(instanceId)) {
+            if (job.isRestore()) {
+                restored += job.drainAll();
+            }
+        }
+
+        BlockJournal journal = journals.remove(instanceId);
+        if (journal != null && !journal.isEmpty()) {
+            PlacementJob job = PlacementJob.forRestore(instanceId, journal, null);
+            restored += job.drainAll();
+        }
+        jobs.removeIf(PlacementJob::isDone);
+        return restored;
+    }
+
+    /**
+     * 获取地牢实例的原始方块日志
+     *
+     * @param instanceId 地牢实例ID
+     * @return 方块日志，没有记录时返回null
+     */
+    public BlockJournal getJournal(String instanceId) {
+        return journals.get(instanceId);
+    }
+
+    /**
+     * 丢弃地牢实例的原始方块日志，之后无法还原（例如地牢需要永久保留时）
+     *
+     * @param instanceId 地牢实例ID
+     */
+    public void discardJournal(String instanceId) {
+        journals.remove(instanceId);
+    }
+
+    /**
+     * 关闭放置器
+     *
+     * 取消所有未完成的放置任务，然后立即还原全部日志：
+     * 插件关闭后定时任务不再运行，日志也不会保存，留在世界中的地牢方块将无法再还原。
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (PlacementJob job : jobs) {
+            if (!job.isRestore()) {
+                job.cancel();
+            }
+        }
+
+        List<String> instanceIds = new ArrayList<>(journals.keySet());
+        for (PlacementJob job : jobs) {
+            if (!job.isDone() && !instanceIds.contains(job.getInstanceId())) {
+                instanceIds.add(job.getInstanceId());
+            }
+        }
+
+        long restored = 0;
+        for (String instanceId : instanceIds) {
+            try {
+                restored += restoreNow(instanceId);
+            } catch (Exception e) {
+                logger.severe("关闭时还原地牢方块失败: " + instanceId + " - " + e.getMessage());
+            }
+        }
+        if (restored > 0) {
+            logger.info("关闭时还原了 " + restored + " 个地牢方块 (" + instanceIds.size() + " 个地牢)");
+        }
+
+        for (PlacementJob job : jobs) {
+            job.cancel();
+        }
+        jobs.clear();
+        journals.clear();
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public int getQueuedJobCount() { return jobs.size(); }
+    public long getTotalPlaced() { return totalPlaced; }
+    public long getCompletedJobs() { return completedJobs; }
+    public long getRestoredJobs() { return restoredJobs; }
+    public int getJournalCount() { return journals.size(); }
+    public double getLastTickMillis() { return lastTickNanos / 1_000_000.0; }
+    public double getMaxTickMillis() { return maxTickNanos / 1_000_000.0; }
+    public double getBudgetMillis() { return budgetNanos / 1_000_000.0; }
+    public ChunkPreloader getPreloader() { return preloader; }
+
+    /**
+     * 获取状态信息
+     *
+     * @return 格式化的状态信息
+     */
+    public String getStatusInfo() {
+        StringBuilder status = new StringBuilder();
+        status.append("方块放置器状态:\n");
+        status.append("- 排队任务数: ").append(jobs.size()).append("\n");
+        status.append("- 已放置方块: ").append(totalPlaced).append(" (完成任务: ").append(completedJobs).append(")\n");
+        status.append("- tick 耗时: ").append(String.format("%.2f", getLastTickMillis()))
+            .append("ms (最大: ").append(String.format("%.2f", getMaxTickMillis()))
+            .append("ms, 预算: ").append(String.format("%.2f", getBudgetMillis())).append("ms)\n");
+        if (recordJournal) {
+            long entries = 0;
+            long tiles = 0;
+            long bytes = 0;
+            for (BlockJournal journal : journals.values()) {
+                entries += journal.size();
+                tiles += journal.getTileCount();
+                bytes += journal.getEstimatedBytes();
+            }
+            status.append("- 方块日志: ").append(journals.size()).append(" 个地牢, ").append(entries)
+                .append(" 条记录 (方块实体: ").append(tiles).append(", 约 ").append(bytes / 1024)
+                .append(" KB, 已还原: ").append(restoredJobs).append(")\n");
+        }
+        if (preloader != null) {
+            status.append("- 预加载区块: ").append(preloader.getRequestedChunks())
+                .append(" (异步加载: ").append(preloader.getAsyncLoadedChunks())
+                .append(", 持有票据: ").append(preloader.getHeldTickets()).append(")\n");
+        }
+        return status.toString();
+    }
+}
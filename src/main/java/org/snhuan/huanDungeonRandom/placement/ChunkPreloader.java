@@ -0,0 +1,219 @@
+package org.snhuan.huanDungeonRandom.placement;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.snhuan.huanDungeonRandom.utils.LocationUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * 区块预加载器 - 在放置之前异步加载任务涉及的全部区块
+ *
+ * 功能特点：
+ * - 区块来自任务展开后的实际方块，而不是只看地牢原点
+ * - 未加载的区块通过 Paper 的 getChunkAtAsync 加载，不阻塞主线程
+ * - 每个区块加载后添加插件区块票据，保证写入期间不会被卸载
+ * - 同一插件在一个区块上只有一张票据，因此按区块对持有的任务计数，
+ *   最后一个任务释放时才移除票据，相邻地牢共用的区块不会被提前卸载
+ * - 任务等待的区块仍未加载且没有进行中的请求时，重新发起异步加载
+ * - 任务完成或取消后释放该任务持有的全部票据
+ *
+ * 所有方法都在主线程调用，异步加载的回调会被切回主线程。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class ChunkPreloader {
+
+    private final JavaPlugin plugin;
+    private final Logger logger;
+
+    // 每个任务的区块状态（仅主线程访问）
+    private final Map<PlacementJob, JobChunks> tickets = new HashMap<>();
+
+    // 每个世界中每个区块被多少个任务持有（仅主线程访问），计数归零时才移除票据
+    private final Map<UUID, Map<Long, Integer>> ticketCounts = new HashMap<>();
+
+    // 统计信息
+    private long requestedChunks;
+    private long asyncLoadedChunks;
+    private int heldTickets;
+
+    /**
+     * 单个任务的区块状态
+     */
+    private static final class JobChunks {
+        private final boolean[] held;
+        private final boolean[] loading;
+
+        private JobChunks(int chunkCount) {
+            this.held = new boolean[chunkCount];
+            this.loading = new boolean[chunkCount];
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param plugin 插件实例
+     */
+    public ChunkPreloader(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+    }
+
+    /**
+     * 为任务涉及的每个区块添加票据，未加载的区块异步加载后再添加
+     *
+     * @param job 放置任务
+     */
+    public void preload(PlacementJob job) {
+        World world = job.getWorld();
+        int chunkCount = job.getChunkCount();
+        if (world == null || chunkCount == 0 || tickets.containsKey(job)) {
+            return;
+        }
+
+        JobChunks chunks = new JobChunks(chunkCount);
+        tickets.put(job, chunks);
+
+        int pending = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            requestedChunks++;
+            // 按写入顺序请求，前面的区块先加载完成
+            if (request(job, chunks, i)) {
+                pending++;
+            }
+        }
+
+        logger.fine("预加载区块: " + job.getInstanceId() + " (" + chunkCount + " 个区块, " + pending + " 个异步加载)");
+    }
+
+    /**
+     * 确保任务正在等待的区块已加载或正在加载
+     *
+     * 任务因区块未加载而停下时由放置器调用；票据未能保住区块或之前的请求已经结束时重新请求。
+     *
+     * @param job 放置任务
+     */
+    public void ensureCurrentChunk(PlacementJob job) {
+        JobChunks chunks = tickets.get(job);
+        int index = job.getCompletedChunks();
+        if (chunks == null || index >= chunks.held.length || chunks.loading[index]) {
+            return;
+        }
+        World world = job.getWorld();
+        long key = job.getChunkKey(index);
+        if (world.isChunkLoaded(LocationUtils.chunkKeyX(key), LocationUtils.chunkKeyZ(key))) {
+            return;
+        }
+        logger.fine("重新请求未加载的区块: " + job.getInstanceId() + " (" + LocationUtils.chunkKeyX(key)
+            + ", " + LocationUtils.chunkKeyZ(key) + ")");
+        request(job, chunks, index);
+    }
+
+    /**
+     * 请求区块：已加载时直接持有票据，否则异步加载
+     *
+     * @return 是否发起了异步加载
+     */
+    private boolean request(PlacementJob job, JobChunks chunks, int index) {
+        World world = job.getWorld();
+        long key = job.getChunkKey(index);
+        int chunkX = LocationUtils.chunkKeyX(key);
+        int chunkZ = LocationUtils.chunkKeyZ(key);
+
+        if (world.isChunkLoaded(chunkX, chunkZ)) {
+            acquire(job, chunks, index, world.getChunkAt(chunkX, chunkZ));
+            return false;
+        }
+
+        chunks.loading[index] = true;
+        world.getChunkAtAsync(chunkX, chunkZ).whenComplete((chunk, error) -> {
+            if (Bukkit.isPrimaryThread()) {
+                onLoaded(job, chunks, index, chunk, error);
+            } else {
+                Bukkit.getScheduler().runTask(plugin, () -> onLoaded(job, chunks, index, chunk, error));
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 异步加载完成（主线程）
+     */
+    private void onLoaded(PlacementJob job, JobChunks chunks, int index, Chunk chunk, Throwable error) {
+        chunks.loading[index] = false;
+        if (job.isDone() || tickets.get(job) != chunks) {
+            return;
+        }
+        if (error != null || chunk == null) {
+            logger.warning("异步加载区块失败，取消放置任务: " + job.getInstanceId()
+                + (error != null ? " - " + error.getMessage() : ""));
+            job.cancel();
+            return;
+        }
+        asyncLoadedChunks++;
+        acquire(job, chunks, index, chunk);
+    }
+
+    /**
+     * 持有区块票据，同一区块的第一个持有者添加插件票据
+     */
+    private void acquire(PlacementJob job, JobChunks chunks, int index, Chunk chunk) {
+        if (chunks.held[index]) {
+            return;
+        }
+        Map<Long, Integer> counts = ticketCounts.computeIfAbsent(job.getWorld().getUID(), uid -> new HashMap<>());
+        if (counts.merge(job.getChunkKey(index), 1, Integer::sum) == 1) {
+            chunk.addPluginChunkTicket(plugin);
+            heldTickets++;
+        }
+        chunks.held[index] = true;
+    }
+
+    /**
+     * 释放任务持有的全部区块票据
+     *
+     * @param job 放置任务
+     */
+    public void release(PlacementJob job) {
+        JobChunks chunks = tickets.remove(job);
+        if (chunks == null) {
+            return;
+        }
+        World world = job.getWorld();
+        Map<Long, Integer> counts = ticketCounts.get(world.getUID());
+        if (counts == null) {
+            return;
+        }
+        for (int i = 0; i < chunks.held.length; i++) {
+            if (!chunks.held[i]) {
+                continue;
+            }
+            long key = job.getChunkKey(i);
+            // 其他任务仍持有该区块时只减少计数
+            if (counts.merge(key, -1, Integer::sum) <= 0) {
+                counts.remove(key);
+                world.removePluginChunkTicket(LocationUtils.chunkKeyX(key), LocationUtils.chunkKeyZ(key), plugin);
+                heldTickets--;
+            }
+        }
+        if (counts.isEmpty()) {
+            ticketCounts.remove(world.getUID());
+        }
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public long getRequestedChunks() { return requestedChunks; }
+    public long getAsyncLoadedChunks() { return asyncLoadedChunks; }
+    public int getHeldTickets() { return heldTickets; }
+    public int getTrackedJobs() { return tickets.size(); }
+}
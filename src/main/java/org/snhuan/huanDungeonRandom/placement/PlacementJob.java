@@ -0,0 +1,568 @@
+package org.snhuan.huanDungeonRandom.placement;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.snhuan.huanDungeonRandom.blueprint.Blueprint;
+import org.snhuan.huanDungeonRandom.dungeon.DungeonInstance;
+import org.snhuan.huanDungeonRandom.utils.LocationUtils;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 放置任务 - 一个地牢（或其一部分）需要写入世界的全部方块，或需要还原的原始方块
+ *
+ * 方块在创建任务时一次性展开为世界坐标，以基本类型数组保存，并按区块分组：
+ * 区块按行蛇形排列，区块内按区段（16 格高）和坐标排序，同一位置只保留最后一次写入。
+ * 之后由 {@link BlockPlacer} 在主线程按时间预算分多个 tick 写入，
+ * 每个区块只解析一次，写完一个区块再进入下一个。
+ * 写入只发生在已加载的区块中：下一个区块尚未加载时任务等待，由 {@link ChunkPreloader} 异步加载。
+ * 放置任务可以带一个 {@link BlockJournal}，写入前记录方块状态确实会改变的位置的原始状态，
+ * 方块实体（箱子、告示牌、刷怪笼等）额外保存完整快照；还原任务由日志创建，写回原始方块状态和方块实体。
+ * 创建任务不访问世界，可以在任意线程执行；写入、暂停、恢复和取消都应在主线程调用。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public class PlacementJob {
+
+    /** 每写入多少个方块检查一次时间 */
+    private static final int CLOCK_CHECK_INTERVAL = 32;
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        QUEUED,
+        RUNNING,
+        PAUSED,
+        COMPLETED,
+        CANCELLED
+    }
+
+    private final String instanceId;
+    private final World world;
+
+    // 方块数据：坐标交错保存为 x, y, z；放置任务使用 materials，还原任务使用 states
+    private int[] coords;
+    private Material[] materials;
+    private BlockData[] states;
+    // 还原任务的方块实体快照，只有日志中含有方块实体时才分配
+    private BlockState[] tiles;
+    private int capacity;
+    private int size;
+    private int cursor;
+
+    // 区块分组：第 i 个区块的方块位于 [chunkEnds[i-1], chunkEnds[i])
+    private long[] chunkKeys = new long[0];
+    private int[] chunkEnds = new int[0];
+    private int chunkCursor;
+    private Chunk currentChunk;
+    private boolean waitingForChunk;
+
+    // 原始方块日志（仅放置任务，可以为null）
+    private final BlockJournal journal;
+    private int unchangedBlocks;
+    // 每种材料写入后的方块状态，用于判断位置是否会被改变
+    private final Map<Material, BlockData> targetData = new EnumMap<>(Material.class);
+    // 当前区块中方块实体的位置，已排序，编码为 y << 8 | (z & 15) << 4 | (x & 15)
+    private int[] tilePositions = new int[0];
+
+    private volatile State state = State.QUEUED;
+    private final CompletableFuture<PlacementJob> future = new CompletableFuture<>();
+    private final BlockPlacer.ProgressListener listener;
+
+    private long startTime;
+    private long endTime;
+    private int ticks;
+
+    /**
+     * 构造函数
+     *
+     * @param instanceId 地牢实例ID
+     * @param world 目标世界
+     * @param expectedBlocks 预计方块数
+     * @param restore 是否为还原任务
+     * @param journal 原始方块日志，还原任务或不记录时为null
+     * @param listener 进度监听器，可以为null
+     */
+    PlacementJob(String instanceId, World world, int expectedBlocks, boolean restore, BlockJournal journal,
+                 BlockPlacer.ProgressListener listener) {
+        this.instanceId = instanceId;
+        this.world = world;
+        this.capacity = Math.max(16, expectedBlocks);
+        this.coords = new int[capacity * 3];
+        if (restore) {
+            this.states = new BlockData[capacity];
+        } else {
+            this.materials = new Material[capacity];
+        }
+        this.journal = journal;
+        this.listener = listener;
+    }
+
+    /**
+     * 为地牢实例中从指定索引开始的蓝图创建放置任务
+     *
+     * @param instance 地牢实例
+     * @param fromIndex 第一个需要放置的蓝图索引
+     * @param journal 原始方块日志，不记录时为null
+     * @param listener 进度监听器，可以为null
+     * @return 放置任务
+     */
+    static PlacementJob forInstance(DungeonInstance instance, int fromIndex, BlockJournal journal,
+                                    BlockPlacer.ProgressListener listener) {
+        List<DungeonInstance.PlacedBlueprint> placed = instance.getPlacedBlueprints();
+        int expected = 0;
+        for (int i = Math.max(0, fromIndex); i < placed.size(); i++) {
+            Blueprint blueprint = placed.get(i).getBlueprint();
+            expected += blueprint.getSizeX() * blueprint.getSizeY() * blueprint.getSizeZ() / 2;
+        }
+
+        PlacementJob job = new PlacementJob(instance.getInstanceId(), instance.getWorld(), expected, false, journal, listener);
+        for (int i = Math.max(0, fromIndex); i < placed.size(); i++) {
+            DungeonInstance.PlacedBlueprint placedBlueprint = placed.get(i);
+            Location location = placedBlueprint.getLocation();
+            int originX = location.getBlockX();
+            int originY = location.getBlockY();
+            int originZ = location.getBlockZ();
+            placedBlueprint.getBlueprint().forEachBlock(placedBlueprint.getRotation(),
+                (x, y, z, material) -> job.add(originX + x, originY + y, originZ + z, material));
+        }
+        job.groupByChunk();
+        return job;
+    }
+
+    /**
+     * 为日志中记录的原始方块创建还原任务
+     *
+     * 日志按记录的逆序展开，同一位置被多次记录时保留最早的原始状态。
+     *
+     * @param instanceId 地牢实例ID
+     * @param journal 原始方块日志
+     * @param listener 进度监听器，可以为null
+     * @return 还原任务
+     */
+    static PlacementJob forRestore(String instanceId, BlockJournal journal, BlockPlacer.ProgressListener listener) {
+        PlacementJob job = new PlacementJob(instanceId, journal.getWorld(), journal.size(), true, null, listener);
+        journal.forEachReversed(job::addState);
+        job.groupByChunk();
+        return job;
+    }
+
+    /**
+     * 追加一个方块写入
+     */
+    void add(int x, int y, int z, Material material) {
+        int index = append(x, y, z);
+        materials[index] = material;
+    }
+
+    /**
+     * 追加一个方块状态写入（还原任务）
+     *
+     * @param tile 方块实体快照，不是方块实体时为null
+     */
+    void addState(int x, int y, int z, BlockData state, BlockState tile) {
+        int index = append(x, y, z);
+        states[index] = state;
+        if (tile != null && tiles == null) {
+            tiles = new BlockState[capacity];
+        }
+        if (tiles != null) {
+            tiles[index] = tile;
+        }
+    }
+
+    /**
+     * 追加坐标，必要时扩容
+     *
+     * @return 新方块的索引
+     */
+    private int append(int x, int y, int z) {
+        if (size == capacity) {
+            capacity *= 2;
+            coords = Arrays.copyOf(coords, capacity * 3);
+            if (materials != null) {
+                materials = Arrays.copyOf(materials, capacity);
+            } else {
+                states = Arrays.copyOf(states, capacity);
+                if (tiles != null) {
+                    tiles = Arrays.copyOf(tiles, capacity);
+                }
+            }
+        }
+        int base = size * 3;
+        coords[base] = x;
+        coords[base + 1] = y;
+        coords[base + 2] = z;
+        return size++;
+    }
+
+    /**
+     * 按区块和区段重排方块
+     *
+     * 区块按 z 行排列，相邻行方向相反（蛇形），使连续写入的区块在空间上相邻；
+     * 区块内按 y、z、x 排序，同一区段的方块连续写入。
+     * 同一位置被多个蓝图写入时只保留最后一次，保持与原始写入顺序相同的结果。
+     */
+    void groupByChunk() {
+        int n = size;
+        if (n == 0) {
+            return;
+        }
+
+        // 收集不同的区块
+        long[] keys = new long[n];
+        int minY = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            keys[i] = LocationUtils.chunkKey(coords[i * 3] >> 4, coords[i * 3 + 2] >> 4);
+            minY = Math.min(minY, coords[i * 3 + 1]);
+        }
+        long[] distinct = keys.clone();
+        Arrays.sort(distinct);
+        int chunkCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                distinct[chunkCount++] = distinct[i];
+            }
+        }
+        distinct = Arrays.copyOf(distinct, chunkCount);
+
+        // 蛇形排列区块，得到每个区块的写入顺序
+        Long[] ordered = new Long[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            ordered[i] = distinct[i];
+        }
+        Arrays.sort(ordered, (a, b) -> {
+            int za = LocationUtils.chunkKeyZ(a);
+            int zb = LocationUtils.chunkKeyZ(b);
+            if (za != zb) {
+                return Integer.compare(za, zb);
+            }
+            int direction = (za & 1) == 0 ? 1 : -1;
+            return direction * Integer.compare(LocationUtils.chunkKeyX(a), LocationUtils.chunkKeyX(b));
+        });
+        int[] rankOfDistinct = new int[chunkCount];
+        for (int rank = 0; rank < chunkCount; rank++) {
+            rankOfDistinct[Arrays.binarySearch(distinct, ordered[rank])] = rank;
+        }
+
+        // 按区块计数排序
+        int[] rankOfBlock = new int[n];
+        int[] starts = new int[chunkCount + 1];
+        for (int i = 0; i < n; i++) {
+            rankOfBlock[i] = rankOfDistinct[Arrays.binarySearch(distinct, keys[i])];
+            starts[rankOfBlock[i] + 1]++;
+        }
+        for (int rank = 0; rank < chunkCount; rank++) {
+            starts[rank + 1] += starts[rank];
+        }
+        int[] order = new int[n];
+        int[] fill = Arrays.copyOf(starts, chunkCount);
+        for (int i = 0; i < n; i++) {
+            order[fill[rankOfBlock[i]]++] = i;
+        }
+
+        // 区块内按位置排序，低 32 位保存原始索引，保证同一位置按写入顺序排列
+        int[] newCoords = new int[n * 3];
+        Material[] newMaterials = materials != null ? new Material[n] : null;
+        BlockData[] newStates = states != null ? new BlockData[n] : null;
+        BlockState[] newTiles = tiles != null ? new BlockState[n] : null;
+        long[] newChunkKeys = new long[chunkCount];
+        int[] newChunkEnds = new int[chunkCount];
+        int out = 0;
+        for (int rank = 0; rank < chunkCount; rank++) {
+            int from = starts[rank];
+            int to = starts[rank + 1];
+            long[] local = new long[to - from];
+            for (int j = from; j < to; j++) {
+                int i = order[j];
+                long position = ((long) (coords[i * 3 + 1] - minY) << 8)
+                    | ((coords[i * 3 + 2] & 15) << 4)
+                    | (coords[i * 3] & 15);
+                local[j - from] = (position << 32) | i;
+            }
+            Arrays.sort(local);
+
+            for (int j = 0; j < local.length; j++) {
+                // 同一位置只保留最后一次写入
+                if (j + 1 < local.length && (local[j + 1] >>> 32) == (local[j] >>> 32)) {
+                    continue;
+                }
+                int i = (int) local[j];
+                System.arraycopy(coords, i * 3, newCoords, out * 3, 3);
+                if (newMaterials != null) {
+                    newMaterials[out] = materials[i];
+                } else {
+                    newStates[out] = states[i];
+                    if (newTiles != null) {
+                        newTiles[out] = tiles[i];
+                    }
+                }
+                out++;
+            }
+            newChunkKeys[rank] = ordered[rank];
+            newChunkEnds[rank] = out;
+        }
+
+        coords = out < n ? Arrays.copyOf(newCoords, out * 3) : newCoords;
+        if (newMaterials != null) {
+            materials = out < n ? Arrays.copyOf(newMaterials, out) : newMaterials;
+        } else {
+            states = out < n ? Arrays.copyOf(newStates, out) : newStates;
+            if (newTiles != null) {
+                tiles = out < n ? Arrays.copyOf(newTiles, out) : newTiles;
+            }
+        }
+        capacity = out;
+        size = out;
+        chunkKeys = newChunkKeys;
+        chunkEnds = newChunkEnds;
+    }
+
+
+    /**
+     * 不受时间预算限制写完剩余方块，未加载的区块同步加载（仅用于插件关闭时）
+     *
+     * @return 本次处理的方块数
+     */
+    int drainAll() {
+        if (state == State.PAUSED) {
+            state = startTime == 0 ? State.QUEUED : State.RUNNING;
+        }
+        return drain(Long.MAX_VALUE, Integer.MAX_VALUE, true);
+    }
+
+    /**
+     * 在截止时间之前写入方块（主线程调用）
+     *
+     * 启用预加载时不应同步加载区块，遇到未加载的区块就停下等待；
+     * 未启用预加载时没有别人会加载这些区块，必须由这里同步加载。
+     *
+     * @param deadlineNanos 截止时间（System.nanoTime）
+     * @param maxBlocks 本次最多写入的方块数
+     * @param loadChunks 是否同步加载未加载的区块
+     * @return 本次处理的方块数
+     */
+    int drain(long deadlineNanos, int maxBlocks, boolean loadChunks) {
+        if (state == State.QUEUED) {
+            state = State.RUNNING;
+            startTime = System.currentTimeMillis();
+        }
+        if (state != State.RUNNING) {
+            return 0;
+        }
+
+        ticks++;
+        // 区块可能在两个 tick 之间被卸载，每个 tick 重新检查
+        currentChunk = null;
+        int limit = (int) Math.min(size, (long) cursor + maxBlocks);
+        int start = cursor;
+        while (cursor < limit) {
+            if (currentChunk == null) {
+                long key = chunkKeys[chunkCursor];
+                int chunkX = LocationUtils.chunkKeyX(key);
+                int chunkZ = LocationUtils.chunkKeyZ(key);
+                // 由预加载器负责加载区块时不同步加载，等待预加载完成
+                if (!loadChunks && !world.isChunkLoaded(chunkX, chunkZ)) {
+                    waitingForChunk = true;
+                    break;
+                }
+                waitingForChunk = false;
+                currentChunk = world.getChunkAt(chunkX, chunkZ);
+                if (journal != null) {
+                    loadTilePositions(currentChunk);
+                }
+            }
+
+            int base = cursor * 3;
+            Block block = currentChunk.getBlock(coords[base] & 15, coords[base + 1], coords[base + 2] & 15);
+            if (states != null) {
+                BlockState tile = tiles != null ? tiles[cursor] : null;
+                if (tile != null) {
+                    // 快照同时写回方块状态和方块实体数据
+                    tile.update(true, false);
+                } else {
+                    block.setBlockData(states[cursor], false);
+                }
+            } else if (journal == null) {
+                block.setType(materials[cursor], false);
+            } else {
+                // 记录原始状态；写入前后状态完全相同的位置不写入也不记录，还原时无需处理
+                BlockData target = targetData.computeIfAbsent(materials[cursor], Material::createBlockData);
+                BlockData original = block.getBlockData();
+                if (!original.equals(target)) {
+                    BlockState tile = isTilePosition(coords[base], coords[base + 1], coords[base + 2])
+                        ? block.getState() : null;
+                    journal.record(coords[base], coords[base + 1], coords[base + 2], original, tile);
+                    block.setBlockData(target, false);
+                } else {
+                    unchangedBlocks++;
+                }
+            }
+            cursor++;
+
+            // 当前区块写完，下一个方块重新解析区块
+            if (cursor == chunkEnds[chunkCursor]) {
+                chunkCursor++;
+                currentChunk = null;
+            }
+
+            if ((cursor - start) % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= deadlineNanos) {
+                break;
+            }
+        }
+
+        if (cursor >= size) {
+            finish(State.COMPLETED);
+        }
+        return cursor - start;
+    }
+
+    /**
+     * 读取区块中方块实体的位置，只有这些位置需要保存完整快照
+     */
+    private void loadTilePositions(Chunk chunk) {
+        BlockState[] tileEntities = chunk.getTileEntities(false);
+        if (tilePositions.length != tileEntities.length) {
+            tilePositions = new int[tileEntities.length];
+        }
+        for (int i = 0; i < tileEntities.length; i++) {
+            BlockState tile = tileEntities[i];
+            tilePositions[i] = (tile.getY() << 8) | ((tile.getZ() & 15) << 4) | (tile.getX() & 15);
+        }
+        Arrays.sort(tilePositions);
+    }
+
+    private boolean isTilePosition(int x, int y, int z) {
+        return tilePositions.length > 0
+            && Arrays.binarySearch(tilePositions, (y << 8) | ((z & 15) << 4) | (x & 15)) >= 0;
+    }
+
+    /**
+     * 通知进度监听器
+     */
+    void notifyProgress() {
+        if (listener != null) {
+            try {
+                listener.onProgress(this, cursor, size);
+            } catch (Exception e) {
+                // 监听器异常不影响放置
+            }
+        }
+    }
+
+    /**
+     * 结束任务
+     */
+    private void finish(State finalState) {
+        state = finalState;
+        endTime = System.currentTimeMillis();
+        // 释放方块数据
+        coords = new int[0];
+        materials = materials != null ? new Material[0] : null;
+        states = states != null ? new BlockData[0] : null;
+        capacity = 0;
+        currentChunk = null;
+        if (finalState == State.COMPLETED) {
+            future.complete(this);
+        } else {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * 暂停任务，已写入的方块保留
+     *
+     * @return 是否暂停成功
+     */
+    public boolean pause() {
+        if (state == State.QUEUED || state == State.RUNNING) {
+            state = State.PAUSED;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 恢复已暂停的任务
+     *
+     * @return 是否恢复成功
+     */
+    public boolean resume() {
+        if (state == State.PAUSED) {
+            state = startTime == 0 ? State.QUEUED : State.RUNNING;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 取消任务，已写入的方块保留
+     *
+     * @return 是否取消成功
+     */
+    public boolean cancel() {
+        if (isDone()) {
+            return false;
+        }
+        finish(State.CANCELLED);
+        return true;
+    }
+
+    public boolean isDone() {
+        return state == State.COMPLETED || state == State.CANCELLED;
+    }
+
+    /**
+     * 获取完成进度
+     *
+     * @return 0 到 1 之间的进度
+     */
+    public double getProgress() {
+        if (state == State.COMPLETED) {
+            return 1.0;
+        }
+        return size > 0 ? (double) cursor / size : 0.0;
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public String getInstanceId() { return instanceId; }
+    public World getWorld() { return world; }
+    public State getState() { return state; }
+    public int getPlacedBlocks() { return cursor; }
+    public int getTotalBlocks() { return size; }
+    public int getTicks() { return ticks; }
+    public boolean isRestore() { return states != null; }
+    public int getUnchangedBlocks() { return unchangedBlocks; }
+    public int getChunkCount() { return chunkKeys.length; }
+    long getChunkKey(int index) { return chunkKeys[index]; }
+    public boolean isWaitingForChunk() { return waitingForChunk; }
+    public int getCompletedChunks() { return chunkCursor; }
+    public long getStartTime() { return startTime; }
+    public long getEndTime() { return endTime; }
+
+    /**
+     * 获取完成通知，任务完成时正常结束，被取消时以取消结束
+     *
+     * @return 完成通知
+     */
+    public CompletableFuture<PlacementJob> getFuture() { return future; }
+
+    @Override
+    public String toString() {
+        return "PlacementJob{instance=" + instanceId + ", restore=" + isRestore() + ", state=" + state + ", placed=" + cursor + "/" + size
+            + ", chunks=" + chunkCursor + "/" + chunkKeys.length + ", ticks=" + ticks + "}";
+    }
+}
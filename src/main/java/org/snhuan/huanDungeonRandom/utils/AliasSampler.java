@@ -0,0 +1,161 @@
+package org.snhuan.huanDungeonRandom.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 别名表加权采样器 - Vose 别名方法的实现
+ *
+ * 构建时间 O(n)，每次采样 O(1) 且不分配对象。
+ * 构建完成后不可变，可以在多个线程之间共享，随机源由调用方提供。
+ *
+ * 权重为非正数、NaN 或无穷大的元素永远不会被选中；
+ * 所有权重都无效时退化为均匀选择。
+ *
+ * @param <T> 元素类型
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class AliasSampler<T> {
+
+    private final List<T> items;
+    private final double[] probability;
+    private final int[] alias;
+    private final double totalWeight;
+
+    /**
+     * 构造函数
+     *
+     * @param items 元素列表
+     * @param weights 对应的权重
+     */
+    public AliasSampler(List<T> items, double[] weights) {
+        if (items.size() != weights.length) {
+            throw new IllegalArgumentException("元素列表和权重列表大小不匹配");
+        }
+
+        int n = items.size();
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        double total = 0;
+        for (double weight : weights) {
+            total += sanitize(weight);
+        }
+        this.totalWeight = total;
+
+        if (n == 0) {
+            return;
+        }
+
+        if (total <= 0) {
+            for (int i = 0; i < n; i++) {
+                probability[i] = 1.0;
+                alias[i] = i;
+            }
+            return;
+        }
+
+        // 按平均权重缩放，小于 1 的进入 small 栈，其余进入 large 栈
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+
+        for (int i = 0; i < n; i++) {
+            scaled[i] = sanitize(weights[i]) * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // 剩余元素的概率因浮点误差可能略偏离 1，直接置为 1
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+    }
+
+    /**
+     * 根据元素计算权重并创建采样器
+     *
+     * @param items 元素列表
+     * @param weightFunction 权重函数
+     * @param <T> 元素类型
+     * @return 采样器
+     */
+    public static <T> AliasSampler<T> of(List<T> items, ToDoubleFunction<? super T> weightFunction) {
+        double[] weights = new double[items.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weightFunction.applyAsDouble(items.get(i));
+        }
+        return new AliasSampler<>(items, weights);
+    }
+
+    /**
+     * 采样一个元素索引
+     *
+     * @param random 随机源
+     * @return 元素索引，采样器为空返回-1
+     */
+    public int sampleIndex(SplittableRandom random) {
+        int n = probability.length;
+        if (n == 0) {
+            return -1;
+        }
+
+        int column = random.nextInt(n);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    /**
+     * 采样一个元素
+     *
+     * @param random 随机源
+     * @return 元素，采样器为空返回null
+     */
+    public T sample(SplittableRandom random) {
+        int index = sampleIndex(random);
+        return index >= 0 ? items.get(index) : null;
+    }
+
+    private static double sanitize(double weight) {
+        return weight > 0 && !Double.isInfinite(weight) ? weight : 0;
+    }
+
+    // ==================== Getter 方法 ====================
+
+    public List<T> getItems() { return items; }
+    public int size() { return items.size(); }
+    public boolean isEmpty() { return items.isEmpty(); }
+    public double getTotalWeight() { return totalWeight; }
+}
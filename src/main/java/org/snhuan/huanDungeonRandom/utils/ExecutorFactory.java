@@ -0,0 +1,138 @@
+package org.snhuan.huanDungeonRandom.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 线程池工厂 - 按执行模式创建计算线程池和 I/O 线程池
+ *
+ * 执行模式：
+ * - platform：全部使用固定大小的平台线程池（默认）
+ * - virtual：I/O 与编排任务每个任务一个虚拟线程，计算任务仍在有界的平台线程池中执行
+ *
+ * 插件以 Java 17 编译，虚拟线程通过反射创建；
+ * 运行时不支持虚拟线程（Java 21 以下）时自动退回平台线程。
+ *
+ * @author HuanDungeonRandom
+ * @version 1.0
+ * @since 2024-01-01
+ */
+public final class ExecutorFactory {
+
+    /** performance.executor.io_threads 的默认值，所有读取该配置的组件共用 */
+    public static final int DEFAULT_IO_THREADS = 4;
+
+    /**
+     * 执行模式
+     */
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL;
+
+        /**
+         * 从配置值解析执行模式，无法识别时返回 PLATFORM
+         *
+         * @param value 配置值
+         * @return 执行模式
+         */
+        public static Mode fromConfig(String value) {
+            return "virtual".equalsIgnoreCase(value) ? VIRTUAL : PLATFORM;
+        }
+    }
+
+    /**
+     * 私有构造函数，防止实例化工具类
+     */
+    private ExecutorFactory() {
+        throw new UnsupportedOperationException("工具类不能被实例化");
+    }
+
+    /**
+     * 检查当前运行时是否支持虚拟线程
+     *
+     * @return 是否支持
+     */
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 创建计算线程池（固定大小的守护平台线程）
+     *
+     * @param namePrefix 线程名前缀
+     * @param threads 线程数
+     * @return 线程池
+     */
+    public static ExecutorService newComputeExecutor(String namePrefix, int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads), daemonFactory(namePrefix));
+    }
+
+    /**
+     * 创建 I/O 线程池
+     *
+     * VIRTUAL 模式且运行时支持时，每个任务运行在独立的虚拟线程上，慢速读写不会占用有限的线程；
+     * 否则创建固定大小的守护平台线程池。
+     *
+     * @param namePrefix 线程名前缀
+     * @param mode 执行模式
+     * @param platformThreads 平台线程模式下的线程数
+     * @param logger 日志记录器
+     * @return 线程池
+     */
+    public static ExecutorService newIoExecutor(String namePrefix, Mode mode, int platformThreads, Logger logger) {
+        if (mode == Mode.VIRTUAL) {
+            ExecutorService virtual = newVirtualExecutor(namePrefix, logger);
+            if (virtual != null) {
+                return virtual;
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, platformThreads), daemonFactory(namePrefix));
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器
+     *
+     * @return 执行器，不支持时返回null
+     */
+    private static ExecutorService newVirtualExecutor(String namePrefix, Logger logger) {
+        if (!isVirtualThreadSupported()) {
+            logger.warning("当前 Java 版本不支持虚拟线程，使用平台线程: " + namePrefix);
+            return null;
+        }
+
+        try {
+            // Thread.ofVirtual().name(prefix, 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warning("创建虚拟线程执行器失败，使用平台线程: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 创建守护线程工厂
+     */
+    private static ThreadFactory daemonFactory(String namePrefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -322,6 +322,37 @@ public class LocationUtils {
         return box1.overlaps(box2);
     }
     
+    /**
+     * 把区块坐标打包为一个 long，用于不加载区块的区块索引
+     * 
+     * @param chunkX 区块X
+     * @param chunkZ 区块Z
+     * @return 区块键
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * 从区块键取出区块X
+     * 
+     * @param key 区块键
+     * @return 区块X
+     */
+    public static int chunkKeyX(long key) {
+        return (int) (key >> 32);
+    }
+    
+    /**
+     * 从区块键取出区块Z
+     * 
+     * @param key 区块键
+     * @return 区块Z
+     */
+    public static int chunkKeyZ(long key) {
+        return (int) key;
+    }
+    
     /**
      * 计算向量的方向角度
      * 